@@ -0,0 +1,161 @@
+package com.springai.mobile.automation.service.learning;
+
+import com.springai.mobile.automation.model.LearningEntry;
+import com.springai.mobile.automation.model.TestAction;
+import com.springai.mobile.automation.repository.LearningEntryRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for learning-store lookups and updates against an in-memory H2 database
+ * seeded with the given number of learning entries
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LearningServiceBenchmark {
+
+    private static final int SCREENS = 500;
+    private static final int SEED_BATCH = 10_000;
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private LearningService learningService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(BenchmarkConfig.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:learning-bench;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "app.automation.learning.similarity.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+        learningService = context.getBean(LearningService.class);
+        seed(context.getBean(JdbcTemplate.class), rows);
+        learningService.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<String> getPastCorrection() {
+        int index = ThreadLocalRandom.current().nextInt(rows);
+        return learningService.getPastCorrection(action(index), screen(index));
+    }
+
+    @Benchmark
+    public void learnFromAction() {
+        int index = ThreadLocalRandom.current().nextInt(rows);
+        TestAction action = action(index);
+        action.setSuccessful(true);
+        learningService.learnFromAction(action, screen(index), "//android.widget.Button[@text='" + index + "']",
+                null, null);
+    }
+
+    private static TestAction action(int index) {
+        return TestAction.builder()
+                .actionType(TestAction.ActionType.TAP)
+                .elementDescription("Element " + index)
+                .build();
+    }
+
+    private static String screen(int index) {
+        return "Screen " + (index % SCREENS);
+    }
+
+    /**
+     * Insert learning entries with plain JDBC batches, far faster than saving through JPA
+     */
+    private static void seed(JdbcTemplate jdbcTemplate, int rows) {
+        String sql = "INSERT INTO learning_entry (context, context_key, action, successful, error_details, " +
+                "correction, element_identifiers, screen_description, created_at, use_count, confidence_score) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH);
+        for (int i = 0; i < rows; i++) {
+            boolean successful = i % 4 != 0;
+            batch.add(new Object[] {
+                    String.format("%s on screen '%s'", "Element " + i, screen(i)),
+                    LearningService.contextKey("TAP", "Element " + i, screen(i)),
+                    "TAP",
+                    successful,
+                    successful ? null : "Element not found",
+                    successful ? null : "//android.widget.Button[@resource-id='element_" + i + "']",
+                    "//android.widget.Button[@text='" + i + "']",
+                    screen(i),
+                    now,
+                    1,
+                    successful ? 0.7f : 0.3f
+            });
+
+            if (batch.size() == SEED_BATCH) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, batch);
+        }
+    }
+
+    /**
+     * Minimal context with just the persistence layer and the learning service
+     */
+    @Configuration
+    @ImportAutoConfiguration({
+            DataSourceAutoConfiguration.class,
+            HibernateJpaAutoConfiguration.class,
+            TransactionAutoConfiguration.class,
+            JdbcTemplateAutoConfiguration.class
+    })
+    @EntityScan(basePackageClasses = LearningEntry.class)
+    @EnableJpaRepositories(basePackageClasses = LearningEntryRepository.class)
+    @Import({LearningKeyMigration.class, LearningSimilarityIndex.class, LearningService.class})
+    static class BenchmarkConfig {
+    }
+}
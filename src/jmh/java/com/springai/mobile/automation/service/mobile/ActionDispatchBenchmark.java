@@ -0,0 +1,98 @@
+package com.springai.mobile.automation.service.mobile;
+
+import com.springai.mobile.automation.model.TestAction;
+import com.springai.mobile.automation.service.ai.ScreenAnalyzerService;
+import com.springai.mobile.automation.service.execution.RunEvents;
+import com.springai.mobile.automation.service.learning.LearningService;
+import io.appium.java_client.android.AndroidDriver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.By;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.WebElement;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Benchmark for the per-action overhead of MobileAutomationService.executeAction
+ * against a stub driver that answers instantly, isolating framework cost from device time
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActionDispatchBenchmark {
+
+    @Param({"TAP", "TYPE", "CLEAR", "VERIFY_ELEMENT"})
+    private TestAction.ActionType actionType;
+
+    private MobileAutomationService mobileAutomationService;
+    private DeviceSession session;
+    private Path screenshotDirectory;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        screenshotDirectory = Files.createTempDirectory("dispatch-bench");
+        File screenshot = Files.createTempFile(screenshotDirectory, "stub", ".png").toFile();
+
+        AndroidDriver driver = mock(AndroidDriver.class);
+        WebElement element = mock(WebElement.class);
+        when(driver.getScreenshotAs(OutputType.FILE)).thenReturn(screenshot);
+        when(driver.findElement(any(By.class))).thenReturn(element);
+
+        mobileAutomationService = new MobileAutomationService(
+                mock(ScreenAnalyzerService.class), mock(LearningService.class),
+                mock(LocalLocatorResolver.class), mock(RunEvents.class));
+        setField(mobileAutomationService, "screenshotDirectory", screenshotDirectory.toString());
+        setField(mobileAutomationService, "executionTimeoutMs", 1000L);
+
+        session = new DeviceSession("bench-device", driver, Instant.now());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (var files = Files.walk(screenshotDirectory)) {
+            files.map(Path::toFile).sorted((a, b) -> b.compareTo(a)).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public boolean executeAction() {
+        TestAction action = TestAction.builder()
+                .id(1L)
+                .actionType(actionType)
+                .elementLocator("//android.widget.Button[@text='Login']")
+                .elementDescription("Login button")
+                .value("testuser")
+                .build();
+        return mobileAutomationService.executeAction(session, action);
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,100 @@
+package com.springai.mobile.automation.util;
+
+import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.model.TestAction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for parsing LLM responses of realistic shape and size: a fenced plan array
+ * surrounded by prose, and a screen analysis object with nested elements
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonUtilsBenchmark {
+
+    @Param({"1024", "16384", "204800"})
+    private int responseBytes;
+
+    private String planResponse;
+    private String analysisResponse;
+    private Instruction instruction;
+
+    @Setup
+    public void setup() {
+        instruction = Instruction.builder().id(1L).text("Benchmark instruction").build();
+        planResponse = buildPlanResponse(responseBytes);
+        analysisResponse = buildAnalysisResponse(responseBytes);
+    }
+
+    @Benchmark
+    public List<TestAction> parseTestActions() {
+        return JsonUtils.parseTestActions(planResponse, instruction);
+    }
+
+    @Benchmark
+    public Map<String, Object> fromJsonToMap() {
+        return JsonUtils.fromJsonToMap(analysisResponse);
+    }
+
+    private static String buildPlanResponse(int targetBytes) {
+        StringBuilder json = new StringBuilder("Here is the plan for the instruction [step by step]:\n```json\n[\n");
+        String[] types = {"TAP", "TYPE", "VERIFY_TEXT", "SCROLL", "WAIT"};
+        int sequence = 1;
+        while (json.length() < targetBytes) {
+            if (sequence > 1) {
+                json.append(",\n");
+            }
+            json.append("  {\n")
+                .append("    \"actionType\": \"").append(types[sequence % types.length]).append("\",\n")
+                .append("    \"elementDescription\": \"Input field number ").append(sequence)
+                .append(" below the [header] section\",\n")
+                .append("    \"value\": \"value-").append(sequence).append("\",\n")
+                .append("    \"sequence\": ").append(sequence).append("\n")
+                .append("  }");
+            sequence++;
+        }
+        return json.append("\n]\n```\nLet me know if you need anything else.").toString();
+    }
+
+    private static String buildAnalysisResponse(int targetBytes) {
+        StringBuilder json = new StringBuilder("```json\n{\n")
+                .append("  \"screenDescription\": \"Login Screen\",\n")
+                .append("  \"matchedElement\": {\n")
+                .append("    \"description\": \"Login button\",\n")
+                .append("    \"type\": \"button\",\n")
+                .append("    \"confidence\": 0.95,\n")
+                .append("    \"bounds\": {\"x\": 100, \"y\": 200, \"width\": 300, \"height\": 50},\n")
+                .append("    \"suggestedLocators\": {\"xpath\": \"//android.widget.Button[@text='Login']\", ")
+                .append("\"id\": \"com.example.app:id/login_button\"}\n")
+                .append("  },\n")
+                .append("  \"otherElements\": [\n");
+        int index = 0;
+        while (json.length() < targetBytes) {
+            if (index > 0) {
+                json.append(",\n");
+            }
+            json.append("    {\"description\": \"List item ").append(index)
+                .append("\", \"type\": \"TextView\", \"text\": \"Item {").append(index).append("}\"}");
+            index++;
+        }
+        return json.append("\n  ]\n}\n```").toString();
+    }
+}
@@ -2,12 +2,14 @@ package com.springai.mobile.automation;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main application class for Spring AI Mobile Automation Framework
  * This framework uses Spring AI with Gemini model to automate mobile testing
  */
 @SpringBootApplication
+@EnableScheduling
 public class SpringAiMobileAutomationApplication {
 
     public static void main(String[] args) {
@@ -1,6 +1,7 @@
 package com.springai.mobile.automation.cli;
 
 import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.model.InstructionSummary;
 import com.springai.mobile.automation.model.TestAction;
 import com.springai.mobile.automation.service.TestExecutionService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +20,8 @@ import java.util.Scanner;
 @Profile("cli")
 public class TestCommandLineRunner implements CommandLineRunner {
 
+    private static final int RECENT_INSTRUCTIONS = 20;
+    
     private final TestExecutionService testExecutionService;
     private final Scanner scanner = new Scanner(System.in);
     
@@ -82,7 +85,12 @@ public class TestCommandLineRunner implements CommandLineRunner {
         Instruction instruction = testExecutionService.submitInstruction(instructionText);
         
         System.out.println("Executing test actions...");
-        instruction = testExecutionService.processInstruction(instruction);
+        try {
+            instruction = testExecutionService.processInstruction(instruction);
+        } catch (IllegalStateException e) {
+            System.out.println("Instruction " + instruction.getId() + " was picked up by the instruction worker.");
+            return;
+        }
         
         System.out.println("\nExecution completed with status: " + instruction.getStatus());
         if (instruction.getResult() != null) {
@@ -95,7 +103,8 @@ public class TestCommandLineRunner implements CommandLineRunner {
      */
     private void listInstructions() {
         System.out.println("\n=== Recent Instructions ===");
-        List<Instruction> instructions = testExecutionService.getAllInstructions();
+        List<InstructionSummary> instructions = testExecutionService
+                .listInstructions(null, null, null, null, RECENT_INSTRUCTIONS).items();
         
         if (instructions.isEmpty()) {
             System.out.println("No instructions found.");
@@ -105,12 +114,12 @@ public class TestCommandLineRunner implements CommandLineRunner {
         System.out.println("ID | Status | Created At | Instruction");
         System.out.println("-------------------------------------------");
         
-        for (Instruction instruction : instructions) {
+        for (InstructionSummary instruction : instructions) {
             System.out.printf("%d | %s | %s | %s%n", 
-                    instruction.getId(), 
-                    instruction.getStatus(), 
-                    instruction.getCreatedAt(), 
-                    instruction.getText());
+                    instruction.id(), 
+                    instruction.status(), 
+                    instruction.createdAt(), 
+                    instruction.text());
         }
     }
     
@@ -124,10 +133,7 @@ public class TestCommandLineRunner implements CommandLineRunner {
         try {
             long id = Long.parseLong(scanner.nextLine());
             
-            Instruction instruction = testExecutionService.getAllInstructions().stream()
-                    .filter(i -> i.getId().equals(id))
-                    .findFirst()
-                    .orElse(null);
+            Instruction instruction = testExecutionService.getInstruction(id).orElse(null);
             
             if (instruction == null) {
                 System.out.println("Instruction not found with ID: " + id);
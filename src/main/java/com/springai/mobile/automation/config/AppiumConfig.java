@@ -41,12 +41,36 @@ public class AppiumConfig {
     @Bean
     @Scope("prototype")
     public AndroidDriver androidDriver() throws MalformedURLException {
+        return createAndroidDriver(appiumUrl, deviceName, null, null);
+    }
+    
+    /**
+     * Create an AndroidDriver for a specific device, used by the device pool
+     * to open one session per pooled device
+     * @param url the Appium server URL
+     * @param name the device name
+     * @param udid the device UDID, or null to let Appium pick a device
+     * @param systemPort the UiAutomator2 system port, or null for the Appium default
+     * @return AndroidDriver instance
+     * @throws MalformedURLException if the Appium URL is invalid
+     */
+    public AndroidDriver createAndroidDriver(String url, String name, String udid, Integer systemPort)
+            throws MalformedURLException {
         DesiredCapabilities capabilities = new DesiredCapabilities();
         capabilities.setCapability(MobileCapabilityType.PLATFORM_NAME, "Android");
-        capabilities.setCapability(MobileCapabilityType.DEVICE_NAME, deviceName);
+        capabilities.setCapability(MobileCapabilityType.DEVICE_NAME, name);
         capabilities.setCapability(MobileCapabilityType.AUTOMATION_NAME, "UiAutomator2");
         capabilities.setCapability(MobileCapabilityType.NEW_COMMAND_TIMEOUT, 300);
         
+        // Parallel sessions on one Appium server need distinct devices and UiAutomator2 ports
+        if (udid != null && !udid.isEmpty()) {
+            capabilities.setCapability(MobileCapabilityType.UDID, udid);
+        }
+        
+        if (systemPort != null) {
+            capabilities.setCapability("systemPort", systemPort);
+        }
+        
         // Set app package and activity if provided
         if (appPackage != null && !appPackage.isEmpty()) {
             capabilities.setCapability("appPackage", appPackage);
@@ -56,9 +80,9 @@ public class AppiumConfig {
             capabilities.setCapability("appActivity", appActivity);
         }
         
-        AndroidDriver driver = new AndroidDriver(new URL(appiumUrl), capabilities);
+        AndroidDriver driver = new AndroidDriver(new URL(url), capabilities);
         driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(implicitWaitSeconds));
         
         return driver;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,96 @@
+package com.springai.mobile.automation.controller;
+
+import com.springai.mobile.automation.model.Suite;
+import com.springai.mobile.automation.model.SuiteReport;
+import com.springai.mobile.automation.service.suite.SuiteService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * REST controller for submitting test suites and following their progress
+ */
+@RestController
+@RequestMapping("/api/suites")
+public class SuiteController {
+
+    private final SuiteService suiteService;
+
+    @Autowired
+    public SuiteController(SuiteService suiteService) {
+        this.suiteService = suiteService;
+    }
+
+    /**
+     * Submit a suite and start running it
+     * @param request map containing the suite name and the list of instruction texts
+     * @return the created suite, 400 if the request is incomplete, 429 if no execution slot is free
+     */
+    @PostMapping
+    public ResponseEntity<?> submitSuite(@RequestBody Map<String, Object> request) {
+        Object name = request.get("name");
+        Object instructions = request.get("instructions");
+        if (!(name instanceof String) || ((String) name).trim().isEmpty()
+                || !(instructions instanceof List) || ((List<?>) instructions).isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<String> texts = ((List<?>) instructions).stream()
+                .map(String::valueOf)
+                .map(String::trim)
+                .filter(text -> !text.isEmpty())
+                .toList();
+        return submit((String) name, texts);
+    }
+
+    /**
+     * Submit a suite from a text file with one instruction per line. Blank lines and lines
+     * starting with # are skipped.
+     * @param file the instruction file
+     * @param name the suite name, the file name if omitted
+     * @return the created suite, 400 if the file has no instructions, 429 if no execution slot is free
+     */
+    @PostMapping("/file")
+    public ResponseEntity<?> submitSuiteFile(@RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) String name) throws IOException {
+        List<String> texts = new String(file.getBytes(), StandardCharsets.UTF_8).lines()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .toList();
+        String suiteName = name != null && !name.isBlank() ? name : file.getOriginalFilename();
+        return submit(suiteName != null ? suiteName : "suite", texts);
+    }
+
+    /**
+     * Get the progress of a suite, with partial results while it runs
+     * @param id the suite ID
+     * @return the suite report, or 404
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<SuiteReport> getSuite(@PathVariable Long id) {
+        return suiteService.getReport(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    private ResponseEntity<?> submit(String name, List<String> texts) {
+        if (texts.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            Suite suite = suiteService.submit(name, texts);
+            return ResponseEntity.accepted().body(suite);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("message", "Execution queue is full, retry later"));
+        }
+    }
+}
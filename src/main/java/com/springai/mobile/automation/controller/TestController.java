@@ -1,15 +1,26 @@
 package com.springai.mobile.automation.controller;
 
 import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.model.InstructionPage;
+import com.springai.mobile.automation.model.ReplayPlan;
 import com.springai.mobile.automation.model.TestAction;
 import com.springai.mobile.automation.service.TestExecutionService;
+import com.springai.mobile.automation.service.ai.PlanCache;
+import com.springai.mobile.automation.service.execution.ReplayService;
+import com.springai.mobile.automation.service.execution.RunEvents;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * REST controller for test execution and management
@@ -19,10 +30,17 @@ import java.util.concurrent.CompletableFuture;
 public class TestController {
 
     private final TestExecutionService testExecutionService;
+    private final PlanCache planCache;
+    private final RunEvents runEvents;
+    private final ReplayService replayService;
     
     @Autowired
-    public TestController(TestExecutionService testExecutionService) {
+    public TestController(TestExecutionService testExecutionService, PlanCache planCache, RunEvents runEvents,
+            ReplayService replayService) {
         this.testExecutionService = testExecutionService;
+        this.planCache = planCache;
+        this.runEvents = runEvents;
+        this.replayService = replayService;
     }
     
     /**
@@ -41,57 +59,113 @@ public class TestController {
         return ResponseEntity.ok(instruction);
     }
     
+    /**
+     * Submit a data-driven run: one instruction with {name} placeholders and a row of values per run
+     * @param request map containing the instruction template and the parameter rows
+     * @return the created instructions, or 400 if the request is incomplete
+     */
+    @PostMapping("/instructions/data-driven")
+    @SuppressWarnings("unchecked")
+    public ResponseEntity<?> submitDataDriven(@RequestBody Map<String, Object> request) {
+        Object instructionTemplate = request.get("instruction");
+        Object rows = request.get("rows");
+        if (!(instructionTemplate instanceof String) || ((String) instructionTemplate).trim().isEmpty()
+                || !(rows instanceof List) || ((List<?>) rows).isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        try {
+            List<Instruction> instructions = testExecutionService.submitDataDriven(
+                    (String) instructionTemplate, (List<Map<String, Object>>) rows);
+            return ResponseEntity.accepted().body(instructions);
+        } catch (IllegalArgumentException | ClassCastException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", String.valueOf(e.getMessage())));
+        }
+    }
+    
     /**
      * Execute a test instruction
      * @param id the instruction ID
      * @param async whether to execute asynchronously
-     * @return the instruction or a message if async
+     * @return the instruction or a message if async, 409 if the instruction is running or was claimed
+     *         by another run, 429 if the execution queue is full
      */
     @PostMapping("/instructions/{id}/execute")
     public ResponseEntity<?> executeInstruction(
             @PathVariable Long id, 
             @RequestParam(defaultValue = "false") boolean async) {
         
-        Instruction instruction = testExecutionService.getAllInstructions().stream()
-                .filter(i -> i.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        Instruction instruction = testExecutionService.getInstruction(id).orElse(null);
         
         if (instruction == null) {
             return ResponseEntity.notFound().build();
         }
         
-        if (async) {
+        try {
+            // Both modes claim the instruction and go through the bounded execution engine
             CompletableFuture<Instruction> future = testExecutionService.processInstructionAsync(instruction);
-            return ResponseEntity.accepted().body(Map.of("message", "Instruction execution started"));
-        } else {
-            Instruction result = testExecutionService.processInstruction(instruction);
-            return ResponseEntity.ok(result);
+            if (async) {
+                return ResponseEntity.accepted().body(Map.of("message", "Instruction execution started"));
+            } else {
+                return ResponseEntity.ok(future.join());
+            }
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("message", "Execution queue is full, retry later"));
         }
     }
     
     /**
-     * Get all instructions
-     * @return list of all instructions
+     * List instructions newest first, one page at a time
+     * @param status only instructions with this status, if given
+     * @param from only instructions created at or after this time, if given
+     * @param to only instructions created before this time, if given
+     * @param cursor the nextCursor of the previous page, omitted for the first page
+     * @param size maximum instructions per page
+     * @return the page of instruction summaries and the cursor of the next page, 400 for a bad filter or cursor
      */
     @GetMapping("/instructions")
-    public ResponseEntity<List<Instruction>> getAllInstructions() {
-        return ResponseEntity.ok(testExecutionService.getAllInstructions());
+    public ResponseEntity<InstructionPage> getInstructions(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        try {
+            Instruction.TestStatus testStatus = status != null ? Instruction.TestStatus.valueOf(status.toUpperCase()) : null;
+            return ResponseEntity.ok(testExecutionService.listInstructions(testStatus, from, to, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
     
     /**
-     * Get instructions by status
+     * List instructions with a status, newest first, one page at a time
      * @param status the status to filter by
-     * @return list of matching instructions
+     * @param cursor the nextCursor of the previous page, omitted for the first page
+     * @param size maximum instructions per page
+     * @return the page of instruction summaries and the cursor of the next page, 400 for a bad status or cursor
      */
     @GetMapping("/instructions/status/{status}")
-    public ResponseEntity<List<Instruction>> getInstructionsByStatus(@PathVariable String status) {
-        try {
-            Instruction.TestStatus testStatus = Instruction.TestStatus.valueOf(status.toUpperCase());
-            return ResponseEntity.ok(testExecutionService.getInstructionsByStatus(testStatus));
-        } catch (IllegalArgumentException e) {
-            return ResponseEntity.badRequest().build();
-        }
+    public ResponseEntity<InstructionPage> getInstructionsByStatus(
+            @PathVariable String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return getInstructions(status, null, null, cursor, size);
+    }
+    
+    /**
+     * Get an instruction
+     * @param id the instruction ID
+     * @return the instruction with its result, or 404
+     */
+    @GetMapping("/instructions/{id}")
+    public ResponseEntity<Instruction> getInstruction(@PathVariable Long id) {
+        return testExecutionService.getInstruction(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
     
     /**
@@ -101,10 +175,7 @@ public class TestController {
      */
     @GetMapping("/instructions/{id}/actions")
     public ResponseEntity<List<TestAction>> getActionsForInstruction(@PathVariable Long id) {
-        Instruction instruction = testExecutionService.getAllInstructions().stream()
-                .filter(i -> i.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        Instruction instruction = testExecutionService.getInstruction(id).orElse(null);
         
         if (instruction == null) {
             return ResponseEntity.notFound().build();
@@ -112,4 +183,96 @@ public class TestController {
         
         return ResponseEntity.ok(testExecutionService.getActionsForInstruction(instruction));
     }
+    
+    /**
+     * Compile a passed instruction into a replay plan that runs without AI calls
+     * @param id the instruction ID
+     * @return the new plan version, 404 if the instruction does not exist, 409 if it did not pass
+     */
+    @PostMapping("/instructions/{id}/compile")
+    public ResponseEntity<?> compileInstruction(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(replayService.compile(id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        }
+    }
+    
+    /**
+     * Get a replay plan
+     * @param planId the plan ID
+     * @return the plan with its steps, or 404
+     */
+    @GetMapping("/replay-plans/{planId}")
+    public ResponseEntity<ReplayPlan> getReplayPlan(@PathVariable Long planId) {
+        return replayService.getPlan(planId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Run a replay plan as a new instruction
+     * @param planId the plan ID
+     * @param async whether to return before the run finishes
+     * @return the finished instruction or a message if async, 404 for an unknown plan, 429 if the execution
+     *         queue is full
+     */
+    @PostMapping("/replay-plans/{planId}/run")
+    public ResponseEntity<?> runReplayPlan(
+            @PathVariable Long planId,
+            @RequestParam(defaultValue = "false") boolean async) {
+        ReplayPlan plan = replayService.getPlan(planId).orElse(null);
+        if (plan == null) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        try {
+            CompletableFuture<Instruction> future = replayService.replayAsync(plan);
+            if (async) {
+                return ResponseEntity.accepted().body(Map.of("message", "Replay started"));
+            } else {
+                return ResponseEntity.ok(future.join());
+            }
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("message", "Execution queue is full, retry later"));
+        }
+    }
+    
+    /**
+     * Stream live progress events of all instruction runs
+     * @return Server-Sent Events stream of run events
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents() {
+        return runEvents.subscribe(null);
+    }
+    
+    /**
+     * Stream live progress events of one instruction's runs
+     * @param id the instruction ID
+     * @return Server-Sent Events stream of run events
+     */
+    @GetMapping(value = "/instructions/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamInstructionEvents(@PathVariable Long id) {
+        return runEvents.subscribe(id);
+    }
+    
+    /**
+     * Invalidate cached plans so the next run asks the AI again
+     * @param instruction the instruction text to invalidate, or all plans if omitted
+     * @return number of invalidated persisted plans, or a confirmation when clearing everything
+     */
+    @DeleteMapping("/plan-cache")
+    public ResponseEntity<Map<String, Object>> invalidatePlanCache(
+            @RequestParam(required = false) String instruction) {
+        if (instruction == null) {
+            planCache.invalidateAll();
+            return ResponseEntity.ok(Map.of("message", "Plan cache cleared"));
+        }
+        
+        return ResponseEntity.ok(Map.of("invalidated", planCache.invalidate(instruction)));
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.springai.mobile.automation.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Model class for a persisted instruction plan, so plans generated by the AI survive restarts
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_cached_plan_key", columnList = "cacheKey", unique = true))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CachedPlan {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    // SHA-256 of the normalized instruction text and the prompt version
+    @Column(length = 64, nullable = false)
+    private String cacheKey;
+    
+    @Column(length = 4000)
+    private String instructionText;
+    
+    @Column(length = 64)
+    private String promptVersion;
+    
+    @Lob
+    private String planJson;
+    
+    // How long the AI took to generate the plan, saved on every hit
+    private long generationMs;
+    
+    private LocalDateTime createdAt;
+}
@@ -5,6 +5,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
 import java.time.LocalDateTime;
 import lombok.AllArgsConstructor;
@@ -16,12 +18,21 @@ import lombok.NoArgsConstructor;
  * Model class representing a user test instruction
  */
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_instruction_created", columnList = "createdAt, id"),
+        @Index(name = "idx_instruction_status_created", columnList = "status, createdAt, id"),
+        @Index(name = "idx_instruction_suite", columnList = "suiteId"),
+        @Index(name = "idx_instruction_text", columnList = "text")
+})
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Instruction {
 
+    // Column length of the result text
+    public static final int RESULT_LENGTH = 4000;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -35,9 +46,25 @@ public class Instruction {
     
     private TestStatus status;
     
-    @Column(length = 4000)
+    @Column(length = RESULT_LENGTH)
     private String result;
     
+    // Worker lease: node currently running the instruction and when its claim expires
+    private String leaseOwner;
+    
+    private LocalDateTime leaseExpiresAt;
+    
+    private Integer attempts;
+    
+    // Lane for AI calls made on behalf of this instruction, null is treated as interactive
+    private Priority priority;
+    
+    // Suite the instruction was submitted with, if any
+    private Long suiteId;
+    
+    // How long the last run took, used to balance suite shards
+    private Long durationMs;
+    
     /**
      * Enum representing the status of test execution
      */
@@ -47,4 +74,12 @@ public class Instruction {
         COMPLETED,
         FAILED
     }
+    
+    /**
+     * Enum representing how urgently an instruction's AI calls should be served
+     */
+    public enum Priority {
+        INTERACTIVE,
+        BATCH
+    }
 } 
\ No newline at end of file
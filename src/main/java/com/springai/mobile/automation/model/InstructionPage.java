@@ -0,0 +1,11 @@
+package com.springai.mobile.automation.model;
+
+import java.util.List;
+
+/**
+ * One page of an instruction listing
+ * @param items the instructions on this page, newest first
+ * @param nextCursor cursor of the following page, or null if this is the last page
+ */
+public record InstructionPage(List<InstructionSummary> items, String nextCursor) {
+}
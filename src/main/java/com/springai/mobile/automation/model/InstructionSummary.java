@@ -0,0 +1,16 @@
+package com.springai.mobile.automation.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * List view of an instruction, without its result text and lease details
+ * @param id the instruction ID
+ * @param text the instruction text
+ * @param status the execution status
+ * @param priority the AI call lane
+ * @param createdAt when the instruction was submitted
+ * @param processedAt when its last run finished
+ */
+public record InstructionSummary(Long id, String text, Instruction.TestStatus status, Instruction.Priority priority,
+        LocalDateTime createdAt, LocalDateTime processedAt) {
+}
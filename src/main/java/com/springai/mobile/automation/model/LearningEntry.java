@@ -13,8 +13,9 @@ import java.time.LocalDateTime;
  * to avoid repeating mistakes
  */
 @Entity
+@Table(indexes = @Index(name = "idx_learning_context_key", columnList = "contextKey", unique = true))
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class LearningEntry {
@@ -26,6 +27,10 @@ public class LearningEntry {
     @Column(length = 1000)
     private String context;
     
+    // SHA-256 of the action type, element description and screen, see LearningService#contextKey
+    @Column(length = 64)
+    private String contextKey;
+    
     @Column(length = 1000)
     private String action;
     
@@ -43,8 +48,15 @@ public class LearningEntry {
     @Column(length = 1000)
     private String screenDescription;
     
+    // App under test when the entry was learned; retention is bounded per package
+    @Column(length = 255)
+    private String appPackage;
+    
     private LocalDateTime createdAt;
     
+    // Last time an action updated this entry, drives confidence decay
+    private LocalDateTime lastUsedAt;
+    
     private int useCount;
     
     private float confidenceScore;
@@ -0,0 +1,47 @@
+package com.springai.mobile.automation.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Model class for a compiled replay plan: the resolved steps of a passed run, so the instruction
+ * can be run again without planning or screen analysis
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_replay_plan_text_version", columnList = "textKey, version", unique = true))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplayPlan {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    // SHA-256 of the normalized instruction text
+    @Column(length = 64, nullable = false)
+    private String textKey;
+    
+    @Column(length = 4000)
+    private String instructionText;
+    
+    // Increases with every compile of the same instruction text
+    private int version;
+    
+    // The passed run the plan was compiled from
+    private Long sourceInstructionId;
+    
+    // JSON array of steps with their locators, values and expected screen fingerprints
+    @Lob
+    private String stepsJson;
+    
+    private int stepCount;
+    
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,44 @@
+package com.springai.mobile.automation.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Model class for a named collection of instructions submitted and run together
+ */
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Suite {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    private String name;
+    
+    private Instruction.TestStatus status;
+    
+    private int total;
+    
+    // Counted as instructions finish, so a running suite reports its progress without scanning its instructions
+    private int passed;
+    
+    private int failed;
+    
+    private int shards;
+    
+    // Expected duration of the longest shard, from the instructions' past run times
+    private long estimatedMs;
+    
+    private LocalDateTime createdAt;
+    
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,11 @@
+package com.springai.mobile.automation.model;
+
+import java.util.List;
+
+/**
+ * Progress and results of a suite, complete or partial while it is still running
+ * @param suite the suite with its counts so far
+ * @param instructions the suite's instructions with their current status
+ */
+public record SuiteReport(Suite suite, List<InstructionSummary> instructions) {
+}
@@ -15,12 +15,19 @@ import java.util.Set;
  * Model class representing a specific test action to be performed
  */
 @Entity
+@Table(indexes = @Index(name = "idx_test_action_instruction", columnList = "instruction_id, sequence"))
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class TestAction {
 
+    // Ids handed out per sequence call; also the gap kept above existing ids when realigning the sequence
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Column length of the error message
+    public static final int ERROR_MESSAGE_LENGTH = 4000;
+
     // Set of reserved H2 keywords to be avoided in SQL statements
     private static final Set<String> RESERVED_KEYWORDS = new HashSet<>();
     
@@ -36,8 +43,10 @@ public class TestAction {
         // Add more as needed
     }
 
+    // Sequence ids let Hibernate batch inserts, which it cannot do for identity columns
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "test_action_seq")
+    @SequenceGenerator(name = "test_action_seq", sequenceName = "test_action_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -58,9 +67,12 @@ public class TestAction {
     
     private int sequence;
     
+    // Attempt of the instruction the action was run in, so retried runs can be told apart
+    private Integer attempt;
+    
     private boolean successful;
     
-    @Column(length = 4000)
+    @Column(length = ERROR_MESSAGE_LENGTH)
     private String errorMessage;
     
     @Column(length = 1000)
@@ -0,0 +1,29 @@
+package com.springai.mobile.automation.repository;
+
+import com.springai.mobile.automation.model.CachedPlan;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for accessing and manipulating CachedPlan entities
+ */
+@Repository
+public interface CachedPlanRepository extends JpaRepository<CachedPlan, Long> {
+    
+    /**
+     * Find the cached plan for a cache key
+     * @param cacheKey the cache key
+     * @return the cached plan, if any
+     */
+    Optional<CachedPlan> findByCacheKey(String cacheKey);
+    
+    /**
+     * Find the cached plans for a normalized instruction text, across prompt versions
+     * @param instructionText the normalized instruction text
+     * @return list of cached plans
+     */
+    List<CachedPlan> findByInstructionText(String instructionText);
+}
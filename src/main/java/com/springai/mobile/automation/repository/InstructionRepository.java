@@ -1,9 +1,17 @@
 package com.springai.mobile.automation.repository;
 
 import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.model.InstructionSummary;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -24,4 +32,191 @@ public interface InstructionRepository extends JpaRepository<Instruction, Long>
      * @return list of instructions
      */
     List<Instruction> findAllByOrderByCreatedAtDesc();
-} 
\ No newline at end of file
+    
+    /**
+     * Find the newest instructions as summaries, optionally filtered by status and creation time
+     * @param status the status to filter by, or null for all
+     * @param from only instructions created at or after this time, or null
+     * @param to only instructions created before this time, or null
+     * @param pageable page size; the page number must be 0
+     * @return summaries, newest first
+     */
+    @Query("SELECT new com.springai.mobile.automation.model.InstructionSummary(" +
+           "i.id, i.text, i.status, i.priority, i.createdAt, i.processedAt) FROM Instruction i " +
+           "WHERE (:status IS NULL OR i.status = :status) " +
+           "AND (:from IS NULL OR i.createdAt >= :from) AND (:to IS NULL OR i.createdAt < :to) " +
+           "ORDER BY i.createdAt DESC, i.id DESC")
+    List<InstructionSummary> findSummaries(@Param("status") Instruction.TestStatus status,
+                                           @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                           Pageable pageable);
+    
+    /**
+     * Find the instructions following a keyset position as summaries, optionally filtered by status and creation time
+     * @param status the status to filter by, or null for all
+     * @param from only instructions created at or after this time, or null
+     * @param to only instructions created before this time, or null
+     * @param afterCreatedAt creation time of the last instruction of the previous page
+     * @param afterId id of the last instruction of the previous page
+     * @param pageable page size; the page number must be 0
+     * @return summaries, newest first
+     */
+    @Query("SELECT new com.springai.mobile.automation.model.InstructionSummary(" +
+           "i.id, i.text, i.status, i.priority, i.createdAt, i.processedAt) FROM Instruction i " +
+           "WHERE (:status IS NULL OR i.status = :status) " +
+           "AND (:from IS NULL OR i.createdAt >= :from) AND (:to IS NULL OR i.createdAt < :to) " +
+           "AND (i.createdAt < :afterCreatedAt OR (i.createdAt = :afterCreatedAt AND i.id < :afterId)) " +
+           "ORDER BY i.createdAt DESC, i.id DESC")
+    List<InstructionSummary> findSummariesAfter(@Param("status") Instruction.TestStatus status,
+                                                @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                                @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                                @Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * Find the instructions of a suite as summaries
+     * @param suiteId the suite ID
+     * @return summaries in submission order
+     */
+    @Query("SELECT new com.springai.mobile.automation.model.InstructionSummary(" +
+           "i.id, i.text, i.status, i.priority, i.createdAt, i.processedAt) FROM Instruction i " +
+           "WHERE i.suiteId = :suiteId ORDER BY i.id")
+    List<InstructionSummary> findSummariesBySuiteId(@Param("suiteId") Long suiteId);
+    
+    /**
+     * Average run time of past instructions with the given texts
+     * @param texts the instruction texts
+     * @return pairs of instruction text and average duration in milliseconds, for texts that ran before
+     */
+    @Query("SELECT i.text, AVG(i.durationMs) FROM Instruction i " +
+           "WHERE i.text IN :texts AND i.durationMs IS NOT NULL GROUP BY i.text")
+    List<Object[]> findAverageDurations(@Param("texts") Collection<String> texts);
+    
+    /**
+     * Find the ids of the oldest instructions with the given status. Suite instructions are left
+     * out since their suite runs them.
+     * @param status the status to filter by
+     * @param pageable limit of ids to return
+     * @return instruction ids, oldest first
+     */
+    @Query("SELECT i.id FROM Instruction i WHERE i.status = :status AND i.suiteId IS NULL ORDER BY i.createdAt, i.id")
+    List<Long> findIdsByStatus(@Param("status") Instruction.TestStatus status, Pageable pageable);
+    
+    /**
+     * Atomically claim an instruction for a node
+     * @param id the instruction ID
+     * @param owner the claiming node
+     * @param expiresAt when the lease expires unless renewed
+     * @param claimed the status to move the instruction to
+     * @param pending the status the instruction must currently have
+     * @return 1 if the claim succeeded, 0 if another run got it first or its status changed
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Instruction i SET i.status = :claimed, i.leaseOwner = :owner, i.leaseExpiresAt = :expiresAt, " +
+           "i.attempts = COALESCE(i.attempts, 0) + 1 WHERE i.id = :id AND i.status = :pending")
+    int claim(@Param("id") Long id, @Param("owner") String owner, @Param("expiresAt") LocalDateTime expiresAt,
+              @Param("claimed") Instruction.TestStatus claimed, @Param("pending") Instruction.TestStatus pending);
+    
+    /**
+     * Extend the lease of an instruction still owned by the given node
+     * @param id the instruction ID
+     * @param owner the owning node
+     * @param expiresAt the new lease expiry
+     * @param status the status the instruction must still have
+     * @return 1 if the lease was renewed, 0 if the node no longer owns it
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Instruction i SET i.leaseExpiresAt = :expiresAt " +
+           "WHERE i.id = :id AND i.leaseOwner = :owner AND i.status = :status")
+    int renewLease(@Param("id") Long id, @Param("owner") String owner, @Param("expiresAt") LocalDateTime expiresAt,
+                   @Param("status") Instruction.TestStatus status);
+    
+    /**
+     * Give back a claim whose run never started
+     * @param id the instruction ID
+     * @param owner the owning node
+     * @param attempt the attempt the claim was made for
+     * @param leased the status of leased instructions
+     * @param status the status to return the instruction to
+     * @return 1 if released, 0 if the node no longer holds the claim
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Instruction i SET i.status = :status, i.leaseOwner = NULL, i.leaseExpiresAt = NULL, " +
+           "i.attempts = i.attempts - 1 " +
+           "WHERE i.id = :id AND i.leaseOwner = :owner AND i.attempts = :attempt AND i.status = :leased")
+    int release(@Param("id") Long id, @Param("owner") String owner, @Param("attempt") Integer attempt,
+                @Param("leased") Instruction.TestStatus leased, @Param("status") Instruction.TestStatus status);
+    
+    /**
+     * Write the final status of a run that still holds its lease
+     * @param id the instruction ID
+     * @param owner the owning node
+     * @param attempt the attempt the run was claimed for
+     * @param leased the status of leased instructions
+     * @param status the final status
+     * @param result the result message
+     * @param processedAt when the run finished
+     * @param durationMs how long the run took
+     * @return 1 if written, 0 if the run lost its lease
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Instruction i SET i.status = :status, i.result = :result, i.processedAt = :processedAt, " +
+           "i.durationMs = :durationMs, i.leaseExpiresAt = NULL " +
+           "WHERE i.id = :id AND i.leaseOwner = :owner AND i.attempts = :attempt AND i.status = :leased")
+    int finish(@Param("id") Long id, @Param("owner") String owner, @Param("attempt") Integer attempt,
+               @Param("leased") Instruction.TestStatus leased, @Param("status") Instruction.TestStatus status,
+               @Param("result") String result, @Param("processedAt") LocalDateTime processedAt,
+               @Param("durationMs") Long durationMs);
+    
+    /**
+     * Return instructions whose lease expired to the queue, releasing the lease
+     * @param leased the status of leased instructions
+     * @param pending the status to re-queue to
+     * @param now the current time
+     * @param maxAttempts only instructions with fewer attempts are re-queued
+     * @return number of instructions re-queued
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Instruction i SET i.status = :pending, i.leaseOwner = NULL, i.leaseExpiresAt = NULL " +
+           "WHERE i.status = :leased AND i.leaseExpiresAt < :now AND COALESCE(i.attempts, 0) < :maxAttempts")
+    int requeueExpiredLeases(@Param("leased") Instruction.TestStatus leased, @Param("pending") Instruction.TestStatus pending,
+                             @Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts);
+    
+    /**
+     * Fail instructions whose lease expired after too many attempts
+     * @param leased the status of leased instructions
+     * @param failed the status to move them to
+     * @param result the result message to record
+     * @param now the current time
+     * @param maxAttempts instructions with at least this many attempts are failed
+     * @return number of instructions failed
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Instruction i SET i.status = :failed, i.result = :result, i.processedAt = :now, " +
+           "i.leaseExpiresAt = NULL WHERE i.status = :leased AND i.leaseExpiresAt < :now " +
+           "AND COALESCE(i.attempts, 0) >= :maxAttempts")
+    int failExhaustedLeases(@Param("leased") Instruction.TestStatus leased, @Param("failed") Instruction.TestStatus failed,
+                            @Param("result") String result, @Param("now") LocalDateTime now,
+                            @Param("maxAttempts") int maxAttempts);
+    
+    /**
+     * Fail the instructions of a suite that never started
+     * @param suiteId the suite ID
+     * @param pending the status of instructions that have not run
+     * @param failed the status to move them to
+     * @param result the result message to record
+     * @param now the current time
+     * @return number of instructions failed
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Instruction i SET i.status = :failed, i.result = :result, i.processedAt = :now " +
+           "WHERE i.suiteId = :suiteId AND i.status = :pending")
+    int failPendingBySuiteId(@Param("suiteId") Long suiteId, @Param("pending") Instruction.TestStatus pending,
+                             @Param("failed") Instruction.TestStatus failed, @Param("result") String result,
+                             @Param("now") LocalDateTime now);
+}
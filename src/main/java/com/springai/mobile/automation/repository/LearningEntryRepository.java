@@ -1,12 +1,14 @@
 package com.springai.mobile.automation.repository;
 
 import com.springai.mobile.automation.model.LearningEntry;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository for accessing and manipulating LearningEntry entities
@@ -14,6 +16,20 @@ import java.util.List;
 @Repository
 public interface LearningEntryRepository extends JpaRepository<LearningEntry, Long> {
     
+    /**
+     * Find the learning entry for a normalized context key
+     * @param contextKey the context key
+     * @return the matching learning entry, if any
+     */
+    Optional<LearningEntry> findByContextKey(String contextKey);
+    
+    /**
+     * Find learning entries stored before context keys were introduced
+     * @param pageable the page to read
+     * @return learning entries without a context key
+     */
+    List<LearningEntry> findByContextKeyIsNull(Pageable pageable);
+    
     /**
      * Find learning entries similar to the given context
      * @param context the context to match
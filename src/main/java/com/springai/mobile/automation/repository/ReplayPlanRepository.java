@@ -0,0 +1,21 @@
+package com.springai.mobile.automation.repository;
+
+import com.springai.mobile.automation.model.ReplayPlan;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repository for accessing and manipulating ReplayPlan entities
+ */
+@Repository
+public interface ReplayPlanRepository extends JpaRepository<ReplayPlan, Long> {
+    
+    /**
+     * Find the newest replay plan for an instruction text
+     * @param textKey key of the normalized instruction text
+     * @return the plan with the highest version, if any
+     */
+    Optional<ReplayPlan> findFirstByTextKeyOrderByVersionDesc(String textKey);
+}
@@ -0,0 +1,78 @@
+package com.springai.mobile.automation.repository;
+
+import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.model.Suite;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository for accessing and manipulating Suite entities
+ */
+@Repository
+public interface SuiteRepository extends JpaRepository<Suite, Long> {
+    
+    /**
+     * Add finished instructions to a suite's counts, atomically so concurrent shards do not lose updates
+     * @param id the suite ID
+     * @param passed number of instructions that passed
+     * @param failed number of instructions that failed
+     * @return 1 if the suite exists
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Suite s SET s.passed = s.passed + :passed, s.failed = s.failed + :failed WHERE s.id = :id")
+    int addResults(@Param("id") Long id, @Param("passed") int passed, @Param("failed") int failed);
+    
+    /**
+     * Mark a suite finished once all its instructions are counted
+     * @param id the suite ID
+     * @param completed status if every instruction passed
+     * @param failed status if any instruction failed
+     * @param now the current time
+     * @return 1 if this call finished the suite, 0 if it is still running or already finished
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Suite s SET s.status = CASE WHEN s.failed > 0 THEN :failed ELSE :completed END, " +
+           "s.finishedAt = :now WHERE s.id = :id AND s.finishedAt IS NULL AND s.passed + s.failed >= s.total")
+    int finishIfDone(@Param("id") Long id, @Param("completed") Instruction.TestStatus completed,
+                     @Param("failed") Instruction.TestStatus failed, @Param("now") LocalDateTime now);
+    
+    /**
+     * Replace a suite's counts with ones recounted from its instructions
+     * @param id the suite ID
+     * @param passed number of instructions that passed
+     * @param failed number of instructions that failed
+     * @return 1 if the suite exists and is still running
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Suite s SET s.passed = :passed, s.failed = :failed WHERE s.id = :id AND s.finishedAt IS NULL")
+    int setResults(@Param("id") Long id, @Param("passed") int passed, @Param("failed") int failed);
+    
+    /**
+     * Fail a suite that could not run, counting every instruction that has not passed as failed
+     * @param id the suite ID
+     * @param failed the status to move the suite to
+     * @param now the current time
+     * @return 1 if this call finished the suite
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Suite s SET s.status = :failed, s.failed = s.total - s.passed, s.finishedAt = :now " +
+           "WHERE s.id = :id AND s.finishedAt IS NULL")
+    int fail(@Param("id") Long id, @Param("failed") Instruction.TestStatus failed, @Param("now") LocalDateTime now);
+    
+    /**
+     * Find suites that have not finished
+     * @return the running suites, oldest first
+     */
+    List<Suite> findByFinishedAtIsNullOrderByIdAsc();
+}
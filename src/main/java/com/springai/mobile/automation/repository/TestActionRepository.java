@@ -3,6 +3,7 @@ package com.springai.mobile.automation.repository;
 import com.springai.mobile.automation.model.Instruction;
 import com.springai.mobile.automation.model.TestAction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -32,4 +33,11 @@ public interface TestActionRepository extends JpaRepository<TestAction, Long> {
      * @return the count of actions
      */
     long countByInstruction(Instruction instruction);
+    
+    /**
+     * Find the highest action id in use
+     * @return the highest id, or null if there are no actions
+     */
+    @Query("SELECT MAX(a.id) FROM TestAction a")
+    Long findMaxId();
 } 
\ No newline at end of file
@@ -1,19 +1,41 @@
 package com.springai.mobile.automation.service;
 
 import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.model.InstructionPage;
+import com.springai.mobile.automation.model.InstructionSummary;
 import com.springai.mobile.automation.model.TestAction;
 import com.springai.mobile.automation.repository.InstructionRepository;
 import com.springai.mobile.automation.repository.TestActionRepository;
 import com.springai.mobile.automation.service.ai.InstructionProcessorService;
+import com.springai.mobile.automation.service.execution.ExecutionEngine;
+import com.springai.mobile.automation.service.execution.RunEvent;
+import com.springai.mobile.automation.service.execution.RunEvents;
+import com.springai.mobile.automation.service.execution.RunRecorder;
+import com.springai.mobile.automation.service.mobile.DevicePool;
+import com.springai.mobile.automation.service.mobile.DeviceSession;
 import com.springai.mobile.automation.service.mobile.MobileAutomationService;
+import com.springai.mobile.automation.service.worker.InstructionLeases;
+import com.springai.mobile.automation.util.PageCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 /**
  * Service for orchestrating the entire test execution process
@@ -22,22 +44,41 @@ import java.util.concurrent.CompletableFuture;
 public class TestExecutionService {
 
     private static final Logger logger = LoggerFactory.getLogger(TestExecutionService.class);
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\w+}");
     
     private final InstructionRepository instructionRepository;
     private final TestActionRepository testActionRepository;
     private final InstructionProcessorService instructionProcessorService;
     private final MobileAutomationService mobileAutomationService;
+    private final DevicePool devicePool;
+    private final ExecutionEngine executionEngine;
+    private final RunRecorder runRecorder;
+    private final RunEvents runEvents;
+    private final InstructionLeases instructionLeases;
+    
+    @Value("${app.automation.listing.max-page-size:200}")
+    private int maxPageSize;
     
     @Autowired
     public TestExecutionService(
             InstructionRepository instructionRepository,
             TestActionRepository testActionRepository,
             InstructionProcessorService instructionProcessorService,
-            MobileAutomationService mobileAutomationService) {
+            MobileAutomationService mobileAutomationService,
+            DevicePool devicePool,
+            ExecutionEngine executionEngine,
+            RunRecorder runRecorder,
+            RunEvents runEvents,
+            InstructionLeases instructionLeases) {
         this.instructionRepository = instructionRepository;
         this.testActionRepository = testActionRepository;
         this.instructionProcessorService = instructionProcessorService;
         this.mobileAutomationService = mobileAutomationService;
+        this.devicePool = devicePool;
+        this.executionEngine = executionEngine;
+        this.runRecorder = runRecorder;
+        this.runEvents = runEvents;
+        this.instructionLeases = instructionLeases;
     }
     
     /**
@@ -46,9 +87,20 @@ public class TestExecutionService {
      * @return the created instruction
      */
     public Instruction submitInstruction(String instructionText) {
+        return submitInstruction(instructionText, Instruction.Priority.INTERACTIVE);
+    }
+    
+    /**
+     * Submit a new test instruction for processing
+     * @param instructionText the instruction text
+     * @param priority lane for the instruction's AI calls
+     * @return the created instruction
+     */
+    public Instruction submitInstruction(String instructionText, Instruction.Priority priority) {
         Instruction instruction = Instruction.builder()
                 .text(instructionText)
                 .status(Instruction.TestStatus.PENDING)
+                .priority(priority)
                 .createdAt(LocalDateTime.now())
                 .build();
         
@@ -56,48 +108,210 @@ public class TestExecutionService {
     }
     
     /**
-     * Process a pending instruction asynchronously
-     * @param instruction the instruction to process
+     * Create an instruction already claimed by this node, to be started right away with
+     * {@link #runClaimedAsync}. Unlike a submitted instruction, the instruction worker cannot
+     * pick it up in between.
+     * @param instructionText the instruction text
+     * @return the created, claimed instruction
+     */
+    public Instruction submitClaimedInstruction(String instructionText) {
+        return instructionLeases.createClaimed(Instruction.builder()
+                .text(instructionText)
+                .priority(Instruction.Priority.INTERACTIVE)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+    
+    /**
+     * Run an instruction created by {@link #submitClaimedInstruction} asynchronously
+     * @param claimed the claimed instruction
+     * @param compiledActions the steps of a compiled replay plan to execute, or null to plan the instruction
+     * @return CompletableFuture for the finished instruction
+     * @throws java.util.concurrent.RejectedExecutionException if the execution queue is full; the
+     *         instruction is left pending for the instruction worker
+     */
+    public CompletableFuture<Instruction> runClaimedAsync(Instruction claimed, List<TestAction> compiledActions) {
+        return submit(claimed, compiledActions, Instruction.TestStatus.PENDING);
+    }
+    
+    /**
+     * Run one instruction template once per parameter row. Placeholders like {username} in the
+     * template are replaced by the row values; the first row is planned up front so the other
+     * rows are instantiated from its cached plan template instead of asking the AI again.
+     * Rows that do not fit in the execution queue stay pending for the instruction worker.
+     * @param instructionTemplate instruction text with {name} placeholders
+     * @param rows one map of placeholder values per run
+     * @return the created instructions, in row order
+     * @throws IllegalArgumentException if a row leaves a placeholder unresolved
+     */
+    public List<Instruction> submitDataDriven(String instructionTemplate, List<Map<String, Object>> rows) {
+        List<String> texts = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            String text = instructionTemplate;
+            for (Map.Entry<String, Object> value : row.entrySet()) {
+                text = text.replace("{" + value.getKey() + "}", String.valueOf(value.getValue()));
+            }
+            if (PLACEHOLDER.matcher(text).find()) {
+                throw new IllegalArgumentException("Unresolved placeholder in row " + (texts.size() + 1) + ": " + text);
+            }
+            texts.add(text);
+        }
+        
+        List<Instruction> instructions = new ArrayList<>();
+        for (String text : texts) {
+            instructions.add(submitInstruction(text, Instruction.Priority.BATCH));
+        }
+        if (instructions.isEmpty()) {
+            return instructions;
+        }
+        
+        instructionProcessorService.preparePlan(instructions.get(0));
+        
+        int started = 0;
+        try {
+            for (Instruction instruction : instructions) {
+                try {
+                    processInstructionAsync(instruction);
+                } catch (IllegalStateException e) {
+                    // The instruction worker claimed it first and runs it
+                }
+                started++;
+            }
+        } catch (RejectedExecutionException e) {
+            logger.warn("Execution queue full, {} of {} data-driven runs left pending",
+                    instructions.size() - started, instructions.size());
+        }
+        return instructions;
+    }
+    
+    /**
+     * Claim an instruction and process it asynchronously
+     * @param instruction the instruction to process, as last read; it is claimed only if its status has not changed since
      * @return CompletableFuture for the processed instruction
+     * @throws IllegalStateException if the instruction is running or another run claimed it first
+     * @throws java.util.concurrent.RejectedExecutionException if the execution queue is full; the claim is given back
      */
     public CompletableFuture<Instruction> processInstructionAsync(Instruction instruction) {
-        return CompletableFuture.supplyAsync(() -> processInstruction(instruction));
+        return submitClaimed(instruction, null);
     }
     
     /**
-     * Process an instruction and execute the resulting test actions
-     * @param instruction the instruction to process
+     * Claim an instruction, process it and execute the resulting test actions
+     * @param instruction the instruction to process, as last read
      * @return the updated instruction
+     * @throws IllegalStateException if the instruction is running or another run claimed it first
      */
     public Instruction processInstruction(Instruction instruction) {
+        return run(claim(instruction), null);
+    }
+    
+    /**
+     * Claim an instruction and run it from the steps of a compiled replay plan, without planning it.
+     * Steps keep their recorded locators and only fall back to element analysis if a locator no longer resolves.
+     * @param instruction the instruction to run, as last read
+     * @param compiledActions the steps to execute, with their locators
+     * @return the updated instruction
+     * @throws IllegalStateException if the instruction is running or another run claimed it first
+     */
+    public Instruction replayInstruction(Instruction instruction, List<TestAction> compiledActions) {
+        return run(claim(instruction), compiledActions);
+    }
+    
+    /**
+     * Claim an instruction and run it from the steps of a compiled replay plan asynchronously
+     * @param instruction the instruction to run, as last read
+     * @param compiledActions the steps to execute, with their locators
+     * @return CompletableFuture for the finished instruction
+     * @throws IllegalStateException if the instruction is running or another run claimed it first
+     * @throws java.util.concurrent.RejectedExecutionException if the execution queue is full; the claim is given back
+     */
+    public CompletableFuture<Instruction> replayInstructionAsync(Instruction instruction, List<TestAction> compiledActions) {
+        return submitClaimed(instruction, compiledActions);
+    }
+    
+    /**
+     * Claim before queueing, so a rejected or conflicting run is reported to the caller right away
+     */
+    private CompletableFuture<Instruction> submitClaimed(Instruction instruction, List<TestAction> compiledActions) {
+        return submit(claim(instruction), compiledActions, instruction.getStatus());
+    }
+    
+    /**
+     * Queue the run of a claimed instruction, giving the claim back if the queue is full
+     */
+    private CompletableFuture<Instruction> submit(Instruction claimed, List<TestAction> compiledActions,
+            Instruction.TestStatus releaseTo) {
+        try {
+            return executionEngine.submit(() -> run(claimed, compiledActions));
+        } catch (RejectedExecutionException e) {
+            instructionLeases.release(claimed, releaseTo);
+            throw e;
+        }
+    }
+    
+    /**
+     * Claim an instruction for this node through the same lease the instruction worker uses
+     * @param instruction the instruction as last read
+     * @return the claimed instruction, freshly read
+     * @throws IllegalStateException if the instruction is running or its status changed since it was read
+     */
+    private Instruction claim(Instruction instruction) {
+        if (instruction.getStatus() == Instruction.TestStatus.IN_PROGRESS) {
+            throw new IllegalStateException("Instruction " + instruction.getId() + " is already running");
+        }
+        return instructionLeases.claim(instruction.getId(), instruction.getStatus())
+                .orElseThrow(() -> new IllegalStateException(
+                        "Instruction " + instruction.getId() + " was claimed by another run"));
+    }
+    
+    /**
+     * Run a claimed instruction and write its final status if the claim still holds
+     */
+    private Instruction run(Instruction instruction, List<TestAction> compiledActions) {
+        DeviceSession session = null;
+        PlannedActions plannedActions = null;
+        long start = System.currentTimeMillis();
         try {
             logger.info("Processing instruction: {}", instruction.getText());
             
-            // Update status to in progress
-            instruction.setStatus(Instruction.TestStatus.IN_PROGRESS);
-            instructionRepository.save(instruction);
-            
-            // Process instruction to generate test actions
-            List<TestAction> actions = instructionProcessorService.processInstruction(instruction);
-            
-            // Save generated actions
-            for (TestAction action : actions) {
-                testActionRepository.save(action);
+            // Process instruction to generate test actions. In streaming mode actions are
+            // executed as soon as they are generated, overlapping planning with device time
+            if (compiledActions != null) {
+                compiledActions.forEach(action -> runEvents.publish(RunEvent.step(RunEvent.Type.PLANNED, action, null)));
+                plannedActions = listPlan(compiledActions);
+            } else if (instructionProcessorService.isStreamingAvailable()) {
+                plannedActions = streamPlan(instruction);
+            } else {
+                List<TestAction> actions = instructionProcessorService.processInstruction(instruction);
+                actions.forEach(action -> runEvents.publish(RunEvent.step(RunEvent.Type.PLANNED, action, null)));
+                plannedActions = listPlan(actions);
             }
             
-            // Initialize the driver
-            mobileAutomationService.initializeDriver();
+            // Lease a dedicated device session for this instruction
+            session = devicePool.acquire();
+            logger.info("Running instruction {} on device {}", instruction.getId(), session.getDeviceId());
             
             // Execute each action in sequence
             boolean allSuccessful = true;
+            int executed = 0;
             StringBuilder resultBuilder = new StringBuilder();
             
-            for (TestAction action : actions) {
+            while (plannedActions.hasNext()) {
+                TestAction action = plannedActions.next();
+                executed++;
+                
                 logger.info("Executing action: {} on {}", 
                         action.getActionType(), action.getElementDescription());
                 
-                boolean success = mobileAutomationService.executeAction(action);
-                testActionRepository.save(action);
+                runEvents.publish(RunEvent.step(RunEvent.Type.EXECUTING, action, null));
+                long stepStart = System.currentTimeMillis();
+                boolean success = compiledActions != null
+                        ? mobileAutomationService.replayAction(session, action, plannedActions.upcoming())
+                        : mobileAutomationService.executeAction(session, action, plannedActions.upcoming());
+                action.setAttempt(instruction.getAttempts());
+                runRecorder.record(action);
+                runEvents.publish(RunEvent.step(success ? RunEvent.Type.STEP_PASSED : RunEvent.Type.STEP_FAILED,
+                        action, System.currentTimeMillis() - stepStart));
                 
                 if (!success) {
                     allSuccessful = false;
@@ -109,47 +323,189 @@ public class TestExecutionService {
                 }
             }
             
-            // Update instruction status based on execution results
-            if (allSuccessful) {
+            // Update instruction status based on execution results. An empty plan means
+            // planning failed, e.g. because the AI call was throttled until its deadline
+            if (executed == 0) {
+                instruction.setStatus(Instruction.TestStatus.FAILED);
+                instruction.setResult("No actions could be planned for this instruction");
+            } else if (allSuccessful) {
                 instruction.setStatus(Instruction.TestStatus.COMPLETED);
                 instruction.setResult("All actions completed successfully");
             } else {
                 instruction.setStatus(Instruction.TestStatus.FAILED);
                 instruction.setResult(resultBuilder.toString());
+                // A cached plan that fails would fail every later run the same way
+                if (compiledActions == null) {
+                    instructionProcessorService.forgetPlan(instruction);
+                }
             }
-            
-            instruction.setProcessedAt(LocalDateTime.now());
-            return instructionRepository.save(instruction);
-            
         } catch (Exception e) {
             logger.error("Error processing instruction", e);
             
             // Update instruction status to failed
             instruction.setStatus(Instruction.TestStatus.FAILED);
             instruction.setResult("Error: " + e.getMessage());
-            instruction.setProcessedAt(LocalDateTime.now());
-            return instructionRepository.save(instruction);
         } finally {
-            // Cleanup resources
-            mobileAutomationService.cleanup();
+            // Return the device to the pool
+            devicePool.release(session);
         }
+        
+        // Steps planned but never reached, e.g. because no device could be leased, still belong to the run
+        if (plannedActions != null) {
+            for (TestAction skipped : plannedActions.upcoming()) {
+                skipped.setSuccessful(false);
+                skipped.setErrorMessage("Not executed: " + instruction.getResult());
+                skipped.setAttempt(instruction.getAttempts());
+                runRecorder.record(skipped);
+            }
+        }
+        
+        instruction.setProcessedAt(LocalDateTime.now());
+        instruction.setDurationMs(System.currentTimeMillis() - start);
+        runRecorder.complete(instruction);
+        runEvents.publish(RunEvent.finished(instruction));
+        return instruction;
+    }
+    
+    /**
+     * Start streaming the plan of an instruction
+     * @param instruction the instruction to plan
+     * @return iterator that blocks until the next action is generated and ends with the stream
+     */
+    private PlannedActions streamPlan(Instruction instruction) {
+        BlockingQueue<TestAction> generated = new LinkedBlockingQueue<>();
+        CompletableFuture<List<TestAction>> plan = instructionProcessorService.streamInstruction(instruction, action -> {
+            generated.add(action);
+            runEvents.publish(RunEvent.step(RunEvent.Type.PLANNED, action, null));
+        });
+        
+        return new PlannedActions() {
+            private TestAction next;
+            
+            @Override
+            public List<TestAction> upcoming() {
+                // Only what has been generated so far; the rest of the plan is still streaming
+                List<TestAction> upcoming = new ArrayList<>();
+                if (next != null) {
+                    upcoming.add(next);
+                }
+                upcoming.addAll(generated);
+                return upcoming;
+            }
+            
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (next == null) {
+                        // Read completion before polling: every action is queued before the plan completes
+                        boolean planComplete = plan.isDone();
+                        next = generated.poll(100, TimeUnit.MILLISECONDS);
+                        if (next == null && planComplete) {
+                            if (plan.isCompletedExceptionally()) {
+                                // The stream broke off: fail the run rather than pass a partial plan
+                                throw new IllegalStateException(plan.handle((actions, error) -> error).join().getMessage());
+                            }
+                            return false;
+                        }
+                    }
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for planned actions", e);
+                }
+            }
+            
+            @Override
+            public TestAction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TestAction action = next;
+                next = null;
+                return action;
+            }
+        };
     }
     
     /**
-     * Get all instructions
-     * @return list of all instructions
+     * Iterate over a plan that is already complete
+     * @param actions the planned actions
+     * @return iterator that can also list the actions after the current one
      */
-    public List<Instruction> getAllInstructions() {
-        return instructionRepository.findAllByOrderByCreatedAtDesc();
+    private PlannedActions listPlan(List<TestAction> actions) {
+        return new PlannedActions() {
+            private int position;
+            
+            @Override
+            public List<TestAction> upcoming() {
+                return actions.subList(position, actions.size());
+            }
+            
+            @Override
+            public boolean hasNext() {
+                return position < actions.size();
+            }
+            
+            @Override
+            public TestAction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return actions.get(position++);
+            }
+        };
     }
     
     /**
-     * Get instructions by status
-     * @param status the status to filter by
-     * @return list of matching instructions
+     * Planned actions in execution order, with a view of the actions known to follow the current one
      */
-    public List<Instruction> getInstructionsByStatus(Instruction.TestStatus status) {
-        return instructionRepository.findByStatus(status);
+    private interface PlannedActions extends Iterator<TestAction> {
+        
+        /**
+         * @return the actions planned after the one last returned by {@link #next()}
+         */
+        List<TestAction> upcoming();
+    }
+    
+    /**
+     * Get an instruction by id
+     * @param id the instruction ID
+     * @return the instruction, if it exists
+     */
+    public Optional<Instruction> getInstruction(Long id) {
+        return instructionRepository.findById(id);
+    }
+    
+    /**
+     * List instructions newest first, one page at a time
+     * @param status the status to filter by, or null for all
+     * @param from only instructions created at or after this time, or null
+     * @param to only instructions created before this time, or null
+     * @param cursor cursor returned with the previous page, or null for the first page
+     * @param size maximum instructions per page, capped at {@code app.automation.listing.max-page-size}
+     * @return the page and the cursor of the next one
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public InstructionPage listInstructions(Instruction.TestStatus status, LocalDateTime from, LocalDateTime to,
+            String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        // One extra row tells whether there is a next page without counting
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+        
+        List<InstructionSummary> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = instructionRepository.findSummaries(status, from, to, limit);
+        } else {
+            PageCursor.Position after = PageCursor.decode(cursor);
+            rows = instructionRepository.findSummariesAfter(status, from, to, after.createdAt(), after.id(), limit);
+        }
+        
+        if (rows.size() <= pageSize) {
+            return new InstructionPage(rows, null);
+        }
+        List<InstructionSummary> items = rows.subList(0, pageSize);
+        InstructionSummary last = items.get(pageSize - 1);
+        return new InstructionPage(items, PageCursor.encode(last.createdAt(), last.id()));
     }
     
     /**
@@ -0,0 +1,483 @@
+package com.springai.mobile.automation.service.ai;
+
+import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.util.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.ChatClient;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.StreamingChatClient;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single entry point for blocking chat calls made by the AI services.
+ *
+ * Concurrent calls with the same prompt fingerprint, e.g. many devices starting the same suite at
+ * once, share one request to the model and its response text. Requests that are actually sent
+ * pass through the {@link ChatLimiter} and are retried with jittered exponential backoff when the
+ * provider throttles them or is temporarily unavailable, until the retry deadline.
+ *
+ * Every attempt is bounded by a per-operation deadline. With hedging enabled, an attempt that has
+ * not answered after the observed latency percentile is duplicated if the limiter has a permit to
+ * spare; the first response wins and the other request is cancelled. Each request holds its own
+ * permit until the client call has actually returned, so requests abandoned at their deadline
+ * still count against the limit while they occupy the provider.
+ *
+ * Streamed calls go through the same limiter and backoff, see {@link #stream}.
+ */
+@Component
+public class ChatGateway {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatGateway.class);
+
+    private final ChatLimiter chatLimiter;
+    private final SingleFlight<String> singleFlight;
+    private final Counter retries;
+    private final Map<Operation, Timer> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, Counter> timeouts = new EnumMap<>(Operation.class);
+    private final Map<Operation, Counter> hedgesSent = new EnumMap<>(Operation.class);
+    private final Map<Operation, Counter> hedgeWins = new EnumMap<>(Operation.class);
+    private final AtomicInteger callCounter = new AtomicInteger();
+    private final ExecutorService callExecutor;
+    private final double hedgePercentile;
+
+    @Value("${app.automation.ai.coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
+    @Value("${app.automation.ai.retry.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${app.automation.ai.retry.base-delay:500}")
+    private long baseDelayMs;
+
+    @Value("${app.automation.ai.retry.max-delay:8000}")
+    private long maxDelayMs;
+
+    @Value("${app.automation.ai.retry.deadline:60000}")
+    private long retryDeadlineMs;
+
+    @Value("${app.automation.ai.deadline.planning:45000}")
+    private long planningDeadlineMs;
+
+    @Value("${app.automation.ai.deadline.analysis:30000}")
+    private long analysisDeadlineMs;
+
+    @Value("${app.automation.ai.hedging.enabled:false}")
+    private boolean hedgingEnabled;
+
+    @Value("${app.automation.ai.hedging.min-delay:2000}")
+    private long minHedgeDelayMs;
+
+    @Autowired
+    public ChatGateway(ChatLimiter chatLimiter, MeterRegistry meterRegistry,
+            @Value("${app.automation.ai.coalescing.max-waiters:32}") int maxWaiters,
+            @Value("${app.automation.ai.coalescing.wait-timeout:60000}") long waitTimeoutMs,
+            @Value("${app.automation.ai.hedging.percentile:0.95}") double hedgePercentile,
+            @Value("${app.automation.ai.max-call-threads:32}") int maxCallThreads) {
+        this.chatLimiter = chatLimiter;
+        this.hedgePercentile = hedgePercentile;
+        // No queue: a request either starts right away or is rejected, so none waits unseen
+        this.callExecutor = new ThreadPoolExecutor(0, maxCallThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "model-call-" + callCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        for (Operation operation : Operation.values()) {
+            String tag = operation.name().toLowerCase();
+            latencies.put(operation, Timer.builder("automation.ai.call.latency")
+                    .tag("operation", tag)
+                    .description("Latency of successful model calls, including hedged requests")
+                    .publishPercentiles(0.5, hedgePercentile, 0.99)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            timeouts.put(operation, Counter.builder("automation.ai.call.timeouts")
+                    .tag("operation", tag)
+                    .description("Model calls that exceeded their deadline")
+                    .register(meterRegistry));
+            hedgesSent.put(operation, Counter.builder("automation.ai.hedge.sent")
+                    .tag("operation", tag)
+                    .description("Hedged duplicate model requests sent")
+                    .register(meterRegistry));
+            hedgeWins.put(operation, Counter.builder("automation.ai.hedge.wins")
+                    .tag("operation", tag)
+                    .description("Hedged requests that answered before the original")
+                    .register(meterRegistry));
+        }
+        this.singleFlight = new SingleFlight<>(maxWaiters, waitTimeoutMs);
+        this.retries = Counter.builder("automation.ai.retries")
+                .description("Model calls retried after throttling or unavailability")
+                .register(meterRegistry);
+        FunctionCounter.builder("automation.ai.coalesced", singleFlight, SingleFlight::getShared)
+                .description("Chat calls answered by an identical call already in flight")
+                .register(meterRegistry);
+        FunctionCounter.builder("automation.ai.coalescing.bypassed", singleFlight,
+                        flight -> flight.getBypassed() + flight.getTimedOut())
+                .description("Chat calls sent separately because the in-flight call had too many waiters or was too slow")
+                .register(meterRegistry);
+        Gauge.builder("automation.ai.inflight", singleFlight, SingleFlight::getInFlight)
+                .description("Distinct chat calls in flight")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Send a prompt, coalescing it with identical prompts in flight
+     * @param operation what the call is for, selects its deadline and metrics
+     * @param chatClient the client to call
+     * @param prompt the prompt
+     * @param priority lane of the caller
+     * @return the text of the model's response
+     * @throws Exception if the call fails or exceeds its deadline
+     */
+    public String call(Operation operation, ChatClient chatClient, Prompt prompt, Instruction.Priority priority)
+            throws Exception {
+        return call(operation, chatClient, prompt, fingerprint(prompt), priority);
+    }
+
+    /**
+     * Send a prompt, coalescing it with prompts in flight that have the same key. Use this when
+     * the prompt text alone does not identify the request, e.g. when an image is attached.
+     * @param operation what the call is for, selects its deadline and metrics
+     * @param chatClient the client to call
+     * @param prompt the prompt
+     * @param key identifies identical requests
+     * @param priority lane of the caller
+     * @return the text of the model's response
+     * @throws Exception if the call fails or exceeds its deadline
+     */
+    public String call(Operation operation, ChatClient chatClient, Prompt prompt, String key,
+            Instruction.Priority priority) throws Exception {
+        if (!coalescingEnabled) {
+            return sendWithRetry(operation, chatClient, prompt, priority);
+        }
+        return singleFlight.execute(key, () -> sendWithRetry(operation, chatClient, prompt, priority));
+    }
+
+    /**
+     * Stream a response under a limiter permit held until the stream ends, is cancelled or fails.
+     * A stream that is throttled or unavailable before its first chunk is retried with the same
+     * backoff as blocking calls; once chunks have been delivered it is not, as the subscriber
+     * has already acted on them. Streams are not coalesced or hedged.
+     * @param operation what the call is for, selects its deadline
+     * @param chatClient the client to call
+     * @param prompt the prompt
+     * @param priority lane of the caller
+     * @return the response chunks, failing with a {@link TimeoutException} if an attempt has not
+     *         completed within the operation's deadline
+     */
+    public Flux<ChatResponse> stream(Operation operation, StreamingChatClient chatClient, Prompt prompt,
+            Instruction.Priority priority) {
+        return Flux.defer(() -> {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryDeadlineMs);
+            AtomicBoolean delivered = new AtomicBoolean();
+            AtomicInteger attempts = new AtomicInteger();
+
+            return Mono.fromCallable(() -> chatLimiter.acquire(priority, deadline))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .flatMapMany(permit -> {
+                        // One expiry for the whole attempt, so a stream that keeps trickling chunks
+                        // cannot outlive its deadline
+                        Mono<Long> expiry = Mono.delay(deadline(operation)).cache();
+                        return chatClient.stream(prompt)
+                                .timeout(expiry, response -> expiry, Flux.error(() -> new TimeoutException(
+                                        "Model stream exceeded its " + deadlineMs(operation) + " ms deadline")))
+                                .doOnNext(response -> delivered.set(true))
+                                .doOnError(error -> {
+                                    if (error instanceof TimeoutException) {
+                                        timeouts.get(operation).increment();
+                                    }
+                                    permit.failed(error);
+                                })
+                                .doOnComplete(permit::succeeded)
+                                .doFinally(signal -> permit.release());
+                    })
+                    .retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                        Throwable error = signal.failure();
+                        int attempt = attempts.incrementAndGet();
+                        long delay = delivered.get() ? -1 : retryDelayMs(attempt, error, deadline);
+                        if (delay < 0) {
+                            return Mono.error(error);
+                        }
+                        logger.warn("Model stream attempt {} failed ({}), retrying in {} ms",
+                                attempt, error.getMessage(), delay);
+                        retries.increment();
+                        return Mono.delay(Duration.ofMillis(delay));
+                    })));
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callExecutor.shutdownNow();
+    }
+
+    private String sendWithRetry(Operation operation, ChatClient chatClient, Prompt prompt,
+            Instruction.Priority priority) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryDeadlineMs);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return sendWithDeadline(operation, chatClient, prompt, priority, deadline);
+            } catch (Exception e) {
+                long delay = retryDelayMs(attempt, e, deadline);
+                if (delay < 0) {
+                    throw e;
+                }
+                logger.warn("Model call attempt {} failed ({}), retrying in {} ms", attempt, e.getMessage(), delay);
+                retries.increment();
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Delay before retrying a failed attempt. Full jitter: a random delay up to the exponential
+     * backoff spreads out retries.
+     * @param attempt number of the attempt that failed, from 1
+     * @param error the failure
+     * @param deadlineNanos {@link System#nanoTime()} after which no retry may start
+     * @return the delay in milliseconds, or -1 if the failure must not be retried
+     */
+    private long retryDelayMs(int attempt, Throwable error, long deadlineNanos) {
+        if (attempt >= maxAttempts || !ChatLimiter.isRetryable(error)) {
+            return -1;
+        }
+        long backoff = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(backoff + 1);
+        if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay) >= deadlineNanos) {
+            return -1;
+        }
+        return delay;
+    }
+
+    /**
+     * Send one attempt bounded by the operation's deadline, hedging it if it is slow
+     */
+    private String sendWithDeadline(Operation operation, ChatClient chatClient, Prompt prompt,
+            Instruction.Priority priority, long permitDeadline) throws Exception {
+        ChatLimiter.Permit permit = chatLimiter.acquire(priority, permitDeadline);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(deadlineMs(operation));
+        long hedgeAt = start + TimeUnit.MILLISECONDS.toNanos(hedgeDelayMs(operation));
+
+        CompletionService<String> calls = new ExecutorCompletionService<>(callExecutor);
+        List<Future<String>> started = new ArrayList<>();
+        List<ModelCall> requests = new ArrayList<>();
+        boolean hedged = false;
+        int completed = 0;
+
+        try {
+            ModelCall original = new ModelCall(chatClient, prompt, permit);
+            requests.add(original);
+            started.add(calls.submit(original));
+
+            while (true) {
+                long now = System.nanoTime();
+                if (now >= deadline) {
+                    timeouts.get(operation).increment();
+                    throw new TimeoutException("Model call exceeded its " + deadlineMs(operation) + " ms deadline");
+                }
+
+                boolean canHedge = hedgingEnabled && !hedged && completed == 0;
+                long waitUntil = canHedge ? Math.min(deadline, hedgeAt) : deadline;
+                Future<String> done = calls.poll(Math.max(0, waitUntil - now), TimeUnit.NANOSECONDS);
+
+                if (done == null) {
+                    if (canHedge && System.nanoTime() >= hedgeAt) {
+                        hedged = true;
+                        hedge(operation, chatClient, prompt, priority, calls, started, requests);
+                    }
+                    continue;
+                }
+
+                completed++;
+                try {
+                    String content = done.get();
+                    latencies.get(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    if (started.size() > 1 && done == started.get(1)) {
+                        hedgeWins.get(operation).increment();
+                    }
+                    return content;
+                } catch (ExecutionException e) {
+                    if (completed >= started.size()) {
+                        throw e.getCause() instanceof Exception cause ? cause : e;
+                    }
+                    // The other request is still running and may succeed
+                }
+            }
+        } finally {
+            for (Future<String> call : started) {
+                call.cancel(true);
+            }
+            for (ModelCall request : requests) {
+                request.abandon();
+            }
+        }
+    }
+
+    /**
+     * Duplicate a slow request, if the limiter can spare a permit and a thread is free. A hedge
+     * never waits: one that cannot start at once would only add load.
+     */
+    private void hedge(Operation operation, ChatClient chatClient, Prompt prompt, Instruction.Priority priority,
+            CompletionService<String> calls, List<Future<String>> started, List<ModelCall> requests) {
+        Optional<ChatLimiter.Permit> permit = chatLimiter.tryAcquire(priority);
+        if (permit.isEmpty()) {
+            logger.debug("Not hedging slow {} call, no permit to spare", operation);
+            return;
+        }
+
+        ModelCall request = new ModelCall(chatClient, prompt, permit.get());
+        try {
+            started.add(calls.submit(request));
+            requests.add(request);
+            hedgesSent.get(operation).increment();
+        } catch (RejectedExecutionException e) {
+            request.abandon();
+            logger.debug("Not hedging slow {} call, all model call threads busy", operation);
+        }
+    }
+
+    /**
+     * @param operation what the call is for
+     * @return how long a single attempt of the operation may take
+     */
+    public Duration deadline(Operation operation) {
+        return Duration.ofMillis(deadlineMs(operation));
+    }
+
+    private long deadlineMs(Operation operation) {
+        return operation == Operation.PLANNING ? planningDeadlineMs : analysisDeadlineMs;
+    }
+
+    /**
+     * Delay before hedging: the observed latency percentile, but never less than the minimum
+     */
+    private long hedgeDelayMs(Operation operation) {
+        for (ValueAtPercentile percentile : latencies.get(operation).takeSnapshot().percentileValues()) {
+            // Percentiles are doubles computed from the configured value, compare with a tolerance
+            if (Math.abs(percentile.percentile() - hedgePercentile) < 1e-9) {
+                return Math.max(minHedgeDelayMs, (long) percentile.value(TimeUnit.MILLISECONDS));
+            }
+        }
+        return minHedgeDelayMs;
+    }
+
+    private String send(ChatClient chatClient, Prompt prompt) {
+        ChatResponse response = chatClient.call(prompt);
+        return response.getResult().getOutput().getContent();
+    }
+
+    /**
+     * One request to the model, holding its permit until the client call returns. The caller may
+     * stop waiting and cancel the request at its deadline, but an HTTP call in progress does not
+     * necessarily stop when interrupted.
+     */
+    private final class ModelCall implements Callable<String> {
+
+        private final ChatClient chatClient;
+        private final Prompt prompt;
+        private final ChatLimiter.Permit permit;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private ModelCall(ChatClient chatClient, Prompt prompt, ChatLimiter.Permit permit) {
+            this.chatClient = chatClient;
+            this.prompt = prompt;
+            this.permit = permit;
+        }
+
+        @Override
+        public String call() throws Exception {
+            if (!claimed.compareAndSet(false, true)) {
+                throw new CancellationException("Model call abandoned before it started");
+            }
+            try {
+                String content = send(chatClient, prompt);
+                permit.succeeded();
+                return content;
+            } catch (Exception e) {
+                permit.failed(e);
+                throw e;
+            } finally {
+                permit.release();
+            }
+        }
+
+        /**
+         * Release the permit of a request that never started; a started request releases it itself
+         */
+        private void abandon() {
+            if (claimed.compareAndSet(false, true)) {
+                permit.release();
+            }
+        }
+    }
+
+    /**
+     * Hash the type and text of every message of a prompt
+     * @param prompt the prompt
+     * @return hex SHA-256 fingerprint
+     */
+    public static String fingerprint(Prompt prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Message message : prompt.getInstructions()) {
+                digest.update(message.getMessageType().name().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(String.valueOf(message.getContent()).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * What a model call is for
+     */
+    public enum Operation {
+        PLANNING,
+        ANALYSIS
+    }
+}
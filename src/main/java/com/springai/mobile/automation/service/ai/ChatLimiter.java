@@ -0,0 +1,316 @@
+package com.springai.mobile.automation.service.ai;
+
+import com.springai.mobile.automation.model.Instruction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Client-side admission control for model calls.
+ *
+ * A call needs a token from a token bucket refilled at {@code app.automation.ai.limiter.rate}
+ * per second and a free slot under an adaptive concurrency limit. The limit grows by one per
+ * limit's worth of fast successful calls and shrinks when calls are slower than the target
+ * latency or the model reports it is throttling us (additive increase, multiplicative decrease).
+ * Interactive callers are always admitted before waiting batch callers.
+ *
+ * A {@link Permit} is held for as long as the request occupies the provider. Callers that cannot
+ * wrap the request in {@link #execute}, e.g. a streamed response or a request that outlives the
+ * caller's deadline, acquire a permit and release it when the request has actually ended.
+ */
+@Component
+public class ChatLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatLimiter.class);
+
+    private final Map<Instruction.Priority, Integer> waiting = new EnumMap<>(Instruction.Priority.class);
+    private final Map<Instruction.Priority, Timer> waitTimers = new EnumMap<>(Instruction.Priority.class);
+    private final Counter throttled;
+    private final Counter rejected;
+    private final double ratePerSecond;
+    private final double burst;
+    private int inFlight;
+    private double limit;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    @Value("${app.automation.ai.limiter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.automation.ai.limiter.min-concurrency:1}")
+    private int minConcurrency;
+
+    @Value("${app.automation.ai.limiter.max-concurrency:16}")
+    private int maxConcurrency;
+
+    @Value("${app.automation.ai.limiter.target-latency:8000}")
+    private long targetLatencyMs;
+
+    @Autowired
+    public ChatLimiter(MeterRegistry meterRegistry,
+            @Value("${app.automation.ai.limiter.rate:5}") double ratePerSecond,
+            @Value("${app.automation.ai.limiter.burst:10}") double burst,
+            @Value("${app.automation.ai.limiter.initial-concurrency:4}") int initialConcurrency) {
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.tokens = burst;
+        this.limit = initialConcurrency;
+        for (Instruction.Priority priority : Instruction.Priority.values()) {
+            waiting.put(priority, 0);
+            waitTimers.put(priority, Timer.builder("automation.ai.limiter.wait")
+                    .tag("lane", priority.name().toLowerCase())
+                    .description("Time spent waiting for a permit to call the model")
+                    .register(meterRegistry));
+        }
+        this.throttled = Counter.builder("automation.ai.limiter.throttled")
+                .description("Model calls rejected by the provider as over quota")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("automation.ai.limiter.rejected")
+                .description("Model calls that reached their deadline while waiting for a permit")
+                .register(meterRegistry);
+        Gauge.builder("automation.ai.limiter.limit", this, ChatLimiter::getLimit)
+                .description("Current adaptive concurrency limit for model calls")
+                .register(meterRegistry);
+        Gauge.builder("automation.ai.limiter.inflight", this, ChatLimiter::getInFlight)
+                .description("Model calls currently holding a permit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run a model call once a permit is available
+     * @param priority lane of the caller
+     * @param deadlineNanos {@link System#nanoTime()} by which a permit must be obtained
+     * @param call the model call
+     * @param <T> the result type
+     * @return the result of the call
+     * @throws TimeoutException if no permit was available before the deadline
+     * @throws Exception if the call fails
+     */
+    public <T> T execute(Instruction.Priority priority, long deadlineNanos, Callable<T> call) throws Exception {
+        Permit permit = acquire(priority, deadlineNanos);
+        try {
+            T result = call.call();
+            permit.succeeded();
+            return result;
+        } catch (Exception e) {
+            permit.failed(e);
+            throw e;
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Wait for a permit to call the model
+     * @param priority lane of the caller
+     * @param deadlineNanos {@link System#nanoTime()} by which a permit must be obtained
+     * @return the permit, to be released once the call has ended
+     * @throws TimeoutException if no permit was available before the deadline
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Permit acquire(Instruction.Priority priority, long deadlineNanos)
+            throws InterruptedException, TimeoutException {
+        if (!enabled) {
+            return new Permit(false);
+        }
+
+        Instruction.Priority lane = priority != null ? priority : Instruction.Priority.INTERACTIVE;
+        long waitStart = System.nanoTime();
+        acquire(lane, deadlineNanos);
+        waitTimers.get(lane).record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        return new Permit(true);
+    }
+
+    /**
+     * Take a permit only if one is free right now, e.g. for an optional hedged request
+     * @param priority lane of the caller
+     * @return the permit, or empty if the call would have to wait
+     */
+    public Optional<Permit> tryAcquire(Instruction.Priority priority) {
+        if (!enabled) {
+            return Optional.of(new Permit(false));
+        }
+
+        Instruction.Priority lane = priority != null ? priority : Instruction.Priority.INTERACTIVE;
+        synchronized (this) {
+            if (inFlight >= getLimit() || !hasPrecedence(lane)) {
+                return Optional.empty();
+            }
+            refill();
+            if (tokens < 1) {
+                return Optional.empty();
+            }
+            tokens -= 1;
+            inFlight++;
+        }
+        return Optional.of(new Permit(true));
+    }
+
+    /**
+     * @return the current concurrency limit
+     */
+    public synchronized int getLimit() {
+        return (int) Math.max(minConcurrency, Math.floor(limit));
+    }
+
+    /**
+     * @return number of calls holding a permit
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Check whether a failure means the provider is throttling us, e.g. HTTP 429 or gRPC
+     * RESOURCE_EXHAUSTED anywhere in the cause chain
+     * @param error the failure
+     * @return true if the call was rejected for quota or rate reasons
+     */
+    public static boolean isThrottled(Throwable error) {
+        return causeMatches(error, "429", "RESOURCE_EXHAUSTED", "Too Many Requests", "ResourceExhausted");
+    }
+
+    /**
+     * Check whether a failure is worth retrying: throttling or a temporarily unavailable service
+     * @param error the failure
+     * @return true if the same call may succeed later
+     */
+    public static boolean isRetryable(Throwable error) {
+        return isThrottled(error) || causeMatches(error, "503", "UNAVAILABLE", "Service Unavailable");
+    }
+
+    private static boolean causeMatches(Throwable error, String... markers) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            String description = cause.getClass().getSimpleName() + " " + cause.getMessage();
+            for (String marker : markers) {
+                if (description.contains(marker)) {
+                    return true;
+                }
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void acquire(Instruction.Priority lane, long deadlineNanos)
+            throws InterruptedException, TimeoutException {
+        waiting.merge(lane, 1, Integer::sum);
+        try {
+            while (true) {
+                long waitNanos = Long.MAX_VALUE;
+                if (inFlight < getLimit() && hasPrecedence(lane)) {
+                    refill();
+                    if (tokens >= 1) {
+                        tokens -= 1;
+                        inFlight++;
+                        return;
+                    }
+                    waitNanos = (long) ((1 - tokens) / ratePerSecond * TimeUnit.SECONDS.toNanos(1));
+                }
+
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0) {
+                    rejected.increment();
+                    throw new TimeoutException("No model call permit available before the deadline");
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, Math.max(1, Math.min(waitNanos, remaining)));
+            }
+        } finally {
+            waiting.merge(lane, -1, Integer::sum);
+            // Batch callers may have been held back only by this caller
+            notifyAll();
+        }
+    }
+
+    /**
+     * Batch callers only proceed when no interactive caller is waiting
+     */
+    private boolean hasPrecedence(Instruction.Priority lane) {
+        return lane == Instruction.Priority.INTERACTIVE || waiting.get(Instruction.Priority.INTERACTIVE) == 0;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerSecond / TimeUnit.SECONDS.toNanos(1));
+        lastRefill = now;
+    }
+
+    private synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    private synchronized void onSuccess(long latencyMs) {
+        if (latencyMs > targetLatencyMs) {
+            limit = Math.max(minConcurrency, limit * 0.9);
+        } else {
+            limit = Math.min(maxConcurrency, limit + 1.0 / Math.max(1.0, limit));
+        }
+        notifyAll();
+    }
+
+    private synchronized void onThrottled() {
+        throttled.increment();
+        limit = Math.max(minConcurrency, limit / 2);
+        logger.warn("Model call throttled by provider, concurrency limit reduced to {}", getLimit());
+    }
+
+    /**
+     * The right to have one request in flight. Report how the request went, then release the
+     * permit once the request has ended; releasing more than once has no effect.
+     */
+    public final class Permit {
+
+        private final boolean counted;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(boolean counted) {
+            this.counted = counted;
+        }
+
+        /**
+         * Record a successful call, letting the limit grow if it was fast
+         */
+        public void succeeded() {
+            if (counted) {
+                onSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        }
+
+        /**
+         * Record a failed call, shrinking the limit if the provider throttled it
+         * @param error the failure
+         */
+        public void failed(Throwable error) {
+            if (counted && isThrottled(error)) {
+                onThrottled();
+            }
+        }
+
+        /**
+         * Give the permit back
+         */
+        public void release() {
+            if (counted && released.compareAndSet(false, true)) {
+                ChatLimiter.this.release();
+            }
+        }
+    }
+}
@@ -1,21 +1,31 @@
 package com.springai.mobile.automation.service.ai;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.springai.mobile.automation.model.Instruction;
 import com.springai.mobile.automation.model.TestAction;
+import com.springai.mobile.automation.util.InstructionTemplate;
+import com.springai.mobile.automation.util.JsonExtractor;
 import com.springai.mobile.automation.util.JsonUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.ChatClient;
-import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.StreamingChatClient;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -89,10 +99,34 @@ public class InstructionProcessorService {
         """;
 
     private final ChatClient chatClient;
+    private final ChatGateway chatGateway;
+    private final PlanCache planCache;
+    private final String promptVersion;
+    private final Timer firstActionTimer;
+    
+    @Value("${app.automation.planning.streaming:false}")
+    private boolean streamingEnabled;
 
     @Autowired
-    public InstructionProcessorService(ChatClient chatClient) {
+    public InstructionProcessorService(ChatClient chatClient, ChatGateway chatGateway, PlanCache planCache,
+            MeterRegistry meterRegistry,
+            @Value("${spring.ai.vertex.ai.gemini.chat.options.model:gemini-1.5-pro}") String modelName) {
         this.chatClient = chatClient;
+        this.chatGateway = chatGateway;
+        this.planCache = planCache;
+        // Plans cached under another prompt or model are never reused
+        this.promptVersion = PlanCache.version(SYSTEM_PROMPT, modelName);
+        this.firstActionTimer = Timer.builder("automation.planning.first-action")
+                .description("Time from plan request to the first parsed action")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Check whether plans can be streamed action by action
+     * @return true if streaming planning is enabled and the chat client supports it
+     */
+    public boolean isStreamingAvailable() {
+        return streamingEnabled && chatClient instanceof StreamingChatClient;
     }
 
     /**
@@ -103,18 +137,29 @@ public class InstructionProcessorService {
     public List<TestAction> processInstruction(Instruction instruction) {
         logger.info("Processing instruction: {}", instruction.getText());
         
+        Optional<List<TestAction>> cachedPlan = cachedPlan(instruction);
+        if (cachedPlan.isPresent()) {
+            return cachedPlan.get();
+        }
+        
         Message systemMessage = new SystemMessage(SYSTEM_PROMPT);
         UserMessage userMessage = new UserMessage(instruction.getText());
         
         Prompt prompt = new Prompt(List.of(systemMessage, userMessage));
         
         try {
-            ChatResponse response = chatClient.call(prompt);
-            
-            String content = response.getResult().getOutput().getContent();
+            long start = System.nanoTime();
+            // Identical plans requested at the same time share one call
+            String content = chatGateway.call(ChatGateway.Operation.PLANNING, chatClient, prompt,
+                    instruction.getPriority());
             logger.debug("Received response from Gemini AI: {}", content);
             
-            List<TestAction> actions = parseTestActions(content, instruction);
+            List<TestAction> actions = JsonUtils.parseTestActions(content, instruction);
+            if (actions.isEmpty()) {
+                actions = fallbackPlan(instruction);
+            } else {
+                cachePlan(instruction, actions, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
             logger.info("Generated {} test actions", actions.size());
             
             return actions;
@@ -125,6 +170,148 @@ public class InstructionProcessorService {
         }
     }
     
+    /**
+     * Plan an instruction ahead of running it so that later instructions with the same pattern,
+     * e.g. the other rows of a data-driven run, are instantiated from the cached template
+     * @param instruction the instruction to plan
+     */
+    public void preparePlan(Instruction instruction) {
+        if (planCache.isEnabled()) {
+            processInstruction(instruction);
+        }
+    }
+    
+    /**
+     * Drop the cached plan of an instruction whose run failed, so the next run plans it afresh
+     * instead of repeating the failing steps
+     * @param instruction the instruction whose run failed
+     */
+    public void forgetPlan(Instruction instruction) {
+        if (!planCache.isEnabled()) {
+            return;
+        }
+        try {
+            planCache.invalidate(instruction.getText());
+        } catch (Exception e) {
+            logger.warn("Could not drop cached plan of instruction {}: {}", instruction.getId(), e.getMessage());
+        }
+    }
+    
+    /**
+     * Stream the plan for an instruction, handing each action to the consumer as soon as it has
+     * been generated so execution can start while later actions are still being produced.
+     * The consumer is called from the streaming thread and must not block for long.
+     * @param instruction the user instruction to process
+     * @param onAction receives each generated action in order
+     * @return future completed with all generated actions once the stream ends, with an empty list if
+     *         the stream failed before any action (like {@link #processInstruction}), or exceptionally
+     *         if it failed or timed out after some actions, since the plan is then incomplete
+     */
+    public CompletableFuture<List<TestAction>> streamInstruction(Instruction instruction, Consumer<TestAction> onAction) {
+        logger.info("Streaming plan for instruction: {}", instruction.getText());
+        
+        Optional<List<TestAction>> cachedPlan = cachedPlan(instruction);
+        if (cachedPlan.isPresent()) {
+            cachedPlan.get().forEach(onAction);
+            return CompletableFuture.completedFuture(cachedPlan.get());
+        }
+        
+        Prompt prompt = new Prompt(List.of(new SystemMessage(SYSTEM_PROMPT), new UserMessage(instruction.getText())));
+        JsonExtractor.ArrayElementStream parser = JsonUtils.newArrayElementStream();
+        StringBuilder content = new StringBuilder();
+        List<TestAction> actions = new ArrayList<>();
+        CompletableFuture<List<TestAction>> result = new CompletableFuture<>();
+        long start = System.nanoTime();
+        
+        // The gateway holds a limiter permit for the whole stream and backs off when throttled
+        chatGateway.stream(ChatGateway.Operation.PLANNING, (StreamingChatClient) chatClient, prompt,
+                        instruction.getPriority())
+                .subscribe(
+                        response -> {
+                            String chunk = response.getResult() != null && response.getResult().getOutput() != null
+                                    ? response.getResult().getOutput().getContent() : null;
+                            if (chunk == null) {
+                                return;
+                            }
+                            content.append(chunk);
+                            for (JsonNode element : parser.feed(chunk)) {
+                                TestAction action = JsonUtils.parseTestAction(element, instruction, actions.size() + 1);
+                                if (action != null) {
+                                    if (actions.isEmpty()) {
+                                        firstActionTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                                    }
+                                    actions.add(action);
+                                    onAction.accept(action);
+                                }
+                            }
+                        },
+                        error -> {
+                            logger.error("Error streaming instruction plan from Gemini AI", error);
+                            if (actions.isEmpty()) {
+                                result.complete(new ArrayList<>());
+                            } else {
+                                result.completeExceptionally(new IllegalStateException("Plan truncated after "
+                                        + actions.size() + " actions: " + error.getMessage(), error));
+                            }
+                        },
+                        () -> {
+                            logger.info("Streamed {} test actions", actions.size());
+                            if (!actions.isEmpty()) {
+                                cachePlan(instruction, actions, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                            }
+                            result.complete(completeStreamedPlan(actions, content.toString(), instruction, onAction));
+                        });
+        
+        return result;
+    }
+    
+    /**
+     * Look up a cached plan for the exact instruction, then a template for its pattern
+     * @param instruction the instruction to plan
+     * @return the cached plan bound to the instruction, if any
+     */
+    private Optional<List<TestAction>> cachedPlan(Instruction instruction) {
+        Optional<List<TestAction>> exact = planCache.get(instruction, promptVersion);
+        if (exact.isPresent()) {
+            return exact;
+        }
+        return planCache.getTemplated(instruction, InstructionTemplate.of(instruction.getText()), promptVersion);
+    }
+    
+    /**
+     * Cache a generated plan, and its template when the action values are bound to the
+     * instruction's literals
+     * @param instruction the planned instruction
+     * @param actions the generated actions
+     * @param generationMs how long the AI took to generate the plan
+     */
+    private void cachePlan(Instruction instruction, List<TestAction> actions, long generationMs) {
+        planCache.put(instruction, promptVersion, actions, generationMs);
+        
+        InstructionTemplate template = InstructionTemplate.of(instruction.getText());
+        template.bind(actions).ifPresent(templated ->
+                planCache.putTemplate(template, promptVersion, templated, generationMs));
+    }
+    
+    /**
+     * Finish a stream that ended normally, falling back to whole-response parsing if nothing was streamed
+     * @param actions actions emitted so far
+     * @param content the full streamed text
+     * @param instruction the original instruction
+     * @param onAction consumer for any fallback actions
+     * @return all actions of the plan
+     */
+    private List<TestAction> completeStreamedPlan(List<TestAction> actions, String content,
+            Instruction instruction, Consumer<TestAction> onAction) {
+        if (!actions.isEmpty()) {
+            return actions;
+        }
+        
+        List<TestAction> fallback = parseTestActions(content, instruction);
+        fallback.forEach(onAction);
+        return fallback;
+    }
+    
     /**
      * Parse the JSON response from Gemini AI into TestAction objects
      * @param jsonResponse the JSON response from the AI
@@ -137,17 +324,29 @@ public class InstructionProcessorService {
         
         // If parsing failed, create a dummy action for demonstration
         if (actions.isEmpty()) {
-            logger.warn("Failed to parse test actions, creating a dummy action");
-            TestAction dummyAction = TestAction.builder()
-                    .instruction(instruction)
-                    .actionType(TestAction.ActionType.TAP)
-                    .elementDescription("Sample element")
-                    .sequence(1)
-                    .build();
-            
-            actions.add(dummyAction);
+            return fallbackPlan(instruction);
         }
         
         return actions;
     }
+    
+    /**
+     * Create the placeholder plan used when the AI response could not be parsed.
+     * Placeholder plans are never cached.
+     * @param instruction the original instruction
+     * @return a single dummy action
+     */
+    private List<TestAction> fallbackPlan(Instruction instruction) {
+        logger.warn("Failed to parse test actions, creating a dummy action");
+        TestAction dummyAction = TestAction.builder()
+                .instruction(instruction)
+                .actionType(TestAction.ActionType.TAP)
+                .elementDescription("Sample element")
+                .sequence(1)
+                .build();
+        
+        List<TestAction> actions = new ArrayList<>();
+        actions.add(dummyAction);
+        return actions;
+    }
 } 
\ No newline at end of file
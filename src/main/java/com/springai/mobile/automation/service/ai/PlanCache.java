@@ -0,0 +1,316 @@
+package com.springai.mobile.automation.service.ai;
+
+import com.springai.mobile.automation.model.CachedPlan;
+import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.model.TestAction;
+import com.springai.mobile.automation.repository.CachedPlanRepository;
+import com.springai.mobile.automation.util.InstructionTemplate;
+import com.springai.mobile.automation.util.JsonUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two-tier cache of generated instruction plans.
+ *
+ * Plans are keyed by the instruction text with whitespace and case folded outside its quoted and
+ * numeric literals, plus a version of the prompt and model that generated them, so changing either
+ * makes old plans unreachable. The memory tier is a bounded LRU; the database tier keeps plans
+ * across restarts and refills the memory tier on a hit. Plans are stored in the same JSON form the
+ * AI returns and are parsed into fresh {@link TestAction}s on every hit.
+ *
+ * Besides exact plans the cache holds templates keyed by the instruction pattern, see
+ * {@link InstructionTemplate}, so an instruction that only differs in its literals is planned
+ * without an AI call.
+ */
+@Component
+public class PlanCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlanCache.class);
+    private static final String KIND_PLAN = "plan";
+    private static final String KIND_TEMPLATE = "template";
+
+    private final CachedPlanRepository cachedPlanRepository;
+    private final LinkedHashMap<String, StoredPlan> plans = new LinkedHashMap<>(256, 0.75f, true);
+    private final MeterRegistry meterRegistry;
+    private final Timer latencySaved;
+
+    @Value("${app.automation.planning.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.automation.planning.cache.max-entries:500}")
+    private int maxEntries;
+
+    @Value("${app.automation.planning.cache.persistent:true}")
+    private boolean persistent;
+
+    @Autowired
+    public PlanCache(CachedPlanRepository cachedPlanRepository, MeterRegistry meterRegistry) {
+        this.cachedPlanRepository = cachedPlanRepository;
+        this.meterRegistry = meterRegistry;
+        this.latencySaved = Timer.builder("automation.planning.cache.latency-saved")
+                .description("Planning time saved by cache hits, as originally measured for the AI call")
+                .register(meterRegistry);
+        Gauge.builder("automation.planning.cache.size", this, PlanCache::size)
+                .description("Instruction plans in the memory tier")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Look up the cached plan for an instruction
+     * @param instruction the instruction to plan
+     * @param promptVersion version of the prompt and model that would generate the plan
+     * @return new test actions bound to the instruction, if a plan is cached
+     */
+    public Optional<List<TestAction>> get(Instruction instruction, String promptVersion) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        String text = normalize(instruction.getText());
+        return find(planKey(text, promptVersion), text, KIND_PLAN)
+                .map(stored -> JsonUtils.parseTestActions(stored.planJson, instruction))
+                .filter(actions -> !actions.isEmpty());
+    }
+
+    /**
+     * Look up a cached template matching the instruction and fill it with its values
+     * @param instruction the instruction to plan
+     * @param template the instruction split into pattern and slot values
+     * @param promptVersion version of the prompt and model that would generate the plan
+     * @return new test actions bound to the instruction, if a template is cached
+     */
+    public Optional<List<TestAction>> getTemplated(Instruction instruction, InstructionTemplate template,
+            String promptVersion) {
+        if (!enabled || !template.hasSlots()) {
+            return Optional.empty();
+        }
+
+        String pattern = normalize(template.getPattern());
+        return find(templateKey(pattern, promptVersion), pattern, KIND_TEMPLATE)
+                .map(stored -> JsonUtils.parseTestActions(stored.planJson, instruction))
+                .filter(actions -> !actions.isEmpty())
+                .map(template::fill);
+    }
+
+    /**
+     * Store a successfully generated plan
+     * @param instruction the planned instruction
+     * @param promptVersion version of the prompt and model that generated the plan
+     * @param actions the generated actions
+     * @param generationMs how long the AI took to generate the plan
+     */
+    public void put(Instruction instruction, String promptVersion, List<TestAction> actions, long generationMs) {
+        if (!enabled || actions.isEmpty()) {
+            return;
+        }
+
+        String text = normalize(instruction.getText());
+        store(planKey(text, promptVersion), text, promptVersion, toPlanJson(actions), generationMs);
+    }
+
+    /**
+     * Store a plan template whose action values contain slot markers
+     * @param template the instruction template the plan was generated for
+     * @param promptVersion version of the prompt and model that generated the plan
+     * @param templatedActions the actions with slot markers, see {@link InstructionTemplate#bind}
+     * @param generationMs how long the AI took to generate the plan
+     */
+    public void putTemplate(InstructionTemplate template, String promptVersion, List<TestAction> templatedActions,
+            long generationMs) {
+        if (!enabled || templatedActions.isEmpty()) {
+            return;
+        }
+
+        String pattern = normalize(template.getPattern());
+        store(templateKey(pattern, promptVersion), pattern, promptVersion, toPlanJson(templatedActions), generationMs);
+    }
+
+    /**
+     * @return true if plans are cached at all
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Drop the cached plans for an instruction text, for every prompt version
+     * @param instructionText the instruction text
+     * @return number of plans removed from the database tier
+     */
+    public int invalidate(String instructionText) {
+        String text = normalize(instructionText);
+        String pattern = normalize(InstructionTemplate.of(instructionText).getPattern());
+        synchronized (this) {
+            plans.values().removeIf(plan -> plan.instructionText.equals(text) || plan.instructionText.equals(pattern));
+        }
+
+        if (!persistent) {
+            return 0;
+        }
+        List<CachedPlan> stored = new ArrayList<>(cachedPlanRepository.findByInstructionText(text));
+        if (!pattern.equals(text)) {
+            stored.addAll(cachedPlanRepository.findByInstructionText(pattern));
+        }
+        cachedPlanRepository.deleteAll(stored);
+        return stored.size();
+    }
+
+    /**
+     * Drop all cached plans from both tiers
+     */
+    public void invalidateAll() {
+        synchronized (this) {
+            plans.clear();
+        }
+        if (persistent) {
+            cachedPlanRepository.deleteAllInBatch();
+        }
+    }
+
+    /**
+     * @return number of plans in the memory tier
+     */
+    public synchronized int size() {
+        return plans.size();
+    }
+
+    private Optional<StoredPlan> find(String key, String text, String kind) {
+        StoredPlan stored;
+        synchronized (this) {
+            stored = plans.get(key);
+        }
+        if (stored != null) {
+            hits(kind, "memory").increment();
+        } else if (persistent) {
+            stored = cachedPlanRepository.findByCacheKey(key)
+                    .map(plan -> new StoredPlan(text, plan.getPlanJson(), plan.getGenerationMs()))
+                    .orElse(null);
+            if (stored != null) {
+                hits(kind, "database").increment();
+                remember(key, stored);
+            }
+        }
+
+        if (stored == null) {
+            Counter.builder("automation.planning.cache.misses")
+                    .tag("kind", kind)
+                    .description("Instruction plan lookups that found nothing")
+                    .register(meterRegistry)
+                    .increment();
+            return Optional.empty();
+        }
+
+        latencySaved.record(stored.generationMs, TimeUnit.MILLISECONDS);
+        logger.info("Using cached {} for instruction: {}", kind, text);
+        return Optional.of(stored);
+    }
+
+    private void store(String key, String text, String promptVersion, String planJson, long generationMs) {
+        remember(key, new StoredPlan(text, planJson, generationMs));
+
+        if (persistent) {
+            try {
+                CachedPlan plan = cachedPlanRepository.findByCacheKey(key).orElseGet(CachedPlan::new);
+                plan.setCacheKey(key);
+                plan.setInstructionText(text);
+                plan.setPromptVersion(promptVersion);
+                plan.setPlanJson(planJson);
+                plan.setGenerationMs(generationMs);
+                plan.setCreatedAt(LocalDateTime.now());
+                cachedPlanRepository.save(plan);
+            } catch (Exception e) {
+                // Another node stored the same plan first, the memory tier still has it
+                logger.debug("Could not persist cached plan: {}", e.getMessage());
+            }
+        }
+    }
+
+    private Counter hits(String kind, String tier) {
+        return Counter.builder("automation.planning.cache.hits")
+                .tag("kind", kind)
+                .tag("tier", tier)
+                .description("Instruction plans served from cache")
+                .register(meterRegistry);
+    }
+
+    private synchronized void remember(String key, StoredPlan plan) {
+        plans.put(key, plan);
+        if (plans.size() > maxEntries) {
+            plans.remove(plans.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Serialize actions in the JSON array form the AI returns, without instruction-specific fields
+     */
+    private static String toPlanJson(List<TestAction> actions) {
+        List<Map<String, Object>> plan = new ArrayList<>();
+        for (TestAction action : actions) {
+            Map<String, Object> step = new LinkedHashMap<>();
+            step.put("actionType", action.getActionType().name());
+            step.put("elementDescription", action.getElementDescription());
+            step.put("value", action.getValue());
+            step.put("sequence", action.getSequence());
+            plan.add(step);
+        }
+        return JsonUtils.toJson(plan);
+    }
+
+    /**
+     * Fold whitespace and case so trivially different instruction texts share a plan. Literals
+     * keep their case, as typing "Secret" is a different test than typing "secret".
+     * @param instructionText the instruction text
+     * @return the normalized text
+     */
+    public static String normalize(String instructionText) {
+        return InstructionTemplate.normalize(instructionText);
+    }
+
+    /**
+     * Hash a version string, e.g. the prompt and model name, into a short stable identifier
+     * @param parts the parts identifying the version
+     * @return hex SHA-256 of the parts
+     */
+    public static String version(String... parts) {
+        return sha256(String.join("\n", parts));
+    }
+
+    private static String planKey(String normalizedText, String promptVersion) {
+        return sha256(promptVersion + "\n" + normalizedText);
+    }
+
+    private static String templateKey(String normalizedPattern, String promptVersion) {
+        return sha256(promptVersion + "\n" + KIND_TEMPLATE + "\n" + normalizedPattern);
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record StoredPlan(String instructionText, String planJson, long generationMs) {
+    }
+}
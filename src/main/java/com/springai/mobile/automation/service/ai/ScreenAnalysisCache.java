@@ -0,0 +1,291 @@
+package com.springai.mobile.automation.service.ai;
+
+import com.springai.mobile.automation.util.JsonUtils;
+import com.springai.mobile.automation.util.ScreenFingerprint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Cache of screen analysis results keyed by app screen, screenshot fingerprint and element description.
+ *
+ * The screen is the app package and activity the screenshot was taken on, and the fingerprint is a
+ * 256-bit difference hash of the screenshot below the rows cropped for analysis, so screens of one activity that share a layout but show
+ * other content do not share entries. A lookup tries the exact fingerprint, and with
+ * {@code app.automation.analysis.cache.max-distance} above 0 also any cached screenshot of the same
+ * screen within that many bits of it. Entries are evicted least-recently-used once the entry or
+ * estimated memory bound is reached, and expire after the configured time to live.
+ *
+ * Elements resolved ahead of time for upcoming actions are kept apart, keyed by screen and element
+ * description only: the action before them usually changes the screenshot, e.g. by typing into a
+ * field, so they would never be found under the fingerprint they were resolved on. Such an entry
+ * is used once, only on the same activity and within {@code app.automation.analysis.batch.ttl}.
+ */
+@Component
+public class ScreenAnalysisCache {
+
+    private final LinkedHashMap<CacheKey, CachedAnalysis> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<IndexKey, Set<ScreenFingerprint.Hash>> fingerprintsByElement = new HashMap<>();
+    private final LinkedHashMap<IndexKey, CachedAnalysis> prefetched = new LinkedHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private long estimatedBytes;
+
+    @Value("${app.automation.analysis.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.automation.analysis.cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${app.automation.analysis.cache.max-bytes:16777216}")
+    private long maxBytes;
+
+    @Value("${app.automation.analysis.cache.ttl:1800000}")
+    private long ttlMs;
+
+    @Value("${app.automation.analysis.cache.max-distance:0}")
+    private int maxDistance;
+
+    @Value("${app.automation.analysis.batch.ttl:60000}")
+    private long prefetchTtlMs;
+
+    @Autowired
+    public ScreenAnalysisCache(MeterRegistry meterRegistry) {
+        this.hits = Counter.builder("automation.analysis.cache.hits")
+                .description("Screen analyses served from cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("automation.analysis.cache.misses")
+                .description("Screen analyses that needed a vision call")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("automation.analysis.cache.evictions")
+                .description("Cached screen analyses evicted or expired")
+                .register(meterRegistry);
+        Gauge.builder("automation.analysis.cache.size", this, ScreenAnalysisCache::size)
+                .description("Cached screen analyses")
+                .register(meterRegistry);
+        Gauge.builder("automation.analysis.cache.bytes", this, cache -> cache.estimatedBytes)
+                .description("Estimated memory held by cached screen analyses")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Look up a cached analysis for the same or a visually matching screenshot of the same screen
+     * @param screen the app package and activity the screenshot was taken on
+     * @param fingerprint the screenshot fingerprint
+     * @param elementDescription the element being looked for
+     * @return the cached analysis result, if any
+     */
+    public synchronized Optional<Map<String, Object>> get(String screen, ScreenFingerprint.Hash fingerprint,
+            String elementDescription) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        IndexKey element = new IndexKey(screen, normalize(elementDescription));
+        CachedAnalysis cached = lookup(new CacheKey(element, fingerprint));
+
+        if (cached == null && maxDistance > 0) {
+            Set<ScreenFingerprint.Hash> candidates = fingerprintsByElement.getOrDefault(element, Collections.emptySet());
+            ScreenFingerprint.Hash closest = null;
+            int closestDistance = Integer.MAX_VALUE;
+            for (ScreenFingerprint.Hash candidate : candidates) {
+                int distance = fingerprint.distance(candidate);
+                if (distance <= maxDistance && distance < closestDistance) {
+                    closest = candidate;
+                    closestDistance = distance;
+                }
+            }
+            if (closest != null) {
+                cached = lookup(new CacheKey(element, closest));
+            }
+        }
+
+        if (cached == null && screen != null) {
+            cached = prefetched.remove(element);
+            if (cached != null && cached.expiresAt < System.currentTimeMillis()) {
+                cached = null;
+            }
+        }
+
+        if (cached == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        hits.increment();
+        return Optional.of(cached.result);
+    }
+
+    /**
+     * Store the analysis of an element an upcoming action will look for, to be used once by the
+     * next lookup of that element on the same screen whatever its screenshot looks like by then
+     * @param screen the app package and activity the element was resolved on; nothing is stored if null
+     * @param elementDescription the element that was looked for
+     * @param result the parsed analysis result
+     */
+    public synchronized void prefetch(String screen, String elementDescription, Map<String, Object> result) {
+        if (!enabled || screen == null) {
+            return;
+        }
+
+        prefetched.put(new IndexKey(screen, normalize(elementDescription)),
+                new CachedAnalysis(Collections.unmodifiableMap(result), 0, System.currentTimeMillis() + prefetchTtlMs));
+        Iterator<IndexKey> eldest = prefetched.keySet().iterator();
+        while (prefetched.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Store a successful analysis result
+     * @param screen the app package and activity the screenshot was taken on
+     * @param fingerprint the screenshot fingerprint
+     * @param elementDescription the element that was looked for
+     * @param result the parsed analysis result
+     */
+    public synchronized void put(String screen, ScreenFingerprint.Hash fingerprint, String elementDescription,
+            Map<String, Object> result) {
+        if (!enabled) {
+            return;
+        }
+
+        IndexKey element = new IndexKey(screen, normalize(elementDescription));
+        CacheKey key = new CacheKey(element, fingerprint);
+        long size = estimateSize(element, result);
+
+        remove(key);
+        entries.put(key, new CachedAnalysis(Collections.unmodifiableMap(result), size,
+                System.currentTimeMillis() + ttlMs));
+        fingerprintsByElement.computeIfAbsent(element, e -> new HashSet<>()).add(fingerprint);
+        estimatedBytes += size;
+
+        // Evict least recently used entries until both bounds hold
+        Iterator<Map.Entry<CacheKey, CachedAnalysis>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || estimatedBytes > maxBytes) && eldest.hasNext()) {
+            Map.Entry<CacheKey, CachedAnalysis> entry = eldest.next();
+            eldest.remove();
+            unindex(entry.getKey(), entry.getValue());
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Drop the analyses of an element that a lookup of this screenshot could have returned, e.g.
+     * after the locator they suggested found nothing on the device
+     * @param screen the app package and activity the screenshot was taken on
+     * @param fingerprint the screenshot fingerprint
+     * @param elementDescription the element that was looked for
+     */
+    public synchronized void invalidate(String screen, ScreenFingerprint.Hash fingerprint, String elementDescription) {
+        IndexKey element = new IndexKey(screen, normalize(elementDescription));
+        prefetched.remove(element);
+        remove(new CacheKey(element, fingerprint));
+        if (maxDistance > 0) {
+            Set<ScreenFingerprint.Hash> candidates = fingerprintsByElement.getOrDefault(element, Collections.emptySet());
+            for (ScreenFingerprint.Hash candidate : new ArrayList<>(candidates)) {
+                if (fingerprint.distance(candidate) <= maxDistance) {
+                    remove(new CacheKey(element, candidate));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if analyses are cached
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Drop all cached analyses
+     */
+    public synchronized void clear() {
+        entries.clear();
+        fingerprintsByElement.clear();
+        prefetched.clear();
+        estimatedBytes = 0;
+    }
+
+    /**
+     * @return number of cached analyses
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private CachedAnalysis lookup(CacheKey key) {
+        CachedAnalysis cached = entries.get(key);
+        if (cached != null && cached.expiresAt < System.currentTimeMillis()) {
+            remove(key);
+            evictions.increment();
+            return null;
+        }
+        return cached;
+    }
+
+    private void remove(CacheKey key) {
+        CachedAnalysis removed = entries.remove(key);
+        if (removed != null) {
+            unindex(key, removed);
+        }
+    }
+
+    private void unindex(CacheKey key, CachedAnalysis analysis) {
+        estimatedBytes -= analysis.size;
+        Set<ScreenFingerprint.Hash> fingerprints = fingerprintsByElement.get(key.element);
+        if (fingerprints != null) {
+            fingerprints.remove(key.fingerprint);
+            if (fingerprints.isEmpty()) {
+                fingerprintsByElement.remove(key.element);
+            }
+        }
+    }
+
+    /**
+     * Rough heap footprint: two bytes per character of the JSON form plus fixed overhead
+     */
+    private static long estimateSize(IndexKey element, Map<String, Object> result) {
+        return 2L * (element.screen.length() + element.description.length() + JsonUtils.toJson(result).length()) + 320;
+    }
+
+    /**
+     * Normalize an element description so trivial wording differences share an entry
+     * @param description the element description
+     * @return lower-cased description with collapsed whitespace
+     */
+    static String normalize(String description) {
+        if (description == null) {
+            return "";
+        }
+        return description.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private record IndexKey(String screen, String description) {
+        IndexKey {
+            screen = screen != null ? screen : "";
+        }
+    }
+
+    private record CacheKey(IndexKey element, ScreenFingerprint.Hash fingerprint) {
+    }
+
+    private record CachedAnalysis(Map<String, Object> result, long size, long expiresAt) {
+    }
+}
@@ -2,9 +2,14 @@ package com.springai.mobile.automation.service.ai;
 
 import com.springai.mobile.automation.model.TestAction;
 import com.springai.mobile.automation.util.JsonUtils;
+import com.springai.mobile.automation.util.ScreenFingerprint;
+import com.springai.mobile.automation.util.ScreenshotEncoder;
+import com.springai.mobile.automation.util.ScreenshotEncoder.EncodedScreenshot;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.messages.Media;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
@@ -13,17 +18,21 @@ import org.springframework.ai.vertexai.gemini.VertexAiGeminiChatClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Base64;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Service for analyzing screenshots and identifying UI elements using Gemini AI vision capabilities
@@ -76,14 +85,85 @@ public class ScreenAnalyzerService {
         Return ONLY the JSON object without any additional text or explanation.
         """;
 
+    private static final String BATCH_SYSTEM_PROMPT_TEMPLATE = """
+        You are an expert mobile app UI analyzer.
+        You are looking at a screenshot of a mobile application.
+        
+        Find the elements on the screen that best match each of these numbered descriptions:
+        %s
+        For each element, determine its precise location and suggest possible locator strategies
+        (xpath, accessibility id, etc.). Leave out descriptions that match nothing on this screen.
+        
+        Respond with a JSON object in the following format, keyed by the description numbers:
+        {
+          "screenDescription": "Brief description of the screen (e.g., 'Login Screen', 'Home Page')",
+          "matchedElements": {
+            "1": {
+              "description": "Description of the matched element",
+              "type": "Type of element (button, text field, etc.)",
+              "text": "Text content of the element (if any)",
+              "confidence": 0.95,
+              "bounds": {
+                "x": 100,
+                "y": 200,
+                "width": 300,
+                "height": 50
+              },
+              "suggestedLocators": {
+                "xpath": "//android.widget.Button[@text='Login']",
+                "accessibilityId": "login_button",
+                "id": "com.example.app:id/login_button"
+              }
+            }
+          }
+        }
+        
+        Return ONLY the JSON object without any additional text or explanation.
+        """;
+
     private final VertexAiGeminiChatClient chatClient;
+    private final ChatGateway chatGateway;
+    private final ScreenAnalysisCache analysisCache;
+    private final DistributionSummary imageBytes;
+    private final DistributionSummary batchSize;
     
     @Value("${app.automation.screenshot.directory:./screenshots}")
     private String screenshotDirectory;
 
+    @Value("${app.automation.analysis.image.max-edge:1024}")
+    private int imageMaxEdge;
+
+    @Value("${app.automation.analysis.image.crop-top:0}")
+    private int imageCropTop;
+
+    @Value("${app.automation.analysis.image.grayscale:false}")
+    private boolean imageGrayscale;
+
+    @Value("${app.automation.analysis.image.format:jpeg}")
+    private String imageFormat;
+
+    @Value("${app.automation.analysis.image.quality:0.8}")
+    private float imageQuality;
+
+    @Value("${app.automation.analysis.batch.enabled:true}")
+    private boolean batchEnabled;
+
+    @Value("${app.automation.analysis.batch.max-elements:6}")
+    private int batchMaxElements;
+
     @Autowired
-    public ScreenAnalyzerService(VertexAiGeminiChatClient chatClient) {
+    public ScreenAnalyzerService(VertexAiGeminiChatClient chatClient, ChatGateway chatGateway,
+            ScreenAnalysisCache analysisCache, MeterRegistry meterRegistry) {
         this.chatClient = chatClient;
+        this.chatGateway = chatGateway;
+        this.analysisCache = analysisCache;
+        this.imageBytes = DistributionSummary.builder("automation.analysis.image.bytes")
+                .baseUnit("bytes")
+                .description("Size of screenshots sent for analysis")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("automation.analysis.batch.size")
+                .description("Elements resolved per batched screen analysis")
+                .register(meterRegistry);
     }
 
     /**
@@ -92,73 +172,214 @@ public class ScreenAnalyzerService {
      * @param testAction the test action containing the element description
      * @return map containing element information
      * @throws IOException if there's an error reading the image
+     * @throws IllegalStateException if the analysis call fails or returns no element
      */
     public Map<String, Object> analyzeScreenshot(File screenshotFile, TestAction testAction) throws IOException {
-        byte[] imageData = Files.readAllBytes(screenshotFile.toPath());
+        return analyzeScreenshot(screenshotFile, testAction, List.of(), null);
+    }
+
+    /**
+     * Analyze a screenshot for a test action, resolving the elements of the upcoming actions in the
+     * same call. Their results are used once by the next lookup of the same element on the same app
+     * activity, even if the previous action changed the screenshot; a lookup on another activity,
+     * or with the screen unknown, falls back to a single-element call.
+     * @param screenshotFile the screenshot file to analyze
+     * @param testAction the test action containing the element description
+     * @param upcoming actions expected to run on the same screen after this one
+     * @param screen the app package and activity the screenshot was taken on, or null if unknown
+     * @return map containing element information for the test action
+     * @throws IOException if there's an error reading the image
+     * @throws IllegalStateException if the analysis call fails or returns no element
+     */
+    public Map<String, Object> analyzeScreenshot(File screenshotFile, TestAction testAction,
+            List<TestAction> upcoming, String screen) throws IOException {
+        // Decode once: the fingerprint and the image sent to the model come from the same pixels
+        BufferedImage screenshot = ImageIO.read(screenshotFile);
+        if (screenshot == null) {
+            throw new IOException("Unsupported image format: " + screenshotFile);
+        }
+
+        // Repeated screens are answered from the cache without a vision call
+        ScreenFingerprint.Hash fingerprint = fingerprint(screenshot);
+        Optional<Map<String, Object>> cached = analysisCache.get(screen, fingerprint, testAction.getElementDescription());
+        if (cached.isPresent()) {
+            logger.debug("Using cached analysis for '{}'", testAction.getElementDescription());
+            return cached.get();
+        }
+        
+        EncodedScreenshot image = ScreenshotEncoder.encode(screenshot, imageMaxEdge, imageCropTop, imageGrayscale,
+                imageFormat, imageQuality);
+        // Only the encoded copy is needed while the call is in flight
+        screenshot = null;
+        
+        List<String> descriptions = batchDescriptions(testAction, upcoming, screen);
+        if (descriptions.size() > 1) {
+            Optional<Map<String, Object>> batched = analyzeBatch(image, screen, fingerprint, testAction, descriptions);
+            if (batched.isPresent()) {
+                return batched.get();
+            }
+            logger.debug("Batch analysis did not resolve '{}', analyzing it alone", testAction.getElementDescription());
+        }
         
         // Format the system prompt with the element description
         String formattedSystemPrompt = String.format(SYSTEM_PROMPT_TEMPLATE, testAction.getElementDescription());
         
-        // Create system message
-        Message systemMessage = new SystemMessage(formattedSystemPrompt);
-        
-        // Create a user message with the instruction
-        UserMessage userMessage = new UserMessage("Analyze this screenshot and find the element that matches the given description.");
+        Map<String, Object> result;
+        try {
+            result = callModel(formattedSystemPrompt,
+                    "Analyze this screenshot and find the element that matches the given description.",
+                    image, fingerprint, testAction);
+        } catch (Exception e) {
+            // Fail the step with the real reason rather than acting on a made-up element
+            throw new IllegalStateException("Screen analysis failed for '" + testAction.getElementDescription()
+                    + "': " + e.getMessage(), e);
+        }
         
-        // Encode the image to base64 for the API call
-        String base64Image = Base64.getEncoder().encodeToString(imageData);
+        if (!(result.get("matchedElement") instanceof Map<?, ?>)) {
+            throw new IllegalStateException("Screen analysis returned no element for '"
+                    + testAction.getElementDescription() + "'");
+        }
         
-        // Create prompt with system message and user message
-        Prompt prompt = new Prompt(List.of(systemMessage, userMessage));
+        toDeviceCoordinates(result.get("matchedElement"), image);
+        analysisCache.put(screen, fingerprint, testAction.getElementDescription(), result);
+        return result;
+    }
+
+    /**
+     * Forget the analysis of an element on a screenshot, so the next lookup asks the model again
+     * instead of returning a locator that found nothing
+     * @param screenshotFile the screenshot the element was analyzed on
+     * @param screen the app package and activity the screenshot was taken on, or null if unknown
+     * @param elementDescription the element that was looked for
+     * @throws IOException if there's an error reading the image
+     */
+    public void invalidate(File screenshotFile, String screen, String elementDescription) throws IOException {
+        BufferedImage screenshot = ImageIO.read(screenshotFile);
+        if (screenshot == null) {
+            throw new IOException("Unsupported image format: " + screenshotFile);
+        }
+        analysisCache.invalidate(screen, fingerprint(screenshot), elementDescription);
+    }
+
+    /**
+     * Fingerprint of a screenshot as used to key cached analyses, without the rows cropped from the
+     * image sent to the model, so the status bar clock does not make a repeated screen look new
+     */
+    private ScreenFingerprint.Hash fingerprint(BufferedImage screenshot) {
+        return ScreenFingerprint.detailedHash(screenshot, imageCropTop);
+    }
+
+    /**
+     * Collect the descriptions to resolve in one call: the action's own element followed by those of
+     * the upcoming actions, without duplicates and up to the configured batch size
+     */
+    private List<String> batchDescriptions(TestAction testAction, List<TestAction> upcoming, String screen) {
+        List<String> descriptions = new ArrayList<>();
+        descriptions.add(testAction.getElementDescription());
+        // Batched results reach later actions only through the cache, by activity
+        if (!batchEnabled || !analysisCache.isEnabled() || upcoming == null || screen == null) {
+            return descriptions;
+        }
+
+        for (TestAction next : upcoming) {
+            if (descriptions.size() >= batchMaxElements) {
+                break;
+            }
+            String description = next.getElementDescription();
+            if (description != null && !description.isBlank() && !descriptions.contains(description)) {
+                descriptions.add(description);
+            }
+        }
+        return descriptions;
+    }
+
+    /**
+     * Resolve several elements of one screen in a single vision call and cache each match
+     * @return the result for the test action, or empty if the batch did not resolve it
+     */
+    @SuppressWarnings("unchecked")
+    private Optional<Map<String, Object>> analyzeBatch(EncodedScreenshot image, String screen,
+            ScreenFingerprint.Hash fingerprint, TestAction testAction, List<String> descriptions) {
+        StringBuilder numbered = new StringBuilder();
+        for (int i = 0; i < descriptions.size(); i++) {
+            numbered.append(i + 1).append(". ").append(descriptions.get(i)).append("\n");
+        }
         
         try {
-            // Call Gemini Vision model
-            logger.info("Sending screenshot to Gemini Vision API for analysis");
-            
-            // TODO: The exact way to include images depends on the Spring AI API version
-            // For demonstration purposes, we're using a simple prompt here
-            // In a real implementation, this would be adjusted based on the API documentation
-            
-            ChatResponse response = chatClient.call(prompt);
-            
-            // Extract and parse the JSON response
-            String content = response.getResult().getOutput().getContent();
-            logger.debug("Received response from Gemini Vision API: {}", content);
-            
-            // Use JsonUtils to parse the JSON
-            Map<String, Object> result = JsonUtils.fromJsonToMap(content);
-            
-            if (result.isEmpty()) {
-                logger.warn("Failed to parse screen analysis result, returning default values");
-                return createDefaultAnalysisResult(testAction);
+            Map<String, Object> response = callModel(String.format(BATCH_SYSTEM_PROMPT_TEMPLATE, numbered),
+                    "Analyze this screenshot and find the elements that match the given descriptions.",
+                    image, fingerprint, testAction);
+            if (!(response.get("matchedElements") instanceof Map<?, ?> matchedElements)) {
+                return Optional.empty();
             }
+            batchSize.record(descriptions.size());
             
-            return result;
+            Map<String, Object> own = null;
+            for (int i = 0; i < descriptions.size(); i++) {
+                if (!(matchedElements.get(String.valueOf(i + 1)) instanceof Map<?, ?> element)) {
+                    continue;
+                }
+                toDeviceCoordinates(element, image);
+                
+                Map<String, Object> result = new HashMap<>();
+                result.put("screenDescription", response.get("screenDescription"));
+                result.put("matchedElement", (Map<String, Object>) element);
+                analysisCache.put(screen, fingerprint, descriptions.get(i), result);
+                if (i == 0) {
+                    own = result;
+                } else {
+                    analysisCache.prefetch(screen, descriptions.get(i), result);
+                }
+            }
+            return Optional.ofNullable(own);
         } catch (Exception e) {
-            logger.error("Error analyzing screenshot with Gemini Vision API", e);
-            return createDefaultAnalysisResult(testAction);
+            logger.warn("Batch screen analysis failed: {}", e.getMessage());
+            return Optional.empty();
         }
     }
-    
+
     /**
-     * Create a default analysis result when parsing fails
-     * @param testAction the test action
-     * @return default map with element information
+     * Send the prepared screenshot with a system prompt and parse the JSON response
      */
-    private Map<String, Object> createDefaultAnalysisResult(TestAction testAction) {
-        Map<String, Object> result = new HashMap<>();
-        result.put("screenDescription", "Sample Screen");
-        result.put("matchedElement", Map.of(
-                "description", testAction.getElementDescription(),
-                "type", "button",
-                "confidence", 0.95,
-                "suggestedLocators", Map.of(
-                        "xpath", "//android.widget.Button[@text='Sample']",
-                        "accessibilityId", "sample_button"
-                )
-        ));
+    private Map<String, Object> callModel(String systemPrompt, String instruction, EncodedScreenshot image,
+            ScreenFingerprint.Hash fingerprint, TestAction testAction) throws Exception {
+        // Create system message
+        Message systemMessage = new SystemMessage(systemPrompt);
         
-        return result;
+        // Attach the prepared screenshot; bounds come back in its pixel space
+        UserMessage userMessage = new UserMessage(String.format(
+                "%s The screenshot is %d x %d pixels; report bounds in these pixels.",
+                instruction, image.width(), image.height()),
+                List.of(new Media(MimeTypeUtils.parseMimeType(image.mimeType()), image.data())));
+        
+        // Create prompt with system message and user message
+        Prompt prompt = new Prompt(List.of(systemMessage, userMessage));
+        
+        // Call Gemini Vision model
+        logger.info("Sending {} byte {}x{} screenshot to Gemini Vision API for analysis",
+                image.data().length, image.width(), image.height());
+        imageBytes.record(image.data().length);
+        
+        // Devices on the same screen looking for the same elements share one call
+        String content = chatGateway.call(ChatGateway.Operation.ANALYSIS, chatClient, prompt,
+                ChatGateway.fingerprint(prompt) + ":" + fingerprint,
+                testAction.getInstruction() != null ? testAction.getInstruction().getPriority() : null);
+        logger.debug("Received response from Gemini Vision API: {}", content);
+        
+        // Use JsonUtils to parse the JSON
+        return JsonUtils.fromJsonToMap(content);
+    }
+
+    /**
+     * Replace a matched element's bounds, reported in the sent image's pixels, with device pixels
+     * @param matchedElement the matched element from the parsed result
+     * @param image the screenshot that was sent
+     */
+    @SuppressWarnings("unchecked")
+    private void toDeviceCoordinates(Object matchedElement, EncodedScreenshot image) {
+        if (matchedElement instanceof Map<?, ?> element && element.get("bounds") instanceof Map<?, ?> bounds) {
+            ((Map<String, Object>) element).put("bounds", image.toDeviceBounds((Map<String, Object>) bounds));
+        }
     }
     
     /**
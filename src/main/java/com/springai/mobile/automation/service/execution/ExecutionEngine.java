@@ -0,0 +1,201 @@
+package com.springai.mobile.automation.service.execution;
+
+import com.springai.mobile.automation.service.mobile.DevicePool;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executor for instruction runs.
+ *
+ * At most {@code app.automation.execution.max-concurrency} runs execute at once (defaults to the
+ * device pool size) and at most {@code app.automation.execution.queue-capacity} more wait for a
+ * slot. Work submitted beyond that is rejected with a {@link RejectedExecutionException} so
+ * callers can push back instead of piling blocking Appium and Gemini calls onto shared threads.
+ * Runs can optionally use virtual threads when the JVM provides them.
+ */
+@Component
+public class ExecutionEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionEngine.class);
+
+    private final DevicePool devicePool;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private ExecutorService executor;
+    private Semaphore admissionPermits;
+    private Semaphore runPermits;
+    private Counter rejectedCounter;
+    private int concurrency;
+
+    @Value("${app.automation.execution.max-concurrency:0}")
+    private int maxConcurrency;
+
+    @Value("${app.automation.execution.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${app.automation.execution.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    @Autowired
+    public ExecutionEngine(DevicePool devicePool, MeterRegistry meterRegistry) {
+        this.devicePool = devicePool;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Create the executor and register engine metrics
+     */
+    @PostConstruct
+    public void init() {
+        concurrency = maxConcurrency > 0 ? maxConcurrency : Math.max(1, devicePool.getSize());
+        admissionPermits = new Semaphore(concurrency + Math.max(0, queueCapacity));
+        runPermits = new Semaphore(concurrency, true);
+
+        executor = virtualThreads ? createVirtualThreadExecutor() : null;
+        if (executor == null) {
+            ThreadFactory threadFactory = runnable -> {
+                Thread thread = new Thread(runnable, "instruction-runner-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            executor = Executors.newFixedThreadPool(concurrency, threadFactory);
+        }
+
+        Gauge.builder("automation.execution.queue.depth", queuedCount, AtomicInteger::get)
+                .description("Instruction runs waiting for an execution slot")
+                .register(meterRegistry);
+        Gauge.builder("automation.execution.active", activeCount, AtomicInteger::get)
+                .description("Instruction runs currently executing")
+                .register(meterRegistry);
+        Gauge.builder("automation.execution.capacity", this, ExecutionEngine::getConcurrency)
+                .description("Maximum concurrent instruction runs")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("automation.execution.rejected")
+                .description("Instruction runs rejected because the admission queue was full")
+                .register(meterRegistry);
+
+        logger.info("Execution engine started with concurrency {}, queue capacity {}, virtual threads {}",
+                concurrency, queueCapacity, virtualThreads);
+    }
+
+    /**
+     * Creates a virtual-thread-per-task executor through reflection, since the project still
+     * compiles for Java 17
+     * @return the executor, or null if the running JVM has no virtual threads
+     */
+    private ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Virtual threads requested but not supported by this JVM, using platform threads");
+            virtualThreads = false;
+            return null;
+        }
+    }
+
+    /**
+     * Submit a run for execution
+     * @param task the run to execute
+     * @param <T> the result type
+     * @return future completed with the run result
+     * @throws RejectedExecutionException if the admission queue is full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        if (!admissionPermits.tryAcquire()) {
+            rejectedCounter.increment();
+            throw new RejectedExecutionException("Execution queue is full (capacity " + queueCapacity + ")");
+        }
+
+        queuedCount.incrementAndGet();
+        try {
+            return CompletableFuture.supplyAsync(() -> run(task), executor);
+        } catch (RejectedExecutionException e) {
+            queuedCount.decrementAndGet();
+            admissionPermits.release();
+            rejectedCounter.increment();
+            throw e;
+        }
+    }
+
+    private <T> T run(Supplier<T> task) {
+        boolean running = false;
+        try {
+            // Fixed pools already cap concurrency; virtual threads need the semaphore
+            runPermits.acquire();
+            running = true;
+            queuedCount.decrementAndGet();
+            activeCount.incrementAndGet();
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } finally {
+            if (running) {
+                activeCount.decrementAndGet();
+                runPermits.release();
+            } else {
+                queuedCount.decrementAndGet();
+            }
+            admissionPermits.release();
+        }
+    }
+
+    /**
+     * Stop accepting work on shutdown
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return maximum concurrent runs
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @return execution slots not taken by running or waiting runs
+     */
+    public int getFreeSlots() {
+        return Math.max(0, concurrency - activeCount.get() - queuedCount.get());
+    }
+
+    /**
+     * @return runs waiting for a slot
+     */
+    public int getQueueDepth() {
+        return queuedCount.get();
+    }
+
+    /**
+     * @return runs currently executing
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+}
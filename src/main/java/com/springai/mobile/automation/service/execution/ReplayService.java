@@ -0,0 +1,276 @@
+package com.springai.mobile.automation.service.execution;
+
+import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.model.ReplayPlan;
+import com.springai.mobile.automation.model.TestAction;
+import com.springai.mobile.automation.repository.ReplayPlanRepository;
+import com.springai.mobile.automation.service.TestExecutionService;
+import com.springai.mobile.automation.service.ai.PlanCache;
+import com.springai.mobile.automation.util.JsonUtils;
+import com.springai.mobile.automation.util.ScreenFingerprint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Compiles passed runs into replay plans and runs them.
+ *
+ * A replay plan freezes the steps of a passed run: action, element locator, value and the
+ * fingerprint of the screen each step led to. Replaying it skips planning and screen analysis
+ * entirely, so a run costs only device time. A step whose locator no longer resolves falls back
+ * to element analysis for that step alone; screens that look different from the recorded ones are
+ * counted and logged so stale plans can be recompiled.
+ */
+@Service
+public class ReplayService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayService.class);
+
+    private final ReplayPlanRepository replayPlanRepository;
+    private final TestExecutionService testExecutionService;
+    private final Counter replayedSteps;
+    private final Counter fallbackSteps;
+    private final Counter changedScreens;
+
+    @Value("${app.automation.screenshot.directory:./screenshots}")
+    private String screenshotDirectory;
+
+    @Value("${app.automation.replay.fingerprint-tolerance:10}")
+    private int fingerprintTolerance;
+
+    @Autowired
+    public ReplayService(ReplayPlanRepository replayPlanRepository, TestExecutionService testExecutionService,
+            MeterRegistry meterRegistry) {
+        this.replayPlanRepository = replayPlanRepository;
+        this.testExecutionService = testExecutionService;
+        this.replayedSteps = Counter.builder("automation.replay.steps")
+                .description("Steps executed from replay plans")
+                .register(meterRegistry);
+        this.fallbackSteps = Counter.builder("automation.replay.fallbacks")
+                .description("Replayed steps whose locator no longer resolved and were analyzed again")
+                .register(meterRegistry);
+        this.changedScreens = Counter.builder("automation.replay.changed.screens")
+                .description("Replayed steps that led to a screen unlike the recorded one")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Compile a passed run into a new version of the replay plan for its instruction text. Only the
+     * actions of the instruction's last attempt are compiled; earlier attempts that were taken over
+     * or retried recorded their own actions.
+     * @param instructionId the passed instruction
+     * @return the stored plan
+     * @throws IllegalArgumentException if the instruction does not exist
+     * @throws IllegalStateException if the instruction did not pass
+     */
+    public ReplayPlan compile(Long instructionId) {
+        Instruction instruction = testExecutionService.getInstruction(instructionId)
+                .orElseThrow(() -> new IllegalArgumentException("Instruction not found: " + instructionId));
+        if (instruction.getStatus() != Instruction.TestStatus.COMPLETED) {
+            throw new IllegalStateException("Only passed instructions can be compiled, instruction "
+                    + instructionId + " is " + instruction.getStatus());
+        }
+
+        List<TestAction> actions = testExecutionService.getActionsForInstruction(instruction).stream()
+                .filter(action -> Objects.equals(action.getAttempt(), instruction.getAttempts()))
+                .toList();
+        if (actions.isEmpty() || actions.stream().anyMatch(action -> !action.isSuccessful())) {
+            throw new IllegalStateException("Instruction " + instructionId + " has no complete passed run");
+        }
+
+        List<ReplayStep> steps = new ArrayList<>();
+        for (TestAction action : actions) {
+            steps.add(new ReplayStep(action.getSequence(), action.getActionType(), action.getElementDescription(),
+                    action.getElementLocator(), action.getValue(), fingerprint(action.getScreenshot())));
+        }
+
+        String textKey = textKey(instruction.getText());
+        int version = replayPlanRepository.findFirstByTextKeyOrderByVersionDesc(textKey)
+                .map(plan -> plan.getVersion() + 1)
+                .orElse(1);
+        ReplayPlan plan = replayPlanRepository.save(ReplayPlan.builder()
+                .textKey(textKey)
+                .instructionText(instruction.getText())
+                .version(version)
+                .sourceInstructionId(instructionId)
+                .stepsJson(JsonUtils.toJson(steps))
+                .stepCount(steps.size())
+                .createdAt(LocalDateTime.now())
+                .build());
+
+        logger.info("Compiled instruction {} into replay plan {} version {} with {} steps",
+                instructionId, plan.getId(), version, steps.size());
+        return plan;
+    }
+
+    /**
+     * @param id the plan ID
+     * @return the plan, if it exists
+     */
+    public Optional<ReplayPlan> getPlan(Long id) {
+        return replayPlanRepository.findById(id);
+    }
+
+    /**
+     * @param instructionText the instruction text
+     * @return the newest replay plan compiled for the text, if any
+     */
+    public Optional<ReplayPlan> latestPlan(String instructionText) {
+        return replayPlanRepository.findFirstByTextKeyOrderByVersionDesc(textKey(instructionText));
+    }
+
+    /**
+     * Replay a plan as a new instruction on the execution engine. The instruction is created
+     * already claimed, so the instruction worker cannot run it as a normal planned run instead.
+     * @param plan the plan
+     * @return future for the finished instruction
+     * @throws java.util.concurrent.RejectedExecutionException if the execution queue is full; the
+     *         instruction is left pending and planned by the instruction worker
+     */
+    public CompletableFuture<Instruction> replayAsync(ReplayPlan plan) {
+        Instruction instruction = testExecutionService.submitClaimedInstruction(plan.getInstructionText());
+        ReplayStep[] steps = readSteps(plan, instruction);
+        if (steps == null) {
+            return testExecutionService.runClaimedAsync(instruction, null);
+        }
+
+        List<TestAction> actions = toActions(steps, instruction);
+        return testExecutionService.runClaimedAsync(instruction, actions)
+                .thenApply(result -> report(plan, steps, actions, result));
+    }
+
+    /**
+     * Run an instruction from a replay plan on the calling thread. A plan whose steps cannot be
+     * read is ignored and the instruction is planned as usual.
+     * @param plan the plan
+     * @param instruction the instruction to record the run under
+     * @return the finished instruction
+     * @throws IllegalStateException if the instruction is running or another run claimed it first
+     */
+    public Instruction replay(ReplayPlan plan, Instruction instruction) {
+        ReplayStep[] steps = readSteps(plan, instruction);
+        if (steps == null) {
+            return testExecutionService.processInstruction(instruction);
+        }
+
+        List<TestAction> actions = toActions(steps, instruction);
+        return report(plan, steps, actions, testExecutionService.replayInstruction(instruction, actions));
+    }
+
+    private ReplayStep[] readSteps(ReplayPlan plan, Instruction instruction) {
+        ReplayStep[] steps = JsonUtils.fromJson(plan.getStepsJson(), ReplayStep[].class);
+        if (steps == null) {
+            logger.warn("Replay plan {} has unreadable steps, planning instruction {} instead",
+                    plan.getId(), instruction.getId());
+        }
+        return steps;
+    }
+
+    private static List<TestAction> toActions(ReplayStep[] steps, Instruction instruction) {
+        List<TestAction> actions = new ArrayList<>();
+        for (ReplayStep step : steps) {
+            actions.add(TestAction.builder()
+                    .instruction(instruction)
+                    .actionType(step.actionType())
+                    .elementDescription(step.elementDescription())
+                    .elementLocator(step.elementLocator())
+                    .value(step.value())
+                    .sequence(step.sequence())
+                    .build());
+        }
+        return actions;
+    }
+
+    /**
+     * Count the steps that fell back to analysis or led to a changed screen
+     */
+    private Instruction report(ReplayPlan plan, ReplayStep[] steps, List<TestAction> actions, Instruction result) {
+        int fallbacks = 0;
+        int changed = 0;
+        for (int i = 0; i < steps.length; i++) {
+            TestAction action = actions.get(i);
+            if (action.getExecutedAt() == null) {
+                continue;
+            }
+            if (!Objects.equals(action.getElementLocator(), steps[i].elementLocator())) {
+                fallbacks++;
+            }
+            Long screen = fingerprint(action.getScreenshot());
+            if (steps[i].screenFingerprint() != null && screen != null
+                    && Long.bitCount(screen ^ steps[i].screenFingerprint()) > fingerprintTolerance) {
+                changed++;
+            }
+        }
+        replayedSteps.increment(steps.length);
+        fallbackSteps.increment(fallbacks);
+        changedScreens.increment(changed);
+
+        logger.info("Replayed plan {} version {} as instruction {}: {}, {} of {} steps fell back to analysis, "
+                        + "{} screens changed", plan.getId(), plan.getVersion(), result.getId(),
+                result.getStatus(), fallbacks, steps.length, changed);
+        if (fallbacks > 0 && result.getStatus() == Instruction.TestStatus.COMPLETED) {
+            logger.info("Replay plan {} has stale locators, compile instruction {} to refresh it",
+                    plan.getId(), result.getId());
+        }
+        return result;
+    }
+
+    /**
+     * Fingerprint of a stored screenshot, or null if there is none
+     */
+    private Long fingerprint(String screenshot) {
+        if (screenshot == null) {
+            return null;
+        }
+        File file = new File(screenshotDirectory, screenshot);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return ScreenFingerprint.differenceHash(file);
+        } catch (IOException e) {
+            logger.warn("Could not fingerprint screenshot {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String textKey(String instructionText) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(
+                    PlanCache.normalize(instructionText).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * One step of a replay plan
+     * @param sequence step number
+     * @param actionType the action
+     * @param elementDescription the element as described in the instruction
+     * @param elementLocator the locator that resolved the element in the compiled run
+     * @param value text, direction or app of the action
+     * @param screenFingerprint difference hash of the screen after the step, or null if unknown
+     */
+    public record ReplayStep(int sequence, TestAction.ActionType actionType, String elementDescription,
+            String elementLocator, String value, Long screenFingerprint) {
+    }
+}
@@ -0,0 +1,61 @@
+package com.springai.mobile.automation.service.execution;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.model.TestAction;
+
+/**
+ * Progress event of an instruction run, as pushed to live subscribers. Fields that do not apply
+ * to an event type are null and left out of the JSON.
+ * @param instructionId the instruction being run
+ * @param type what happened
+ * @param sequence step number of the action, for step events
+ * @param action action type, for step events
+ * @param element element description, for step events
+ * @param durationMs time the step took, for passed and failed steps
+ * @param status final instruction status, for finished events
+ * @param message error message of a failed step or result of a finished run
+ * @param timestamp when the event happened, in epoch milliseconds
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RunEvent(Long instructionId, Type type, Integer sequence, String action, String element,
+        Long durationMs, String status, String message, long timestamp) {
+
+    /**
+     * Event for a step of a run
+     * @param type what happened
+     * @param action the action
+     * @param durationMs time the step took, or null
+     * @return the event
+     */
+    public static RunEvent step(Type type, TestAction action, Long durationMs) {
+        Instruction instruction = action.getInstruction();
+        return new RunEvent(instruction != null ? instruction.getId() : null, type, action.getSequence(),
+                action.getActionType() != null ? action.getActionType().name() : null,
+                action.getElementDescription(), durationMs, null,
+                type == Type.STEP_FAILED ? action.getErrorMessage() : null, System.currentTimeMillis());
+    }
+
+    /**
+     * Event for the end of a run
+     * @param instruction the instruction with its final status and result
+     * @return the event
+     */
+    public static RunEvent finished(Instruction instruction) {
+        return new RunEvent(instruction.getId(), Type.FINISHED, null, null, null, null,
+                instruction.getStatus() != null ? instruction.getStatus().name() : null,
+                instruction.getResult(), System.currentTimeMillis());
+    }
+
+    /**
+     * Kinds of run events
+     */
+    public enum Type {
+        PLANNED,
+        ANALYZING,
+        EXECUTING,
+        STEP_PASSED,
+        STEP_FAILED,
+        FINISHED
+    }
+}
@@ -0,0 +1,274 @@
+package com.springai.mobile.automation.service.execution;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process bus that pushes run progress to Server-Sent Events subscribers.
+ *
+ * Publishing only appends the event to the buffer of each interested subscriber and never
+ * blocks on a client. Each subscriber with pending events is drained by its own task on a pool of
+ * up to {@code app.automation.events.senders} threads that exit when idle, so thousands of idle
+ * subscribers cost no threads and one slow client does not hold up the others. Each buffer holds
+ * at most {@code app.automation.events.buffer-size} events; a client that falls behind loses its
+ * oldest events rather than slowing down the runs or other clients. A client whose write has
+ * been blocked for {@code app.automation.events.send-timeout} is disconnected, which also frees
+ * the sender thread once the write fails.
+ */
+@Component
+public class RunEvents {
+
+    private static final Logger logger = LoggerFactory.getLogger(RunEvents.class);
+
+    // Subscriber key of streams that follow all instructions
+    private static final long ALL = -1L;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicInteger senderCounter = new AtomicInteger();
+    private final Counter droppedCounter;
+    private final Counter stalledCounter;
+    private ThreadPoolExecutor senders;
+    private ScheduledExecutorService watchdog;
+
+    @Value("${app.automation.events.buffer-size:64}")
+    private int bufferSize;
+
+    @Value("${app.automation.events.timeout:1800000}")
+    private long timeoutMs;
+
+    @Value("${app.automation.events.senders:16}")
+    private int senderThreads;
+
+    @Value("${app.automation.events.send-timeout:10000}")
+    private long sendTimeoutMs;
+
+    @Autowired
+    public RunEvents(MeterRegistry meterRegistry) {
+        this.droppedCounter = Counter.builder("automation.events.dropped")
+                .description("Run events dropped because a subscriber fell behind")
+                .register(meterRegistry);
+        this.stalledCounter = Counter.builder("automation.events.stalled")
+                .description("Run event streams closed because a write to the client blocked too long")
+                .register(meterRegistry);
+        Gauge.builder("automation.events.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open run event streams")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Create the sender pool and the watchdog for blocked writes
+     */
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, senderThreads);
+        senders = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "run-events-" + senderCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        senders.allowCoreThreadTimeOut(true);
+
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "run-events-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, sendTimeoutMs / 2);
+        watchdog.scheduleWithFixedDelay(this::closeStalled, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Open an event stream
+     * @param instructionId instruction to follow, or null for all instructions
+     * @return the emitter to return from the controller
+     */
+    public SseEmitter subscribe(Long instructionId) {
+        long key = instructionId != null ? instructionId : ALL;
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(key, emitter);
+
+        subscribers.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriberCount.incrementAndGet();
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(error -> unsubscribe(subscriber));
+        return emitter;
+    }
+
+    /**
+     * Push an event to the subscribers of its instruction and of all instructions
+     * @param event the event
+     */
+    public void publish(RunEvent event) {
+        deliver(subscribers.get(ALL), event);
+        if (event.instructionId() != null) {
+            deliver(subscribers.get(event.instructionId()), event);
+        }
+    }
+
+    /**
+     * @return number of open event streams
+     */
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * Close all streams
+     */
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        senders.shutdownNow();
+        subscribers.values().forEach(group -> group.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    private void deliver(Set<Subscriber> group, RunEvent event) {
+        if (group == null) {
+            return;
+        }
+        for (Subscriber subscriber : group) {
+            if (subscriber.offer(event)) {
+                try {
+                    senders.execute(subscriber::drain);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down
+                }
+            }
+        }
+    }
+
+    /**
+     * Disconnect clients whose current write has been blocked longer than the send timeout
+     */
+    private void closeStalled() {
+        long now = System.nanoTime();
+        for (Set<Subscriber> group : subscribers.values()) {
+            for (Subscriber subscriber : group) {
+                long since = subscriber.sendingSince;
+                if (since != 0 && now - since > TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs)) {
+                    stalledCounter.increment();
+                    subscriber.close(new TimeoutException("Client did not accept events for " + sendTimeoutMs + " ms"));
+                }
+            }
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        Set<Subscriber> group = subscribers.get(subscriber.key);
+        if (group != null && group.remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+            subscribers.computeIfPresent(subscriber.key, (k, g) -> g.isEmpty() ? null : g);
+        }
+    }
+
+    /**
+     * One open stream with its pending events
+     */
+    private final class Subscriber {
+
+        private final long key;
+        private final SseEmitter emitter;
+        private final Deque<RunEvent> buffer = new ArrayDeque<>();
+        // True while a drain is queued or running, so each subscriber is drained by one thread at a time
+        private boolean scheduled;
+        // System.nanoTime() when the write in progress started, 0 when not writing
+        private volatile long sendingSince;
+
+        private Subscriber(long key, SseEmitter emitter) {
+            this.key = key;
+            this.emitter = emitter;
+        }
+
+        /**
+         * Buffer an event, dropping the oldest if the buffer is full
+         * @return true if the caller must schedule a drain
+         */
+        private synchronized boolean offer(RunEvent event) {
+            if (buffer.size() >= bufferSize) {
+                buffer.pollFirst();
+                droppedCounter.increment();
+            }
+            buffer.addLast(event);
+            if (scheduled) {
+                return false;
+            }
+            scheduled = true;
+            return true;
+        }
+
+        private void drain() {
+            while (true) {
+                List<RunEvent> events;
+                synchronized (this) {
+                    if (buffer.isEmpty()) {
+                        scheduled = false;
+                        return;
+                    }
+                    events = new ArrayList<>(buffer);
+                    buffer.clear();
+                }
+
+                try {
+                    for (RunEvent event : events) {
+                        sendingSince = System.nanoTime();
+                        emitter.send(SseEmitter.event()
+                                .name(event.type().name().toLowerCase())
+                                .data(event, MediaType.APPLICATION_JSON));
+                    }
+                } catch (Exception e) {
+                    close(e);
+                    return;
+                } finally {
+                    sendingSince = 0;
+                }
+            }
+        }
+
+        /**
+         * Drop the subscriber and end its stream with an error
+         */
+        private void close(Exception error) {
+            logger.debug("Closing run event stream: {}", error.getMessage());
+            unsubscribe(this);
+            synchronized (this) {
+                buffer.clear();
+                // Leave scheduled set so a closed subscriber is never drained again
+                scheduled = true;
+            }
+            try {
+                emitter.completeWithError(error);
+            } catch (Exception e) {
+                // Already completed
+            }
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.springai.mobile.automation.service.execution;
+
+import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.model.TestAction;
+import com.springai.mobile.automation.repository.TestActionRepository;
+import com.springai.mobile.automation.service.worker.InstructionLeases;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers the step results of instruction runs and writes them in batches.
+ *
+ * Recorded actions are copied into a buffer and written by a background thread every
+ * {@code app.automation.execution.persistence.flush-interval} or as soon as {@code flush-size}
+ * records are waiting, so a run does not wait for the database after every step and records of
+ * concurrent runs share JDBC batches. When a run completes the buffer is flushed and the final
+ * status is written through the run's lease, so a run that lost its lease cannot overwrite the
+ * row. If the database is unavailable at that point the write is retried until it succeeds, with
+ * the lease still held and renewed, so the finished run is not taken over and executed again.
+ * Only failures that may pass, such as a lost connection or a lock timeout, are retried. When a
+ * batch is rejected for another reason its actions are saved one by one, and an action the
+ * database refuses is logged and dropped so it cannot hold up the runs that flush after it.
+ * With {@code durable} set every recorded step is written before the run continues, so a crash
+ * loses no step that was reported as executed; a step may then be written again if its run is
+ * retried.
+ */
+@Component
+public class RunRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(RunRecorder.class);
+    private static final long COMPLETE_RETRY_INITIAL_DELAY_MS = 500;
+    private static final long COMPLETE_RETRY_MAX_DELAY_MS = 30000;
+
+    private final TestActionRepository testActionRepository;
+    private final InstructionLeases instructionLeases;
+    private final JdbcTemplate jdbcTemplate;
+    private final DistributionSummary batchSize;
+
+    // Latest copy of each recorded object, keyed by the object itself since entities compare by value
+    private final Map<TestAction, TestAction> pendingActions = new IdentityHashMap<>();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "run-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${app.automation.execution.persistence.flush-interval:1000}")
+    private long flushIntervalMs;
+
+    @Value("${app.automation.execution.persistence.flush-size:200}")
+    private int flushSize;
+
+    @Value("${app.automation.execution.persistence.durable:false}")
+    private boolean durable;
+
+    @Autowired
+    public RunRecorder(TestActionRepository testActionRepository, InstructionLeases instructionLeases,
+            JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.testActionRepository = testActionRepository;
+        this.instructionLeases = instructionLeases;
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = DistributionSummary.builder("automation.persistence.batch.size")
+                .description("Actions written per batch")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Align the action id sequence with existing rows and start the background writer
+     */
+    @PostConstruct
+    public void start() {
+        alignActionSequence();
+        writer.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write pending records and stop the background writer
+     */
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Record the current state of an executed action
+     * @param action the action
+     */
+    public void record(TestAction action) {
+        int pending;
+        TestAction copy = action.toBuilder().build();
+        copy.setErrorMessage(truncate(copy.getErrorMessage(), TestAction.ERROR_MESSAGE_LENGTH));
+        synchronized (pendingActions) {
+            pendingActions.put(action, copy);
+            pending = pendingActions.size();
+        }
+        if (durable) {
+            flush();
+        } else {
+            flushIfFull(pending);
+        }
+    }
+
+    /**
+     * Write everything pending, including the run's actions, then the final state of its instruction.
+     * Blocks until both are durable, retrying with backoff while the database is temporarily failing.
+     * @param instruction the claimed instruction with its final status
+     * @return true if the final state was written, false if the run had lost its lease, the
+     *         database refused the write or the caller was interrupted before the write succeeded
+     */
+    public boolean complete(Instruction instruction) {
+        instruction.setResult(truncate(instruction.getResult(), Instruction.RESULT_LENGTH));
+        long delay = COMPLETE_RETRY_INITIAL_DELAY_MS;
+        while (true) {
+            try {
+                flush();
+                return instructionLeases.finish(instruction);
+            } catch (RuntimeException e) {
+                if (!isTransient(e)) {
+                    logger.error("Failed to write the result of instruction {}, leaving it to lease recovery: {}",
+                            instruction.getId(), e.getMessage());
+                    instructionLeases.abandon(instruction);
+                    return false;
+                }
+                // The lease stays held and renewed meanwhile, so no other node takes the run over
+                logger.warn("Failed to write the result of instruction {}, retrying in {} ms: {}",
+                        instruction.getId(), delay, e.getMessage());
+            }
+
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Interrupted before the result of instruction {} was written, leaving it to lease recovery",
+                        instruction.getId());
+                instructionLeases.abandon(instruction);
+                return false;
+            }
+            delay = Math.min(COMPLETE_RETRY_MAX_DELAY_MS, delay * 2);
+        }
+    }
+
+    /**
+     * Write all pending actions in one batch. If the database rejects the batch for a reason other
+     * than a temporary failure, the actions are written one by one and those it rejects are dropped.
+     * @throws RuntimeException if the database is temporarily failing; the actions stay pending
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<TestAction, TestAction> actions;
+            synchronized (pendingActions) {
+                actions = new IdentityHashMap<>(pendingActions);
+                pendingActions.clear();
+            }
+            if (actions.isEmpty()) {
+                return;
+            }
+
+            try {
+                writeActions(actions);
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    // Keep everything pending for the next flush, unless a newer copy was recorded meanwhile
+                    requeue(pendingActions, actions);
+                    throw e;
+                }
+                logger.warn("Batch of {} actions rejected, writing them one by one: {}", actions.size(), e.getMessage());
+                writeEach(actions);
+                return;
+            }
+            batchSize.record(actions.size());
+            logger.debug("Wrote {} actions", actions.size());
+        }
+    }
+
+    /**
+     * Write actions one at a time, dropping those the database rejects
+     */
+    private void writeEach(Map<TestAction, TestAction> actions) {
+        Map<TestAction, TestAction> remaining = new IdentityHashMap<>(actions);
+        for (Map.Entry<TestAction, TestAction> entry : actions.entrySet()) {
+            Map<TestAction, TestAction> single = new IdentityHashMap<>();
+            single.put(entry.getKey(), entry.getValue());
+            try {
+                writeActions(single);
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    requeue(pendingActions, remaining);
+                    throw e;
+                }
+                logger.error("Dropping action {} of instruction {}, the database rejected it: {}",
+                        entry.getValue().getSequence(), instructionId(entry.getValue()), e.getMessage());
+            }
+            remaining.remove(entry.getKey());
+        }
+    }
+
+    /**
+     * Check whether a failed write may succeed when retried, e.g. after a lost connection or a
+     * lock timeout, as opposed to a write the database will always refuse
+     */
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    private static Long instructionId(TestAction action) {
+        return action.getInstruction() != null ? action.getInstruction().getId() : null;
+    }
+
+    private static String truncate(String text, int maxLength) {
+        return text != null && text.length() > maxLength ? text.substring(0, maxLength) : text;
+    }
+
+    private void writeActions(Map<TestAction, TestAction> actions) {
+        if (actions.isEmpty()) {
+            return;
+        }
+        List<TestAction> originals = new ArrayList<>(actions.keySet());
+        List<TestAction> copies = new ArrayList<>();
+        for (TestAction original : originals) {
+            TestAction copy = actions.get(original);
+            // An earlier flush may have inserted the action after this copy was taken
+            if (copy.getId() == null) {
+                copy.setId(original.getId());
+            }
+            copies.add(copy);
+        }
+
+        List<TestAction> saved = testActionRepository.saveAll(copies);
+        for (int i = 0; i < originals.size(); i++) {
+            originals.get(i).setId(saved.get(i).getId());
+        }
+    }
+
+    private static <T> void requeue(Map<T, T> pending, Map<T, T> failed) {
+        synchronized (pending) {
+            for (Map.Entry<T, T> entry : failed.entrySet()) {
+                pending.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void flushIfFull(int pending) {
+        if (pending >= flushSize) {
+            try {
+                writer.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the final flush writes it
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.warn("Failed to write run results, retrying on the next flush: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Move the action id sequence past ids assigned before actions used it, e.g. by an identity column.
+     * Hibernate hands out the {@link TestAction#ID_ALLOCATION_SIZE} ids up to each sequence value.
+     */
+    private void alignActionSequence() {
+        Long maxId = testActionRepository.findMaxId();
+        if (maxId == null) {
+            return;
+        }
+        Long next = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR test_action_seq", Long.class);
+        if (next != null && next - TestAction.ID_ALLOCATION_SIZE < maxId) {
+            long restart = maxId + TestAction.ID_ALLOCATION_SIZE + 1;
+            jdbcTemplate.execute("ALTER SEQUENCE test_action_seq RESTART WITH " + restart);
+            logger.info("Moved the test action id sequence past existing id {}", maxId);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.springai.mobile.automation.service.learning;
+
+import com.springai.mobile.automation.model.LearningEntry;
+import com.springai.mobile.automation.repository.LearningEntryRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Backfills context keys for learning entries stored before they existed.
+ *
+ * Runs once at startup and does nothing when every entry has a key. Entries that turn out to
+ * share a key are merged into the first one, since the key is unique.
+ */
+@Component
+public class LearningKeyMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(LearningKeyMigration.class);
+
+    private final LearningEntryRepository learningEntryRepository;
+
+    @Value("${app.automation.learning.migration.batch-size:1000}")
+    private int batchSize;
+
+    @Autowired
+    public LearningKeyMigration(LearningEntryRepository learningEntryRepository) {
+        this.learningEntryRepository = learningEntryRepository;
+    }
+
+    /**
+     * Assign context keys to all entries without one
+     */
+    @PostConstruct
+    public void backfill() {
+        int migrated = 0;
+        int merged = 0;
+        List<LearningEntry> page;
+        // Every processed entry either gets a key or is deleted, so the first page is always the next one
+        while (!(page = learningEntryRepository.findByContextKeyIsNull(PageRequest.of(0, batchSize))).isEmpty()) {
+            Map<String, LearningEntry> keyed = new HashMap<>();
+            List<LearningEntry> duplicates = new ArrayList<>();
+
+            for (LearningEntry entry : page) {
+                String key = LearningService.contextKey(entry.getAction(), elementDescription(entry),
+                        entry.getScreenDescription());
+                LearningEntry survivor = keyed.get(key);
+                if (survivor == null) {
+                    Optional<LearningEntry> stored = learningEntryRepository.findByContextKey(key);
+                    survivor = stored.orElse(null);
+                    if (survivor != null) {
+                        keyed.put(key, survivor);
+                    }
+                }
+
+                if (survivor == null) {
+                    entry.setContextKey(key);
+                    keyed.put(key, entry);
+                } else {
+                    merge(survivor, entry);
+                    duplicates.add(entry);
+                }
+            }
+
+            learningEntryRepository.saveAll(keyed.values());
+            learningEntryRepository.deleteAll(duplicates);
+            migrated += page.size();
+            merged += duplicates.size();
+        }
+
+        if (migrated > 0) {
+            logger.info("Backfilled context keys for {} learning entries, merged {} duplicates", migrated, merged);
+        }
+    }
+
+    /**
+     * Recover the element description from a context built as "{element} on screen '{screen}'"
+     */
+    private static String elementDescription(LearningEntry entry) {
+        String context = entry.getContext() != null ? entry.getContext() : "";
+        String suffix = " on screen '" + entry.getScreenDescription() + "'";
+        return context.endsWith(suffix) ? context.substring(0, context.length() - suffix.length()) : context;
+    }
+
+    /**
+     * Fold a duplicate into the entry that keeps the key, keeping its usage and any correction
+     */
+    private static void merge(LearningEntry survivor, LearningEntry duplicate) {
+        survivor.setUseCount(survivor.getUseCount() + duplicate.getUseCount());
+        survivor.setConfidenceScore(Math.max(survivor.getConfidenceScore(), duplicate.getConfidenceScore()));
+        if ((survivor.getCorrection() == null || survivor.getCorrection().isEmpty())
+                && duplicate.getCorrection() != null) {
+            survivor.setCorrection(duplicate.getCorrection());
+            survivor.setErrorDetails(duplicate.getErrorDetails());
+        }
+    }
+}
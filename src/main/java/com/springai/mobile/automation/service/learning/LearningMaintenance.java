@@ -0,0 +1,238 @@
+package com.springai.mobile.automation.service.learning;
+
+import com.springai.mobile.automation.model.LearningEntry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Background maintenance of the learning store.
+ *
+ * Each run walks all entries in small batches and
+ * <ul>
+ *   <li>decays the confidence of entries not used for {@code decay.grace}, halving it every
+ *   {@code decay.half-life}, and twice as fast if the last outcome was a failure</li>
+ *   <li>merges entries whose contexts are near-identical into the most used one</li>
+ *   <li>deletes entries whose confidence fell below {@code min-confidence}</li>
+ *   <li>deletes the least confident, least recently used entries of an app package beyond
+ *   {@code max-entries-per-package}</li>
+ * </ul>
+ * Every batch is one short delete, so the job never holds the learning store for long.
+ */
+@Component
+public class LearningMaintenance {
+
+    private static final Logger logger = LoggerFactory.getLogger(LearningMaintenance.class);
+
+    private final LearningService learningService;
+    private final Counter scanned;
+    private final Counter decayed;
+    private final Counter merged;
+    private final Counter evicted;
+    private LocalDateTime lastRun;
+
+    @Value("${app.automation.learning.maintenance.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.automation.learning.maintenance.interval:3600000}")
+    private long intervalMs;
+
+    @Value("${app.automation.learning.maintenance.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.automation.learning.maintenance.decay.grace:604800000}")
+    private long decayGraceMs;
+
+    @Value("${app.automation.learning.maintenance.decay.half-life:2592000000}")
+    private long decayHalfLifeMs;
+
+    @Value("${app.automation.learning.maintenance.min-confidence:0.1}")
+    private float minConfidence;
+
+    @Value("${app.automation.learning.maintenance.merge-similarity:0.95}")
+    private double mergeSimilarity;
+
+    @Value("${app.automation.learning.maintenance.max-entries-per-package:100000}")
+    private int maxEntriesPerPackage;
+
+    @Autowired
+    public LearningMaintenance(LearningService learningService, MeterRegistry meterRegistry) {
+        this.learningService = learningService;
+        this.scanned = Counter.builder("automation.learning.maintenance.scanned")
+                .description("Learning entries examined by maintenance")
+                .register(meterRegistry);
+        this.decayed = Counter.builder("automation.learning.maintenance.decayed")
+                .description("Learning entries whose confidence was decayed")
+                .register(meterRegistry);
+        this.merged = Counter.builder("automation.learning.maintenance.merged")
+                .description("Learning entries merged into a near-identical entry")
+                .register(meterRegistry);
+        this.evicted = Counter.builder("automation.learning.maintenance.evicted")
+                .description("Learning entries deleted for low confidence or retention")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run one maintenance pass
+     * @return what the pass did
+     */
+    @Scheduled(initialDelayString = "${app.automation.learning.maintenance.interval:3600000}",
+            fixedDelayString = "${app.automation.learning.maintenance.interval:3600000}")
+    public Report run() {
+        if (!enabled) {
+            return new Report(0, 0, 0, 0);
+        }
+
+        long start = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        // Decay covers the time since the previous pass, so repeated passes compound correctly
+        long elapsedMs = lastRun != null ? Duration.between(lastRun, now).toMillis() : intervalMs;
+        lastRun = now;
+
+        int scannedCount = 0;
+        int decayedCount = 0;
+        int mergedCount = 0;
+        int evictedCount = 0;
+        List<String> keys = learningService.keys();
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            List<String> lowConfidence = new ArrayList<>();
+            Set<String> duplicates = new LinkedHashSet<>();
+
+            for (String key : keys.subList(from, Math.min(keys.size(), from + batchSize))) {
+                Optional<LearningEntry> found = learningService.entry(key);
+                if (found.isEmpty() || duplicates.contains(key)) {
+                    continue;
+                }
+                LearningEntry entry = found.get();
+                scannedCount++;
+
+                if (decay(key, entry, now, elapsedMs)) {
+                    decayedCount++;
+                }
+                if (entry.getConfidenceScore() < minConfidence) {
+                    lowConfidence.add(key);
+                    continue;
+                }
+                mergeSimilar(key, entry, duplicates);
+            }
+
+            mergedCount += learningService.evict(duplicates);
+            evictedCount += learningService.evict(lowConfidence);
+        }
+
+        evictedCount += enforceRetention();
+
+        scanned.increment(scannedCount);
+        decayed.increment(decayedCount);
+        merged.increment(mergedCount);
+        evicted.increment(evictedCount);
+        Report report = new Report(scannedCount, decayedCount, mergedCount, evictedCount);
+        logger.info("Learning maintenance scanned {}, decayed {}, merged {}, evicted {} entries in {} ms",
+                scannedCount, decayedCount, mergedCount, evictedCount, System.currentTimeMillis() - start);
+        return report;
+    }
+
+    /**
+     * Decay the confidence of an entry that has not been used for the grace period
+     * @return true if the confidence changed
+     */
+    private boolean decay(String key, LearningEntry entry, LocalDateTime now, long elapsedMs) {
+        LocalDateTime lastUsed = entry.getLastUsedAt() != null ? entry.getLastUsedAt() : entry.getCreatedAt();
+        if (lastUsed == null || Duration.between(lastUsed, now).toMillis() < decayGraceMs) {
+            return false;
+        }
+
+        double halfLives = (double) elapsedMs / decayHalfLifeMs * (entry.isSuccessful() ? 1 : 2);
+        float factor = (float) Math.pow(0.5, halfLives);
+        learningService.update(key, e -> e.setConfidenceScore(e.getConfidenceScore() * factor));
+        return true;
+    }
+
+    /**
+     * Fold entries with near-identical contexts into this entry if it is the most used of them
+     * @param folded context keys already folded into another entry, extended with the ones folded here
+     */
+    private void mergeSimilar(String key, LearningEntry entry, Set<String> folded) {
+        for (String similarKey : learningService.similarKeys(entry, mergeSimilarity)) {
+            Optional<LearningEntry> similar = learningService.entry(similarKey);
+            if (similar.isEmpty() || folded.contains(similarKey)
+                    || similar.get().getUseCount() > entry.getUseCount()) {
+                // The more used entry absorbs this one when its turn comes
+                continue;
+            }
+
+            LearningEntry duplicate = similar.get();
+            learningService.update(key, survivor -> {
+                survivor.setUseCount(survivor.getUseCount() + duplicate.getUseCount());
+                survivor.setConfidenceScore(Math.max(survivor.getConfidenceScore(), duplicate.getConfidenceScore()));
+                if ((survivor.getCorrection() == null || survivor.getCorrection().isEmpty())
+                        && duplicate.getCorrection() != null) {
+                    survivor.setCorrection(duplicate.getCorrection());
+                    survivor.setErrorDetails(duplicate.getErrorDetails());
+                }
+            });
+            folded.add(similarKey);
+        }
+    }
+
+    /**
+     * Delete the weakest entries of every app package that holds more than the maximum
+     * @return number of entries deleted
+     */
+    private int enforceRetention() {
+        Map<String, List<LearningEntry>> byPackage = new HashMap<>();
+        for (String key : learningService.keys()) {
+            learningService.entry(key).ifPresent(entry -> byPackage
+                    .computeIfAbsent(entry.getAppPackage() != null ? entry.getAppPackage() : "", p -> new ArrayList<>())
+                    .add(entry));
+        }
+
+        int deleted = 0;
+        for (Map.Entry<String, List<LearningEntry>> group : byPackage.entrySet()) {
+            List<LearningEntry> packageEntries = group.getValue();
+            int excess = packageEntries.size() - maxEntriesPerPackage;
+            if (excess <= 0) {
+                continue;
+            }
+
+            packageEntries.sort(Comparator.comparingDouble(LearningEntry::getConfidenceScore)
+                    .thenComparing(e -> e.getLastUsedAt() != null ? e.getLastUsedAt() : e.getCreatedAt(),
+                            Comparator.nullsFirst(Comparator.naturalOrder())));
+            List<String> weakest = packageEntries.subList(0, excess).stream()
+                    .map(LearningEntry::getContextKey)
+                    .toList();
+            for (int from = 0; from < weakest.size(); from += batchSize) {
+                deleted += learningService.evict(weakest.subList(from, Math.min(weakest.size(), from + batchSize)));
+            }
+            logger.info("Learning entries for package '{}' over the limit of {}, deleted {}",
+                    group.getKey(), maxEntriesPerPackage, excess);
+        }
+        return deleted;
+    }
+
+    /**
+     * Outcome of a maintenance pass
+     * @param scanned entries examined
+     * @param decayed entries whose confidence was decayed
+     * @param merged entries merged into a near-identical entry
+     * @param evicted entries deleted for low confidence or retention
+     */
+    public record Report(int scanned, int decayed, int merged, int evicted) {
+    }
+}
@@ -3,33 +3,147 @@ package com.springai.mobile.automation.service.learning;
 import com.springai.mobile.automation.model.LearningEntry;
 import com.springai.mobile.automation.model.TestAction;
 import com.springai.mobile.automation.repository.LearningEntryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Service for learning from past test actions and applying that knowledge
- * to avoid repeating mistakes
+ * to avoid repeating mistakes.
+ *
+ * All entries are held in memory, indexed by context key, and reads never touch the database.
+ * Updates are applied in memory and written behind in batches by a background writer, every
+ * {@code app.automation.learning.write-behind.flush-interval} or as soon as
+ * {@code flush-size} entries are waiting, and once more on shutdown.
  */
 @Service
 public class LearningService {
 
+    private static final Logger logger = LoggerFactory.getLogger(LearningService.class);
+    private static final int LOAD_PAGE_SIZE = 5000;
+    // Index results fetched per wanted result, as most may be on other screens
+    private static final int SIMILARITY_OVERFETCH = 8;
+
     private final LearningEntryRepository learningEntryRepository;
+    private final LearningSimilarityIndex similarityIndex;
+    private final Map<String, LearningEntry> entries = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "learning-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     @Value("${app.automation.learning.enabled:true}")
     private boolean learningEnabled;
     
     @Value("${app.automation.learning.confidence.threshold:0.7}")
     private float confidenceThreshold;
+    
+    // Fall back to substring matching on the context text when no entry has the exact key
+    @Value("${app.automation.learning.fuzzy.enabled:false}")
+    private boolean fuzzyEnabled;
+    
+    @Value("${app.automation.app.package:}")
+    private String appPackage;
+    
+    @Value("${app.automation.learning.similarity.top-k:5}")
+    private int similarityTopK;
+    
+    @Value("${app.automation.learning.similarity.threshold:0.95}")
+    private double similarityThreshold;
+    
+    @Value("${app.automation.learning.write-behind.flush-interval:1000}")
+    private long flushIntervalMs;
+    
+    @Value("${app.automation.learning.write-behind.flush-size:500}")
+    private int flushSize;
 
+    /**
+     * @param learningEntryRepository the learning store
+     * @param learningKeyMigration backfills context keys, which the index needs before loading
+     * @param similarityIndex finds entries with similar contexts when no entry has the exact key
+     */
     @Autowired
-    public LearningService(LearningEntryRepository learningEntryRepository) {
+    public LearningService(LearningEntryRepository learningEntryRepository, LearningKeyMigration learningKeyMigration,
+            LearningSimilarityIndex similarityIndex) {
         this.learningEntryRepository = learningEntryRepository;
+        this.similarityIndex = similarityIndex;
+    }
+    
+    /**
+     * Load the index and start the background writer
+     */
+    @PostConstruct
+    public void start() {
+        load();
+        writer.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Write pending updates and stop the background writer
+     */
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+    
+    /**
+     * Replace the in-memory index with the stored learning entries. Pending updates are written first.
+     */
+    public void load() {
+        synchronized (flushLock) {
+            flush();
+            entries.clear();
+            Page<LearningEntry> page;
+            int number = 0;
+            do {
+                page = learningEntryRepository.findAll(PageRequest.of(number++, LOAD_PAGE_SIZE, Sort.by("id")));
+                for (LearningEntry entry : page) {
+                    if (entry.getContextKey() != null) {
+                        entries.put(entry.getContextKey(), entry);
+                    }
+                }
+            } while (page.hasNext());
+            logger.info("Loaded {} learning entries", entries.size());
+        }
+        similarityIndex.open(entries.values());
     }
 
     /**
@@ -47,44 +161,233 @@ public class LearningService {
             return;
         }
         
-        // Create context from action and screen description
-        String context = String.format("%s on screen '%s'", 
-                testAction.getElementDescription(), screenDescription);
-        
-        // Check if we have a similar learning entry
-        List<LearningEntry> similarEntries = learningEntryRepository
-                .findSimilarContext(context);
-        
-        if (!similarEntries.isEmpty()) {
-            // Update existing entry
-            LearningEntry entry = similarEntries.get(0);
-            entry.setSuccessful(testAction.isSuccessful());
-            
-            if (!testAction.isSuccessful()) {
-                entry.setErrorDetails(errorDetails);
-                entry.setCorrection(correction);
+        String contextKey = contextKey(testAction, screenDescription);
+        String context = String.format("%s on screen '%s'", testAction.getElementDescription(), screenDescription);
+        boolean[] created = new boolean[1];
+        entries.compute(contextKey, (key, existing) -> {
+            if (existing != null) {
+                updateEntry(existing, testAction, elementIdentifiers, errorDetails, correction);
+                return existing;
             }
             
-            entry.setElementIdentifiers(elementIdentifiers);
-            entry.incrementUseCount();
-            
-            learningEntryRepository.save(entry);
-        } else {
             // Create new entry
-            LearningEntry newEntry = LearningEntry.builder()
+            created[0] = true;
+            return LearningEntry.builder()
                     .context(context)
+                    .contextKey(key)
                     .action(testAction.getActionType().toString())
                     .successful(testAction.isSuccessful())
                     .errorDetails(errorDetails)
                     .correction(correction)
                     .elementIdentifiers(elementIdentifiers)
                     .screenDescription(screenDescription)
+                    .appPackage(appPackage)
                     .createdAt(LocalDateTime.now())
+                    .lastUsedAt(LocalDateTime.now())
                     .useCount(1)
                     .confidenceScore(testAction.isSuccessful() ? 0.7f : 0.3f)
                     .build();
+        });
+        
+        if (created[0]) {
+            similarityIndex.add(contextKey, testAction.getElementDescription());
+        }
+        
+        dirty.add(contextKey);
+        if (dirty.size() >= flushSize) {
+            try {
+                writer.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the final flush writes it
+            }
+        }
+    }
+    
+    private void updateEntry(LearningEntry entry, TestAction testAction, String elementIdentifiers,
+            String errorDetails, String correction) {
+        synchronized (entry) {
+            entry.setSuccessful(testAction.isSuccessful());
             
-            learningEntryRepository.save(newEntry);
+            if (!testAction.isSuccessful()) {
+                entry.setErrorDetails(errorDetails);
+                entry.setCorrection(correction);
+            }
+            
+            entry.setElementIdentifiers(elementIdentifiers);
+            entry.setLastUsedAt(LocalDateTime.now());
+            entry.incrementUseCount();
+        }
+    }
+    
+    /**
+     * @return context keys of all learning entries
+     */
+    List<String> keys() {
+        return List.copyOf(entries.keySet());
+    }
+    
+    /**
+     * @param contextKey the context key
+     * @return the entry with the key, if it still exists
+     */
+    Optional<LearningEntry> entry(String contextKey) {
+        return Optional.ofNullable(entries.get(contextKey));
+    }
+    
+    /**
+     * Change an entry in memory and schedule it to be written
+     * @param contextKey the context key
+     * @param change the change, run while holding the entry's lock
+     */
+    void update(String contextKey, Consumer<LearningEntry> change) {
+        LearningEntry entry = entries.get(contextKey);
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            change.accept(entry);
+        }
+        dirty.add(contextKey);
+    }
+    
+    /**
+     * Delete entries from memory, the similarity index and the learning store
+     * @param contextKeys the context keys
+     * @return number of entries deleted
+     */
+    int evict(Collection<String> contextKeys) {
+        // Hold the flush lock so a concurrent flush cannot store an entry being deleted
+        synchronized (flushLock) {
+            List<Long> ids = new ArrayList<>();
+            int evicted = 0;
+            for (String key : contextKeys) {
+                LearningEntry entry = entries.remove(key);
+                dirty.remove(key);
+                if (entry == null) {
+                    continue;
+                }
+                evicted++;
+                similarityIndex.remove(key);
+                if (entry.getId() != null) {
+                    ids.add(entry.getId());
+                }
+            }
+            if (!ids.isEmpty()) {
+                learningEntryRepository.deleteAllByIdInBatch(ids);
+            }
+            return evicted;
+        }
+    }
+    
+    /**
+     * Find entries for the same action on the same screen and app package whose element
+     * descriptions are near-identical to an entry's
+     * @param entry the entry
+     * @param minSimilarity minimum cosine similarity
+     * @return context keys of the similar entries, excluding the entry itself
+     */
+    List<String> similarKeys(LearningEntry entry, double minSimilarity) {
+        return similarEntries(LearningSimilarityIndex.elementDescription(entry), entry.getAction(),
+                entry.getScreenDescription(), entry.getAppPackage(), minSimilarity).stream()
+                .map(LearningEntry::getContextKey)
+                .filter(key -> !key.equals(entry.getContextKey()))
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Find entries whose element descriptions are similar to the given one. Only entries for the
+     * same action on the same screen of the same app package qualify; the index is searched
+     * wider than top-k since it does not know about screens.
+     */
+    private List<LearningEntry> similarEntries(String elementDescription, String action, String screenDescription,
+            String entryPackage, double minSimilarity) {
+        String screen = normalize(screenDescription);
+        String packageName = entryPackage != null ? entryPackage : "";
+        return similarityIndex.search(elementDescription, similarityTopK * SIMILARITY_OVERFETCH, minSimilarity).stream()
+                .map(result -> entries.get(result.key()))
+                .filter(candidate -> candidate != null
+                        && Objects.equals(candidate.getAction(), action)
+                        && normalize(candidate.getScreenDescription()).equals(screen)
+                        && packageName.equals(candidate.getAppPackage() != null ? candidate.getAppPackage() : ""))
+                .limit(similarityTopK)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Write all pending updates to the learning store in one batch
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<String> keys = new ArrayList<>();
+            List<LearningEntry> originals = new ArrayList<>();
+            List<LearningEntry> snapshots = new ArrayList<>();
+            for (String key : List.copyOf(dirty)) {
+                dirty.remove(key);
+                keys.add(key);
+                LearningEntry entry = entries.get(key);
+                if (entry != null) {
+                    // Save a copy so action threads can keep updating the entry during the write
+                    synchronized (entry) {
+                        originals.add(entry);
+                        snapshots.add(entry.toBuilder().build());
+                    }
+                }
+            }
+            if (snapshots.isEmpty()) {
+                return;
+            }
+            
+            List<LearningEntry> saved;
+            try {
+                saved = save(snapshots);
+            } catch (RuntimeException e) {
+                // Keep the updates pending for the next flush
+                dirty.addAll(keys);
+                throw e;
+            }
+            
+            for (int i = 0; i < originals.size(); i++) {
+                LearningEntry original = originals.get(i);
+                synchronized (original) {
+                    original.setId(saved.get(i).getId());
+                }
+            }
+            logger.debug("Wrote {} learning entries", snapshots.size());
+        }
+    }
+    
+    private List<LearningEntry> save(List<LearningEntry> snapshots) {
+        try {
+            return learningEntryRepository.saveAll(snapshots);
+        } catch (DataIntegrityViolationException e) {
+            // Another node stored one of these contexts first; save one by one to merge with it
+            List<LearningEntry> saved = new ArrayList<>();
+            for (LearningEntry snapshot : snapshots) {
+                saved.add(saveMerging(snapshot));
+            }
+            return saved;
+        }
+    }
+    
+    private LearningEntry saveMerging(LearningEntry snapshot) {
+        try {
+            return learningEntryRepository.save(snapshot);
+        } catch (DataIntegrityViolationException e) {
+            Optional<LearningEntry> stored = learningEntryRepository.findByContextKey(snapshot.getContextKey());
+            if (stored.isEmpty()) {
+                throw e;
+            }
+            snapshot.setId(stored.get().getId());
+            snapshot.setUseCount(snapshot.getUseCount() + stored.get().getUseCount());
+            return learningEntryRepository.save(snapshot);
+        }
+    }
+    
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.warn("Failed to write learning entries, retrying on the next flush: {}", e.getMessage());
         }
     }
     
@@ -99,17 +402,9 @@ public class LearningService {
             return Optional.empty();
         }
         
-        String context = String.format("%s on screen '%s'", 
-                testAction.getElementDescription(), screenDescription);
-        
-        List<LearningEntry> entries = learningEntryRepository
-                .findHighConfidenceEntries(context, confidenceThreshold);
-        
-        if (!entries.isEmpty()) {
-            return Optional.of(entries.get(0));
-        }
-        
-        return Optional.empty();
+        return findEntries(testAction, screenDescription).stream()
+                .filter(entry -> entry.getConfidenceScore() >= confidenceThreshold)
+                .max((e1, e2) -> Float.compare(e1.getConfidenceScore(), e2.getConfidenceScore()));
     }
     
     /**
@@ -123,12 +418,9 @@ public class LearningService {
             return false;
         }
         
-        String context = String.format("%s on screen '%s'", 
-                testAction.getElementDescription(), screenDescription);
+        List<LearningEntry> matches = findEntries(testAction, screenDescription);
         
-        List<LearningEntry> entries = learningEntryRepository.findSimilarContext(context);
-        
-        return entries.stream()
+        return matches.stream()
                 .anyMatch(entry -> !entry.isSuccessful());
     }
     
@@ -143,14 +435,72 @@ public class LearningService {
             return Optional.empty();
         }
         
-        String context = String.format("%s on screen '%s'", 
-                testAction.getElementDescription(), screenDescription);
-        
-        List<LearningEntry> entries = learningEntryRepository.findSimilarContext(context);
+        List<LearningEntry> matches = findEntries(testAction, screenDescription);
         
-        return entries.stream()
+        return matches.stream()
                 .filter(entry -> !entry.isSuccessful() && entry.getCorrection() != null && !entry.getCorrection().isEmpty())
                 .max((e1, e2) -> Float.compare(e1.getConfidenceScore(), e2.getConfidenceScore()))
                 .map(LearningEntry::getCorrection);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Find the entries for an action on a screen: the entry with the exact context key, else the
+     * entries for the same action type on the same screen and app package with the most similar
+     * element descriptions, else, if fuzzy matching is enabled, entries whose context contains this
+     * one. Served from memory.
+     */
+    private List<LearningEntry> findEntries(TestAction testAction, String screenDescription) {
+        LearningEntry entry = entries.get(contextKey(testAction, screenDescription));
+        if (entry != null) {
+            return List.of(entry);
+        }
+        
+        String context = String.format("%s on screen '%s'", 
+                testAction.getElementDescription(), screenDescription);
+        if (similarityIndex.isEnabled()) {
+            List<LearningEntry> similar = similarEntries(testAction.getElementDescription(),
+                    String.valueOf(testAction.getActionType()), screenDescription, appPackage, similarityThreshold);
+            if (!similar.isEmpty()) {
+                return similar;
+            }
+        }
+        
+        if (!fuzzyEnabled) {
+            return List.of();
+        }
+        return entries.values().stream()
+                .filter(candidate -> candidate.getContext() != null && candidate.getContext().contains(context))
+                .collect(Collectors.toList());
+    }
+    
+    private static String contextKey(TestAction testAction, String screenDescription) {
+        return contextKey(String.valueOf(testAction.getActionType()), testAction.getElementDescription(),
+                screenDescription);
+    }
+    
+    /**
+     * Compute the normalized context key of a learning entry. Case and whitespace differences in
+     * the descriptions map to the same key.
+     * @param action the action type
+     * @param elementDescription description of the element acted on
+     * @param screenDescription description of the screen
+     * @return hex SHA-256 of the normalized parts
+     */
+    public static String contextKey(String action, String elementDescription, String screenDescription) {
+        String normalized = normalize(action) + "\n" + normalize(elementDescription) + "\n"
+                + normalize(screenDescription);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    private static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
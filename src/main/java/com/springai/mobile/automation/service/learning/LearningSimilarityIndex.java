@@ -0,0 +1,257 @@
+package com.springai.mobile.automation.service.learning;
+
+import com.springai.mobile.automation.model.LearningEntry;
+import com.springai.mobile.automation.util.HnswIndex;
+import com.springai.mobile.automation.util.TextVectors;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Approximate nearest-neighbor index over the element descriptions of learning entries, so
+ * differently worded descriptions of the same element ("Login button", "Log in button") find each
+ * other's past corrections.
+ *
+ * Only the element description is embedded, in-process with {@link TextVectors}, and kept in an
+ * {@link HnswIndex} under the entry's context key. The screen is left out on purpose: a shared
+ * screen description would make "Username field" and "Password field" on the login screen look
+ * alike, so callers compare screen and app package exactly on the entries found.
+ * Inserts run on a background thread so they never delay an action, and the index is saved to
+ * {@code app.automation.learning.similarity.file} after the initial build and on shutdown, so a
+ * restart only indexes the entries added since and drops the ones deleted meanwhile. Deleted
+ * entries stay in the graph as tombstones, so once they make up
+ * {@code app.automation.learning.similarity.compact-ratio} of the live entries the index is
+ * rebuilt without them and saved.
+ */
+@Component
+public class LearningSimilarityIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(LearningSimilarityIndex.class);
+
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "learning-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile HnswIndex index;
+
+    @Value("${app.automation.learning.similarity.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.automation.learning.similarity.file:./data/learning-element-index.bin}")
+    private String indexFile;
+
+    @Value("${app.automation.learning.similarity.dimensions:128}")
+    private int dimensions;
+
+    @Value("${app.automation.learning.similarity.max-neighbors:16}")
+    private int maxNeighbors;
+
+    @Value("${app.automation.learning.similarity.ef-construction:64}")
+    private int efConstruction;
+
+    @Value("${app.automation.learning.similarity.ef-search:48}")
+    private int efSearch;
+
+    @Value("${app.automation.learning.similarity.compact-ratio:0.25}")
+    private double compactRatio;
+
+    /**
+     * @return true if similar contexts are looked up
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Load the saved index, then in the background index the entries it does not contain yet and
+     * drop the ones that were deleted while the application was down
+     * @param entries all learning entries
+     */
+    public void open(Collection<LearningEntry> entries) {
+        if (!enabled) {
+            return;
+        }
+
+        HnswIndex opened = readIndex();
+        index = opened;
+        submit(() -> {
+            Set<String> stale = opened.keys();
+            int added = 0;
+            for (LearningEntry entry : entries) {
+                if (entry.getContextKey() == null) {
+                    continue;
+                }
+                stale.remove(entry.getContextKey());
+                if (!opened.contains(entry.getContextKey())) {
+                    opened.add(entry.getContextKey(), TextVectors.embed(elementDescription(entry), dimensions));
+                    added++;
+                }
+            }
+            stale.forEach(opened::remove);
+            logger.info("Similarity index ready with {} learning entries ({} newly indexed, {} stale dropped)",
+                    opened.size(), added, stale.size());
+            if (!compactIfSparse() && (added > 0 || !stale.isEmpty())) {
+                save();
+            }
+        });
+    }
+
+    /**
+     * Index a new learning entry in the background
+     * @param contextKey the entry's context key
+     * @param elementDescription description of the element the entry is about
+     */
+    public void add(String contextKey, String elementDescription) {
+        if (enabled && index != null) {
+            submit(() -> index.add(contextKey, TextVectors.embed(elementDescription, dimensions)));
+        }
+    }
+
+    /**
+     * Stop returning a learning context, e.g. after its entry was deleted
+     * @param contextKey the entry's context key
+     */
+    public void remove(String contextKey) {
+        if (enabled && index != null) {
+            submit(() -> {
+                index.remove(contextKey);
+                compactIfSparse();
+            });
+        }
+    }
+
+    /**
+     * Find the context keys of the entries with the most similar element descriptions
+     * @param elementDescription the element description to match
+     * @param k maximum number of results
+     * @param minSimilarity minimum cosine similarity
+     * @return matches, most similar first
+     */
+    public List<HnswIndex.Result> search(String elementDescription, int k, double minSimilarity) {
+        HnswIndex current = index;
+        if (!enabled || current == null) {
+            return List.of();
+        }
+        return current.search(TextVectors.embed(elementDescription, dimensions), k, efSearch, minSimilarity);
+    }
+
+    /**
+     * The element description of an entry, which is stored only as part of its context text
+     * "&lt;element&gt; on screen '&lt;screen&gt;'"
+     * @param entry the learning entry
+     * @return the element description, or the whole context if it has another form
+     */
+    static String elementDescription(LearningEntry entry) {
+        String context = entry.getContext();
+        if (context == null) {
+            return "";
+        }
+        int screen = context.lastIndexOf(" on screen '");
+        return screen >= 0 ? context.substring(0, screen) : context;
+    }
+
+    /**
+     * Finish pending inserts and save the index
+     */
+    @PreDestroy
+    public void shutdown() {
+        indexer.shutdown();
+        try {
+            if (!indexer.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("Similarity index still building at shutdown, not saving it");
+                indexer.shutdownNow();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (index != null) {
+            save();
+        }
+    }
+
+    /**
+     * Rebuild and save the index once removed entries make up the configured share of it. Runs on
+     * the indexer thread, so no insert or removal is lost while the rebuilt index replaces it.
+     * @return true if the index was rebuilt
+     */
+    private boolean compactIfSparse() {
+        HnswIndex current = index;
+        int removed = current.removedCount();
+        if (removed == 0 || removed < compactRatio * current.size()) {
+            return false;
+        }
+        index = current.compacted();
+        logger.info("Compacted similarity index to {} learning entries, dropped {} removed ones",
+                current.size(), removed);
+        save();
+        return true;
+    }
+
+    private void submit(Runnable task) {
+        try {
+            indexer.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    logger.warn("Failed to update similarity index: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the entry is indexed on the next start
+        }
+    }
+
+    private HnswIndex readIndex() {
+        Path path = Paths.get(indexFile);
+        if (Files.exists(path)) {
+            try (InputStream input = new BufferedInputStream(Files.newInputStream(path))) {
+                HnswIndex loaded = HnswIndex.readFrom(input, dimensions, maxNeighbors, efConstruction);
+                logger.info("Loaded similarity index with {} learning contexts from {}", loaded.size(), path);
+                return loaded;
+            } catch (IOException e) {
+                logger.warn("Could not load similarity index from {}, rebuilding it: {}", path, e.getMessage());
+            }
+        }
+        return new HnswIndex(dimensions, maxNeighbors, efConstruction);
+    }
+
+    /**
+     * Write to a temporary file and move it into place, so a crash never leaves a partial index
+     */
+    private void save() {
+        Path path = Paths.get(indexFile);
+        try {
+            Path directory = path.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, "learning-index", ".tmp");
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+                index.writeTo(output);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Failed to save similarity index to {}: {}", path, e.getMessage());
+        }
+    }
+}
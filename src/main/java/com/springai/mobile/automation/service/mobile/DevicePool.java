@@ -0,0 +1,399 @@
+package com.springai.mobile.automation.service.mobile;
+
+import com.springai.mobile.automation.config.AppiumConfig;
+import io.appium.java_client.android.AndroidDriver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of Android devices that leases a dedicated Appium session per instruction.
+ *
+ * Devices are configured with {@code app.automation.devices} as a comma-separated list of
+ * {@code udid@appiumUrl} entries. When the list is empty the pool holds a single device built
+ * from {@code app.automation.appium.url} and {@code app.automation.device.name}.
+ * A device whose session cannot be created is quarantined for a while before it is leased again.
+ *
+ * With {@code app.automation.devices.warm.enabled} a released session is health-checked, reset to
+ * the configured app and kept on its device for the next lease instead of being quit, which skips
+ * the UiAutomator2 session bootstrap. Warm sessions are retired after an idle period, a maximum
+ * age or a maximum number of uses.
+ */
+@Component
+public class DevicePool {
+
+    private static final Logger logger = LoggerFactory.getLogger(DevicePool.class);
+
+    private final AppiumConfig appiumConfig;
+    private final MeterRegistry meterRegistry;
+
+    private final List<DeviceSlot> slots = new ArrayList<>();
+    private final Map<String, DeviceSlot> slotsById = new ConcurrentHashMap<>();
+    private final BlockingQueue<DeviceSlot> idleSlots = new LinkedBlockingQueue<>();
+    private final Queue<DeviceSlot> quarantinedSlots = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger leasedCount = new AtomicInteger();
+    private Timer waitTimer;
+    private Timer sessionStartupTimer;
+    private Counter sessionsCreated;
+    private Counter sessionsReused;
+
+    @Value("${app.automation.devices:}")
+    private String devices;
+
+    @Value("${app.automation.appium.url:http://localhost:4355}")
+    private String defaultAppiumUrl;
+
+    @Value("${app.automation.device.name:Android Device}")
+    private String defaultDeviceName;
+
+    @Value("${app.automation.devices.system-port-base:8200}")
+    private int systemPortBase;
+
+    @Value("${app.automation.devices.lease-timeout:300000}")
+    private long leaseTimeoutMs;
+
+    @Value("${app.automation.devices.quarantine:60000}")
+    private long quarantineMs;
+
+    @Value("${app.automation.devices.warm.enabled:false}")
+    private boolean warmSessionsEnabled;
+
+    @Value("${app.automation.devices.warm.max-idle:300000}")
+    private long maxIdleMs;
+
+    @Value("${app.automation.devices.warm.max-age:3600000}")
+    private long maxSessionAgeMs;
+
+    @Value("${app.automation.devices.warm.max-uses:50}")
+    private int maxUsesPerSession;
+
+    @Value("${app.automation.app.package:}")
+    private String appPackage;
+
+    @Autowired
+    public DevicePool(AppiumConfig appiumConfig, MeterRegistry meterRegistry) {
+        this.appiumConfig = appiumConfig;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Build the device slots from configuration and register pool metrics
+     */
+    @PostConstruct
+    public void init() {
+        if (devices == null || devices.isBlank()) {
+            addSlot(new DeviceSlot(defaultDeviceName, defaultDeviceName, null, defaultAppiumUrl, null));
+        } else {
+            int index = 0;
+            for (String entry : devices.split(",")) {
+                String trimmed = entry.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+
+                int separator = trimmed.indexOf('@');
+                String udid = separator > 0 ? trimmed.substring(0, separator) : trimmed;
+                String url = separator > 0 ? trimmed.substring(separator + 1) : defaultAppiumUrl;
+                addSlot(new DeviceSlot(udid, udid, udid, url, systemPortBase + index));
+                index++;
+            }
+        }
+
+        Gauge.builder("automation.device.pool.leased", leasedCount, AtomicInteger::get)
+                .description("Devices currently leased to an instruction")
+                .register(meterRegistry);
+        Gauge.builder("automation.device.pool.idle", idleSlots, BlockingQueue::size)
+                .description("Healthy devices waiting for work")
+                .register(meterRegistry);
+        Gauge.builder("automation.device.pool.healthy", this, DevicePool::getHealthyDeviceCount)
+                .description("Devices not in quarantine")
+                .register(meterRegistry);
+        waitTimer = Timer.builder("automation.device.pool.wait")
+                .description("Time spent waiting to lease a device")
+                .register(meterRegistry);
+        sessionStartupTimer = Timer.builder("automation.device.session.startup")
+                .description("Time spent creating new Appium sessions")
+                .register(meterRegistry);
+        sessionsCreated = Counter.builder("automation.device.session.created")
+                .description("Appium sessions created")
+                .register(meterRegistry);
+        sessionsReused = Counter.builder("automation.device.session.reused")
+                .description("Leases served by an existing warm session")
+                .register(meterRegistry);
+
+        logger.info("Device pool initialized with {} device(s)", slots.size());
+    }
+
+    private void addSlot(DeviceSlot slot) {
+        slots.add(slot);
+        slotsById.put(slot.id, slot);
+        idleSlots.offer(slot);
+    }
+
+    /**
+     * Lease a device with a fresh or warm Appium session, waiting up to the configured lease timeout
+     * @return the leased device session
+     * @throws InterruptedException if interrupted while waiting for a device
+     * @throws IllegalStateException if no healthy device becomes available in time
+     */
+    public DeviceSession acquire() throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(leaseTimeoutMs);
+
+        while (true) {
+            readmitRecoveredSlots();
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw new IllegalStateException("No healthy device available within " + leaseTimeoutMs + " ms");
+            }
+
+            // Wake up periodically so quarantined devices can be readmitted
+            DeviceSlot slot = idleSlots.poll(Math.min(remaining, TimeUnit.SECONDS.toNanos(1)), TimeUnit.NANOSECONDS);
+            if (slot == null) {
+                continue;
+            }
+
+            try {
+                AndroidDriver driver = slot.warmDriver;
+                if (driver != null && isReusable(slot, System.currentTimeMillis())) {
+                    sessionsReused.increment();
+                } else {
+                    retireWarmSession(slot);
+                    driver = createSession(slot);
+                }
+
+                slot.idleSince = System.currentTimeMillis();
+                leasedCount.incrementAndGet();
+                waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                logger.debug("Leased device {}", slot.id);
+                return new DeviceSession(slot.id, driver, Instant.now());
+            } catch (Exception e) {
+                logger.warn("Failed to open session on device {}, quarantining for {} ms: {}",
+                        slot.id, quarantineMs, e.getMessage());
+                quarantine(slot);
+            }
+        }
+    }
+
+    private AndroidDriver createSession(DeviceSlot slot) throws Exception {
+        long start = System.nanoTime();
+        AndroidDriver driver = appiumConfig.createAndroidDriver(
+                slot.appiumUrl, slot.deviceName, slot.udid, slot.systemPort);
+        sessionStartupTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        sessionsCreated.increment();
+
+        slot.sessionCreatedAt = System.currentTimeMillis();
+        slot.idleSince = slot.sessionCreatedAt;
+        slot.sessionUses = 0;
+        return driver;
+    }
+
+    /**
+     * Whether a session may serve another lease, counting neither idle time nor the lease it just
+     * finished. Used on release, where the time since the session was last idle includes the run.
+     */
+    private boolean withinLimits(DeviceSlot slot, long now) {
+        return slot.sessionUses < maxUsesPerSession
+                && now - slot.sessionCreatedAt < maxSessionAgeMs;
+    }
+
+    /**
+     * Whether an idle warm session may be leased
+     */
+    private boolean isReusable(DeviceSlot slot, long now) {
+        return withinLimits(slot, now) && now - slot.idleSince < maxIdleMs;
+    }
+
+    /**
+     * Return the device to the pool. In warm mode the session is reset and kept for the next
+     * lease when it is still healthy and within its limits; otherwise it is quit.
+     * @param session the leased session
+     */
+    public void release(DeviceSession session) {
+        if (session == null) {
+            return;
+        }
+
+        DeviceSlot slot = slotsById.get(session.getDeviceId());
+        AndroidDriver driver = session.getDriver();
+        boolean keepWarm = false;
+
+        if (warmSessionsEnabled && slot != null) {
+            slot.sessionUses++;
+            keepWarm = withinLimits(slot, System.currentTimeMillis()) && resetSession(slot, driver);
+        }
+
+        if (keepWarm) {
+            slot.warmDriver = driver;
+            slot.idleSince = System.currentTimeMillis();
+        } else {
+            quitQuietly(session.getDeviceId(), driver);
+            if (slot != null) {
+                slot.warmDriver = null;
+            }
+        }
+
+        leasedCount.decrementAndGet();
+        if (slot != null) {
+            idleSlots.offer(slot);
+        }
+        logger.debug("Released device {}", session.getDeviceId());
+    }
+
+    /**
+     * Health-check a session and bring the app back to a known state
+     * @param slot the device slot
+     * @param driver the session driver
+     * @return true if the session can be reused
+     */
+    private boolean resetSession(DeviceSlot slot, AndroidDriver driver) {
+        try {
+            if (driver.getSessionId() == null) {
+                return false;
+            }
+
+            if (appPackage != null && !appPackage.isEmpty()) {
+                driver.terminateApp(appPackage);
+                driver.activateApp(appPackage);
+            } else {
+                // No app to reset, just make sure the session still answers
+                driver.getCurrentPackage();
+            }
+            return true;
+        } catch (Exception e) {
+            logger.info("Warm session on device {} failed health check, discarding: {}", slot.id, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Quit warm sessions that have been idle, alive or used for too long
+     */
+    @Scheduled(fixedDelayString = "${app.automation.devices.warm.eviction-interval:30000}")
+    public void evictExpiredSessions() {
+        long now = System.currentTimeMillis();
+        for (DeviceSlot slot : slots) {
+            // Taking the slot out of the idle queue guarantees no one leases it meanwhile
+            if (slot.warmDriver != null && !isReusable(slot, now) && idleSlots.remove(slot)) {
+                logger.debug("Evicting warm session on device {}", slot.id);
+                retireWarmSession(slot);
+                idleSlots.offer(slot);
+            }
+        }
+    }
+
+    /**
+     * Quit all warm sessions on shutdown
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (DeviceSlot slot : slots) {
+            retireWarmSession(slot);
+        }
+    }
+
+    private void retireWarmSession(DeviceSlot slot) {
+        AndroidDriver driver = slot.warmDriver;
+        slot.warmDriver = null;
+        if (driver != null) {
+            quitQuietly(slot.id, driver);
+        }
+    }
+
+    private void quitQuietly(String deviceId, AndroidDriver driver) {
+        try {
+            driver.quit();
+        } catch (Exception e) {
+            logger.warn("Error quitting session on device {}: {}", deviceId, e.getMessage());
+        }
+    }
+
+    private void quarantine(DeviceSlot slot) {
+        slot.quarantinedUntil = System.currentTimeMillis() + quarantineMs;
+        quarantinedSlots.offer(slot);
+    }
+
+    private void readmitRecoveredSlots() {
+        long now = System.currentTimeMillis();
+        for (DeviceSlot slot : quarantinedSlots) {
+            if (slot.quarantinedUntil <= now && quarantinedSlots.remove(slot)) {
+                idleSlots.offer(slot);
+            }
+        }
+    }
+
+    /**
+     * @return total number of configured devices
+     */
+    public int getSize() {
+        return slots.size();
+    }
+
+    /**
+     * @return number of devices that are not quarantined
+     */
+    public int getHealthyDeviceCount() {
+        return slots.size() - quarantinedSlots.size();
+    }
+
+    /**
+     * @return number of devices currently leased
+     */
+    public int getLeasedCount() {
+        return leasedCount.get();
+    }
+
+    /**
+     * @return number of devices idle in the pool
+     */
+    public int getIdleCount() {
+        return idleSlots.size();
+    }
+
+    /**
+     * A configured device, its health state and its warm session, if any
+     */
+    private static class DeviceSlot {
+        private final String id;
+        private final String deviceName;
+        private final String udid;
+        private final String appiumUrl;
+        private final Integer systemPort;
+        private volatile long quarantinedUntil;
+        private volatile AndroidDriver warmDriver;
+        private volatile long sessionCreatedAt;
+        private volatile long idleSince;
+        private volatile int sessionUses;
+
+        DeviceSlot(String id, String deviceName, String udid, String appiumUrl, Integer systemPort) {
+            this.id = id;
+            this.deviceName = deviceName;
+            this.udid = udid;
+            this.appiumUrl = appiumUrl;
+            this.systemPort = systemPort;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.springai.mobile.automation.service.mobile;
+
+import io.appium.java_client.android.AndroidDriver;
+
+import java.time.Instant;
+
+/**
+ * A device leased from the {@link DevicePool} together with its Appium session.
+ * All actions of one instruction run against the same session.
+ */
+public class DeviceSession {
+
+    private final String deviceId;
+    private final AndroidDriver driver;
+    private final Instant leasedAt;
+
+    DeviceSession(String deviceId, AndroidDriver driver, Instant leasedAt) {
+        this.deviceId = deviceId;
+        this.driver = driver;
+        this.leasedAt = leasedAt;
+    }
+
+    /**
+     * @return identifier of the pooled device (its UDID or configured name)
+     */
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    /**
+     * @return the Appium driver bound to this lease
+     */
+    public AndroidDriver getDriver() {
+        return driver;
+    }
+
+    /**
+     * @return when the device was leased
+     */
+    public Instant getLeasedAt() {
+        return leasedAt;
+    }
+}
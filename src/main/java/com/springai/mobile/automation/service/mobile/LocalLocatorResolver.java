@@ -0,0 +1,106 @@
+package com.springai.mobile.automation.service.mobile;
+
+import com.springai.mobile.automation.model.TestAction;
+import com.springai.mobile.automation.util.PageSourceIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves element descriptions against the device's view hierarchy without calling the LLM.
+ *
+ * The page source is indexed once per screen and the index is kept per device until the
+ * hierarchy changes. A match is only used when its score reaches
+ * {@code app.automation.locator.local.threshold}; otherwise the caller falls back to
+ * screenshot analysis.
+ */
+@Component
+public class LocalLocatorResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalLocatorResolver.class);
+
+    private final Map<String, IndexedScreen> screensByDevice = new ConcurrentHashMap<>();
+    private final Counter resolved;
+    private final Counter fallbacks;
+    private final Timer lookupTimer;
+
+    @Value("${app.automation.locator.local.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.automation.locator.local.threshold:0.75}")
+    private double threshold;
+
+    @Autowired
+    public LocalLocatorResolver(MeterRegistry meterRegistry) {
+        this.resolved = Counter.builder("automation.locator.local.resolved")
+                .description("Element descriptions resolved from the page source")
+                .register(meterRegistry);
+        this.fallbacks = Counter.builder("automation.locator.local.fallbacks")
+                .description("Element descriptions handed to screenshot analysis")
+                .register(meterRegistry);
+        this.lookupTimer = Timer.builder("automation.locator.local.lookup")
+                .description("Time to fetch, index and search the page source")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Try to resolve the action's element from the current page source
+     * @param session the device session
+     * @param testAction the action whose element description should be resolved
+     * @return the match, if one scores above the threshold
+     */
+    public Optional<PageSourceIndex.Match> resolve(DeviceSession session, TestAction testAction) {
+        if (!enabled || testAction.getElementDescription() == null || testAction.getElementDescription().isBlank()) {
+            return Optional.empty();
+        }
+
+        Timer.Sample sample = Timer.start();
+        try {
+            PageSourceIndex index = indexFor(session);
+            Optional<PageSourceIndex.Match> match = index.bestMatch(testAction.getElementDescription())
+                    .filter(m -> m.score() >= threshold);
+
+            if (match.isPresent()) {
+                resolved.increment();
+                logger.debug("Resolved '{}' locally to {} (score {})", testAction.getElementDescription(),
+                        match.get().locator(), match.get().score());
+            } else {
+                fallbacks.increment();
+            }
+            return match;
+        } catch (Exception e) {
+            logger.warn("Local locator resolution failed for '{}': {}", testAction.getElementDescription(), e.getMessage());
+            fallbacks.increment();
+            return Optional.empty();
+        } finally {
+            sample.stop(lookupTimer);
+        }
+    }
+
+    /**
+     * Return the index for the device's current screen, reparsing only when the hierarchy changed
+     */
+    private PageSourceIndex indexFor(DeviceSession session) {
+        String pageSource = session.getDriver().getPageSource();
+        IndexedScreen current = screensByDevice.get(session.getDeviceId());
+        if (current != null && current.pageSource.equals(pageSource)) {
+            return current.index;
+        }
+
+        PageSourceIndex index = PageSourceIndex.parse(pageSource);
+        screensByDevice.put(session.getDeviceId(), new IndexedScreen(pageSource, index));
+        return index;
+    }
+
+    private record IndexedScreen(String pageSource, PageSourceIndex index) {
+    }
+}
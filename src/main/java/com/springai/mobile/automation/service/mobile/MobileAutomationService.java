@@ -2,7 +2,10 @@ package com.springai.mobile.automation.service.mobile;
 
 import com.springai.mobile.automation.model.TestAction;
 import com.springai.mobile.automation.service.ai.ScreenAnalyzerService;
+import com.springai.mobile.automation.service.execution.RunEvent;
+import com.springai.mobile.automation.service.execution.RunEvents;
 import com.springai.mobile.automation.service.learning.LearningService;
+import com.springai.mobile.automation.util.PageSourceIndex;
 import io.appium.java_client.android.AndroidDriver;
 import org.apache.commons.io.FileUtils;
 import org.openqa.selenium.*;
@@ -12,7 +15,6 @@ import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
@@ -20,7 +22,9 @@ import java.io.IOException;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -30,10 +34,10 @@ import java.util.Optional;
 @Service
 public class MobileAutomationService {
 
-    private final ApplicationContext context;
     private final ScreenAnalyzerService screenAnalyzerService;
     private final LearningService learningService;
-    private AndroidDriver driver;
+    private final LocalLocatorResolver localLocatorResolver;
+    private final RunEvents runEvents;
     
     @Value("${app.automation.execution.timeout:30000}")
     private long executionTimeoutMs;
@@ -42,136 +46,244 @@ public class MobileAutomationService {
     private String screenshotDirectory;
 
     @Autowired
-    public MobileAutomationService(ApplicationContext context, 
-            ScreenAnalyzerService screenAnalyzerService,
-            LearningService learningService) {
-        this.context = context;
+    public MobileAutomationService(ScreenAnalyzerService screenAnalyzerService,
+            LearningService learningService, LocalLocatorResolver localLocatorResolver, RunEvents runEvents) {
         this.screenAnalyzerService = screenAnalyzerService;
         this.learningService = learningService;
+        this.localLocatorResolver = localLocatorResolver;
+        this.runEvents = runEvents;
     }
 
     /**
-     * Initialize the AndroidDriver
-     * @throws Exception if driver initialization fails
+     * Execute a test action on a leased device session
+     * @param session the device session to run the action against
+     * @param testAction the test action to execute
+     * @return true if execution was successful
      */
-    public void initializeDriver() throws Exception {
-        if (driver == null || driver.getSessionId() == null) {
-            driver = context.getBean(AndroidDriver.class);
-        }
+    public boolean executeAction(DeviceSession session, TestAction testAction) {
+        return executeAction(session, testAction, List.of());
     }
-    
+
     /**
-     * Execute a test action
+     * Execute a test action on a leased device session. If the screenshot has to be analyzed, the
+     * elements of the consecutive upcoming actions that also need one are resolved in the same call.
+     * @param session the device session to run the action against
      * @param testAction the test action to execute
+     * @param upcoming actions planned after this one, in order
      * @return true if execution was successful
      */
-    public boolean executeAction(TestAction testAction) {
+    public boolean executeAction(DeviceSession session, TestAction testAction, List<TestAction> upcoming) {
+        return execute(session, testAction, upcoming, currentScreen(session.getDriver()));
+    }
+    
+    /**
+     * Execute a step of a compiled replay plan with its recorded locator. If the recorded locator
+     * no longer finds its element, it is assumed stale and the element is resolved again from the
+     * view hierarchy or the screenshot, as in a normal run. The stale locator's miss is not learned
+     * from, only the outcome of the second attempt. Any other failure ends the step.
+     * @param session the device session to run the action against
+     * @param testAction the test action with its recorded locator
+     * @param upcoming actions planned after this one, in order
+     * @return true if execution was successful
+     */
+    public boolean replayAction(DeviceSession session, TestAction testAction, List<TestAction> upcoming) {
+        String screen = currentScreen(session.getDriver());
+        AnalyzedElement analyzed = null;
         try {
-            // Take screenshot before action
-            File screenshot = takeScreenshot("before_action_" + testAction.getId() + ".png");
-            
-            // Analyze screenshot to find element if needed
-            if (needsElementAnalysis(testAction)) {
-                Map<String, Object> elementInfo = screenAnalyzerService.analyzeScreenshot(screenshot, testAction);
-                
-                // Extract element locator from AI analysis
-                String screenDescription = (String) elementInfo.get("screenDescription");
-                Map<String, Object> matchedElement = (Map<String, Object>) elementInfo.get("matchedElement");
-                Map<String, String> suggestedLocators = (Map<String, String>) matchedElement.get("suggestedLocators");
-                
-                // Check if we have learned anything about this element before
-                Optional<String> learnedCorrection = learningService.getPastCorrection(testAction, screenDescription);
-                if (learnedCorrection.isPresent()) {
-                    // Apply correction from past learning
-                    testAction.setElementLocator(learnedCorrection.get());
-                } else {
-                    // Use AI-suggested locator
-                    String bestLocator = suggestedLocators.get("xpath");
-                    testAction.setElementLocator(bestLocator);
-                }
-                
-                // Store element identifiers for learning
-                testAction.setElementDescription(matchedElement.get("description").toString());
-            }
-            
-            // Execute the action based on type
-            switch (testAction.getActionType()) {
-                case TAP:
-                    tap(testAction);
-                    break;
-                case LONG_PRESS:
-                    longPress(testAction);
-                    break;
-                case TYPE:
-                    typeText(testAction);
-                    break;
-                case CLEAR:
-                    clearText(testAction);
-                    break;
-                case SWIPE:
-                    swipe(testAction);
-                    break;
-                case SCROLL:
-                    scroll(testAction);
-                    break;
-                case BACK:
-                    driver.navigate().back();
-                    break;
-                case VERIFY_TEXT:
-                    verifyText(testAction);
-                    break;
-                case VERIFY_ELEMENT:
-                    verifyElement(testAction);
-                    break;
-                case WAIT:
-                    wait(testAction);
-                    break;
-                case LAUNCH_APP:
-                    driver.activateApp(testAction.getValue());
-                    break;
-                case CLOSE_APP:
-                    driver.terminateApp(testAction.getValue());
-                    break;
-                case TAKE_SCREENSHOT:
-                    takeScreenshot("manual_" + testAction.getValue() + ".png");
-                    break;
-                default:
-                    throw new UnsupportedOperationException("Action type not implemented: " + testAction.getActionType());
+            analyzed = resolveElement(session, testAction, upcoming, screen);
+            perform(session, testAction);
+        } catch (NoSuchElementException e) {
+            if (!targetsElement(testAction) || analyzed != null) {
+                recordFailure(session.getDriver(), testAction, e, screen, analyzed);
+                return false;
             }
+            testAction.setElementLocator(null);
+            testAction.setErrorMessage(null);
+            return execute(session, testAction, upcoming, screen);
+        } catch (Exception e) {
+            recordFailure(session.getDriver(), testAction, e, screen, analyzed);
+            return false;
+        }
+        recordSuccess(testAction, screen);
+        return true;
+    }
+    
+    /**
+     * Resolve and perform an action, then learn from its outcome
+     * @param screen the app package and activity the action starts on, or null if unknown
+     */
+    private boolean execute(DeviceSession session, TestAction testAction, List<TestAction> upcoming, String screen) {
+        AnalyzedElement analyzed = null;
+        try {
+            analyzed = resolveElement(session, testAction, upcoming, screen);
+            perform(session, testAction);
+        } catch (Exception e) {
+            recordFailure(session.getDriver(), testAction, e, screen, analyzed);
+            return false;
+        }
+        recordSuccess(testAction, screen);
+        return true;
+    }
+    
+    /**
+     * Resolve the element of an action from the view hierarchy or, failing that, the screenshot,
+     * unless the action already has a locator or targets no element
+     * @param session the device session to run the action against
+     * @param testAction the test action to resolve
+     * @param upcoming actions planned after this one, in order
+     * @param screen the app package and activity the action starts on, or null if unknown
+     * @return where the locator came from if screen analysis suggested it, otherwise null
+     * @throws Exception if the screenshot or its analysis fails
+     */
+    private AnalyzedElement resolveElement(DeviceSession session, TestAction testAction, List<TestAction> upcoming,
+            String screen) throws Exception {
+        AndroidDriver driver = session.getDriver();
+        // Take screenshot before action
+        File screenshot = takeScreenshot(driver, screenshotName("before_action", testAction));
+        AnalyzedElement analyzed = null;
+        
+        // Resolve the element from the view hierarchy first, analyze the screenshot only if that fails
+        Optional<PageSourceIndex.Match> localMatch = needsElementAnalysis(testAction)
+                ? localLocatorResolver.resolve(session, testAction)
+                : Optional.empty();
+        if (localMatch.isPresent()) {
+            testAction.setElementLocator(localMatch.get().locator());
+        } else if (needsElementAnalysis(testAction)) {
+            runEvents.publish(RunEvent.step(RunEvent.Type.ANALYZING, testAction, null));
+            String description = testAction.getElementDescription();
+            Map<String, Object> elementInfo = screenAnalyzerService.analyzeScreenshot(screenshot, testAction,
+                    sameScreenActions(upcoming), screen);
             
-            // Record successful execution
-            testAction.setSuccessful(true);
-            testAction.setExecutedAt(LocalDateTime.now());
-            
-            // Take screenshot after action
-            File afterScreenshot = takeScreenshot("after_action_" + testAction.getId() + ".png");
-            testAction.setScreenshot(afterScreenshot.getName());
-            
-            // Learn from successful action
-            learningService.learnFromAction(testAction, "Current Screen", 
-                    testAction.getElementLocator(), null, null);
+            // Extract element locator from AI analysis
+            Map<String, Object> matchedElement = (Map<String, Object>) elementInfo.get("matchedElement");
+            Map<String, String> suggestedLocators = (Map<String, String>) matchedElement.get("suggestedLocators");
             
-            return true;
-        } catch (Exception e) {
-            // Record failure
-            testAction.setSuccessful(false);
-            testAction.setErrorMessage(e.getMessage());
-            testAction.setExecutedAt(LocalDateTime.now());
+            // Store element identifiers for learning; lookups and writes use the same description and screen
+            testAction.setElementDescription(matchedElement.get("description").toString());
             
-            // Take screenshot of failure
+            // Check if we have learned anything about this element before
+            Optional<String> learnedCorrection = learningService.getPastCorrection(testAction, screen);
+            if (learnedCorrection.isPresent()) {
+                // Apply correction from past learning
+                testAction.setElementLocator(learnedCorrection.get());
+            } else {
+                // Use AI-suggested locator
+                String bestLocator = suggestedLocators.get("xpath");
+                testAction.setElementLocator(bestLocator);
+                analyzed = new AnalyzedElement(screenshot, description);
+            }
+        }
+        return analyzed;
+    }
+    
+    /**
+     * Perform an action with its resolved locator
+     * @param session the device session to run the action against
+     * @param testAction the test action to execute
+     * @throws NoSuchElementException if the action's locator finds no element
+     * @throws Exception if the action fails
+     */
+    private void perform(DeviceSession session, TestAction testAction) throws Exception {
+        AndroidDriver driver = session.getDriver();
+        
+        // Execute the action based on type
+        switch (testAction.getActionType()) {
+            case TAP:
+                tap(driver, testAction);
+                break;
+            case LONG_PRESS:
+                longPress(driver, testAction);
+                break;
+            case TYPE:
+                typeText(driver, testAction);
+                break;
+            case CLEAR:
+                clearText(driver, testAction);
+                break;
+            case SWIPE:
+                swipe(driver, testAction);
+                break;
+            case SCROLL:
+                scroll(driver, testAction);
+                break;
+            case BACK:
+                driver.navigate().back();
+                break;
+            case VERIFY_TEXT:
+                verifyText(driver, testAction);
+                break;
+            case VERIFY_ELEMENT:
+                verifyElement(driver, testAction);
+                break;
+            case WAIT:
+                wait(testAction);
+                break;
+            case LAUNCH_APP:
+                driver.activateApp(testAction.getValue());
+                break;
+            case CLOSE_APP:
+                driver.terminateApp(testAction.getValue());
+                break;
+            case TAKE_SCREENSHOT:
+                takeScreenshot(driver, "manual_" + testAction.getValue() + ".png");
+                break;
+            default:
+                throw new UnsupportedOperationException("Action type not implemented: " + testAction.getActionType());
+        }
+        
+        // Record successful execution
+        testAction.setSuccessful(true);
+        testAction.setExecutedAt(LocalDateTime.now());
+        
+        // Take screenshot after action
+        File afterScreenshot = takeScreenshot(driver, screenshotName("after_action", testAction));
+        testAction.setScreenshot(afterScreenshot.getName());
+    }
+    
+    /**
+     * Learn from an action that ran successfully
+     * @param testAction the executed action
+     * @param screen the app package and activity the action started on, or null if unknown
+     */
+    private void recordSuccess(TestAction testAction, String screen) {
+        learningService.learnFromAction(testAction, screen, 
+                testAction.getElementLocator(), null, null);
+    }
+    
+    /**
+     * Record why an action failed, with a screenshot, and learn from the failure. If the locator
+     * that found nothing was suggested by screen analysis, its cached analysis is dropped.
+     * @param driver the driver of the current session
+     * @param testAction the failed action
+     * @param e the failure
+     * @param screen the app package and activity the action started on, or null if unknown
+     * @param analyzed where the locator came from if screen analysis suggested it, otherwise null
+     */
+    private void recordFailure(AndroidDriver driver, TestAction testAction, Exception e, String screen,
+            AnalyzedElement analyzed) {
+        testAction.setSuccessful(false);
+        testAction.setErrorMessage(e.getMessage());
+        testAction.setExecutedAt(LocalDateTime.now());
+        
+        // Take screenshot of failure
+        try {
+            File failureScreenshot = takeScreenshot(driver, screenshotName("failure", testAction));
+            testAction.setScreenshot(failureScreenshot.getName());
+        } catch (Exception screenshotError) {
+            // Ignore screenshot errors
+        }
+        
+        if (analyzed != null && e instanceof NoSuchElementException) {
             try {
-                File failureScreenshot = takeScreenshot("failure_" + testAction.getId() + ".png");
-                testAction.setScreenshot(failureScreenshot.getName());
-            } catch (Exception screenshotError) {
-                // Ignore screenshot errors
+                screenAnalyzerService.invalidate(analyzed.screenshot(), screen, analyzed.description());
+            } catch (IOException invalidateError) {
+                // The entry expires with its time to live
             }
-            
-            // Learn from failure
-            learningService.learnFromAction(testAction, "Current Screen", 
-                    testAction.getElementLocator(), e.getMessage(), null);
-            
-            return false;
         }
+        
+        // Learn from failure
+        learningService.learnFromAction(testAction, screen, 
+                testAction.getElementLocator(), e.getMessage(), null);
     }
     
     /**
@@ -180,23 +292,73 @@ public class MobileAutomationService {
      * @return true if element analysis is needed
      */
     private boolean needsElementAnalysis(TestAction testAction) {
-        // Actions that require element analysis
-        return testAction.getElementLocator() == null && 
-               (testAction.getActionType() == TestAction.ActionType.TAP ||
-                testAction.getActionType() == TestAction.ActionType.LONG_PRESS ||
-                testAction.getActionType() == TestAction.ActionType.TYPE ||
-                testAction.getActionType() == TestAction.ActionType.CLEAR ||
-                testAction.getActionType() == TestAction.ActionType.VERIFY_TEXT ||
-                testAction.getActionType() == TestAction.ActionType.VERIFY_ELEMENT);
+        return testAction.getElementLocator() == null && targetsElement(testAction);
+    }
+    
+    /**
+     * Check if the action operates on a located element
+     * @param testAction the test action
+     * @return true if the action needs an element locator
+     */
+    private boolean targetsElement(TestAction testAction) {
+        return testAction.getActionType() == TestAction.ActionType.TAP ||
+               testAction.getActionType() == TestAction.ActionType.LONG_PRESS ||
+               testAction.getActionType() == TestAction.ActionType.TYPE ||
+               testAction.getActionType() == TestAction.ActionType.CLEAR ||
+               testAction.getActionType() == TestAction.ActionType.VERIFY_TEXT ||
+               testAction.getActionType() == TestAction.ActionType.VERIFY_ELEMENT;
+    }
+    
+    /**
+     * Select the upcoming actions likely to run on the current screen: the leading run of actions
+     * that locate an element. Navigation, waits and app switches end the run.
+     * @param upcoming actions planned after the current one
+     * @return the actions whose elements can be resolved from the current screenshot
+     */
+    private List<TestAction> sameScreenActions(List<TestAction> upcoming) {
+        List<TestAction> sameScreen = new ArrayList<>();
+        for (TestAction next : upcoming) {
+            if (!needsElementAnalysis(next)) {
+                break;
+            }
+            sameScreen.add(next);
+        }
+        return sameScreen;
+    }
+    
+    /**
+     * The app package and activity in the foreground, which keys cached screen analyses and learning entries
+     * @param driver the driver of the current session
+     * @return package/activity, or null if the device does not report them
+     */
+    private static String currentScreen(AndroidDriver driver) {
+        try {
+            return driver.getCurrentPackage() + "/" + driver.currentActivity();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Screenshot file name for an action. Actions are written after they run, so the name is built
+     * from the instruction, step and time rather than the action id.
+     * @param prefix what the screenshot shows
+     * @param testAction the test action
+     * @return the file name
+     */
+    private static String screenshotName(String prefix, TestAction testAction) {
+        Long instructionId = testAction.getInstruction() != null ? testAction.getInstruction().getId() : null;
+        return prefix + "_" + instructionId + "_" + testAction.getSequence() + "_" + System.currentTimeMillis() + ".png";
     }
     
     /**
      * Take a screenshot
+     * @param driver the driver of the current session
      * @param filename the name of the screenshot file
      * @return the screenshot file
      * @throws IOException if screenshot capture fails
      */
-    private File takeScreenshot(String filename) throws IOException {
+    private File takeScreenshot(AndroidDriver driver, String filename) throws IOException {
         File screenshot = ((TakesScreenshot) driver).getScreenshotAs(OutputType.FILE);
         File targetFile = new File(screenshotDirectory, filename);
         FileUtils.copyFile(screenshot, targetFile);
@@ -205,29 +367,37 @@ public class MobileAutomationService {
     
     /**
      * Find an element with explicit wait
+     * @param driver the driver of the current session
      * @param locator the element locator
      * @return the WebElement found
+     * @throws NoSuchElementException if no element matches within the execution timeout
      */
-    private WebElement findElement(String locator) {
+    private WebElement findElement(AndroidDriver driver, String locator) {
         WebDriverWait wait = new WebDriverWait(driver, Duration.ofMillis(executionTimeoutMs));
-        return wait.until(ExpectedConditions.presenceOfElementLocated(By.xpath(locator)));
+        try {
+            return wait.until(ExpectedConditions.presenceOfElementLocated(By.xpath(locator)));
+        } catch (TimeoutException e) {
+            throw new NoSuchElementException("Element not found: " + locator, e);
+        }
     }
     
     /**
      * Tap on an element
+     * @param driver the driver of the current session
      * @param action the test action containing element info
      */
-    private void tap(TestAction action) {
-        WebElement element = findElement(action.getElementLocator());
+    private void tap(AndroidDriver driver, TestAction action) {
+        WebElement element = findElement(driver, action.getElementLocator());
         element.click();
     }
     
     /**
      * Long press on an element
+     * @param driver the driver of the current session
      * @param action the test action containing element info
      */
-    private void longPress(TestAction action) {
-        WebElement element = findElement(action.getElementLocator());
+    private void longPress(AndroidDriver driver, TestAction action) {
+        WebElement element = findElement(driver, action.getElementLocator());
         
         Point location = element.getLocation();
         Dimension size = element.getSize();
@@ -252,27 +422,30 @@ public class MobileAutomationService {
     
     /**
      * Type text into an element
+     * @param driver the driver of the current session
      * @param action the test action containing element and text info
      */
-    private void typeText(TestAction action) {
-        WebElement element = findElement(action.getElementLocator());
+    private void typeText(AndroidDriver driver, TestAction action) {
+        WebElement element = findElement(driver, action.getElementLocator());
         element.sendKeys(action.getValue());
     }
     
     /**
      * Clear text from an element
+     * @param driver the driver of the current session
      * @param action the test action containing element info
      */
-    private void clearText(TestAction action) {
-        WebElement element = findElement(action.getElementLocator());
+    private void clearText(AndroidDriver driver, TestAction action) {
+        WebElement element = findElement(driver, action.getElementLocator());
         element.clear();
     }
     
     /**
      * Swipe on the screen
+     * @param driver the driver of the current session
      * @param action the test action containing swipe direction
      */
-    private void swipe(TestAction action) {
+    private void swipe(AndroidDriver driver, TestAction action) {
         Dimension size = driver.manage().window().getSize();
         int startX = size.width / 2;
         int startY = size.height / 2;
@@ -309,9 +482,10 @@ public class MobileAutomationService {
     
     /**
      * Scroll on the screen
+     * @param driver the driver of the current session
      * @param action the test action containing scroll direction
      */
-    private void scroll(TestAction action) {
+    private void scroll(AndroidDriver driver, TestAction action) {
         // Scroll is similar to swipe but slower
         Dimension size = driver.manage().window().getSize();
         int startX = size.width / 2;
@@ -349,21 +523,23 @@ public class MobileAutomationService {
     
     /**
      * Verify that specific text is present
+     * @param driver the driver of the current session
      * @param action the test action containing text to verify
      * @throws AssertionError if verification fails
      */
-    private void verifyText(TestAction action) {
+    private void verifyText(AndroidDriver driver, TestAction action) {
         WebDriverWait wait = new WebDriverWait(driver, Duration.ofMillis(executionTimeoutMs));
         wait.until(ExpectedConditions.presenceOfElementLocated(By.xpath("//*[contains(@text,'" + action.getValue() + "')]")));
     }
     
     /**
      * Verify that an element is present
+     * @param driver the driver of the current session
      * @param action the test action containing element info
      * @throws AssertionError if verification fails
      */
-    private void verifyElement(TestAction action) {
-        findElement(action.getElementLocator());
+    private void verifyElement(AndroidDriver driver, TestAction action) {
+        findElement(driver, action.getElementLocator());
     }
     
     /**
@@ -377,12 +553,8 @@ public class MobileAutomationService {
     }
     
     /**
-     * Cleanup resources when done
+     * The screenshot and element description a locator was suggested for by screen analysis
      */
-    public void cleanup() {
-        if (driver != null) {
-            driver.quit();
-            driver = null;
-        }
+    private record AnalyzedElement(File screenshot, String description) {
     }
-} 
\ No newline at end of file
+}
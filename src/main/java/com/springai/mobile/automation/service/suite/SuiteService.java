@@ -0,0 +1,296 @@
+package com.springai.mobile.automation.service.suite;
+
+import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.model.InstructionSummary;
+import com.springai.mobile.automation.model.ReplayPlan;
+import com.springai.mobile.automation.model.Suite;
+import com.springai.mobile.automation.model.SuiteReport;
+import com.springai.mobile.automation.repository.InstructionRepository;
+import com.springai.mobile.automation.repository.SuiteRepository;
+import com.springai.mobile.automation.service.TestExecutionService;
+import com.springai.mobile.automation.service.execution.ExecutionEngine;
+import com.springai.mobile.automation.service.execution.ReplayService;
+import com.springai.mobile.automation.service.worker.InstructionLeases;
+import com.springai.mobile.automation.util.LptScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Submits and runs suites: named collections of instructions run together across the device pool.
+ *
+ * A suite is split into one shard per free execution slot. Instructions are assigned longest
+ * first to the shard with the least work, using the average duration of past runs of the same
+ * instruction text ({@code app.automation.suites.default-duration} when it never ran), so all
+ * shards finish at about the same time. Each shard runs its instructions one after another and
+ * adds each result to the suite's counts as it finishes. Instructions compiled into a replay plan
+ * are replayed from the newest plan instead of being planned and analyzed again.
+ *
+ * Suite instructions are run by the shards of the node that submitted the suite; the DB-backed
+ * worker leaves them alone. A suite whose node stopped before it finished is resumed by any node:
+ * once none of its instructions has run for {@code app.automation.suites.stale-after}, its counts
+ * are recounted from the instruction rows and its pending instructions are sharded again.
+ */
+@Service
+public class SuiteService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SuiteService.class);
+
+    private final SuiteRepository suiteRepository;
+    private final InstructionRepository instructionRepository;
+    private final TestExecutionService testExecutionService;
+    private final ExecutionEngine executionEngine;
+    private final ReplayService replayService;
+    private final InstructionLeases instructionLeases;
+
+    @Value("${app.automation.suites.default-duration:60000}")
+    private long defaultDurationMs;
+
+    @Value("${app.automation.suites.use-replay-plans:true}")
+    private boolean useReplayPlans;
+
+    @Value("${app.automation.suites.stale-after:600000}")
+    private long staleAfterMs;
+
+    @Autowired
+    public SuiteService(SuiteRepository suiteRepository, InstructionRepository instructionRepository,
+            TestExecutionService testExecutionService, ExecutionEngine executionEngine,
+            ReplayService replayService, InstructionLeases instructionLeases) {
+        this.suiteRepository = suiteRepository;
+        this.instructionRepository = instructionRepository;
+        this.testExecutionService = testExecutionService;
+        this.executionEngine = executionEngine;
+        this.replayService = replayService;
+        this.instructionLeases = instructionLeases;
+    }
+
+    /**
+     * Create a suite and start running it
+     * @param name the suite name
+     * @param instructionTexts the instructions, in submission order
+     * @return the created suite
+     * @throws RejectedExecutionException if no execution slot is free, or the engine rejected every
+     *         shard, in which case the suite is recorded as failed
+     */
+    public Suite submit(String name, List<String> instructionTexts) {
+        int freeSlots = executionEngine.getFreeSlots();
+        if (freeSlots <= 0) {
+            throw new RejectedExecutionException("No free execution slot for suite " + name);
+        }
+
+        List<Long> durations = estimateDurations(instructionTexts);
+        List<List<Integer>> shards = LptScheduler.assign(durations, freeSlots);
+
+        LocalDateTime now = LocalDateTime.now();
+        Suite suite = suiteRepository.save(Suite.builder()
+                .name(name)
+                .status(Instruction.TestStatus.IN_PROGRESS)
+                .total(instructionTexts.size())
+                .shards(shards.size())
+                .estimatedMs(LptScheduler.makespan(durations, shards))
+                .createdAt(now)
+                .build());
+
+        List<Instruction> instructions = new ArrayList<>();
+        for (String text : instructionTexts) {
+            instructions.add(Instruction.builder()
+                    .text(text)
+                    .status(Instruction.TestStatus.PENDING)
+                    .priority(Instruction.Priority.BATCH)
+                    .suiteId(suite.getId())
+                    .createdAt(now)
+                    .build());
+        }
+        instructions = instructionRepository.saveAll(instructions);
+
+        if (start(suite, instructions, shards) == 0) {
+            now = LocalDateTime.now();
+            instructionRepository.failPendingBySuiteId(suite.getId(), Instruction.TestStatus.PENDING,
+                    Instruction.TestStatus.FAILED, "Not started: execution queue full", now);
+            suiteRepository.fail(suite.getId(), Instruction.TestStatus.FAILED, now);
+            throw new RejectedExecutionException("Execution queue full, suite " + suite.getId() + " not started");
+        }
+        logger.info("Started suite {} '{}' with {} instructions in {} shards, estimated {} ms",
+                suite.getId(), name, instructions.size(), shards.size(), suite.getEstimatedMs());
+        return suite;
+    }
+
+    /**
+     * Get the progress and results of a suite
+     * @param id the suite ID
+     * @return the report, partial while the suite is running, if the suite exists
+     */
+    public Optional<SuiteReport> getReport(Long id) {
+        return suiteRepository.findById(id)
+                .map(suite -> new SuiteReport(suite, instructionRepository.findSummariesBySuiteId(id)));
+    }
+
+    /**
+     * Resume suites left unfinished by a node that stopped. Expired leases are recovered first, so
+     * instructions that were running on that node count as pending again (or failed once out of
+     * attempts). A suite still has a live node while any of its instructions is in progress or
+     * one finished recently; otherwise its counts are rebuilt from its instructions, which also
+     * covers results written just before the node stopped, and its pending instructions are run
+     * again. Should two nodes resume the same suite, the instruction claims keep each instruction
+     * to one run.
+     */
+    @Scheduled(initialDelayString = "${app.automation.suites.recovery-interval:60000}",
+            fixedDelayString = "${app.automation.suites.recovery-interval:60000}")
+    public void recoverSuites() {
+        instructionLeases.recoverExpired();
+
+        LocalDateTime staleBefore = LocalDateTime.now().minus(Duration.ofMillis(staleAfterMs));
+        for (Suite suite : suiteRepository.findByFinishedAtIsNullOrderByIdAsc()) {
+            try {
+                recover(suite, staleBefore);
+            } catch (RejectedExecutionException e) {
+                logger.warn("Execution queue full, suite {} stays pending", suite.getId());
+                return;
+            } catch (RuntimeException e) {
+                logger.warn("Failed to recover suite {}: {}", suite.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private void recover(Suite suite, LocalDateTime staleBefore) {
+        LocalDateTime lastActivity = suite.getCreatedAt();
+        int passed = 0;
+        int failed = 0;
+        List<Long> pending = new ArrayList<>();
+        for (InstructionSummary instruction : instructionRepository.findSummariesBySuiteId(suite.getId())) {
+            switch (instruction.status()) {
+                case IN_PROGRESS -> {
+                    return;
+                }
+                case PENDING -> pending.add(instruction.id());
+                case COMPLETED -> passed++;
+                default -> failed++;
+            }
+            if (instruction.processedAt() != null && instruction.processedAt().isAfter(lastActivity)) {
+                lastActivity = instruction.processedAt();
+            }
+        }
+        if (lastActivity.isAfter(staleBefore)) {
+            // A shard may just be moving on to its next instruction
+            return;
+        }
+
+        suiteRepository.setResults(suite.getId(), passed, failed);
+        if (!pending.isEmpty()) {
+            int freeSlots = executionEngine.getFreeSlots();
+            if (freeSlots <= 0) {
+                throw new RejectedExecutionException("No free execution slot for suite " + suite.getId());
+            }
+
+            List<Instruction> instructions = new ArrayList<>(instructionRepository.findAllById(pending));
+            instructions.sort(Comparator.comparing(Instruction::getId));
+            List<List<Integer>> shards = LptScheduler.assign(
+                    estimateDurations(instructions.stream().map(Instruction::getText).toList()), freeSlots);
+            if (start(suite, instructions, shards) == 0) {
+                throw new RejectedExecutionException("Execution queue full, suite " + suite.getId() + " not resumed");
+            }
+            logger.info("Resumed suite {} '{}' with {} pending instructions in {} shards",
+                    suite.getId(), suite.getName(), instructions.size(), shards.size());
+        }
+        finishIfDone(suite.getId());
+    }
+
+    /**
+     * Submit one task per shard. Shards the engine rejects after all are handed to the accepted
+     * shards, which pick them up once their own instructions are done.
+     * @return number of shards the engine accepted; when none was, nothing runs the instructions
+     */
+    private int start(Suite suite, List<Instruction> instructions, List<List<Integer>> shards) {
+        Queue<Instruction> overflow = new ConcurrentLinkedQueue<>();
+        int accepted = 0;
+        for (List<Integer> shard : shards) {
+            List<Instruction> shardInstructions = shard.stream().map(instructions::get).toList();
+            try {
+                executionEngine.submit(() -> runShard(suite.getId(), shardInstructions, overflow));
+                accepted++;
+            } catch (RejectedExecutionException e) {
+                overflow.addAll(shardInstructions);
+            }
+        }
+
+        if (accepted == 0) {
+            logger.warn("Execution queue full, suite {} left with {} pending instructions",
+                    suite.getId(), overflow.size());
+        }
+        return accepted;
+    }
+
+    private Void runShard(Long suiteId, List<Instruction> shardInstructions, Queue<Instruction> overflow) {
+        for (Instruction instruction : shardInstructions) {
+            run(suiteId, instruction);
+        }
+        Instruction next;
+        while ((next = overflow.poll()) != null) {
+            run(suiteId, next);
+        }
+        return null;
+    }
+
+    private void run(Long suiteId, Instruction instruction) {
+        Instruction result;
+        try {
+            // Instructions with a compiled replay plan run without AI calls
+            Optional<ReplayPlan> plan = useReplayPlans ? replayService.latestPlan(instruction.getText()) : Optional.empty();
+            result = plan.isPresent()
+                    ? replayService.replay(plan.get(), instruction)
+                    : testExecutionService.processInstruction(instruction);
+        } catch (IllegalStateException e) {
+            // Another run, such as a node resuming the suite, claimed it and counts its result
+            logger.debug("Suite {} instruction {} was claimed by another run", suiteId, instruction.getId());
+            return;
+        } catch (RuntimeException e) {
+            // Left to suite recovery, which recounts from the instruction rows
+            logger.warn("Suite {} instruction {} did not run: {}", suiteId, instruction.getId(), e.getMessage());
+            return;
+        }
+        boolean passed = result.getStatus() == Instruction.TestStatus.COMPLETED;
+        suiteRepository.addResults(suiteId, passed ? 1 : 0, passed ? 0 : 1);
+        finishIfDone(suiteId);
+    }
+
+    private void finishIfDone(Long suiteId) {
+        if (suiteRepository.finishIfDone(suiteId, Instruction.TestStatus.COMPLETED,
+                Instruction.TestStatus.FAILED, LocalDateTime.now()) == 1) {
+            suiteRepository.findById(suiteId).ifPresent(suite -> logger.info(
+                    "Suite {} '{}' finished: {} passed, {} failed", suiteId, suite.getName(),
+                    suite.getPassed(), suite.getFailed()));
+        }
+    }
+
+    /**
+     * Average past duration of each instruction text, or the default for texts that never ran
+     */
+    private List<Long> estimateDurations(List<String> instructionTexts) {
+        Map<String, Long> averages = new HashMap<>();
+        for (Object[] row : instructionRepository.findAverageDurations(new HashSet<>(instructionTexts))) {
+            averages.put((String) row[0], ((Number) row[1]).longValue());
+        }
+
+        List<Long> durations = new ArrayList<>();
+        for (String text : instructionTexts) {
+            durations.add(averages.getOrDefault(text, defaultDurationMs));
+        }
+        return durations;
+    }
+}
@@ -0,0 +1,201 @@
+package com.springai.mobile.automation.service.worker;
+
+import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.repository.InstructionRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Leases that give one run at a time the right to execute an instruction.
+ *
+ * Every run, whether started by the worker, a REST call, a suite or a replay, claims its
+ * instruction with an atomic status transition that records this node as lease owner and bumps
+ * the attempt count. The lease is renewed while the run is in progress, and the final status is
+ * written only if the row still carries this node and attempt. A run that lost its lease, for
+ * example because it stalled and another node took the instruction over, can neither run
+ * alongside the newer run nor overwrite its result.
+ */
+@Component
+public class InstructionLeases {
+
+    private static final Logger logger = LoggerFactory.getLogger(InstructionLeases.class);
+
+    private final InstructionRepository instructionRepository;
+
+    // Instructions this node holds a lease on
+    private final Set<Long> held = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.automation.worker.node-id:}")
+    private String nodeId;
+
+    @Value("${app.automation.worker.lease-duration:120000}")
+    private long leaseDurationMs;
+
+    @Value("${app.automation.worker.max-attempts:3}")
+    private int maxAttempts;
+
+    @Autowired
+    public InstructionLeases(InstructionRepository instructionRepository) {
+        this.instructionRepository = instructionRepository;
+    }
+
+    /**
+     * Resolve the node identity used as lease owner
+     */
+    @PostConstruct
+    public void init() {
+        if (nodeId == null || nodeId.isBlank()) {
+            String host;
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (Exception e) {
+                host = "node";
+            }
+            nodeId = host + "-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+    }
+
+    /**
+     * Atomically claim an instruction for this node
+     * @param id the instruction ID
+     * @param from the status the instruction must still have
+     * @return the claimed instruction, or empty if it changed status or another run claimed it first
+     */
+    public Optional<Instruction> claim(Long id, Instruction.TestStatus from) {
+        int claimed = instructionRepository.claim(id, nodeId, leaseExpiry(), Instruction.TestStatus.IN_PROGRESS, from);
+        if (claimed != 1) {
+            return Optional.empty();
+        }
+
+        held.add(id);
+        Optional<Instruction> instruction = instructionRepository.findById(id);
+        if (instruction.isEmpty()) {
+            held.remove(id);
+        }
+        return instruction;
+    }
+
+    /**
+     * Store a new instruction already claimed by this node, as its first attempt, so no worker can
+     * pick it up between its creation and the start of its run
+     * @param instruction the instruction to create
+     * @return the stored, claimed instruction
+     */
+    public Instruction createClaimed(Instruction instruction) {
+        instruction.setStatus(Instruction.TestStatus.IN_PROGRESS);
+        instruction.setLeaseOwner(nodeId);
+        instruction.setLeaseExpiresAt(leaseExpiry());
+        instruction.setAttempts(1);
+        Instruction created = instructionRepository.save(instruction);
+        held.add(created.getId());
+        return created;
+    }
+
+    /**
+     * Give back a claim whose run never started
+     * @param instruction the claimed instruction
+     * @param status the status to return the instruction to
+     */
+    public void release(Instruction instruction, Instruction.TestStatus status) {
+        try {
+            instructionRepository.release(instruction.getId(), nodeId, instruction.getAttempts(),
+                    Instruction.TestStatus.IN_PROGRESS, status);
+        } finally {
+            held.remove(instruction.getId());
+        }
+    }
+
+    /**
+     * Write the final status of a claimed instruction and drop its lease. If the write fails the
+     * lease is kept and renewed, so the caller can retry without another node taking over.
+     * @param instruction the instruction with its final status, result and timings
+     * @return true if written, false if this run no longer held the lease and the result was discarded
+     */
+    public boolean finish(Instruction instruction) {
+        int written = instructionRepository.finish(instruction.getId(), nodeId, instruction.getAttempts(),
+                Instruction.TestStatus.IN_PROGRESS, instruction.getStatus(), instruction.getResult(),
+                instruction.getProcessedAt(), instruction.getDurationMs());
+        held.remove(instruction.getId());
+        if (written == 0) {
+            logger.warn("Node {} lost the lease on instruction {} (attempt {}), discarding its result",
+                    nodeId, instruction.getId(), instruction.getAttempts());
+        }
+        return written == 1;
+    }
+
+    /**
+     * Stop renewing the lease of a run that gives up without writing its result. The lease
+     * expires and the instruction is recovered like one of a crashed node.
+     * @param instruction the claimed instruction
+     */
+    public void abandon(Instruction instruction) {
+        held.remove(instruction.getId());
+    }
+
+    /**
+     * Extend the leases of instructions running on this node
+     */
+    @Scheduled(fixedDelayString = "${app.automation.worker.renew-interval:30000}")
+    public void renewLeases() {
+        for (Long id : held) {
+            try {
+                int renewed = instructionRepository.renewLease(id, nodeId, leaseExpiry(),
+                        Instruction.TestStatus.IN_PROGRESS);
+                if (renewed == 0 && held.contains(id)) {
+                    logger.warn("Node {} lost the lease on instruction {}", nodeId, id);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Failed to renew the lease on instruction {}: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Put instructions whose lease expired, for example after a node crash, back to PENDING, or
+     * fail them once they have used up their attempts
+     */
+    public void recoverExpired() {
+        LocalDateTime now = LocalDateTime.now();
+
+        int failed = instructionRepository.failExhaustedLeases(Instruction.TestStatus.IN_PROGRESS,
+                Instruction.TestStatus.FAILED, "Error: lease expired after " + maxAttempts + " attempts",
+                now, maxAttempts);
+        int requeued = instructionRepository.requeueExpiredLeases(Instruction.TestStatus.IN_PROGRESS,
+                Instruction.TestStatus.PENDING, now, maxAttempts);
+
+        if (failed > 0 || requeued > 0) {
+            logger.info("Recovered expired leases: {} re-queued, {} failed", requeued, failed);
+        }
+    }
+
+    private LocalDateTime leaseExpiry() {
+        return LocalDateTime.now().plus(Duration.ofMillis(leaseDurationMs));
+    }
+
+    /**
+     * @return number of instructions this node holds a lease on
+     */
+    public int getHeldCount() {
+        return held.size();
+    }
+
+    /**
+     * @return the lease owner name of this node
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+}
@@ -0,0 +1,104 @@
+package com.springai.mobile.automation.service.worker;
+
+import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.repository.InstructionRepository;
+import com.springai.mobile.automation.service.TestExecutionService;
+import com.springai.mobile.automation.service.execution.ExecutionEngine;
+import com.springai.mobile.automation.service.mobile.DevicePool;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Worker that drains PENDING instructions from the shared database.
+ *
+ * Each node claims rows through {@link InstructionLeases}, the same atomic claim every other run
+ * path uses, and runs them on its local device pool while the lease is renewed. Rows whose lease
+ * expired (for example after a node crash) are put back to PENDING, or failed once they have
+ * used up their attempts. Several application instances pointing at one database can therefore
+ * share the queue without running an instruction twice.
+ */
+@Component
+public class InstructionWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(InstructionWorker.class);
+
+    private final InstructionRepository instructionRepository;
+    private final TestExecutionService testExecutionService;
+    private final ExecutionEngine executionEngine;
+    private final DevicePool devicePool;
+    private final InstructionLeases instructionLeases;
+
+    @Value("${app.automation.worker.enabled:false}")
+    private boolean enabled;
+
+    @Autowired
+    public InstructionWorker(InstructionRepository instructionRepository,
+            TestExecutionService testExecutionService,
+            ExecutionEngine executionEngine,
+            DevicePool devicePool,
+            InstructionLeases instructionLeases) {
+        this.instructionRepository = instructionRepository;
+        this.testExecutionService = testExecutionService;
+        this.executionEngine = executionEngine;
+        this.devicePool = devicePool;
+        this.instructionLeases = instructionLeases;
+    }
+
+    /**
+     * Announce the node identity used as lease owner
+     */
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            logger.info("Instruction worker enabled as node {}", instructionLeases.getNodeId());
+        }
+    }
+
+    /**
+     * Re-queue expired leases and claim as many pending instructions as there is local capacity for
+     */
+    @Scheduled(fixedDelayString = "${app.automation.worker.poll-interval:2000}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+
+        instructionLeases.recoverExpired();
+
+        int capacity = Math.min(executionEngine.getFreeSlots(),
+                devicePool.getHealthyDeviceCount() - instructionLeases.getHeldCount());
+        if (capacity <= 0) {
+            return;
+        }
+
+        List<Long> candidates = instructionRepository.findIdsByStatus(
+                Instruction.TestStatus.PENDING, PageRequest.of(0, capacity));
+
+        for (Long id : candidates) {
+            Instruction instruction = instructionRepository.findById(id).orElse(null);
+            if (instruction == null || instruction.getStatus() != Instruction.TestStatus.PENDING) {
+                continue;
+            }
+
+            try {
+                // Claims the instruction only if it is still pending
+                testExecutionService.processInstructionAsync(instruction);
+                logger.info("Node {} claimed instruction {}", instructionLeases.getNodeId(), id);
+            } catch (IllegalStateException e) {
+                logger.debug("Instruction {} was claimed by another run", id);
+            } catch (RejectedExecutionException e) {
+                logger.warn("Execution queue full, instruction {} stays pending", id);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,697 @@
+package com.springai.mobile.automation.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Approximate nearest-neighbor index over normalized vectors (Hierarchical Navigable Small World graph).
+ *
+ * Each vector is a node on layer 0 and, with exponentially decreasing probability, on higher
+ * layers. A search descends greedily through the sparse upper layers and then explores the
+ * {@code efSearch} best candidates on layer 0, visiting a tiny fraction of the nodes. Vectors are
+ * quantized to bytes and kept in one array, so a million 128-dimension vectors take about 128 MB
+ * plus the graph.
+ *
+ * Searches run concurrently; inserts and removals are serialized. Removal only marks a node so it
+ * is no longer returned, the graph keeps routing through it until the index is rebuilt with
+ * {@link #compacted()}.
+ */
+public class HnswIndex {
+
+    private static final int MAGIC = 0x484e5357;
+    private static final int FORMAT_VERSION = 1;
+    private static final float QUANTIZATION = 127f;
+
+    private final int dimensions;
+    private final int maxNeighbors;
+    private final int maxNeighborsLayer0;
+    private final int efConstruction;
+    private final double levelFactor;
+    private final Random random = new Random(42);
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<SearchState> searchState = ThreadLocal.withInitial(SearchState::new);
+    // Vector of node n at n * dimensions
+    private byte[] vectors = new byte[0];
+    private int entryPoint = -1;
+    private int topLevel = -1;
+    private int removed;
+
+    /**
+     * @param dimensions size of the vectors
+     * @param maxNeighbors links per node on the upper layers (twice as many on layer 0)
+     * @param efConstruction candidates considered when linking a new node
+     */
+    public HnswIndex(int dimensions, int maxNeighbors, int efConstruction) {
+        if (dimensions <= 0 || maxNeighbors < 2 || efConstruction <= 0) {
+            throw new IllegalArgumentException("Invalid HNSW parameters");
+        }
+        this.dimensions = dimensions;
+        this.maxNeighbors = maxNeighbors;
+        this.maxNeighborsLayer0 = maxNeighbors * 2;
+        this.efConstruction = efConstruction;
+        this.levelFactor = 1 / Math.log(maxNeighbors);
+    }
+
+    /**
+     * Add a vector, replacing any vector stored under the same key
+     * @param key identifies the vector
+     * @param vector an L2-normalized vector
+     */
+    public void add(String key, float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        byte[] quantized = quantize(vector);
+
+        lock.writeLock().lock();
+        try {
+            Integer previous = ids.get(key);
+            if (previous != null) {
+                markRemoved(previous);
+            }
+
+            int level = (int) (-Math.log(1 - random.nextDouble()) * levelFactor);
+            int id = nodes.size();
+            nodes.add(new Node(key, level));
+            store(id, quantized);
+            ids.put(key, id);
+            link(id, quantized, level);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stop returning the vector stored under a key
+     * @param key identifies the vector
+     * @return true if the key was indexed
+     */
+    public boolean remove(String key) {
+        lock.writeLock().lock();
+        try {
+            Integer id = ids.remove(key);
+            if (id == null) {
+                return false;
+            }
+            markRemoved(id);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param key identifies the vector
+     * @return true if a vector is indexed under the key
+     */
+    public boolean contains(String key) {
+        lock.readLock().lock();
+        try {
+            return ids.containsKey(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the keys of all vectors that can be returned
+     */
+    public Set<String> keys() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(ids.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the nearest vectors to a query
+     * @param query an L2-normalized vector
+     * @param k maximum number of results
+     * @param efSearch candidates explored on the bottom layer, higher is more accurate and slower
+     * @param minSimilarity minimum cosine similarity of a result
+     * @return up to k results, most similar first
+     */
+    public List<Result> search(float[] query, int k, int efSearch, double minSimilarity) {
+        byte[] quantized = quantize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return List.of();
+            }
+
+            int current = entryPoint;
+            for (int level = topLevel; level > 0; level--) {
+                current = greedy(quantized, current, level);
+            }
+
+            SearchState state = searchLayer(quantized, current, Math.max(efSearch, k), 0);
+            List<Result> results = new ArrayList<>(k);
+            for (int i = 0; i < state.resultCount && results.size() < k; i++) {
+                double similarity = Math.min(1.0, state.resultScores[i] / (QUANTIZATION * QUANTIZATION));
+                if (similarity < minSimilarity) {
+                    break;
+                }
+                Node node = nodes.get(state.resultIds[i]);
+                if (!node.removed) {
+                    results.add(new Result(node.key, similarity));
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of vectors that can be returned
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodes.size() - removed;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of removed vectors still kept in the graph
+     */
+    public int removedCount() {
+        lock.readLock().lock();
+        try {
+            return removed;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Build a new index holding only the vectors that can be returned, without the removed nodes
+     * that still take memory and search time in this one
+     * @return the rebuilt index, with the same parameters
+     */
+    public HnswIndex compacted() {
+        HnswIndex compacted = new HnswIndex(dimensions, maxNeighbors, efConstruction);
+        lock.readLock().lock();
+        try {
+            float[] vector = new float[dimensions];
+            for (int id = 0; id < nodes.size(); id++) {
+                Node node = nodes.get(id);
+                if (node.removed) {
+                    continue;
+                }
+                // Quantizing the dequantized vector again gives back the same bytes
+                int offset = id * dimensions;
+                for (int i = 0; i < dimensions; i++) {
+                    vector[i] = vectors[offset + i] / QUANTIZATION;
+                }
+                compacted.add(node.key, vector);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return compacted;
+    }
+
+    /**
+     * Write the index, including the graph, so it can be loaded without rebuilding
+     * @param output the stream to write to; not closed
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        lock.readLock().lock();
+        try {
+            DataOutputStream data = new DataOutputStream(output);
+            data.writeInt(MAGIC);
+            data.writeInt(FORMAT_VERSION);
+            data.writeInt(dimensions);
+            data.writeInt(maxNeighbors);
+            data.writeInt(entryPoint);
+            data.writeInt(topLevel);
+            data.writeInt(nodes.size());
+            for (int id = 0; id < nodes.size(); id++) {
+                Node node = nodes.get(id);
+                data.writeUTF(node.key);
+                data.writeBoolean(node.removed);
+                data.write(vectors, id * dimensions, dimensions);
+                data.writeInt(node.neighbors.length);
+                for (int level = 0; level < node.neighbors.length; level++) {
+                    data.writeInt(node.counts[level]);
+                    for (int i = 0; i < node.counts[level]; i++) {
+                        data.writeInt(node.neighbors[level][i]);
+                    }
+                }
+            }
+            data.flush();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read an index written by {@link #writeTo(OutputStream)}
+     * @param input the stream to read from; not closed
+     * @param dimensions expected size of the vectors
+     * @param maxNeighbors expected links per node
+     * @param efConstruction candidates considered when linking nodes added later
+     * @return the index
+     * @throws IOException if the stream is not an index with these parameters
+     */
+    public static HnswIndex readFrom(InputStream input, int dimensions, int maxNeighbors, int efConstruction)
+            throws IOException {
+        DataInputStream data = new DataInputStream(input);
+        if (data.readInt() != MAGIC || data.readInt() != FORMAT_VERSION) {
+            throw new IOException("Not an HNSW index file");
+        }
+        if (data.readInt() != dimensions || data.readInt() != maxNeighbors) {
+            throw new IOException("HNSW index was built with different parameters");
+        }
+
+        HnswIndex index = new HnswIndex(dimensions, maxNeighbors, efConstruction);
+        index.entryPoint = data.readInt();
+        index.topLevel = data.readInt();
+        int size = data.readInt();
+        index.vectors = new byte[size * dimensions];
+        byte[] vector = new byte[dimensions];
+        for (int id = 0; id < size; id++) {
+            String key = data.readUTF();
+            boolean removed = data.readBoolean();
+            data.readFully(vector);
+            Node node = new Node(key, data.readInt() - 1);
+            for (int level = 0; level < node.neighbors.length; level++) {
+                int count = data.readInt();
+                for (int i = 0; i < count; i++) {
+                    node.addNeighbor(level, data.readInt());
+                }
+            }
+            node.removed = removed;
+            index.nodes.add(node);
+            index.store(id, vector);
+            if (removed) {
+                index.removed++;
+            } else {
+                index.ids.put(key, id);
+            }
+        }
+        return index;
+    }
+
+    private void link(int id, byte[] vector, int level) {
+        if (entryPoint < 0) {
+            entryPoint = id;
+            topLevel = level;
+            return;
+        }
+
+        int current = entryPoint;
+        for (int layer = topLevel; layer > level; layer--) {
+            current = greedy(vector, current, layer);
+        }
+
+        Node node = nodes.get(id);
+        for (int layer = Math.min(level, topLevel); layer >= 0; layer--) {
+            SearchState state = searchLayer(vector, current, efConstruction, layer);
+            int[] candidates = Arrays.copyOf(state.resultIds, state.resultCount);
+            int[] scores = Arrays.copyOf(state.resultScores, state.resultCount);
+            current = candidates[0];
+
+            int limit = layer == 0 ? maxNeighborsLayer0 : maxNeighbors;
+            for (int neighbor : selectNeighbors(candidates, scores, limit)) {
+                node.addNeighbor(layer, neighbor);
+                connect(neighbor, id, layer, limit);
+            }
+        }
+
+        if (level > topLevel) {
+            entryPoint = id;
+            topLevel = level;
+        }
+    }
+
+    /**
+     * Pick diverse neighbors: a candidate, in order of similarity, is kept only if it is closer to
+     * the new node than to every neighbor kept so far. This keeps long-range links that make the
+     * graph navigable instead of linking one tight cluster.
+     * @param candidates node ids, most similar to the new node first
+     * @param scores similarity of each candidate to the new node
+     */
+    private int[] selectNeighbors(int[] candidates, int[] scores, int limit) {
+        int[] selected = new int[Math.min(limit, candidates.length)];
+        int count = 0;
+        for (int c = 0; c < candidates.length && count < selected.length; c++) {
+            boolean diverse = true;
+            for (int i = 0; i < count && diverse; i++) {
+                diverse = dot(candidates[c], selected[i]) < scores[c];
+            }
+            if (diverse) {
+                selected[count++] = candidates[c];
+            }
+        }
+
+        // Fill up with the nearest remaining candidates so sparse regions stay connected
+        for (int c = 0; c < candidates.length && count < selected.length; c++) {
+            if (!containsId(selected, count, candidates[c])) {
+                selected[count++] = candidates[c];
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * Link a node back to a new neighbor, re-selecting its links with the same diversity rule when
+     * it has too many
+     */
+    private void connect(int from, int to, int level, int limit) {
+        Node node = nodes.get(from);
+        if (node.counts[level] < limit) {
+            node.addNeighbor(level, to);
+            return;
+        }
+
+        int count = node.counts[level];
+        long[] packed = new long[count + 1];
+        for (int i = 0; i <= count; i++) {
+            int neighbor = i < count ? node.neighbors[level][i] : to;
+            packed[i] = ((long) -dot(from, neighbor) << 32) | (neighbor & 0xffffffffL);
+        }
+        Arrays.sort(packed);
+
+        int[] candidates = new int[packed.length];
+        int[] scores = new int[packed.length];
+        for (int i = 0; i < packed.length; i++) {
+            scores[i] = (int) -(packed[i] >> 32);
+            candidates[i] = (int) packed[i];
+        }
+
+        int[] selected = selectNeighbors(candidates, scores, limit);
+        System.arraycopy(selected, 0, node.neighbors[level], 0, selected.length);
+        node.counts[level] = selected.length;
+    }
+
+    private int greedy(byte[] query, int start, int level) {
+        int current = start;
+        int best = dot(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            Node node = nodes.get(current);
+            for (int i = 0; i < node.counts[level]; i++) {
+                int candidate = node.neighbors[level][i];
+                int score = dot(query, candidate);
+                if (score > best) {
+                    best = score;
+                    current = candidate;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer. The results are left in the thread's search state, most
+     * similar first.
+     */
+    private SearchState searchLayer(byte[] query, int start, int ef, int level) {
+        SearchState state = searchState.get();
+        state.reset(nodes.size(), ef);
+        state.visit(start);
+        int startScore = dot(query, start);
+        state.pushCandidate(start, startScore);
+        state.offerResult(start, startScore);
+
+        while (state.candidateCount > 0) {
+            int closestScore = state.candidateScores[0];
+            int closest = state.popCandidate();
+            if (state.resultCount >= ef && closestScore < state.worstResult()) {
+                break;
+            }
+
+            Node node = nodes.get(closest);
+            for (int i = 0; i < node.counts[level]; i++) {
+                int neighbor = node.neighbors[level][i];
+                if (!state.visit(neighbor)) {
+                    continue;
+                }
+                int score = dot(query, neighbor);
+                if (state.resultCount < ef || score > state.worstResult()) {
+                    state.pushCandidate(neighbor, score);
+                    state.offerResult(neighbor, score);
+                }
+            }
+        }
+
+        state.sortResults();
+        return state;
+    }
+
+    private void markRemoved(int id) {
+        Node node = nodes.get(id);
+        if (!node.removed) {
+            node.removed = true;
+            removed++;
+        }
+    }
+
+    private void store(int id, byte[] vector) {
+        int offset = id * dimensions;
+        if (offset + dimensions > vectors.length) {
+            vectors = Arrays.copyOf(vectors, Math.max(offset + dimensions, vectors.length * 2));
+        }
+        System.arraycopy(vector, 0, vectors, offset, dimensions);
+    }
+
+    private int dot(byte[] query, int id) {
+        int offset = id * dimensions;
+        int dot = 0;
+        for (int i = 0; i < dimensions; i++) {
+            dot += query[i] * vectors[offset + i];
+        }
+        return dot;
+    }
+
+    private int dot(int first, int second) {
+        int firstOffset = first * dimensions;
+        int secondOffset = second * dimensions;
+        int dot = 0;
+        for (int i = 0; i < dimensions; i++) {
+            dot += vectors[firstOffset + i] * vectors[secondOffset + i];
+        }
+        return dot;
+    }
+
+    private static boolean containsId(int[] ids, int count, int id) {
+        for (int i = 0; i < count; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] quantize(float[] vector) {
+        byte[] quantized = new byte[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            quantized[i] = (byte) Math.round(Math.max(-1f, Math.min(1f, vector[i])) * QUANTIZATION);
+        }
+        return quantized;
+    }
+
+    /**
+     * A search result
+     * @param key the key of the vector
+     * @param similarity cosine similarity to the query
+     */
+    public record Result(String key, double similarity) {
+    }
+
+    private static final class Node {
+        private final String key;
+        private final int[][] neighbors;
+        private final int[] counts;
+        private boolean removed;
+
+        private Node(String key, int level) {
+            this.key = key;
+            this.neighbors = new int[level + 1][];
+            this.counts = new int[level + 1];
+            for (int i = 0; i <= level; i++) {
+                neighbors[i] = new int[4];
+            }
+        }
+
+        private void addNeighbor(int level, int id) {
+            if (counts[level] == neighbors[level].length) {
+                neighbors[level] = Arrays.copyOf(neighbors[level], neighbors[level].length * 2);
+            }
+            neighbors[level][counts[level]++] = id;
+        }
+    }
+
+    /**
+     * Per-thread search buffers: visited marks cleared in O(1) by bumping a generation number, a
+     * max-heap of candidates and a min-heap of the best results, all on primitive arrays
+     */
+    private static final class SearchState {
+        private int[] marks = new int[0];
+        private int generation;
+        private int[] candidateIds = new int[64];
+        private int[] candidateScores = new int[64];
+        private int candidateCount;
+        private int[] resultIds = new int[64];
+        private int[] resultScores = new int[64];
+        private int resultCount;
+        private int resultCapacity;
+
+        private void reset(int size, int ef) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+            if (resultIds.length < ef) {
+                resultIds = new int[ef];
+                resultScores = new int[ef];
+            }
+            resultCapacity = ef;
+            candidateCount = 0;
+            resultCount = 0;
+        }
+
+        /**
+         * @return true if the node was not visited before
+         */
+        private boolean visit(int id) {
+            if (marks[id] == generation) {
+                return false;
+            }
+            marks[id] = generation;
+            return true;
+        }
+
+        private void pushCandidate(int id, int score) {
+            if (candidateCount == candidateIds.length) {
+                candidateIds = Arrays.copyOf(candidateIds, candidateCount * 2);
+                candidateScores = Arrays.copyOf(candidateScores, candidateCount * 2);
+            }
+            int i = candidateCount++;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (candidateScores[parent] >= score) {
+                    break;
+                }
+                candidateIds[i] = candidateIds[parent];
+                candidateScores[i] = candidateScores[parent];
+                i = parent;
+            }
+            candidateIds[i] = id;
+            candidateScores[i] = score;
+        }
+
+        private int popCandidate() {
+            int top = candidateIds[0];
+            int lastId = candidateIds[--candidateCount];
+            int lastScore = candidateScores[candidateCount];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= candidateCount) {
+                    break;
+                }
+                if (child + 1 < candidateCount && candidateScores[child + 1] > candidateScores[child]) {
+                    child++;
+                }
+                if (candidateScores[child] <= lastScore) {
+                    break;
+                }
+                candidateIds[i] = candidateIds[child];
+                candidateScores[i] = candidateScores[child];
+                i = child;
+            }
+            candidateIds[i] = lastId;
+            candidateScores[i] = lastScore;
+            return top;
+        }
+
+        private int worstResult() {
+            return resultScores[0];
+        }
+
+        /**
+         * Add to the bounded min-heap of results, dropping the worst result when it is full
+         */
+        private void offerResult(int id, int score) {
+            if (resultCount < resultCapacity) {
+                int i = resultCount++;
+                while (i > 0) {
+                    int parent = (i - 1) / 2;
+                    if (resultScores[parent] <= score) {
+                        break;
+                    }
+                    resultIds[i] = resultIds[parent];
+                    resultScores[i] = resultScores[parent];
+                    i = parent;
+                }
+                resultIds[i] = id;
+                resultScores[i] = score;
+                return;
+            }
+            if (score <= resultScores[0]) {
+                return;
+            }
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= resultCount) {
+                    break;
+                }
+                if (child + 1 < resultCount && resultScores[child + 1] < resultScores[child]) {
+                    child++;
+                }
+                if (resultScores[child] >= score) {
+                    break;
+                }
+                resultIds[i] = resultIds[child];
+                resultScores[i] = resultScores[child];
+                i = child;
+            }
+            resultIds[i] = id;
+            resultScores[i] = score;
+        }
+
+        /**
+         * Order the results most similar first
+         */
+        private void sortResults() {
+            long[] packed = new long[resultCount];
+            for (int i = 0; i < resultCount; i++) {
+                packed[i] = ((long) -resultScores[i] << 32) | (resultIds[i] & 0xffffffffL);
+            }
+            Arrays.sort(packed);
+            for (int i = 0; i < resultCount; i++) {
+                resultScores[i] = (int) -(packed[i] >> 32);
+                resultIds[i] = (int) packed[i];
+            }
+        }
+    }
+}
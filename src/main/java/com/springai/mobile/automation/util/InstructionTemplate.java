@@ -0,0 +1,224 @@
+package com.springai.mobile.automation.util;
+
+import com.springai.mobile.automation.model.TestAction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An instruction split into a fixed pattern and the literals that vary between runs.
+ *
+ * Quoted strings and standalone numbers are the slots: "Login with username 'a' and password 'b'"
+ * becomes the pattern "login with username '{{0}}' and password '{{1}}'" with values [a, b].
+ * A plan generated for one instruction can be turned into a plan for every instruction with the
+ * same pattern by binding the action values to the slots.
+ */
+public final class InstructionTemplate {
+
+    private static final Pattern LITERAL =
+            Pattern.compile("'([^']+)'|\"([^\"]+)\"|(?<![\\w.])(\\d+(?:\\.\\d+)?)(?![\\w.])");
+    private static final Pattern MARKER = Pattern.compile("\\{\\{(\\d+)}}");
+
+    private final String pattern;
+    private final List<String> values;
+    private final List<Boolean> numeric;
+
+    private InstructionTemplate(String pattern, List<String> values, List<Boolean> numeric) {
+        this.pattern = pattern;
+        this.values = values;
+        this.numeric = numeric;
+    }
+
+    /**
+     * Split an instruction into its pattern and slot values
+     * @param instructionText the instruction text
+     * @return the template, without slots if the instruction has no literals
+     */
+    public static InstructionTemplate of(String instructionText) {
+        String text = instructionText == null ? "" : instructionText.trim();
+        StringBuilder pattern = new StringBuilder();
+        List<String> values = new ArrayList<>();
+        List<Boolean> numeric = new ArrayList<>();
+
+        Matcher matcher = LITERAL.matcher(text);
+        int last = 0;
+        while (matcher.find()) {
+            pattern.append(fold(text.substring(last, matcher.start())));
+            String marker = "{{" + values.size() + "}}";
+            if (matcher.group(1) != null) {
+                pattern.append('\'').append(marker).append('\'');
+                values.add(matcher.group(1));
+                numeric.add(false);
+            } else if (matcher.group(2) != null) {
+                pattern.append('"').append(marker).append('"');
+                values.add(matcher.group(2));
+                numeric.add(false);
+            } else {
+                pattern.append(marker);
+                values.add(matcher.group(3));
+                numeric.add(true);
+            }
+            last = matcher.end();
+        }
+        pattern.append(fold(text.substring(last)));
+
+        return new InstructionTemplate(pattern.toString(), Collections.unmodifiableList(values), numeric);
+    }
+
+    /**
+     * Fold whitespace and case outside the literals of an instruction, keeping quoted strings and
+     * numbers as written, so "Type 'Secret' in password" and "type 'secret' in password" differ
+     * @param instructionText the instruction text
+     * @return the normalized text
+     */
+    public static String normalize(String instructionText) {
+        String text = instructionText == null ? "" : instructionText.trim();
+        StringBuilder normalized = new StringBuilder();
+        Matcher matcher = LITERAL.matcher(text);
+        int last = 0;
+        while (matcher.find()) {
+            normalized.append(fold(text.substring(last, matcher.start()))).append(matcher.group());
+            last = matcher.end();
+        }
+        return normalized.append(fold(text.substring(last))).toString();
+    }
+
+    /**
+     * @return the pattern with whitespace and case folded outside the slots
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return the slot values in order of appearance
+     */
+    public List<String> getValues() {
+        return values;
+    }
+
+    /**
+     * @return true if the instruction has at least one slot
+     */
+    public boolean hasSlots() {
+        return !values.isEmpty();
+    }
+
+    /**
+     * Turn a plan generated for this instruction into a template by replacing slot values in the
+     * action values with slot markers. A plan is only templated when every slot is bound and no
+     * slot value appears anywhere else in the plan, e.g. in an element description or as a repeat
+     * count, since such plans would be wrong for other values.
+     * @param actions the plan generated for this instruction
+     * @return copies of the actions with slot markers in their values, or empty if the plan
+     *         cannot be templated
+     */
+    public Optional<List<TestAction>> bind(List<TestAction> actions) {
+        if (!hasSlots() || actions.isEmpty()) {
+            return Optional.empty();
+        }
+
+        // Bind longer values first so a value that contains another is not split
+        List<Integer> slots = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            slots.add(i);
+        }
+        slots.sort(Comparator.comparingInt((Integer slot) -> values.get(slot).length()).reversed());
+
+        boolean[] bound = new boolean[values.size()];
+        List<TestAction> templated = new ArrayList<>();
+        for (TestAction action : actions) {
+            String value = action.getValue();
+            if (value != null && !value.isEmpty()) {
+                for (int slot : slots) {
+                    String literal = values.get(slot);
+                    String marker = "{{" + slot + "}}";
+                    String replaced = numeric.get(slot)
+                            ? (value.equals(literal) ? marker : value)
+                            : replaceOutsideMarkers(value, literal, marker);
+                    if (!replaced.equals(value)) {
+                        value = replaced;
+                        bound[slot] = true;
+                    }
+                }
+            }
+
+            if (mentionsSlotValue(action.getElementDescription())
+                    || mentionsSlotValue(value == null ? null : MARKER.matcher(value).replaceAll(" "))) {
+                return Optional.empty();
+            }
+
+            templated.add(TestAction.builder()
+                    .actionType(action.getActionType())
+                    .elementDescription(action.getElementDescription())
+                    .value(value)
+                    .sequence(action.getSequence())
+                    .build());
+        }
+
+        for (boolean slotBound : bound) {
+            if (!slotBound) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(templated);
+    }
+
+    /**
+     * Fill the slot markers of templated actions with this instruction's values
+     * @param actions actions created from a template with the same pattern
+     * @return the same actions, for chaining
+     */
+    public List<TestAction> fill(List<TestAction> actions) {
+        for (TestAction action : actions) {
+            if (action.getValue() == null) {
+                continue;
+            }
+            Matcher matcher = MARKER.matcher(action.getValue());
+            StringBuilder filled = new StringBuilder();
+            while (matcher.find()) {
+                int slot = Integer.parseInt(matcher.group(1));
+                String replacement = slot < values.size() ? values.get(slot) : matcher.group();
+                matcher.appendReplacement(filled, Matcher.quoteReplacement(replacement));
+            }
+            matcher.appendTail(filled);
+            action.setValue(filled.toString());
+        }
+        return actions;
+    }
+
+    private static String replaceOutsideMarkers(String value, String literal, String marker) {
+        StringBuilder result = new StringBuilder();
+        Matcher markers = MARKER.matcher(value);
+        int last = 0;
+        while (markers.find()) {
+            result.append(value.substring(last, markers.start()).replace(literal, marker)).append(markers.group());
+            last = markers.end();
+        }
+        return result.append(value.substring(last).replace(literal, marker)).toString();
+    }
+
+    private boolean mentionsSlotValue(String text) {
+        if (text == null || text.isEmpty()) {
+            return false;
+        }
+        for (String literal : values) {
+            Pattern word = Pattern.compile("(?<![\\w])" + Pattern.quote(literal) + "(?![\\w])",
+                    Pattern.CASE_INSENSITIVE);
+            if (word.matcher(text).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String fold(String text) {
+        return text.replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,258 @@
+package com.springai.mobile.automation.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts JSON values from LLM output that may be wrapped in prose or markdown fences.
+ *
+ * Extraction is done with Jackson's streaming parser rather than regular expressions, so nested
+ * objects and brackets inside string values are handled correctly and the text is scanned once
+ * per candidate. A candidate that turns out not to be JSON (for example a bracket in prose) is
+ * skipped and the search continues after it; a candidate that is cut off by the end of the text
+ * ends the search, so partial input never yields a nested value by mistake.
+ */
+public final class JsonExtractor {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int INVALID = -1;
+    private static final int INCOMPLETE = -2;
+
+    private JsonExtractor() {
+    }
+
+    /**
+     * Find the first complete JSON value that starts with the given bracket
+     * @param text the text to search
+     * @param open '[' for arrays or '{' for objects
+     * @return the JSON text of the value, or null if there is none or it is still incomplete
+     */
+    public static String extractFirst(String text, char open) {
+        if (text == null) {
+            return null;
+        }
+
+        int start = text.indexOf(open);
+        while (start >= 0) {
+            int end = findValueEnd(text, start);
+            if (end > start) {
+                return text.substring(start, end);
+            }
+            if (end == INCOMPLETE) {
+                return null;
+            }
+            start = text.indexOf(open, start + 1);
+        }
+
+        return null;
+    }
+
+    /**
+     * Read the first complete JSON value that starts with the given bracket directly into the
+     * reader's target type, without copying the JSON text first
+     * @param text the text to search
+     * @param open '[' for arrays or '{' for objects
+     * @param reader reader bound to the target type
+     * @param <T> the target type
+     * @return the value, or null if there is none or it is still incomplete
+     */
+    public static <T> T readFirst(String text, char open, ObjectReader reader) {
+        if (text == null) {
+            return null;
+        }
+
+        int start = text.indexOf(open);
+        while (start >= 0) {
+            try (JsonParser parser = reader.createParser(readerAt(text, start))) {
+                parser.nextToken();
+                return reader.readValue(parser);
+            } catch (JsonEOFException e) {
+                return null;
+            } catch (IOException e) {
+                start = text.indexOf(open, start + 1);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Find where the JSON value starting at the given index ends
+     * @param text the text
+     * @param start index of the opening bracket
+     * @return index just past the value, {@link #INVALID} or {@link #INCOMPLETE}
+     */
+    private static int findValueEnd(String text, int start) {
+        try (JsonParser parser = JSON_FACTORY.createParser(readerAt(text, start))) {
+            JsonToken token = parser.nextToken();
+            if (token == null || !token.isStructStart()) {
+                return INVALID;
+            }
+            parser.skipChildren();
+            return start + (int) parser.currentLocation().getCharOffset();
+        } catch (JsonEOFException e) {
+            return INCOMPLETE;
+        } catch (IOException e) {
+            return INVALID;
+        }
+    }
+
+    private static StringReader readerAt(String text, int start) throws IOException {
+        StringReader reader = new StringReader(text);
+        reader.skip(start);
+        return reader;
+    }
+
+    /**
+     * Incremental extractor for the elements of a JSON array that arrives in chunks.
+     *
+     * Text before the array is skipped, and each element is returned as soon as it is complete,
+     * parsed by Jackson's non-blocking parser so no chunk is scanned twice.
+     */
+    public static class ArrayElementStream {
+
+        private final ObjectMapper objectMapper;
+        private StringBuilder candidateText = new StringBuilder();
+        private JsonParser parser;
+        private ByteArrayFeeder feeder;
+        private TokenBuffer element;
+        private int depth;
+        private boolean committed;
+        private boolean finished;
+
+        /**
+         * @param objectMapper mapper used to materialize completed elements
+         */
+        public ArrayElementStream(ObjectMapper objectMapper) {
+            this.objectMapper = objectMapper;
+        }
+
+        /**
+         * Feed the next chunk of text
+         * @param chunk the chunk, may be null or empty
+         * @return the array elements completed by this chunk, in order
+         */
+        public List<JsonNode> feed(String chunk) {
+            List<JsonNode> completed = new ArrayList<>();
+            String remaining = chunk;
+
+            while (remaining != null && !remaining.isEmpty() && !finished) {
+                if (parser == null) {
+                    int start = remaining.indexOf('[');
+                    if (start < 0) {
+                        break;
+                    }
+                    remaining = remaining.substring(start);
+                    open();
+                }
+
+                if (!committed) {
+                    candidateText.append(remaining);
+                }
+
+                try {
+                    byte[] bytes = remaining.getBytes(StandardCharsets.UTF_8);
+                    feeder.feedInput(bytes, 0, bytes.length);
+                    drain(completed);
+                    remaining = null;
+                } catch (IOException e) {
+                    if (committed) {
+                        // Broken output after valid elements: keep what we have
+                        finished = true;
+                        break;
+                    }
+                    // The bracket was not the start of the array, scan again after it
+                    remaining = candidateText.substring(1);
+                    reset();
+                }
+            }
+
+            return completed;
+        }
+
+        /**
+         * @return true once the closing bracket of the array has been seen
+         */
+        public boolean isFinished() {
+            return finished;
+        }
+
+        private void open() {
+            try {
+                parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot create non-blocking JSON parser", e);
+            }
+            feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+            depth = 0;
+            element = null;
+        }
+
+        private void reset() {
+            closeQuietly();
+            parser = null;
+            feeder = null;
+            candidateText = new StringBuilder();
+        }
+
+        private void drain(List<JsonNode> completed) throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                if (depth == 0) {
+                    if (token != JsonToken.START_ARRAY) {
+                        throw new IOException("Expected start of array but found " + token);
+                    }
+                    depth = 1;
+                    continue;
+                }
+
+                if (depth == 1) {
+                    if (token == JsonToken.END_ARRAY) {
+                        finished = true;
+                        closeQuietly();
+                        return;
+                    }
+                    if (!token.isStructStart()) {
+                        // Scalar elements are not actions
+                        continue;
+                    }
+                    element = new TokenBuffer(parser, null);
+                }
+
+                element.copyCurrentEvent(parser);
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd()) {
+                    depth--;
+                    if (depth == 1) {
+                        completed.add(objectMapper.readTree(element.asParser()));
+                        element = null;
+                        committed = true;
+                        candidateText = null;
+                    }
+                }
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                parser.close();
+            } catch (IOException e) {
+                // Nothing to release for in-memory input
+            }
+        }
+    }
+}
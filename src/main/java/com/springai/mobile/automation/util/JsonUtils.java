@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.springai.mobile.automation.model.Instruction;
 import com.springai.mobile.automation.model.TestAction;
@@ -14,8 +15,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Utility class for JSON processing
@@ -25,11 +24,9 @@ public class JsonUtils {
     private static final Logger logger = LoggerFactory.getLogger(JsonUtils.class);
     private static final ObjectMapper objectMapper = new ObjectMapper();
     
-    // Pattern to match JSON arrays in AI responses
-    private static final Pattern JSON_ARRAY_PATTERN = Pattern.compile("\\[.*?\\]", Pattern.DOTALL);
-    
-    // Pattern to match JSON objects in AI responses
-    private static final Pattern JSON_OBJECT_PATTERN = Pattern.compile("\\{.*?\\}", Pattern.DOTALL);
+    // Readers used to parse JSON embedded in AI responses in a single pass
+    private static final ObjectReader TREE_READER = objectMapper.readerFor(JsonNode.class);
+    private static final ObjectReader MAP_READER = objectMapper.readerFor(new TypeReference<Map<String, Object>>() {});
     
     /**
      * Parse a JSON array of test actions
@@ -41,36 +38,16 @@ public class JsonUtils {
         List<TestAction> actions = new ArrayList<>();
         
         try {
-            // Extract JSON array if it's embedded in text
-            String cleanedJson = extractJsonArray(json);
-            
-            JsonNode rootNode = objectMapper.readTree(cleanedJson);
+            // Read the JSON array directly from the text it's embedded in
+            JsonNode rootNode = JsonExtractor.readFirst(json, '[', TREE_READER);
             
-            if (rootNode.isArray()) {
+            if (rootNode != null && rootNode.isArray()) {
                 ArrayNode actionsArray = (ArrayNode) rootNode;
                 
                 for (JsonNode actionNode : actionsArray) {
-                    String actionType = actionNode.get("actionType").asText();
-                    String elementDescription = actionNode.has("elementDescription") ? 
-                            actionNode.get("elementDescription").asText() : null;
-                    String value = actionNode.has("value") ? 
-                            actionNode.get("value").asText() : null;
-                    int sequence = actionNode.has("sequence") ? 
-                            actionNode.get("sequence").asInt() : actions.size() + 1;
-                    
-                    TestAction action = TestAction.builder()
-                            .instruction(instruction)
-                            .actionType(TestAction.ActionType.valueOf(actionType))
-                            .elementDescription(elementDescription)
-                            .value(value)
-                            .sequence(sequence)
-                            .build();
-                    
-                    actions.add(action);
+                    actions.add(toTestAction(actionNode, instruction, actions.size() + 1));
                 }
             }
-        } catch (JsonProcessingException e) {
-            logger.error("Error parsing JSON: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             logger.error("Invalid action type: {}", e.getMessage());
         }
@@ -78,6 +55,60 @@ public class JsonUtils {
         return actions;
     }
     
+    /**
+     * Convert a single JSON test action object, as produced while streaming a plan
+     * @param actionNode the JSON object node
+     * @param instruction the parent instruction
+     * @param defaultSequence sequence to use when the object has none
+     * @return the TestAction, or null if the object is not a valid action
+     */
+    public static TestAction parseTestAction(JsonNode actionNode, Instruction instruction, int defaultSequence) {
+        if (actionNode == null || !actionNode.isObject() || !actionNode.has("actionType")) {
+            return null;
+        }
+        
+        try {
+            return toTestAction(actionNode, instruction, defaultSequence);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid action type: {}", e.getMessage());
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Create an incremental extractor for a JSON array streamed in chunks
+     * @return a new array element stream
+     */
+    public static JsonExtractor.ArrayElementStream newArrayElementStream() {
+        return new JsonExtractor.ArrayElementStream(objectMapper);
+    }
+    
+    /**
+     * Convert a JSON action node into a TestAction
+     * @param actionNode the JSON node
+     * @param instruction the parent instruction
+     * @param defaultSequence sequence to use when the node has none
+     * @return the TestAction
+     */
+    private static TestAction toTestAction(JsonNode actionNode, Instruction instruction, int defaultSequence) {
+        String actionType = actionNode.get("actionType").asText();
+        String elementDescription = actionNode.has("elementDescription") ? 
+                actionNode.get("elementDescription").asText() : null;
+        String value = actionNode.has("value") ? 
+                actionNode.get("value").asText() : null;
+        int sequence = actionNode.has("sequence") ? 
+                actionNode.get("sequence").asInt() : defaultSequence;
+        
+        return TestAction.builder()
+                .instruction(instruction)
+                .actionType(TestAction.ActionType.valueOf(actionType))
+                .elementDescription(elementDescription)
+                .value(value)
+                .sequence(sequence)
+                .build();
+    }
+    
     /**
      * Convert an object to JSON string
      * @param object the object to convert
@@ -114,15 +145,14 @@ public class JsonUtils {
      * @return the parsed Map
      */
     public static Map<String, Object> fromJsonToMap(String json) {
-        try {
-            // Extract JSON object if it's embedded in text
-            String cleanedJson = extractJsonObject(json);
-            
-            return objectMapper.readValue(cleanedJson, new TypeReference<Map<String, Object>>() {});
-        } catch (JsonProcessingException e) {
-            logger.error("Error parsing JSON to Map: {}", e.getMessage());
+        // Read the JSON object directly from the text it's embedded in
+        Map<String, Object> result = JsonExtractor.readFirst(json, '{', MAP_READER);
+        if (result == null) {
+            logger.error("Error parsing JSON to Map: no complete JSON object found");
             return new HashMap<>();
         }
+        
+        return result;
     }
     
     /**
@@ -131,16 +161,8 @@ public class JsonUtils {
      * @return the extracted JSON array
      */
     public static String extractJsonArray(String text) {
-        if (text == null || text.isEmpty()) {
-            return "[]";
-        }
-        
-        Matcher matcher = JSON_ARRAY_PATTERN.matcher(text);
-        if (matcher.find()) {
-            return matcher.group(0);
-        }
-        
-        return "[]";
+        String extracted = JsonExtractor.extractFirst(text, '[');
+        return extracted != null ? extracted : "[]";
     }
     
     /**
@@ -149,16 +171,8 @@ public class JsonUtils {
      * @return the extracted JSON object
      */
     public static String extractJsonObject(String text) {
-        if (text == null || text.isEmpty()) {
-            return "{}";
-        }
-        
-        Matcher matcher = JSON_OBJECT_PATTERN.matcher(text);
-        if (matcher.find()) {
-            return matcher.group(0);
-        }
-        
-        return "{}";
+        String extracted = JsonExtractor.extractFirst(text, '{');
+        return extracted != null ? extracted : "{}";
     }
     
     /**
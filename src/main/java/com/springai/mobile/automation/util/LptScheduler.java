@@ -0,0 +1,68 @@
+package com.springai.mobile.automation.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Splits jobs of known duration into shards that finish as close together as possible.
+ *
+ * Uses the longest-processing-time-first rule: jobs are taken longest first and each goes to the
+ * shard with the least work so far. The longest shard is at most 4/3 of the optimum, and long jobs
+ * start first so they do not hold up the end of the run.
+ */
+public final class LptScheduler {
+
+    private LptScheduler() {
+    }
+
+    /**
+     * Assign jobs to shards
+     * @param durations estimated duration of each job
+     * @param shards number of shards
+     * @return for each shard, the indexes of its jobs in the order they should run
+     */
+    public static List<List<Integer>> assign(List<Long> durations, int shards) {
+        int count = Math.max(1, Math.min(shards, durations.size()));
+        List<List<Integer>> assignment = new ArrayList<>();
+        long[] load = new long[count];
+        PriorityQueue<Integer> leastLoaded = new PriorityQueue<>(
+                Comparator.<Integer>comparingLong(shard -> load[shard]).thenComparingInt(shard -> shard));
+        for (int shard = 0; shard < count; shard++) {
+            assignment.add(new ArrayList<>());
+            leastLoaded.add(shard);
+        }
+
+        List<Integer> longestFirst = IntStream.range(0, durations.size()).boxed()
+                .sorted(Comparator.comparingLong((Integer job) -> durations.get(job)).reversed()
+                        .thenComparingInt(job -> job))
+                .toList();
+        for (int job : longestFirst) {
+            int shard = leastLoaded.poll();
+            assignment.get(shard).add(job);
+            load[shard] += durations.get(job);
+            leastLoaded.add(shard);
+        }
+        return assignment;
+    }
+
+    /**
+     * Estimated time until the last shard finishes
+     * @param durations estimated duration of each job
+     * @param assignment shards as returned by {@link #assign}
+     * @return duration of the longest shard
+     */
+    public static long makespan(List<Long> durations, List<List<Integer>> assignment) {
+        long longest = 0;
+        for (List<Integer> shard : assignment) {
+            long total = 0;
+            for (int job : shard) {
+                total += durations.get(job);
+            }
+            longest = Math.max(longest, total);
+        }
+        return longest;
+    }
+}
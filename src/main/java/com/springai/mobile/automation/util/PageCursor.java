@@ -0,0 +1,57 @@
+package com.springai.mobile.automation.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque cursor for keyset pagination over rows ordered by creation time and id.
+ *
+ * The cursor holds the position of the last row of a page; the next page starts strictly after
+ * it, so pages stay stable while new rows are inserted and cost the same however deep they are.
+ */
+public final class PageCursor {
+
+    private PageCursor() {
+    }
+
+    /**
+     * Encode the position of a row
+     * @param createdAt the row's creation time
+     * @param id the row's id
+     * @return URL-safe cursor
+     */
+    public static String encode(LocalDateTime createdAt, long id) {
+        String position = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor
+     * @param cursor a cursor made by {@link #encode}
+     * @return the position it holds
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static Position decode(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.lastIndexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return new Position(LocalDateTime.parse(position.substring(0, separator)),
+                    Long.parseLong(position.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * Position of a row in creation order
+     * @param createdAt the row's creation time
+     * @param id the row's id, breaking ties between rows created at the same time
+     */
+    public record Position(LocalDateTime createdAt, long id) {
+    }
+}
@@ -0,0 +1,358 @@
+package com.springai.mobile.automation.util;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * In-memory index of a UiAutomator2 view hierarchy for matching element descriptions locally.
+ *
+ * The page source XML is parsed once with SAX into a list of nodes and an inverted index from
+ * words in their text, content-desc and resource-id to the nodes. Descriptions such as
+ * "Login button" or "Username input field" are then scored against the candidate nodes: words
+ * describing the widget kind ("button", "field") restrict the candidates to nodes of a fitting
+ * class, the remaining words are matched against their labels, allowing one typo per longer word.
+ * A description naming a kind never matches a node of another kind, so "Username field" does not
+ * resolve to the "Username" label next to the field.
+ */
+public class PageSourceIndex {
+
+    // Words describing the kind of widget, mapped to the class name fragment they imply
+    private static final Map<String, String> ROLE_WORDS = Map.ofEntries(
+            Map.entry("button", "Button"),
+            Map.entry("btn", "Button"),
+            Map.entry("cta", "Button"),
+            Map.entry("field", "EditText"),
+            Map.entry("input", "EditText"),
+            Map.entry("textbox", "EditText"),
+            Map.entry("checkbox", "CheckBox"),
+            Map.entry("switch", "Switch"),
+            Map.entry("toggle", "Switch"),
+            Map.entry("image", "Image"),
+            Map.entry("icon", "Image"),
+            Map.entry("tab", "Tab"),
+            Map.entry("label", "TextView"),
+            Map.entry("text", "TextView"),
+            Map.entry("message", "TextView"),
+            Map.entry("link", "TextView"));
+
+    private static final Set<String> STOP_WORDS = Set.of("the", "a", "an", "on", "of", "to", "in", "for", "with", "and");
+
+    private final List<UiNode> nodes;
+    private final Map<String, List<UiNode>> nodesByWord = new HashMap<>();
+
+    private PageSourceIndex(List<UiNode> nodes) {
+        this.nodes = nodes;
+        for (UiNode node : nodes) {
+            for (String word : node.words) {
+                nodesByWord.computeIfAbsent(word, w -> new ArrayList<>()).add(node);
+            }
+        }
+    }
+
+    /**
+     * Parse a page source into an index
+     * @param pageSource the UiAutomator2 hierarchy XML
+     * @return the index
+     * @throws IllegalArgumentException if the XML cannot be parsed
+     */
+    public static PageSourceIndex parse(String pageSource) {
+        List<UiNode> nodes = new ArrayList<>();
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            SAXParser parser = factory.newSAXParser();
+            parser.parse(new InputSource(new StringReader(pageSource)), new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    if ("hierarchy".equals(qName)) {
+                        return;
+                    }
+                    String className = attributes.getValue("class");
+                    nodes.add(new UiNode(
+                            className != null ? className : qName,
+                            attributes.getValue("text"),
+                            attributes.getValue("content-desc"),
+                            attributes.getValue("resource-id"),
+                            attributes.getValue("bounds"),
+                            "true".equals(attributes.getValue("clickable")),
+                            !"false".equals(attributes.getValue("displayed"))));
+                }
+            });
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Cannot parse page source: " + e.getMessage(), e);
+        }
+        return new PageSourceIndex(nodes);
+    }
+
+    /**
+     * Find the node that best matches an element description
+     * @param description the element description
+     * @return the best match and its score, if any node shares a word with the description
+     */
+    public Optional<Match> bestMatch(String description) {
+        List<String> words = words(description);
+        Set<String> contentWords = new LinkedHashSet<>();
+        Set<String> classHints = new HashSet<>();
+        for (String word : words) {
+            String role = ROLE_WORDS.get(word);
+            if (role != null) {
+                classHints.add(role);
+            } else if (!STOP_WORDS.contains(word)) {
+                contentWords.add(word);
+            }
+        }
+
+        // Candidates share at least one word with the description (allowing a typo)
+        Set<UiNode> candidates = new LinkedHashSet<>();
+        for (String word : contentWords) {
+            for (Map.Entry<String, List<UiNode>> entry : nodesByWord.entrySet()) {
+                if (similar(word, entry.getKey())) {
+                    candidates.addAll(entry.getValue());
+                }
+            }
+        }
+
+        UiNode best = null;
+        double bestScore = 0;
+        for (UiNode node : candidates) {
+            if (!node.displayed || !fitsKind(node, classHints)) {
+                continue;
+            }
+            double score = score(node, contentWords);
+            if (score > bestScore || (score == bestScore && best != null && node.clickable && !best.clickable)) {
+                best = node;
+                bestScore = score;
+            }
+        }
+
+        if (best == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new Match(locatorFor(best), best.className, best.text, best.bounds, bestScore));
+    }
+
+    /**
+     * @return number of nodes in the hierarchy
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Whether the node is of a kind the description names. Any clickable node fits "button", as
+     * apps often style a clickable text or image as one.
+     */
+    private static boolean fitsKind(UiNode node, Set<String> classHints) {
+        if (classHints.isEmpty()) {
+            return true;
+        }
+        for (String hint : classHints) {
+            if (node.className.contains(hint) || ("Button".equals(hint) && node.clickable)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Score a node: mostly how many description words it covers, then how much of the node's
+     * own label is explained by the description
+     */
+    private static double score(UiNode node, Set<String> contentWords) {
+        if (contentWords.isEmpty()) {
+            return 0;
+        }
+
+        int covered = 0;
+        for (String word : contentWords) {
+            for (String nodeWord : node.words) {
+                if (similar(word, nodeWord)) {
+                    covered++;
+                    break;
+                }
+            }
+        }
+
+        double coverage = (double) covered / contentWords.size();
+        double precision = node.words.isEmpty() ? 0 : Math.min(1.0, (double) covered / node.words.size());
+
+        return 0.8 * coverage + 0.2 * precision;
+    }
+
+    /**
+     * Build the most specific XPath that identifies the node uniquely
+     */
+    private String locatorFor(UiNode node) {
+        if (hasText(node.resourceId) && count(n -> node.resourceId.equals(n.resourceId)) == 1) {
+            return "//*[@resource-id=" + quote(node.resourceId) + "]";
+        }
+        if (hasText(node.contentDesc) && count(n -> node.contentDesc.equals(n.contentDesc)) == 1) {
+            return "//*[@content-desc=" + quote(node.contentDesc) + "]";
+        }
+
+        String attribute = hasText(node.text) ? "text" : hasText(node.resourceId) ? "resource-id" : null;
+        if (attribute != null) {
+            String value = "text".equals(attribute) ? node.text : node.resourceId;
+            String xpath = "//" + node.className + "[@" + attribute + "=" + quote(value) + "]";
+            int position = 1;
+            for (UiNode other : nodes) {
+                if (other == node) {
+                    break;
+                }
+                if (other.className.equals(node.className)
+                        && value.equals("text".equals(attribute) ? other.text : other.resourceId)) {
+                    position++;
+                }
+            }
+            return position == 1 && count(n -> n.className.equals(node.className)
+                    && value.equals("text".equals(attribute) ? n.text : n.resourceId)) == 1
+                    ? xpath : "(" + xpath + ")[" + position + "]";
+        }
+
+        return "(//" + node.className + ")[" + positionByClass(node) + "]";
+    }
+
+    private int positionByClass(UiNode node) {
+        int position = 1;
+        for (UiNode other : nodes) {
+            if (other == node) {
+                break;
+            }
+            if (other.className.equals(node.className)) {
+                position++;
+            }
+        }
+        return position;
+    }
+
+    private long count(Predicate<UiNode> predicate) {
+        return nodes.stream().filter(predicate).count();
+    }
+
+    /**
+     * Quote a value as an XPath string literal. XPath 1.0 has no escapes, so a value holding both
+     * quote characters is assembled with concat().
+     */
+    static String quote(String value) {
+        if (!value.contains("'")) {
+            return "'" + value + "'";
+        }
+        if (!value.contains("\"")) {
+            return "\"" + value + "\"";
+        }
+        return "concat('" + value.replace("'", "', \"'\", '") + "')";
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isEmpty();
+    }
+
+    /**
+     * Two words match when equal, or when both are at least four characters long and one edit apart
+     */
+    static boolean similar(String first, String second) {
+        if (first.equals(second)) {
+            return true;
+        }
+        if (first.length() < 4 || second.length() < 4 || Math.abs(first.length() - second.length()) > 1) {
+            return false;
+        }
+
+        int i = 0;
+        int j = 0;
+        int edits = 0;
+        while (i < first.length() && j < second.length()) {
+            if (first.charAt(i) == second.charAt(j)) {
+                i++;
+                j++;
+                continue;
+            }
+            if (++edits > 1) {
+                return false;
+            }
+            if (first.length() > second.length()) {
+                i++;
+            } else if (first.length() < second.length()) {
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return edits + (first.length() - i) + (second.length() - j) <= 1;
+    }
+
+    /**
+     * Split a label into lower-case words, breaking camelCase, snake_case and resource-id prefixes
+     */
+    static List<String> words(String value) {
+        if (value == null || value.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        String label = value;
+        int idSeparator = label.indexOf(":id/");
+        if (idSeparator >= 0) {
+            label = label.substring(idSeparator + 4);
+        }
+
+        String spaced = label.replaceAll("([a-z0-9])([A-Z])", "$1 $2");
+        List<String> words = new ArrayList<>();
+        for (String word : spaced.toLowerCase(Locale.ROOT).split("[^a-z0-9]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * A node of the view hierarchy
+     */
+    private static class UiNode {
+        private final String className;
+        private final String text;
+        private final String contentDesc;
+        private final String resourceId;
+        private final String bounds;
+        private final boolean clickable;
+        private final boolean displayed;
+        private final Set<String> words = new LinkedHashSet<>();
+
+        UiNode(String className, String text, String contentDesc, String resourceId, String bounds,
+               boolean clickable, boolean displayed) {
+            this.className = className;
+            this.text = text;
+            this.contentDesc = contentDesc;
+            this.resourceId = resourceId;
+            this.bounds = bounds;
+            this.clickable = clickable;
+            this.displayed = displayed;
+            words.addAll(words(text));
+            words.addAll(words(contentDesc));
+            words.addAll(words(resourceId));
+        }
+    }
+
+    /**
+     * A matched node with its locator and confidence score between 0 and 1
+     */
+    public record Match(String locator, String className, String text, String bounds, double score) {
+    }
+}
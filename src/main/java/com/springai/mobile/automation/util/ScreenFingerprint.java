@@ -0,0 +1,187 @@
+package com.springai.mobile.automation.util;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+
+/**
+ * Perceptual fingerprints of screenshots.
+ *
+ * Uses difference hashes: the image is averaged over a small grayscale grid and each bit records
+ * whether a cell is brighter than its right neighbour. Visually identical screens get the same
+ * or a very close hash even when small details like the status bar clock differ. The 64-bit hash
+ * (9x8 grid) only tells screens of different layouts apart; the 256-bit detailed hash (17x16
+ * grid) also separates screens that share a layout, like list rows or forms with other values.
+ */
+public final class ScreenFingerprint {
+
+    private static final int HASH_WIDTH = 9;
+    private static final int HASH_HEIGHT = 8;
+    private static final int DETAILED_WIDTH = 17;
+    private static final int DETAILED_HEIGHT = 16;
+
+    private ScreenFingerprint() {
+    }
+
+    /**
+     * Compute the difference hash of a screenshot file
+     * @param imageFile the screenshot
+     * @return the 64-bit hash
+     * @throws IOException if the image cannot be read
+     */
+    public static long differenceHash(File imageFile) throws IOException {
+        BufferedImage image = ImageIO.read(imageFile);
+        if (image == null) {
+            throw new IOException("Unsupported image format: " + imageFile);
+        }
+        return differenceHash(image);
+    }
+
+    /**
+     * Compute the difference hash of a decoded image
+     * @param image the image
+     * @return the 64-bit hash
+     */
+    public static long differenceHash(BufferedImage image) {
+        return hash(image, HASH_WIDTH, HASH_HEIGHT)[0];
+    }
+
+    /**
+     * Compute the 256-bit difference hash of a decoded image
+     * @param image the image
+     * @return the hash
+     */
+    public static Hash detailedHash(BufferedImage image) {
+        return new Hash(hash(image, DETAILED_WIDTH, DETAILED_HEIGHT));
+    }
+
+    /**
+     * Compute the 256-bit difference hash of a decoded image without its top rows, e.g. the status
+     * bar, whose clock and icons change while the screen below stays the same
+     * @param image the image
+     * @param cropTop pixels to leave out at the top
+     * @return the hash
+     */
+    public static Hash detailedHash(BufferedImage image, int cropTop) {
+        int top = Math.max(0, Math.min(cropTop, image.getHeight() - 1));
+        if (top == 0) {
+            return detailedHash(image);
+        }
+        // A view of the same pixels, nothing is copied
+        return detailedHash(image.getSubimage(0, top, image.getWidth(), image.getHeight() - top));
+    }
+
+    /**
+     * Number of differing bits between two hashes
+     * @param first the first hash
+     * @param second the second hash
+     * @return the Hamming distance, 0 for identical screens
+     */
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    /**
+     * Average the image over a width x height grid and pack one bit per horizontal neighbour pair,
+     * 64 bits per word
+     */
+    private static long[] hash(BufferedImage image, int width, int height) {
+        int[] cells = averageBrightness(image, width, height);
+
+        int bits = (width - 1) * height;
+        long[] words = new long[(bits + 63) / 64];
+        int bit = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width - 1; x++) {
+                int left = cells[y * width + x];
+                int right = cells[y * width + x + 1];
+                words[bit / 64] = (words[bit / 64] << 1) | (left > right ? 1 : 0);
+                bit++;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Mean brightness of each cell of a width x height grid. Every pixel counts, unlike a scaled
+     * draw that samples a few pixels per cell and misses small changes such as text in a field.
+     * @return brightness per cell, row by row, in 1/16 gray levels
+     */
+    private static int[] averageBrightness(BufferedImage image, int width, int height) {
+        int imageWidth = image.getWidth();
+        int imageHeight = image.getHeight();
+        int[] cellOfColumn = new int[imageWidth];
+        for (int x = 0; x < imageWidth; x++) {
+            cellOfColumn[x] = (int) ((long) x * width / imageWidth);
+        }
+
+        long[] sums = new long[width * height];
+        long[] counts = new long[width * height];
+        int[] row = new int[imageWidth];
+        for (int y = 0; y < imageHeight; y++) {
+            image.getRGB(0, y, imageWidth, 1, row, 0, imageWidth);
+            int rowOffset = (int) ((long) y * height / imageHeight) * width;
+            for (int x = 0; x < imageWidth; x++) {
+                int rgb = row[x];
+                int cell = rowOffset + cellOfColumn[x];
+                sums[cell] += (((rgb >> 16) & 0xff) * 299 + ((rgb >> 8) & 0xff) * 587 + (rgb & 0xff) * 114) / 1000;
+                counts[cell]++;
+            }
+        }
+
+        int[] cells = new int[width * height];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = counts[i] > 0 ? (int) (sums[i] * 16 / counts[i]) : 0;
+        }
+        return cells;
+    }
+
+    /**
+     * A difference hash wider than 64 bits
+     */
+    public static final class Hash {
+
+        private final long[] words;
+
+        private Hash(long[] words) {
+            this.words = words;
+        }
+
+        /**
+         * Number of differing bits to another hash of the same size
+         * @param other the other hash
+         * @return the Hamming distance, 0 for identical screens
+         */
+        public int distance(Hash other) {
+            int distance = 0;
+            for (int i = 0; i < words.length; i++) {
+                distance += Long.bitCount(words[i] ^ other.words[i]);
+            }
+            return distance;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Hash hash && Arrays.equals(words, hash.words);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(words);
+        }
+
+        /**
+         * @return the hash as hexadecimal digits
+         */
+        @Override
+        public String toString() {
+            StringBuilder hex = new StringBuilder();
+            for (long word : words) {
+                hex.append(String.format("%016x", word));
+            }
+            return hex.toString();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.springai.mobile.automation.util;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Prepares device screenshots for vision calls.
+ *
+ * The decoded screenshot is optionally cropped at the top (status bar), downscaled so its longest
+ * edge fits a maximum, optionally converted to grayscale and encoded once, straight into the byte
+ * array that is attached to the request. The result knows how it was transformed so bounds
+ * reported by the model can be mapped back to device coordinates.
+ */
+public final class ScreenshotEncoder {
+
+    private ScreenshotEncoder() {
+    }
+
+    /**
+     * Encode a screenshot for sending
+     * @param screenshot the decoded device screenshot
+     * @param maxEdge maximum length of the longest edge in pixels, 0 to keep the size
+     * @param cropTop device pixels to drop from the top, e.g. the status bar
+     * @param grayscale whether to drop colour
+     * @param format "jpeg" or "png"
+     * @param jpegQuality JPEG quality between 0 and 1
+     * @return the encoded image
+     * @throws IOException if the image cannot be encoded
+     */
+    public static EncodedScreenshot encode(BufferedImage screenshot, int maxEdge, int cropTop, boolean grayscale,
+            String format, float jpegQuality) throws IOException {
+        int top = Math.max(0, Math.min(cropTop, screenshot.getHeight() - 1));
+        int sourceWidth = screenshot.getWidth();
+        int sourceHeight = screenshot.getHeight() - top;
+
+        int longestEdge = Math.max(sourceWidth, sourceHeight);
+        double scale = maxEdge > 0 && longestEdge > maxEdge ? (double) maxEdge / longestEdge : 1.0;
+        int width = Math.max(1, (int) Math.round(sourceWidth * scale));
+        int height = Math.max(1, (int) Math.round(sourceHeight * scale));
+
+        BufferedImage prepared = new BufferedImage(width, height,
+                grayscale ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = prepared.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(screenshot, 0, 0, width, height, 0, top, sourceWidth, top + sourceHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        boolean png = "png".equalsIgnoreCase(format);
+        // Rough preallocation: a quarter byte per pixel is typical for UI screenshots
+        ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(8192, width * height / 4));
+        if (png) {
+            ImageIO.write(prepared, "png", output);
+        } else {
+            writeJpeg(prepared, jpegQuality, output);
+        }
+
+        return new EncodedScreenshot(output.toByteArray(), png ? "image/png" : "image/jpeg",
+                width, height, scale, top);
+    }
+
+    private static void writeJpeg(BufferedImage image, float quality, ByteArrayOutputStream output)
+            throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("No JPEG writer available");
+        }
+
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(Math.max(0f, Math.min(1f, quality)));
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * A screenshot encoded for sending and the transformation from device coordinates
+     * @param data the encoded image
+     * @param mimeType MIME type of the encoding
+     * @param width width of the encoded image
+     * @param height height of the encoded image
+     * @param scale factor applied to device pixels
+     * @param cropTop device pixels removed from the top before scaling
+     */
+    public record EncodedScreenshot(byte[] data, String mimeType, int width, int height, double scale, int cropTop) {
+
+        /**
+         * Map a bounds object ({x, y, width, height}) in encoded image pixels back to device pixels
+         * @param bounds the bounds reported by the model
+         * @return new bounds in device pixels, or the input if it has no numeric coordinates
+         */
+        public Map<String, Object> toDeviceBounds(Map<String, Object> bounds) {
+            if (bounds == null) {
+                return null;
+            }
+
+            Map<String, Object> device = new LinkedHashMap<>(bounds);
+            for (String key : new String[] {"x", "y", "width", "height"}) {
+                if (bounds.get(key) instanceof Number value) {
+                    long mapped = Math.round(value.doubleValue() / scale);
+                    device.put(key, "y".equals(key) ? mapped + cropTop : mapped);
+                }
+            }
+            return device;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.springai.mobile.automation.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent calls with the same key into one execution.
+ *
+ * The first caller for a key runs the call on its own thread; callers arriving while it is in
+ * flight wait for and share its result or failure. A key accepts at most {@code maxWaiters}
+ * waiters, and a waiter gives up after {@code waitTimeoutMs}; in both cases the caller runs the
+ * call itself rather than failing.
+ *
+ * @param <T> the result type
+ */
+public class SingleFlight<T> {
+
+    private final ConcurrentHashMap<String, Flight<T>> flights = new ConcurrentHashMap<>();
+    private final int maxWaiters;
+    private final long waitTimeoutMs;
+    private final LongAdder shared = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    /**
+     * @param maxWaiters maximum callers waiting on one in-flight call
+     * @param waitTimeoutMs how long a waiter waits before running the call itself
+     */
+    public SingleFlight(int maxWaiters, long waitTimeoutMs) {
+        this.maxWaiters = maxWaiters;
+        this.waitTimeoutMs = waitTimeoutMs;
+    }
+
+    /**
+     * Run the call, or share the result of an identical call already in flight
+     * @param key identifies identical calls
+     * @param call the call to run
+     * @return the result
+     * @throws Exception the failure of the call, shared with all waiters
+     */
+    public T execute(String key, Callable<T> call) throws Exception {
+        Flight<T> own = new Flight<>();
+        Flight<T> existing = flights.putIfAbsent(key, own);
+        if (existing == null) {
+            try {
+                T result = call.call();
+                own.result.complete(result);
+                return result;
+            } catch (Exception e) {
+                own.result.completeExceptionally(e);
+                throw e;
+            } finally {
+                flights.remove(key, own);
+            }
+        }
+
+        if (existing.waiters.incrementAndGet() > maxWaiters) {
+            existing.waiters.decrementAndGet();
+            bypassed.increment();
+            return call.call();
+        }
+
+        try {
+            T result = existing.result.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+            shared.increment();
+            return result;
+        } catch (TimeoutException e) {
+            timedOut.increment();
+            return call.call();
+        } catch (ExecutionException e) {
+            shared.increment();
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        } finally {
+            existing.waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of keys with a call in flight
+     */
+    public int getInFlight() {
+        return flights.size();
+    }
+
+    /**
+     * @return number of callers currently waiting on an in-flight call
+     */
+    public int getWaiting() {
+        int waiting = 0;
+        for (Flight<T> flight : flights.values()) {
+            waiting += flight.waiters.get();
+        }
+        return waiting;
+    }
+
+    /**
+     * @return number of calls answered by another caller's in-flight call
+     */
+    public long getShared() {
+        return shared.sum();
+    }
+
+    /**
+     * @return number of calls run separately because the key had too many waiters
+     */
+    public long getBypassed() {
+        return bypassed.sum();
+    }
+
+    /**
+     * @return number of waiters that gave up and ran the call themselves
+     */
+    public long getTimedOut() {
+        return timedOut.sum();
+    }
+
+    private static class Flight<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicInteger waiters = new AtomicInteger();
+    }
+}
@@ -0,0 +1,88 @@
+package com.springai.mobile.automation.util;
+
+import java.util.Locale;
+
+/**
+ * Embeds short texts such as element descriptions as fixed-size vectors, without a model.
+ *
+ * Words and character trigrams of each word are hashed into signed buckets (the hashing trick),
+ * and the vector is L2-normalized so the dot product of two vectors is their cosine similarity.
+ * Descriptions that share words or word fragments ("Login button", "Log in button") end up close.
+ */
+public final class TextVectors {
+
+    private static final float WORD_WEIGHT = 1.0f;
+    private static final float TRIGRAM_WEIGHT = 0.5f;
+
+    private TextVectors() {
+    }
+
+    /**
+     * Embed a text
+     * @param text the text
+     * @param dimensions size of the vector
+     * @return the L2-normalized vector, all zeros if the text has no letters or digits
+     */
+    public static float[] embed(String text, int dimensions) {
+        float[] vector = new float[dimensions];
+        if (text == null) {
+            return vector;
+        }
+
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            add(vector, "w:" + word, WORD_WEIGHT);
+
+            String padded = " " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                add(vector, padded.substring(i, i + 3), TRIGRAM_WEIGHT);
+            }
+        }
+
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * Cosine similarity of two normalized vectors
+     * @param first the first vector
+     * @param second the second vector
+     * @return the dot product
+     */
+    public static double similarity(float[] first, float[] second) {
+        double dot = 0;
+        for (int i = 0; i < first.length; i++) {
+            dot += first[i] * second[i];
+        }
+        return dot;
+    }
+
+    private static void add(float[] vector, String feature, float weight) {
+        int hash = mix(feature.hashCode());
+        int bucket = Math.floorMod(hash, vector.length);
+        vector[bucket] += (hash & 0x80000000) == 0 ? weight : -weight;
+    }
+
+    /**
+     * Spread String.hashCode bits, which are poor in the low bits for short strings
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,169 @@
+package com.springai.mobile.automation.service.ai;
+
+import com.springai.mobile.automation.model.Instruction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.ChatClient;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.Generation;
+import org.springframework.ai.chat.StreamingChatClient;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ChatGateway retries and limiter permits
+ */
+public class ChatGatewayTest {
+
+    private static final Prompt PROMPT = new Prompt("Tap the login button");
+
+    private SimpleMeterRegistry meterRegistry;
+    private ChatLimiter chatLimiter;
+    private ChatGateway chatGateway;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        chatLimiter = new ChatLimiter(meterRegistry, 1000, 1000, 4);
+        ReflectionTestUtils.setField(chatLimiter, "enabled", true);
+        ReflectionTestUtils.setField(chatLimiter, "minConcurrency", 1);
+        ReflectionTestUtils.setField(chatLimiter, "maxConcurrency", 16);
+        ReflectionTestUtils.setField(chatLimiter, "targetLatencyMs", 8000L);
+
+        chatGateway = new ChatGateway(chatLimiter, meterRegistry, 32, 5000, 0.95, 4);
+        ReflectionTestUtils.setField(chatGateway, "coalescingEnabled", true);
+        ReflectionTestUtils.setField(chatGateway, "maxAttempts", 3);
+        ReflectionTestUtils.setField(chatGateway, "baseDelayMs", 1L);
+        ReflectionTestUtils.setField(chatGateway, "maxDelayMs", 5L);
+        ReflectionTestUtils.setField(chatGateway, "retryDeadlineMs", 5000L);
+        ReflectionTestUtils.setField(chatGateway, "planningDeadlineMs", 5000L);
+        ReflectionTestUtils.setField(chatGateway, "analysisDeadlineMs", 5000L);
+        ReflectionTestUtils.setField(chatGateway, "hedgingEnabled", false);
+        ReflectionTestUtils.setField(chatGateway, "minHedgeDelayMs", 2000L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        chatGateway.shutdown();
+    }
+
+    @Test
+    public void testThrottledCallIsRetriedWithSmallerLimit() throws Exception {
+        ChatClient chatClient = mock(ChatClient.class);
+        when(chatClient.call(any(Prompt.class)))
+                .thenThrow(new RuntimeException("429 Too Many Requests"))
+                .thenReturn(response("plan"));
+
+        assertEquals("plan", chatGateway.call(ChatGateway.Operation.PLANNING, chatClient, PROMPT,
+                Instruction.Priority.INTERACTIVE));
+
+        verify(chatClient, times(2)).call(any(Prompt.class));
+        assertEquals(1.0, meterRegistry.get("automation.ai.retries").counter().count());
+        assertEquals(2, chatLimiter.getLimit());
+        assertEquals(0, chatLimiter.getInFlight());
+    }
+
+    @Test
+    public void testRetryGivesUpAfterMaxAttempts() {
+        ChatClient chatClient = mock(ChatClient.class);
+        when(chatClient.call(any(Prompt.class))).thenThrow(new RuntimeException("503 Service Unavailable"));
+
+        assertThrows(RuntimeException.class, () -> chatGateway.call(ChatGateway.Operation.ANALYSIS, chatClient,
+                PROMPT, Instruction.Priority.BATCH));
+
+        verify(chatClient, times(3)).call(any(Prompt.class));
+        assertEquals(0, chatLimiter.getInFlight());
+    }
+
+    @Test
+    public void testNonRetryableFailureIsNotRetried() {
+        ChatClient chatClient = mock(ChatClient.class);
+        when(chatClient.call(any(Prompt.class))).thenThrow(new IllegalArgumentException("400 Bad Request"));
+
+        assertThrows(IllegalArgumentException.class, () -> chatGateway.call(ChatGateway.Operation.PLANNING,
+                chatClient, PROMPT, Instruction.Priority.INTERACTIVE));
+
+        verify(chatClient, times(1)).call(any(Prompt.class));
+        assertEquals(4, chatLimiter.getLimit());
+    }
+
+    @Test
+    public void testStreamRetriedBeforeFirstChunk() {
+        StreamingChatClient chatClient = mock(StreamingChatClient.class);
+        AtomicInteger subscriptions = new AtomicInteger();
+        when(chatClient.stream(any(Prompt.class))).thenReturn(Flux.defer(() -> subscriptions.incrementAndGet() == 1
+                ? Flux.error(new RuntimeException("RESOURCE_EXHAUSTED"))
+                : Flux.just(response("step 1"), response("step 2"))));
+
+        List<ChatResponse> chunks = chatGateway.stream(ChatGateway.Operation.PLANNING, chatClient, PROMPT,
+                Instruction.Priority.INTERACTIVE).collectList().block(Duration.ofSeconds(5));
+
+        assertEquals(2, chunks.size());
+        assertEquals(2, subscriptions.get());
+    }
+
+    @Test
+    public void testStreamNotRetriedAfterChunkDelivered() {
+        StreamingChatClient chatClient = mock(StreamingChatClient.class);
+        AtomicInteger subscriptions = new AtomicInteger();
+        when(chatClient.stream(any(Prompt.class))).thenReturn(Flux.defer(() -> {
+            subscriptions.incrementAndGet();
+            return Flux.concat(Flux.just(response("step 1")), Flux.error(new RuntimeException("429")));
+        }));
+
+        Flux<ChatResponse> stream = chatGateway.stream(ChatGateway.Operation.PLANNING, chatClient, PROMPT,
+                Instruction.Priority.INTERACTIVE);
+
+        assertThrows(RuntimeException.class, () -> stream.collectList().block(Duration.ofSeconds(5)));
+        assertEquals(1, subscriptions.get());
+    }
+
+    @Test
+    public void testCompletedStreamGrowsLimit() {
+        StreamingChatClient chatClient = mock(StreamingChatClient.class);
+        when(chatClient.stream(any(Prompt.class))).thenReturn(Flux.just(response("step 1"), response("step 2")));
+        ReflectionTestUtils.setField(chatLimiter, "limit", 1.0);
+
+        chatGateway.stream(ChatGateway.Operation.PLANNING, chatClient, PROMPT, Instruction.Priority.INTERACTIVE)
+                .collectList().block(Duration.ofSeconds(5));
+
+        assertEquals(2, chatLimiter.getLimit());
+        assertEquals(0, chatLimiter.getInFlight());
+    }
+
+    @Test
+    public void testSlowStreamFailsAtOverallDeadline() {
+        ReflectionTestUtils.setField(chatGateway, "planningDeadlineMs", 300L);
+        StreamingChatClient chatClient = mock(StreamingChatClient.class);
+        // Each chunk arrives well within the deadline, the whole stream does not
+        when(chatClient.stream(any(Prompt.class))).thenReturn(Flux.interval(Duration.ofMillis(50))
+                .map(i -> response("step " + i))
+                .take(100));
+
+        Flux<ChatResponse> stream = chatGateway.stream(ChatGateway.Operation.PLANNING, chatClient, PROMPT,
+                Instruction.Priority.INTERACTIVE);
+
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> stream.collectList().block(Duration.ofSeconds(5)));
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        assertEquals(1.0, meterRegistry.get("automation.ai.call.timeouts").tag("operation", "planning")
+                .counter().count());
+        assertEquals(0, chatLimiter.getInFlight());
+    }
+
+    private static ChatResponse response(String content) {
+        return new ChatResponse(List.of(new Generation(content)));
+    }
+}
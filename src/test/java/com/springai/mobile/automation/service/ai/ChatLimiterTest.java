@@ -0,0 +1,143 @@
+package com.springai.mobile.automation.service.ai;
+
+import com.springai.mobile.automation.model.Instruction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ChatLimiter
+ */
+public class ChatLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void testThrottledCallHalvesLimit() {
+        ChatLimiter limiter = limiter(1000, 1000, 4);
+
+        assertThrows(IllegalStateException.class, () -> limiter.execute(Instruction.Priority.INTERACTIVE,
+                deadline(1000), () -> {
+                    throw new IllegalStateException("429 Too Many Requests");
+                }));
+
+        assertEquals(2, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(1.0, meterRegistry.get("automation.ai.limiter.throttled").counter().count());
+    }
+
+    @Test
+    public void testOtherFailureKeepsLimit() {
+        ChatLimiter limiter = limiter(1000, 1000, 4);
+
+        assertThrows(IllegalArgumentException.class, () -> limiter.execute(Instruction.Priority.INTERACTIVE,
+                deadline(1000), () -> {
+                    throw new IllegalArgumentException("bad prompt");
+                }));
+
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void testSlowCallShrinksLimit() throws Exception {
+        ChatLimiter limiter = limiter(1000, 1000, 4);
+        ReflectionTestUtils.setField(limiter, "targetLatencyMs", -1L);
+
+        limiter.execute(Instruction.Priority.INTERACTIVE, deadline(1000), () -> "slow");
+
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    public void testFastCallsGrowLimit() throws Exception {
+        ChatLimiter limiter = limiter(1000, 1000, 2);
+
+        // Each fast call adds 1/limit: 2 -> 2.5 -> 2.9 -> 3.24
+        for (int i = 0; i < 3; i++) {
+            limiter.execute(Instruction.Priority.INTERACTIVE, deadline(1000), () -> "fast");
+        }
+
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    public void testPermitsCappedByLimit() throws Exception {
+        ChatLimiter limiter = limiter(1000, 1000, 2);
+
+        ChatLimiter.Permit first = limiter.acquire(Instruction.Priority.INTERACTIVE, deadline(1000));
+        ChatLimiter.Permit second = limiter.acquire(Instruction.Priority.BATCH, deadline(1000));
+
+        assertEquals(2, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire(Instruction.Priority.INTERACTIVE).isEmpty());
+        assertThrows(TimeoutException.class, () -> limiter.acquire(Instruction.Priority.INTERACTIVE, deadline(50)));
+        assertEquals(1.0, meterRegistry.get("automation.ai.limiter.rejected").counter().count());
+
+        first.release();
+        Optional<ChatLimiter.Permit> third = limiter.tryAcquire(Instruction.Priority.BATCH);
+        assertTrue(third.isPresent());
+        second.release();
+        third.get().release();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testReleaseIsIdempotent() throws Exception {
+        ChatLimiter limiter = limiter(1000, 1000, 2);
+
+        ChatLimiter.Permit permit = limiter.acquire(Instruction.Priority.INTERACTIVE, deadline(1000));
+        permit.release();
+        permit.release();
+
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testEmptyTokenBucketMakesCallersWait() throws Exception {
+        // One token, refilled far slower than the test runs
+        ChatLimiter limiter = limiter(0.001, 1, 4);
+
+        limiter.acquire(Instruction.Priority.INTERACTIVE, deadline(1000)).release();
+
+        assertTrue(limiter.tryAcquire(Instruction.Priority.INTERACTIVE).isEmpty());
+        assertThrows(TimeoutException.class, () -> limiter.acquire(Instruction.Priority.INTERACTIVE, deadline(50)));
+    }
+
+    @Test
+    public void testDisabledLimiterAdmitsEverything() throws Exception {
+        ChatLimiter limiter = limiter(0.001, 1, 1);
+        ReflectionTestUtils.setField(limiter, "enabled", false);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire(Instruction.Priority.BATCH, deadline(0));
+        }
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testFailureClassification() {
+        assertTrue(ChatLimiter.isThrottled(new RuntimeException("wrapped",
+                new IllegalStateException("RESOURCE_EXHAUSTED: quota exceeded"))));
+        assertTrue(ChatLimiter.isRetryable(new RuntimeException("503 Service Unavailable")));
+        assertFalse(ChatLimiter.isThrottled(new RuntimeException("503 Service Unavailable")));
+        assertFalse(ChatLimiter.isRetryable(new IllegalArgumentException("400 Bad Request")));
+    }
+
+    private ChatLimiter limiter(double rate, double burst, int initialConcurrency) {
+        ChatLimiter limiter = new ChatLimiter(meterRegistry, rate, burst, initialConcurrency);
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "minConcurrency", 1);
+        ReflectionTestUtils.setField(limiter, "maxConcurrency", 16);
+        ReflectionTestUtils.setField(limiter, "targetLatencyMs", 8000L);
+        return limiter;
+    }
+
+    private static long deadline(long millis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
@@ -0,0 +1,81 @@
+package com.springai.mobile.automation.service.ai;
+
+import com.springai.mobile.automation.util.ScreenFingerprint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ScreenAnalysisCache
+ */
+public class ScreenAnalysisCacheTest {
+
+    private static final String SCREEN = "com.example.app/.LoginActivity";
+
+    private ScreenAnalysisCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new ScreenAnalysisCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "maxBytes", 1_000_000L);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "maxDistance", 0);
+        ReflectionTestUtils.setField(cache, "prefetchTtlMs", 60_000L);
+    }
+
+    @Test
+    public void testInvalidateDropsOnlyThatElement() {
+        ScreenFingerprint.Hash fingerprint = ScreenFingerprint.detailedHash(gradient(false));
+        cache.put(SCREEN, fingerprint, "Login button", result("//android.widget.Button[@text='Login']"));
+        cache.put(SCREEN, fingerprint, "Password field", result("//android.widget.EditText[2]"));
+
+        cache.invalidate(SCREEN, fingerprint, "login  Button");
+
+        assertTrue(cache.get(SCREEN, fingerprint, "Login button").isEmpty());
+        assertTrue(cache.get(SCREEN, fingerprint, "Password field").isPresent());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testInvalidateDropsNearbyScreenshots() {
+        ReflectionTestUtils.setField(cache, "maxDistance", 8);
+        ScreenFingerprint.Hash cached = ScreenFingerprint.detailedHash(gradient(false));
+        ScreenFingerprint.Hash current = ScreenFingerprint.detailedHash(gradient(true));
+        assertNotEquals(cached, current);
+        cache.put(SCREEN, cached, "Login button", result("//android.widget.Button[@text='Login']"));
+        assertTrue(cache.get(SCREEN, current, "Login button").isPresent());
+
+        cache.invalidate(SCREEN, current, "Login button");
+
+        assertTrue(cache.get(SCREEN, current, "Login button").isEmpty());
+        assertEquals(0, cache.size());
+    }
+
+    private static Map<String, Object> result(String xpath) {
+        return Map.of(
+                "screenDescription", "Login Screen",
+                "matchedElement", Map.of("suggestedLocators", Map.of("xpath", xpath)));
+    }
+
+    /**
+     * A horizontal gradient, optionally with a small white patch in its top left corner
+     */
+    private static BufferedImage gradient(boolean patched) {
+        BufferedImage image = new BufferedImage(360, 800, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < image.getWidth(); x++) {
+            int level = x * 255 / image.getWidth();
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.setRGB(x, y, patched && x < 60 && y < 40 ? 0xFFFFFF : level << 16 | level << 8 | level);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,112 @@
+package com.springai.mobile.automation.service.execution;
+
+import com.springai.mobile.automation.service.mobile.DevicePool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ExecutionEngine
+ */
+public class ExecutionEngineTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ExecutionEngine engine;
+
+    @BeforeEach
+    public void setUp() {
+        DevicePool devicePool = mock(DevicePool.class);
+        when(devicePool.getSize()).thenReturn(1);
+
+        meterRegistry = new SimpleMeterRegistry();
+        engine = new ExecutionEngine(devicePool, meterRegistry);
+        ReflectionTestUtils.setField(engine, "maxConcurrency", 0);
+        ReflectionTestUtils.setField(engine, "queueCapacity", 1);
+        ReflectionTestUtils.setField(engine, "virtualThreads", false);
+        engine.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void testConcurrencyDefaultsToDevicePoolSize() {
+        assertEquals(1, engine.getConcurrency());
+        assertEquals(1, engine.getFreeSlots());
+    }
+
+    @Test
+    public void testRejectsWorkBeyondQueueCapacity() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> running = engine.submit(() -> {
+            started.countDown();
+            await(release);
+            return "running";
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = engine.submit(() -> "queued");
+
+        assertEquals(1, engine.getActiveCount());
+        assertEquals(1, engine.getQueueDepth());
+        assertEquals(0, engine.getFreeSlots());
+        assertThrows(RejectedExecutionException.class, () -> engine.submit(() -> "rejected"));
+        assertEquals(1.0, meterRegistry.get("automation.execution.rejected").counter().count());
+
+        release.countDown();
+        assertEquals("running", running.get(5, TimeUnit.SECONDS));
+        assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+        assertEquals(0, engine.getActiveCount());
+        assertEquals(0, engine.getQueueDepth());
+    }
+
+    @Test
+    public void testAdmitsWorkAgainAfterRunsFinish() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = engine.submit(() -> {
+            await(release);
+            return "first";
+        });
+        CompletableFuture<String> second = engine.submit(() -> "second");
+        assertThrows(RejectedExecutionException.class, () -> engine.submit(() -> "rejected"));
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+
+        assertEquals("third", engine.submit(() -> "third").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFailedRunReleasesItsSlot() throws Exception {
+        CompletableFuture<String> failed = engine.submit(() -> {
+            throw new IllegalStateException("device lost");
+        });
+
+        Exception e = assertThrows(Exception.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals("ok", engine.submit(() -> "ok").get(5, TimeUnit.SECONDS));
+        assertEquals(0, engine.getActiveCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
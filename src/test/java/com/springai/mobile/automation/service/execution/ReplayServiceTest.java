@@ -0,0 +1,238 @@
+package com.springai.mobile.automation.service.execution;
+
+import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.model.ReplayPlan;
+import com.springai.mobile.automation.model.TestAction;
+import com.springai.mobile.automation.repository.ReplayPlanRepository;
+import com.springai.mobile.automation.service.TestExecutionService;
+import com.springai.mobile.automation.util.JsonUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ReplayService
+ */
+public class ReplayServiceTest {
+
+    private static final String PASSWORD_LOCATOR = "//*[@resource-id='com.example:id/password']";
+    private static final String LOGIN_LOCATOR = "//*[@resource-id='com.example:id/login']";
+
+    @TempDir
+    Path screenshots;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ReplayPlanRepository replayPlanRepository;
+    private TestExecutionService testExecutionService;
+    private ReplayService replayService;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        replayPlanRepository = mock(ReplayPlanRepository.class);
+        when(replayPlanRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        testExecutionService = mock(TestExecutionService.class);
+
+        replayService = new ReplayService(replayPlanRepository, testExecutionService, meterRegistry);
+        ReflectionTestUtils.setField(replayService, "screenshotDirectory", screenshots.toString());
+        ReflectionTestUtils.setField(replayService, "fingerprintTolerance", 10);
+    }
+
+    @Test
+    public void testCompileStoresNextVersionOfPassedRun() {
+        Instruction passed = instruction(1L, Instruction.TestStatus.COMPLETED);
+        when(testExecutionService.getInstruction(1L)).thenReturn(Optional.of(passed));
+        when(testExecutionService.getActionsForInstruction(passed)).thenReturn(List.of(
+                action(1, TestAction.ActionType.TYPE, PASSWORD_LOCATOR, "secret", true),
+                action(2, TestAction.ActionType.TAP, LOGIN_LOCATOR, null, true)));
+        when(replayPlanRepository.findFirstByTextKeyOrderByVersionDesc(any()))
+                .thenReturn(Optional.of(ReplayPlan.builder().version(2).build()));
+
+        ReplayPlan plan = replayService.compile(1L);
+
+        assertEquals(3, plan.getVersion());
+        assertEquals(2, plan.getStepCount());
+        assertEquals(1L, plan.getSourceInstructionId());
+        ReplayService.ReplayStep[] steps = JsonUtils.fromJson(plan.getStepsJson(), ReplayService.ReplayStep[].class);
+        assertEquals(PASSWORD_LOCATOR, steps[0].elementLocator());
+        assertEquals("secret", steps[0].value());
+        assertEquals(TestAction.ActionType.TAP, steps[1].actionType());
+    }
+
+    @Test
+    public void testCompileRejectsUnfinishedRun() {
+        when(testExecutionService.getInstruction(1L))
+                .thenReturn(Optional.of(instruction(1L, Instruction.TestStatus.FAILED)));
+
+        assertThrows(IllegalStateException.class, () -> replayService.compile(1L));
+        verify(replayPlanRepository, never()).save(any());
+    }
+
+    @Test
+    public void testCompileRejectsRunWithFailedStep() {
+        Instruction passed = instruction(1L, Instruction.TestStatus.COMPLETED);
+        when(testExecutionService.getInstruction(1L)).thenReturn(Optional.of(passed));
+        when(testExecutionService.getActionsForInstruction(passed)).thenReturn(List.of(
+                action(1, TestAction.ActionType.TAP, LOGIN_LOCATOR, null, false)));
+
+        assertThrows(IllegalStateException.class, () -> replayService.compile(1L));
+    }
+
+    @Test
+    public void testCompileUsesLastAttemptOnly() {
+        Instruction passed = instruction(1L, Instruction.TestStatus.COMPLETED).toBuilder().attempts(2).build();
+        when(testExecutionService.getInstruction(1L)).thenReturn(Optional.of(passed));
+        // The first attempt failed on a node that was then taken over
+        TestAction firstAttempt = action(1, TestAction.ActionType.TAP, "//*[@text='Login']", null, false);
+        firstAttempt.setAttempt(1);
+        TestAction password = action(1, TestAction.ActionType.TYPE, PASSWORD_LOCATOR, "secret", true);
+        password.setAttempt(2);
+        TestAction login = action(2, TestAction.ActionType.TAP, LOGIN_LOCATOR, null, true);
+        login.setAttempt(2);
+        when(testExecutionService.getActionsForInstruction(passed)).thenReturn(List.of(firstAttempt, password, login));
+
+        ReplayPlan plan = replayService.compile(1L);
+
+        assertEquals(2, plan.getStepCount());
+        ReplayService.ReplayStep[] steps = JsonUtils.fromJson(plan.getStepsJson(), ReplayService.ReplayStep[].class);
+        assertEquals(PASSWORD_LOCATOR, steps[0].elementLocator());
+        assertEquals(LOGIN_LOCATOR, steps[1].elementLocator());
+    }
+
+    @Test
+    public void testCompileRejectsUnknownInstruction() {
+        when(testExecutionService.getInstruction(1L)).thenReturn(Optional.empty());
+
+        assertThrows(IllegalArgumentException.class, () -> replayService.compile(1L));
+    }
+
+    @Test
+    public void testLatestPlanIgnoresCaseAndSpacing() {
+        replayService.latestPlan("Log in  as \"Admin\"");
+        replayService.latestPlan("log in as \"Admin\"");
+        replayService.latestPlan("log in as \"admin\"");
+
+        ArgumentCaptor<String> keys = ArgumentCaptor.forClass(String.class);
+        verify(replayPlanRepository, times(3)).findFirstByTextKeyOrderByVersionDesc(keys.capture());
+        assertEquals(keys.getAllValues().get(0), keys.getAllValues().get(1));
+        assertNotEquals(keys.getAllValues().get(1), keys.getAllValues().get(2));
+    }
+
+    @Test
+    public void testReplayRunsRecordedStepsAndCountsFallbacks() {
+        Instruction instruction = instruction(5L, Instruction.TestStatus.PENDING);
+        when(testExecutionService.replayInstruction(eq(instruction), anyList())).thenAnswer(invocation -> {
+            List<TestAction> actions = invocation.getArgument(1);
+            // The second recorded locator went stale and the element was analyzed again
+            actions.get(0).setExecutedAt(LocalDateTime.now());
+            actions.get(1).setElementLocator("//*[@text='Sign in']");
+            actions.get(1).setExecutedAt(LocalDateTime.now());
+            return instruction.toBuilder().status(Instruction.TestStatus.COMPLETED).build();
+        });
+
+        Instruction result = replayService.replay(plan(), instruction);
+
+        assertEquals(Instruction.TestStatus.COMPLETED, result.getStatus());
+        verify(testExecutionService, never()).processInstruction(any());
+        assertEquals(2.0, meterRegistry.get("automation.replay.steps").counter().count());
+        assertEquals(1.0, meterRegistry.get("automation.replay.fallbacks").counter().count());
+    }
+
+    @Test
+    public void testReplayPassesRecordedLocators() {
+        Instruction instruction = instruction(5L, Instruction.TestStatus.PENDING);
+        when(testExecutionService.replayInstruction(eq(instruction), anyList())).thenReturn(instruction);
+
+        replayService.replay(plan(), instruction);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TestAction>> actions = ArgumentCaptor.forClass(List.class);
+        verify(testExecutionService).replayInstruction(eq(instruction), actions.capture());
+        assertEquals(PASSWORD_LOCATOR, actions.getValue().get(0).getElementLocator());
+        assertEquals("secret", actions.getValue().get(0).getValue());
+        assertSame(instruction, actions.getValue().get(1).getInstruction());
+    }
+
+    @Test
+    public void testReplayAsyncRunsInstructionCreatedClaimed() {
+        Instruction claimed = instruction(5L, Instruction.TestStatus.IN_PROGRESS);
+        when(testExecutionService.submitClaimedInstruction("Log in")).thenReturn(claimed);
+        when(testExecutionService.runClaimedAsync(eq(claimed), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(claimed));
+
+        replayService.replayAsync(plan()).join();
+
+        verify(testExecutionService, never()).submitInstruction(any());
+        verify(testExecutionService).runClaimedAsync(eq(claimed), anyList());
+        assertEquals(2.0, meterRegistry.get("automation.replay.steps").counter().count());
+    }
+
+    @Test
+    public void testUnreadablePlanIsPlannedInstead() {
+        Instruction instruction = instruction(5L, Instruction.TestStatus.PENDING);
+        when(testExecutionService.processInstruction(instruction)).thenReturn(instruction);
+        ReplayPlan broken = plan();
+        broken.setStepsJson("not json");
+
+        replayService.replay(broken, instruction);
+
+        verify(testExecutionService).processInstruction(instruction);
+        verify(testExecutionService, never()).replayInstruction(any(), anyList());
+    }
+
+    @Test
+    public void testReplayOfInstructionClaimedElsewhereFails() {
+        Instruction instruction = instruction(5L, Instruction.TestStatus.PENDING);
+        when(testExecutionService.replayInstruction(eq(instruction), anyList()))
+                .thenThrow(new IllegalStateException("Instruction 5 is already running"));
+
+        assertThrows(IllegalStateException.class, () -> replayService.replay(plan(), instruction));
+        assertEquals(0.0, meterRegistry.get("automation.replay.steps").counter().count());
+    }
+
+    private static ReplayPlan plan() {
+        List<ReplayService.ReplayStep> steps = List.of(
+                new ReplayService.ReplayStep(1, TestAction.ActionType.TYPE, "Password field", PASSWORD_LOCATOR,
+                        "secret", null),
+                new ReplayService.ReplayStep(2, TestAction.ActionType.TAP, "Login button", LOGIN_LOCATOR,
+                        null, null));
+        return ReplayPlan.builder()
+                .id(9L)
+                .textKey("key")
+                .instructionText("Log in")
+                .version(1)
+                .stepsJson(JsonUtils.toJson(steps))
+                .stepCount(steps.size())
+                .build();
+    }
+
+    private static Instruction instruction(Long id, Instruction.TestStatus status) {
+        return Instruction.builder().id(id).text("Log in").status(status).build();
+    }
+
+    private static TestAction action(int sequence, TestAction.ActionType type, String locator, String value,
+            boolean successful) {
+        return TestAction.builder()
+                .sequence(sequence)
+                .actionType(type)
+                .elementLocator(locator)
+                .value(value)
+                .successful(successful)
+                .build();
+    }
+}
@@ -0,0 +1,187 @@
+package com.springai.mobile.automation.service.execution;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RunEvents, with clients attached to the emitters the way the servlet layer does
+ */
+public class RunEventsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RunEvents runEvents;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        runEvents = new RunEvents(meterRegistry);
+        ReflectionTestUtils.setField(runEvents, "bufferSize", 2);
+        ReflectionTestUtils.setField(runEvents, "timeoutMs", 60000L);
+        ReflectionTestUtils.setField(runEvents, "senderThreads", 4);
+        ReflectionTestUtils.setField(runEvents, "sendTimeoutMs", 200L);
+        runEvents.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        runEvents.shutdown();
+    }
+
+    @Test
+    public void testEventsReachSubscribersOfTheirInstruction() throws Exception {
+        Client first = connect(runEvents.subscribe(1L), null);
+        Client second = connect(runEvents.subscribe(2L), null);
+        Client all = connect(runEvents.subscribe(null), null);
+
+        runEvents.publish(event(1L, RunEvent.Type.PLANNED));
+
+        assertEquals(1L, first.next().instructionId());
+        assertEquals(1L, all.next().instructionId());
+        assertNull(second.received.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(3, runEvents.getSubscriberCount());
+    }
+
+    @Test
+    public void testSlowClientDoesNotHoldUpOthers() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        Client slow = connect(runEvents.subscribe(1L), gate);
+        Client fast = connect(runEvents.subscribe(1L), null);
+        try {
+            runEvents.publish(event(1L, RunEvent.Type.PLANNED));
+            assertTrue(slow.sendStarted.await(5, TimeUnit.SECONDS));
+            runEvents.publish(event(1L, RunEvent.Type.EXECUTING));
+
+            assertEquals(RunEvent.Type.PLANNED, fast.next().type());
+            assertEquals(RunEvent.Type.EXECUTING, fast.next().type());
+        } finally {
+            gate.countDown();
+        }
+    }
+
+    @Test
+    public void testClientThatFallsBehindLosesOldestEvents() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        Client slow = connect(runEvents.subscribe(1L), gate);
+        ReflectionTestUtils.setField(runEvents, "sendTimeoutMs", 60000L);
+
+        runEvents.publish(event(1L, RunEvent.Type.PLANNED));
+        assertTrue(slow.sendStarted.await(5, TimeUnit.SECONDS));
+        runEvents.publish(event(1L, RunEvent.Type.ANALYZING));
+        runEvents.publish(event(1L, RunEvent.Type.EXECUTING));
+        runEvents.publish(event(1L, RunEvent.Type.STEP_PASSED));
+        runEvents.publish(event(1L, RunEvent.Type.FINISHED));
+        gate.countDown();
+
+        assertEquals(RunEvent.Type.PLANNED, slow.next().type());
+        assertEquals(RunEvent.Type.STEP_PASSED, slow.next().type());
+        assertEquals(RunEvent.Type.FINISHED, slow.next().type());
+        assertEquals(2.0, meterRegistry.get("automation.events.dropped").counter().count());
+    }
+
+    @Test
+    public void testBlockedClientIsDisconnected() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        Client blocked = connect(runEvents.subscribe(1L), gate);
+        try {
+            runEvents.publish(event(1L, RunEvent.Type.PLANNED));
+            assertTrue(blocked.sendStarted.await(5, TimeUnit.SECONDS));
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (runEvents.getSubscriberCount() > 0) {
+                assertTrue(System.nanoTime() < deadline, "blocked client was not disconnected");
+                Thread.onSpinWait();
+            }
+            assertEquals(1.0, meterRegistry.get("automation.events.stalled").counter().count());
+        } finally {
+            gate.countDown();
+        }
+        assertTrue(blocked.failed.await(5, TimeUnit.SECONDS));
+
+        // Nothing more is sent to a disconnected client
+        runEvents.publish(event(1L, RunEvent.Type.EXECUTING));
+        assertNull(blocked.received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    private static RunEvent event(Long instructionId, RunEvent.Type type) {
+        return new RunEvent(instructionId, type, null, null, null, null, null, null, System.currentTimeMillis());
+    }
+
+    /**
+     * Attach a client to an emitter, as the servlet layer does once the controller returns it
+     * @param gate if set, every write blocks until it is counted down
+     */
+    private static Client connect(SseEmitter emitter, CountDownLatch gate) throws Exception {
+        Client client = new Client(gate);
+        Class<?> handlerType = Class.forName(ResponseBodyEmitter.class.getName() + "$Handler");
+        Object handler = Proxy.newProxyInstance(handlerType.getClassLoader(), new Class<?>[] {handlerType}, client);
+        ReflectionTestUtils.invokeMethod(emitter, "initialize", handler);
+        return client;
+    }
+
+    /**
+     * Client side of an event stream
+     */
+    private static class Client implements InvocationHandler {
+
+        private final BlockingQueue<RunEvent> received = new LinkedBlockingQueue<>();
+        private final CountDownLatch sendStarted = new CountDownLatch(1);
+        private final CountDownLatch failed = new CountDownLatch(1);
+        private final CountDownLatch gate;
+
+        private Client(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("send")) {
+                sendStarted.countDown();
+                if (gate != null) {
+                    gate.await();
+                }
+                received.addAll(events(args[0]));
+            } else if (method.getName().equals("completeWithError")) {
+                failed.countDown();
+            }
+            return null;
+        }
+
+        private RunEvent next() throws InterruptedException {
+            RunEvent event = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event, "no event received");
+            return event;
+        }
+
+        private static List<RunEvent> events(Object data) {
+            List<RunEvent> events = new ArrayList<>();
+            if (data instanceof RunEvent event) {
+                events.add(event);
+            } else if (data instanceof Iterable<?> items) {
+                for (Object item : items) {
+                    if (item instanceof ResponseBodyEmitter.DataWithMediaType part
+                            && part.getData() instanceof RunEvent event) {
+                        events.add(event);
+                    }
+                }
+            }
+            return events;
+        }
+    }
+}
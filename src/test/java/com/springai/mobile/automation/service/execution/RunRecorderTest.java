@@ -0,0 +1,236 @@
+package com.springai.mobile.automation.service.execution;
+
+import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.model.TestAction;
+import com.springai.mobile.automation.repository.TestActionRepository;
+import com.springai.mobile.automation.service.worker.InstructionLeases;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for RunRecorder
+ */
+public class RunRecorderTest {
+
+    private final AtomicLong nextId = new AtomicLong(1);
+    private TestActionRepository testActionRepository;
+    private InstructionLeases instructionLeases;
+    private RunRecorder runRecorder;
+
+    @BeforeEach
+    public void setUp() {
+        testActionRepository = mock(TestActionRepository.class);
+        when(testActionRepository.saveAll(any())).thenAnswer(invocation -> {
+            List<TestAction> saved = new ArrayList<>();
+            for (TestAction action : invocation.<Iterable<TestAction>>getArgument(0)) {
+                if (action.getId() == null) {
+                    action.setId(nextId.getAndIncrement());
+                }
+                saved.add(action);
+            }
+            return saved;
+        });
+        instructionLeases = mock(InstructionLeases.class);
+
+        runRecorder = new RunRecorder(testActionRepository, instructionLeases, mock(JdbcTemplate.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(runRecorder, "flushIntervalMs", 60000L);
+        ReflectionTestUtils.setField(runRecorder, "flushSize", 200);
+        ReflectionTestUtils.setField(runRecorder, "durable", false);
+    }
+
+    @Test
+    public void testRecordIsBufferedUntilFlush() {
+        TestAction action = action(1);
+        runRecorder.record(action);
+        verify(testActionRepository, never()).saveAll(any());
+
+        runRecorder.flush();
+
+        verify(testActionRepository).saveAll(any());
+        assertEquals(1L, action.getId());
+    }
+
+    @Test
+    public void testLatestRecordOfAnActionIsWritten() {
+        TestAction action = action(1);
+        runRecorder.record(action);
+        action.setSuccessful(true);
+        action.setErrorMessage(null);
+        runRecorder.record(action);
+
+        runRecorder.flush();
+
+        List<TestAction> written = writtenActions();
+        assertEquals(1, written.size());
+        assertTrue(written.get(0).isSuccessful());
+    }
+
+    @Test
+    public void testCompleteWritesActionsBeforeInstruction() {
+        when(instructionLeases.finish(any())).thenReturn(true);
+        runRecorder.record(action(1));
+        runRecorder.record(action(2));
+
+        assertTrue(runRecorder.complete(instruction()));
+
+        InOrder order = inOrder(testActionRepository, instructionLeases);
+        order.verify(testActionRepository).saveAll(any());
+        order.verify(instructionLeases).finish(any());
+        assertEquals(2, writtenActions().size());
+    }
+
+    @Test
+    public void testFailedFlushKeepsActionsPending() {
+        when(testActionRepository.saveAll(any()))
+                .thenThrow(new TransientDataAccessResourceException("connection refused"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        runRecorder.record(action(1));
+
+        assertThrows(TransientDataAccessResourceException.class, () -> runRecorder.flush());
+        runRecorder.flush();
+
+        verify(testActionRepository, times(2)).saveAll(any());
+        assertEquals(1, writtenActions().size());
+    }
+
+    @Test
+    public void testCompleteRetriesUntilResultIsWritten() {
+        when(instructionLeases.finish(any()))
+                .thenThrow(new TransientDataAccessResourceException("connection refused"))
+                .thenReturn(true);
+
+        assertTrue(runRecorder.complete(instruction()));
+
+        verify(instructionLeases, times(2)).finish(any());
+        verify(instructionLeases, never()).abandon(any());
+    }
+
+    @Test
+    public void testRejectedActionIsDroppedAndOthersWritten() {
+        TestAction rejected = action(1);
+        TestAction accepted = action(2);
+        doAnswer(invocation -> {
+            List<TestAction> batch = new ArrayList<>();
+            invocation.<Iterable<TestAction>>getArgument(0).forEach(batch::add);
+            if (batch.stream().anyMatch(action -> action.getSequence() == 1)) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            batch.forEach(action -> action.setId(nextId.getAndIncrement()));
+            return batch;
+        }).when(testActionRepository).saveAll(any());
+        runRecorder.record(rejected);
+        runRecorder.record(accepted);
+
+        runRecorder.flush();
+
+        // The batch, then each action on its own
+        verify(testActionRepository, times(3)).saveAll(any());
+        assertNull(rejected.getId());
+        assertNotNull(accepted.getId());
+
+        runRecorder.flush();
+        verify(testActionRepository, times(3)).saveAll(any());
+    }
+
+    @Test
+    public void testCompleteGivesUpOnRejectedResult() {
+        when(instructionLeases.finish(any())).thenThrow(new DataIntegrityViolationException("value too long"));
+        Instruction instruction = instruction();
+
+        assertFalse(runRecorder.complete(instruction));
+
+        verify(instructionLeases, times(1)).finish(any());
+        verify(instructionLeases).abandon(instruction);
+    }
+
+    @Test
+    public void testLongTextIsTruncatedToColumnLength() {
+        when(instructionLeases.finish(any())).thenReturn(true);
+        TestAction action = action(1);
+        action.setErrorMessage("x".repeat(TestAction.ERROR_MESSAGE_LENGTH + 10));
+        Instruction instruction = instruction();
+        instruction.setResult("y".repeat(Instruction.RESULT_LENGTH + 10));
+        runRecorder.record(action);
+
+        assertTrue(runRecorder.complete(instruction));
+
+        assertEquals(TestAction.ERROR_MESSAGE_LENGTH, writtenActions().get(0).getErrorMessage().length());
+        assertEquals(Instruction.RESULT_LENGTH, instruction.getResult().length());
+    }
+
+    @Test
+    public void testCompleteReportsLostLease() {
+        when(instructionLeases.finish(any())).thenReturn(false);
+
+        assertFalse(runRecorder.complete(instruction()));
+        verify(instructionLeases, times(1)).finish(any());
+    }
+
+    @Test
+    public void testInterruptedCompleteAbandonsLease() {
+        when(instructionLeases.finish(any())).thenThrow(new TransientDataAccessResourceException("connection refused"));
+        Instruction instruction = instruction();
+
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(runRecorder.complete(instruction));
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+        verify(instructionLeases).abandon(instruction);
+    }
+
+    @Test
+    public void testDurableRecordWritesEachStep() {
+        ReflectionTestUtils.setField(runRecorder, "durable", true);
+
+        runRecorder.record(action(1));
+        runRecorder.record(action(2));
+
+        verify(testActionRepository, times(2)).saveAll(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<TestAction> writtenActions() {
+        ArgumentCaptor<Iterable<TestAction>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(testActionRepository, atLeastOnce()).saveAll(captor.capture());
+        List<TestAction> written = new ArrayList<>();
+        captor.getAllValues().get(captor.getAllValues().size() - 1).forEach(written::add);
+        return written;
+    }
+
+    private static TestAction action(int sequence) {
+        return TestAction.builder()
+                .actionType(TestAction.ActionType.TAP)
+                .elementDescription("Login button")
+                .sequence(sequence)
+                .successful(false)
+                .errorMessage("Element not found")
+                .build();
+    }
+
+    private static Instruction instruction() {
+        return Instruction.builder()
+                .id(7L)
+                .text("Log in")
+                .status(Instruction.TestStatus.COMPLETED)
+                .attempts(1)
+                .build();
+    }
+}
@@ -0,0 +1,165 @@
+package com.springai.mobile.automation.service.learning;
+
+import com.springai.mobile.automation.model.LearningEntry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for LearningMaintenance over an in-memory learning store
+ */
+public class LearningMaintenanceTest {
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    private final Map<String, LearningEntry> store = new LinkedHashMap<>();
+    private LearningService learningService;
+    private LearningMaintenance maintenance;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        learningService = mock(LearningService.class);
+        when(learningService.keys()).thenAnswer(invocation -> new ArrayList<>(store.keySet()));
+        when(learningService.entry(any())).thenAnswer(invocation ->
+                Optional.ofNullable(store.get(invocation.<String>getArgument(0))));
+        doAnswer(invocation -> {
+            LearningEntry entry = store.get(invocation.<String>getArgument(0));
+            if (entry != null) {
+                invocation.<Consumer<LearningEntry>>getArgument(1).accept(entry);
+            }
+            return null;
+        }).when(learningService).update(any(), any());
+        when(learningService.evict(any())).thenAnswer(invocation -> {
+            int removed = 0;
+            for (String key : invocation.<Collection<String>>getArgument(0)) {
+                if (store.remove(key) != null) {
+                    removed++;
+                }
+            }
+            return removed;
+        });
+        when(learningService.similarKeys(any(), anyDouble())).thenReturn(List.of());
+
+        maintenance = new LearningMaintenance(learningService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(maintenance, "enabled", true);
+        ReflectionTestUtils.setField(maintenance, "intervalMs", 30 * DAY_MS);
+        ReflectionTestUtils.setField(maintenance, "batchSize", 2);
+        ReflectionTestUtils.setField(maintenance, "decayGraceMs", 7 * DAY_MS);
+        ReflectionTestUtils.setField(maintenance, "decayHalfLifeMs", 30 * DAY_MS);
+        ReflectionTestUtils.setField(maintenance, "minConfidence", 0.1f);
+        ReflectionTestUtils.setField(maintenance, "mergeSimilarity", 0.95);
+        ReflectionTestUtils.setField(maintenance, "maxEntriesPerPackage", 100);
+    }
+
+    @Test
+    public void testDisabledPassDoesNothing() {
+        ReflectionTestUtils.setField(maintenance, "enabled", false);
+        put(entry("a", 0.9f, 60, true, 1));
+
+        assertEquals(new LearningMaintenance.Report(0, 0, 0, 0), maintenance.run());
+        verifyNoInteractions(learningService);
+    }
+
+    @Test
+    public void testRecentlyUsedEntryIsNotDecayed() {
+        put(entry("recent", 0.8f, 1, true, 1));
+
+        LearningMaintenance.Report report = maintenance.run();
+
+        assertEquals(1, report.scanned());
+        assertEquals(0, report.decayed());
+        assertEquals(0.8f, store.get("recent").getConfidenceScore(), 1e-6);
+    }
+
+    @Test
+    public void testUnusedEntryDecaysFasterAfterFailure() {
+        put(entry("passed", 0.8f, 60, true, 1));
+        put(entry("failed", 0.8f, 60, false, 1));
+
+        LearningMaintenance.Report report = maintenance.run();
+
+        // One half-life elapsed, counted twice for the failure
+        assertEquals(2, report.decayed());
+        assertEquals(0.4f, store.get("passed").getConfidenceScore(), 1e-4);
+        assertEquals(0.2f, store.get("failed").getConfidenceScore(), 1e-4);
+    }
+
+    @Test
+    public void testLowConfidenceEntryIsEvicted() {
+        put(entry("weak", 0.05f, 1, true, 1));
+        put(entry("strong", 0.9f, 1, true, 1));
+
+        LearningMaintenance.Report report = maintenance.run();
+
+        assertEquals(1, report.evicted());
+        assertFalse(store.containsKey("weak"));
+        assertTrue(store.containsKey("strong"));
+    }
+
+    @Test
+    public void testSimilarEntryIsMergedIntoMoreUsedOne() {
+        LearningEntry survivor = put(entry("survivor", 0.6f, 1, true, 5));
+        LearningEntry duplicate = put(entry("duplicate", 0.9f, 1, false, 2));
+        duplicate.setCorrection("//*[@resource-id='com.example:id/password']");
+        when(learningService.similarKeys(survivor, 0.95)).thenReturn(List.of("duplicate"));
+        when(learningService.similarKeys(duplicate, 0.95)).thenReturn(List.of("survivor"));
+
+        LearningMaintenance.Report report = maintenance.run();
+
+        assertEquals(1, report.merged());
+        assertFalse(store.containsKey("duplicate"));
+        assertEquals(7, survivor.getUseCount());
+        assertEquals(0.9f, survivor.getConfidenceScore(), 1e-6);
+        assertEquals("//*[@resource-id='com.example:id/password']", survivor.getCorrection());
+    }
+
+    @Test
+    public void testRetentionDeletesWeakestEntriesOfPackage() {
+        ReflectionTestUtils.setField(maintenance, "maxEntriesPerPackage", 2);
+        put(entry("weakest", 0.2f, 3, true, 1));
+        put(entry("older", 0.5f, 5, true, 1));
+        put(entry("newer", 0.5f, 2, true, 1));
+        put(entry("strongest", 0.9f, 6, true, 1));
+
+        LearningMaintenance.Report report = maintenance.run();
+
+        assertEquals(2, report.evicted());
+        assertEquals(List.of("newer", "strongest"), new ArrayList<>(store.keySet()));
+    }
+
+    private LearningEntry put(LearningEntry entry) {
+        store.put(entry.getContextKey(), entry);
+        return entry;
+    }
+
+    private static LearningEntry entry(String key, float confidence, int daysUnused, boolean successful, int useCount) {
+        LocalDateTime lastUsed = LocalDateTime.now().minusDays(daysUnused);
+        return LearningEntry.builder()
+                .contextKey(key)
+                .context(key + " on screen 'Login Screen'")
+                .action("TAP")
+                .appPackage("com.example")
+                .successful(successful)
+                .confidenceScore(confidence)
+                .useCount(useCount)
+                .createdAt(lastUsed)
+                .lastUsedAt(lastUsed)
+                .build();
+    }
+}
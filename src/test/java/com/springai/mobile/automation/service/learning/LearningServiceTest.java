@@ -0,0 +1,107 @@
+package com.springai.mobile.automation.service.learning;
+
+import com.springai.mobile.automation.model.LearningEntry;
+import com.springai.mobile.automation.model.TestAction;
+import com.springai.mobile.automation.repository.LearningEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for LearningService lookups through the similarity index
+ */
+public class LearningServiceTest {
+
+    private static final String LOGIN_SCREEN = "Login Screen";
+    private static final String SETTINGS_SCREEN = "Settings Screen";
+
+    @TempDir
+    Path directory;
+
+    private LearningSimilarityIndex similarityIndex;
+    private LearningService learningService;
+
+    @BeforeEach
+    public void setUp() {
+        LearningEntryRepository repository = mock(LearningEntryRepository.class);
+        when(repository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(List.<LearningEntry>of()));
+
+        similarityIndex = new LearningSimilarityIndex();
+        ReflectionTestUtils.setField(similarityIndex, "enabled", true);
+        ReflectionTestUtils.setField(similarityIndex, "indexFile", directory.resolve("index.bin").toString());
+        ReflectionTestUtils.setField(similarityIndex, "dimensions", 128);
+        ReflectionTestUtils.setField(similarityIndex, "maxNeighbors", 16);
+        ReflectionTestUtils.setField(similarityIndex, "efConstruction", 64);
+        ReflectionTestUtils.setField(similarityIndex, "efSearch", 48);
+        ReflectionTestUtils.setField(similarityIndex, "compactRatio", 0.25);
+
+        learningService = new LearningService(repository, null, similarityIndex);
+        ReflectionTestUtils.setField(learningService, "learningEnabled", true);
+        ReflectionTestUtils.setField(learningService, "confidenceThreshold", 0.7f);
+        ReflectionTestUtils.setField(learningService, "appPackage", "com.example");
+        ReflectionTestUtils.setField(learningService, "similarityTopK", 5);
+        ReflectionTestUtils.setField(learningService, "similarityThreshold", 0.95);
+        ReflectionTestUtils.setField(learningService, "flushSize", 500);
+        learningService.load();
+
+        learningService.learnFromAction(failedAction("Password input field"), LOGIN_SCREEN,
+                "{}", "Element not found", "//*[@resource-id='com.example:id/password']");
+        learningService.learnFromAction(failedAction("Password input-field"), SETTINGS_SCREEN,
+                "{}", "Element not found", "//*[@resource-id='com.example:id/current_password']");
+        // Wait for the background inserts
+        similarityIndex.shutdown();
+    }
+
+    @Test
+    public void testUsernameDoesNotMatchPassword() {
+        assertFalse(learningService.hasPastFailures(failedAction("Username input field"), LOGIN_SCREEN));
+        assertTrue(learningService.getPastCorrection(failedAction("Username input field"), LOGIN_SCREEN).isEmpty());
+    }
+
+    @Test
+    public void testDifferentlyWrittenDescriptionMatchesOnSameScreen() {
+        // Not the exact key, and the settings entry embeds identically
+        assertEquals("//*[@resource-id='com.example:id/password']",
+                learningService.getPastCorrection(failedAction("password  input field!"), LOGIN_SCREEN).orElseThrow());
+        assertEquals("//*[@resource-id='com.example:id/current_password']",
+                learningService.getPastCorrection(failedAction("password input field!"), SETTINGS_SCREEN).orElseThrow());
+    }
+
+    @Test
+    public void testSimilarDescriptionOnOtherScreenDoesNotMatch() {
+        assertFalse(learningService.hasPastFailures(failedAction("password input field!"), "Profile Screen"));
+    }
+
+    @Test
+    public void testSimilarKeysRequireSameScreen() {
+        String loginKey = LearningService.contextKey("TYPE", "Password input field", LOGIN_SCREEN);
+        LearningEntry login = learningService.entry(loginKey).orElseThrow();
+
+        assertTrue(learningService.similarKeys(login, 0.95).isEmpty());
+    }
+
+    @Test
+    public void testElementDescriptionFromContext() {
+        LearningEntry entry = LearningEntry.builder().context("Login button on screen 'Login Screen'").build();
+
+        assertEquals("Login button", LearningSimilarityIndex.elementDescription(entry));
+    }
+
+    private static TestAction failedAction(String elementDescription) {
+        return TestAction.builder()
+                .actionType(TestAction.ActionType.TYPE)
+                .elementDescription(elementDescription)
+                .successful(false)
+                .build();
+    }
+}
@@ -0,0 +1,63 @@
+package com.springai.mobile.automation.service.learning;
+
+import com.springai.mobile.automation.util.HnswIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LearningSimilarityIndex
+ */
+public class LearningSimilarityIndexTest {
+
+    @TempDir
+    Path directory;
+
+    private LearningSimilarityIndex similarityIndex;
+
+    @BeforeEach
+    public void setUp() {
+        similarityIndex = new LearningSimilarityIndex();
+        ReflectionTestUtils.setField(similarityIndex, "enabled", true);
+        ReflectionTestUtils.setField(similarityIndex, "indexFile", directory.resolve("index.bin").toString());
+        ReflectionTestUtils.setField(similarityIndex, "dimensions", 128);
+        ReflectionTestUtils.setField(similarityIndex, "maxNeighbors", 16);
+        ReflectionTestUtils.setField(similarityIndex, "efConstruction", 64);
+        ReflectionTestUtils.setField(similarityIndex, "efSearch", 48);
+        ReflectionTestUtils.setField(similarityIndex, "compactRatio", 0.25);
+        similarityIndex.open(List.of());
+        for (int i = 0; i < 8; i++) {
+            similarityIndex.add("key-" + i, "Field number " + i);
+        }
+    }
+
+    @Test
+    public void testFewRemovalsKeepTombstones() {
+        similarityIndex.remove("key-0");
+        similarityIndex.shutdown();
+
+        HnswIndex index = (HnswIndex) ReflectionTestUtils.getField(similarityIndex, "index");
+        assertEquals(1, index.removedCount());
+        assertEquals(7, index.size());
+    }
+
+    @Test
+    public void testManyRemovalsRebuildIndex() {
+        similarityIndex.remove("key-0");
+        similarityIndex.remove("key-1");
+        // Wait for the background updates
+        similarityIndex.shutdown();
+
+        HnswIndex index = (HnswIndex) ReflectionTestUtils.getField(similarityIndex, "index");
+        assertEquals(0, index.removedCount());
+        assertEquals(6, index.size());
+        assertFalse(index.contains("key-1"));
+        assertEquals("key-5", similarityIndex.search("Field number 5", 1, 0.9).get(0).key());
+    }
+}
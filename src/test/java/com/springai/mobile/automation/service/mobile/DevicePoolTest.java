@@ -0,0 +1,96 @@
+package com.springai.mobile.automation.service.mobile;
+
+import com.springai.mobile.automation.config.AppiumConfig;
+import io.appium.java_client.android.AndroidDriver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.remote.SessionId;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for DevicePool
+ */
+public class DevicePoolTest {
+
+    private AppiumConfig appiumConfig;
+    private DevicePool pool;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        appiumConfig = mock(AppiumConfig.class);
+        when(appiumConfig.createAndroidDriver(any(), any(), any(), any()))
+                .thenAnswer(invocation -> newDriver());
+
+        pool = new DevicePool(appiumConfig, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(pool, "defaultDeviceName", "emulator-5554");
+        ReflectionTestUtils.setField(pool, "defaultAppiumUrl", "http://localhost:4723");
+        ReflectionTestUtils.setField(pool, "leaseTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(pool, "quarantineMs", 60000L);
+        ReflectionTestUtils.setField(pool, "warmSessionsEnabled", true);
+        ReflectionTestUtils.setField(pool, "maxIdleMs", 300000L);
+        ReflectionTestUtils.setField(pool, "maxSessionAgeMs", 3600000L);
+        ReflectionTestUtils.setField(pool, "maxUsesPerSession", 50);
+        pool.init();
+    }
+
+    @Test
+    public void testSecondLeaseReusesWarmSession() throws Exception {
+        DeviceSession first = pool.acquire();
+        pool.release(first);
+        DeviceSession second = pool.acquire();
+
+        assertSame(first.getDriver(), second.getDriver());
+        verify(appiumConfig, times(1)).createAndroidDriver(any(), any(), any(), any());
+        verify(first.getDriver(), never()).quit();
+        assertEquals(1, pool.getLeasedCount());
+    }
+
+    @Test
+    public void testLeaseLongerThanMaxIdleKeepsSession() throws Exception {
+        // Every idle period is too long, so only the lease itself may not count against the session
+        ReflectionTestUtils.setField(pool, "maxIdleMs", 0L);
+
+        DeviceSession first = pool.acquire();
+        pool.release(first);
+        verify(first.getDriver(), never()).quit();
+
+        // The idle limit applies when the warm session is leased again
+        DeviceSession second = pool.acquire();
+        assertNotSame(first.getDriver(), second.getDriver());
+        verify(first.getDriver()).quit();
+    }
+
+    @Test
+    public void testSessionRetiredAfterMaxUses() throws Exception {
+        ReflectionTestUtils.setField(pool, "maxUsesPerSession", 1);
+
+        DeviceSession first = pool.acquire();
+        pool.release(first);
+
+        verify(first.getDriver()).quit();
+        assertNotSame(first.getDriver(), pool.acquire().getDriver());
+    }
+
+    @Test
+    public void testColdModeQuitsOnRelease() throws Exception {
+        ReflectionTestUtils.setField(pool, "warmSessionsEnabled", false);
+
+        DeviceSession first = pool.acquire();
+        pool.release(first);
+
+        verify(first.getDriver()).quit();
+        assertEquals(0, pool.getLeasedCount());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    private static AndroidDriver newDriver() {
+        AndroidDriver driver = mock(AndroidDriver.class);
+        when(driver.getSessionId()).thenReturn(new SessionId("session"));
+        return driver;
+    }
+}
@@ -0,0 +1,142 @@
+package com.springai.mobile.automation.service.mobile;
+
+import com.springai.mobile.automation.model.LearningEntry;
+import com.springai.mobile.automation.model.TestAction;
+import com.springai.mobile.automation.repository.LearningEntryRepository;
+import com.springai.mobile.automation.service.ai.ScreenAnalyzerService;
+import com.springai.mobile.automation.service.execution.RunEvents;
+import com.springai.mobile.automation.service.learning.LearningService;
+import com.springai.mobile.automation.service.learning.LearningSimilarityIndex;
+import io.appium.java_client.android.AndroidDriver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.WebElement;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for MobileAutomationService learning from and applying past runs
+ */
+public class MobileAutomationServiceTest {
+
+    private static final String ACTIVITY = "com.example/.LoginActivity";
+    private static final String DESCRIPTION = "Sign in button below the password field";
+    private static final String SUGGESTED_LOCATOR = "//android.widget.Button[@text='Login']";
+    private static final String CORRECTED_LOCATOR = "//*[@resource-id='com.example:id/sign_in']";
+
+    @TempDir
+    Path directory;
+
+    private AndroidDriver driver;
+    private DeviceSession session;
+    private ScreenAnalyzerService screenAnalyzerService;
+    private LearningSimilarityIndex similarityIndex;
+    private LearningService learningService;
+    private MobileAutomationService mobileAutomationService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        File screenshot = Files.write(directory.resolve("device.png"), new byte[] {1, 2, 3}).toFile();
+        driver = mock(AndroidDriver.class);
+        when(driver.getScreenshotAs(OutputType.FILE)).thenReturn(screenshot);
+        when(driver.getCurrentPackage()).thenReturn("com.example");
+        when(driver.currentActivity()).thenReturn(".LoginActivity");
+        when(driver.findElement(By.xpath(SUGGESTED_LOCATOR))).thenThrow(new NoSuchElementException("no such element"));
+        when(driver.findElement(By.xpath(CORRECTED_LOCATOR))).thenReturn(mock(WebElement.class));
+        session = new DeviceSession("emulator-5554", driver, Instant.now());
+
+        screenAnalyzerService = mock(ScreenAnalyzerService.class);
+        LocalLocatorResolver localLocatorResolver = mock(LocalLocatorResolver.class);
+        when(localLocatorResolver.resolve(any(), any())).thenReturn(Optional.empty());
+
+        LearningEntryRepository repository = mock(LearningEntryRepository.class);
+        when(repository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(List.<LearningEntry>of()));
+        similarityIndex = new LearningSimilarityIndex();
+        ReflectionTestUtils.setField(similarityIndex, "enabled", true);
+        ReflectionTestUtils.setField(similarityIndex, "indexFile", directory.resolve("index.bin").toString());
+        ReflectionTestUtils.setField(similarityIndex, "dimensions", 128);
+        ReflectionTestUtils.setField(similarityIndex, "maxNeighbors", 16);
+        ReflectionTestUtils.setField(similarityIndex, "efConstruction", 64);
+        ReflectionTestUtils.setField(similarityIndex, "efSearch", 48);
+        ReflectionTestUtils.setField(similarityIndex, "compactRatio", 0.25);
+        learningService = new LearningService(repository, null, similarityIndex);
+        ReflectionTestUtils.setField(learningService, "learningEnabled", true);
+        ReflectionTestUtils.setField(learningService, "confidenceThreshold", 0.7f);
+        ReflectionTestUtils.setField(learningService, "appPackage", "com.example");
+        ReflectionTestUtils.setField(learningService, "similarityTopK", 5);
+        ReflectionTestUtils.setField(learningService, "similarityThreshold", 0.95);
+        ReflectionTestUtils.setField(learningService, "flushSize", 500);
+        learningService.load();
+
+        mobileAutomationService = new MobileAutomationService(screenAnalyzerService, learningService,
+                localLocatorResolver, mock(RunEvents.class));
+        ReflectionTestUtils.setField(mobileAutomationService, "executionTimeoutMs", 100L);
+        ReflectionTestUtils.setField(mobileAutomationService, "screenshotDirectory", directory.toString());
+    }
+
+    @Test
+    public void testFailureIsLearnedUnderForegroundActivity() throws Exception {
+        analysisMatches(DESCRIPTION);
+
+        assertFalse(mobileAutomationService.executeAction(session, tap(DESCRIPTION)));
+        // Wait for the background inserts
+        similarityIndex.shutdown();
+
+        assertTrue(learningService.hasPastFailures(tap("sign in button below the password field!"), ACTIVITY));
+        assertFalse(learningService.hasPastFailures(tap(DESCRIPTION), "com.example/.SettingsActivity"));
+        verify(screenAnalyzerService).invalidate(any(), eq(ACTIVITY), eq(DESCRIPTION));
+    }
+
+    @Test
+    public void testLearnedCorrectionIsAppliedOnSameActivity() throws Exception {
+        // What a failed run on the login activity leaves behind once a working locator is known
+        TestAction failed = tap(DESCRIPTION);
+        learningService.learnFromAction(failed, ACTIVITY, SUGGESTED_LOCATOR, "Element not found", CORRECTED_LOCATOR);
+        similarityIndex.shutdown();
+        // The model words the element slightly differently this time
+        analysisMatches("sign in button below the password field!");
+
+        TestAction action = tap(DESCRIPTION);
+        assertTrue(mobileAutomationService.executeAction(session, action));
+
+        assertEquals(CORRECTED_LOCATOR, action.getElementLocator());
+        verify(driver, never()).findElement(By.xpath(SUGGESTED_LOCATOR));
+        verify(screenAnalyzerService, never()).invalidate(any(), any(), any());
+    }
+
+    private void analysisMatches(String matchedDescription) throws Exception {
+        when(screenAnalyzerService.analyzeScreenshot(any(), any(), anyList(), any())).thenReturn(Map.of(
+                "screenDescription", "Login Screen",
+                "matchedElement", Map.of(
+                        "description", matchedDescription,
+                        "suggestedLocators", Map.of("xpath", SUGGESTED_LOCATOR))));
+    }
+
+    private static TestAction tap(String elementDescription) {
+        return TestAction.builder()
+                .actionType(TestAction.ActionType.TAP)
+                .elementDescription(elementDescription)
+                .sequence(1)
+                .successful(false)
+                .build();
+    }
+}
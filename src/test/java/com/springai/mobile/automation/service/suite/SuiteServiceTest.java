@@ -0,0 +1,256 @@
+package com.springai.mobile.automation.service.suite;
+
+import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.model.InstructionSummary;
+import com.springai.mobile.automation.model.ReplayPlan;
+import com.springai.mobile.automation.model.Suite;
+import com.springai.mobile.automation.repository.InstructionRepository;
+import com.springai.mobile.automation.repository.SuiteRepository;
+import com.springai.mobile.automation.service.TestExecutionService;
+import com.springai.mobile.automation.service.execution.ExecutionEngine;
+import com.springai.mobile.automation.service.execution.ReplayService;
+import com.springai.mobile.automation.service.worker.InstructionLeases;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for SuiteService, with shards run on the calling thread
+ */
+public class SuiteServiceTest {
+
+    private static final Long SUITE_ID = 3L;
+
+    private final AtomicLong nextId = new AtomicLong(100);
+    private SuiteRepository suiteRepository;
+    private InstructionRepository instructionRepository;
+    private TestExecutionService testExecutionService;
+    private ExecutionEngine executionEngine;
+    private ReplayService replayService;
+    private InstructionLeases instructionLeases;
+    private SuiteService suiteService;
+
+    @BeforeEach
+    public void setUp() {
+        suiteRepository = mock(SuiteRepository.class);
+        when(suiteRepository.save(any())).thenAnswer(invocation -> {
+            Suite suite = invocation.getArgument(0);
+            suite.setId(SUITE_ID);
+            return suite;
+        });
+        instructionRepository = mock(InstructionRepository.class);
+        when(instructionRepository.saveAll(any())).thenAnswer(invocation -> {
+            List<Instruction> saved = new ArrayList<>();
+            for (Instruction instruction : invocation.<Iterable<Instruction>>getArgument(0)) {
+                instruction.setId(nextId.getAndIncrement());
+                saved.add(instruction);
+            }
+            return saved;
+        });
+        when(instructionRepository.findAverageDurations(any())).thenReturn(List.of());
+
+        testExecutionService = mock(TestExecutionService.class);
+        when(testExecutionService.processInstruction(any())).thenAnswer(invocation ->
+                finished(invocation.getArgument(0), Instruction.TestStatus.COMPLETED));
+        executionEngine = mock(ExecutionEngine.class);
+        when(executionEngine.getFreeSlots()).thenReturn(2);
+        when(executionEngine.submit(any())).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(invocation.<Supplier<?>>getArgument(0).get()));
+        replayService = mock(ReplayService.class);
+        when(replayService.latestPlan(anyString())).thenReturn(Optional.empty());
+        instructionLeases = mock(InstructionLeases.class);
+
+        suiteService = new SuiteService(suiteRepository, instructionRepository, testExecutionService,
+                executionEngine, replayService, instructionLeases);
+        ReflectionTestUtils.setField(suiteService, "defaultDurationMs", 60000L);
+        ReflectionTestUtils.setField(suiteService, "useReplayPlans", true);
+        ReflectionTestUtils.setField(suiteService, "staleAfterMs", 600000L);
+    }
+
+    @Test
+    public void testSubmitRunsEveryInstructionAndCountsResults() {
+        doAnswer(invocation -> finished(invocation.getArgument(0), Instruction.TestStatus.FAILED))
+                .when(testExecutionService).processInstruction(argThat(i -> i != null && i.getText().equals("Log out")));
+
+        Suite suite = suiteService.submit("smoke", List.of("Log in", "Open settings", "Log out"));
+
+        assertEquals(Instruction.TestStatus.IN_PROGRESS, suite.getStatus());
+        assertEquals(3, suite.getTotal());
+        verify(testExecutionService, times(3)).processInstruction(any());
+        verify(suiteRepository, times(2)).addResults(SUITE_ID, 1, 0);
+        verify(suiteRepository).addResults(SUITE_ID, 0, 1);
+        verify(suiteRepository, times(3)).finishIfDone(eq(SUITE_ID), eq(Instruction.TestStatus.COMPLETED),
+                eq(Instruction.TestStatus.FAILED), any());
+    }
+
+    @Test
+    public void testSubmitWithoutFreeSlotCreatesNothing() {
+        when(executionEngine.getFreeSlots()).thenReturn(0);
+
+        assertThrows(RejectedExecutionException.class, () -> suiteService.submit("smoke", List.of("Log in")));
+        verify(suiteRepository, never()).save(any());
+    }
+
+    @Test
+    public void testRejectedShardsFailTheSuite() {
+        doThrow(new RejectedExecutionException("Execution queue is full")).when(executionEngine).submit(any());
+
+        assertThrows(RejectedExecutionException.class,
+                () -> suiteService.submit("smoke", List.of("Log in", "Log out")));
+
+        verify(instructionRepository).failPendingBySuiteId(eq(SUITE_ID), eq(Instruction.TestStatus.PENDING),
+                eq(Instruction.TestStatus.FAILED), anyString(), any());
+        verify(suiteRepository).fail(eq(SUITE_ID), eq(Instruction.TestStatus.FAILED), any());
+        verify(testExecutionService, never()).processInstruction(any());
+    }
+
+    @Test
+    public void testOverflowRunsOnAcceptedShard() {
+        // Accept the first shard but run it only after the second one was rejected
+        List<Supplier<?>> accepted = new ArrayList<>();
+        doAnswer(invocation -> {
+            accepted.add(invocation.getArgument(0));
+            return new CompletableFuture<>();
+        }).doThrow(new RejectedExecutionException("Execution queue is full")).when(executionEngine).submit(any());
+
+        suiteService.submit("smoke", List.of("Log in", "Log out"));
+        assertEquals(1, accepted.size());
+        accepted.get(0).get();
+
+        verify(testExecutionService, times(2)).processInstruction(any());
+        verify(suiteRepository, never()).fail(any(), any(), any());
+    }
+
+    @Test
+    public void testCompiledInstructionIsReplayed() {
+        ReplayPlan plan = ReplayPlan.builder().id(9L).instructionText("Log in").version(1).build();
+        when(replayService.latestPlan("Log in")).thenReturn(Optional.of(plan));
+        when(replayService.replay(eq(plan), any())).thenAnswer(invocation ->
+                finished(invocation.getArgument(1), Instruction.TestStatus.COMPLETED));
+
+        suiteService.submit("smoke", List.of("Log in"));
+
+        verify(replayService).replay(eq(plan), any());
+        verify(testExecutionService, never()).processInstruction(any());
+        verify(suiteRepository).addResults(SUITE_ID, 1, 0);
+    }
+
+    @Test
+    public void testInstructionClaimedElsewhereIsSkipped() {
+        doThrow(new IllegalStateException("Instruction is already running"))
+                .when(testExecutionService).processInstruction(argThat(i -> i != null && i.getText().equals("Log in")));
+
+        suiteService.submit("smoke", List.of("Log in", "Log out"));
+
+        // The other run counts the claimed instruction, the shard goes on with the next one
+        verify(testExecutionService, times(2)).processInstruction(any());
+        verify(suiteRepository, times(1)).addResults(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testStaleSuiteIsRecountedAndResumed() {
+        LocalDateTime longAgo = LocalDateTime.now().minusHours(1);
+        when(suiteRepository.findByFinishedAtIsNullOrderByIdAsc()).thenReturn(List.of(suite(longAgo)));
+        when(instructionRepository.findSummariesBySuiteId(SUITE_ID)).thenReturn(List.of(
+                summary(11L, Instruction.TestStatus.COMPLETED, longAgo),
+                summary(12L, Instruction.TestStatus.FAILED, longAgo),
+                summary(13L, Instruction.TestStatus.PENDING, null)));
+        when(instructionRepository.findAllById(List.of(13L))).thenReturn(List.of(pending(13L)));
+
+        suiteService.recoverSuites();
+
+        verify(instructionLeases).recoverExpired();
+        verify(suiteRepository).setResults(SUITE_ID, 1, 1);
+        verify(testExecutionService).processInstruction(argThat(i -> i != null && i.getId() == 13L));
+        verify(suiteRepository).addResults(SUITE_ID, 1, 0);
+    }
+
+    @Test
+    public void testSuiteWithRunningInstructionIsLeftAlone() {
+        LocalDateTime longAgo = LocalDateTime.now().minusHours(1);
+        when(suiteRepository.findByFinishedAtIsNullOrderByIdAsc()).thenReturn(List.of(suite(longAgo)));
+        when(instructionRepository.findSummariesBySuiteId(SUITE_ID)).thenReturn(List.of(
+                summary(11L, Instruction.TestStatus.IN_PROGRESS, null),
+                summary(12L, Instruction.TestStatus.PENDING, null)));
+
+        suiteService.recoverSuites();
+
+        verify(suiteRepository, never()).setResults(any(), anyInt(), anyInt());
+        verify(testExecutionService, never()).processInstruction(any());
+    }
+
+    @Test
+    public void testRecentlyActiveSuiteIsLeftAlone() {
+        LocalDateTime longAgo = LocalDateTime.now().minusHours(1);
+        when(suiteRepository.findByFinishedAtIsNullOrderByIdAsc()).thenReturn(List.of(suite(longAgo)));
+        when(instructionRepository.findSummariesBySuiteId(SUITE_ID)).thenReturn(List.of(
+                summary(11L, Instruction.TestStatus.COMPLETED, LocalDateTime.now().minusSeconds(5)),
+                summary(12L, Instruction.TestStatus.PENDING, null)));
+
+        suiteService.recoverSuites();
+
+        verify(suiteRepository, never()).setResults(any(), anyInt(), anyInt());
+        verify(testExecutionService, never()).processInstruction(any());
+    }
+
+    @Test
+    public void testStaleSuiteWithAllResultsIsFinished() {
+        LocalDateTime longAgo = LocalDateTime.now().minusHours(1);
+        when(suiteRepository.findByFinishedAtIsNullOrderByIdAsc()).thenReturn(List.of(suite(longAgo)));
+        when(instructionRepository.findSummariesBySuiteId(SUITE_ID)).thenReturn(List.of(
+                summary(11L, Instruction.TestStatus.COMPLETED, longAgo),
+                summary(12L, Instruction.TestStatus.COMPLETED, longAgo)));
+
+        suiteService.recoverSuites();
+
+        verify(suiteRepository).setResults(SUITE_ID, 2, 0);
+        verify(suiteRepository).finishIfDone(eq(SUITE_ID), eq(Instruction.TestStatus.COMPLETED),
+                eq(Instruction.TestStatus.FAILED), any());
+        verify(executionEngine, never()).submit(any());
+    }
+
+    private static Instruction finished(Instruction instruction, Instruction.TestStatus status) {
+        return instruction.toBuilder().status(status).build();
+    }
+
+    private static Suite suite(LocalDateTime createdAt) {
+        return Suite.builder()
+                .id(SUITE_ID)
+                .name("smoke")
+                .status(Instruction.TestStatus.IN_PROGRESS)
+                .total(3)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    private static InstructionSummary summary(Long id, Instruction.TestStatus status, LocalDateTime processedAt) {
+        return new InstructionSummary(id, "Instruction " + id, status, Instruction.Priority.BATCH,
+                LocalDateTime.now().minusHours(1), processedAt);
+    }
+
+    private static Instruction pending(Long id) {
+        return Instruction.builder()
+                .id(id)
+                .text("Instruction " + id)
+                .status(Instruction.TestStatus.PENDING)
+                .priority(Instruction.Priority.BATCH)
+                .suiteId(SUITE_ID)
+                .build();
+    }
+}
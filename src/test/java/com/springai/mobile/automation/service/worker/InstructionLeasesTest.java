@@ -0,0 +1,182 @@
+package com.springai.mobile.automation.service.worker;
+
+import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.repository.InstructionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for InstructionLeases against a repository that applies the conditional updates to one row
+ */
+public class InstructionLeasesTest {
+
+    private static final Long ID = 42L;
+
+    private final AtomicReference<Instruction> row = new AtomicReference<>();
+    private InstructionRepository instructionRepository;
+
+    @BeforeEach
+    public void setUp() {
+        row.set(Instruction.builder().id(ID).text("Log in").status(Instruction.TestStatus.PENDING).attempts(0).build());
+
+        instructionRepository = mock(InstructionRepository.class);
+        when(instructionRepository.claim(eq(ID), anyString(), any(), any(), any())).thenAnswer(invocation -> {
+            synchronized (row) {
+                Instruction current = row.get();
+                if (current.getStatus() != invocation.getArgument(4)) {
+                    return 0;
+                }
+                row.set(current.toBuilder()
+                        .status(invocation.getArgument(3))
+                        .leaseOwner(invocation.getArgument(1))
+                        .attempts(current.getAttempts() + 1)
+                        .build());
+                return 1;
+            }
+        });
+        when(instructionRepository.finish(eq(ID), anyString(), anyInt(), any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    synchronized (row) {
+                        Instruction current = row.get();
+                        if (!invocation.getArgument(1).equals(current.getLeaseOwner())
+                                || !invocation.getArgument(2).equals(current.getAttempts())
+                                || current.getStatus() != invocation.getArgument(3)) {
+                            return 0;
+                        }
+                        row.set(current.toBuilder().status(invocation.getArgument(4)).build());
+                        return 1;
+                    }
+                });
+        when(instructionRepository.findById(ID)).thenAnswer(invocation -> Optional.of(row.get().toBuilder().build()));
+    }
+
+    @Test
+    public void testConcurrentClaimsHaveOneWinner() throws Exception {
+        List<InstructionLeases> nodes = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            nodes.add(leases("node-" + i));
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(nodes.size());
+        try {
+            List<Future<Optional<Instruction>>> claims = new ArrayList<>();
+            for (InstructionLeases node : nodes) {
+                claims.add(executor.submit(() -> {
+                    start.await();
+                    return node.claim(ID, Instruction.TestStatus.PENDING);
+                }));
+            }
+            start.countDown();
+
+            int winners = 0;
+            for (Future<Optional<Instruction>> claim : claims) {
+                if (claim.get(5, TimeUnit.SECONDS).isPresent()) {
+                    winners++;
+                }
+            }
+            assertEquals(1, winners);
+            assertEquals(1, row.get().getAttempts());
+            assertEquals(1, nodes.stream().mapToInt(InstructionLeases::getHeldCount).sum());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRunThatLostItsLeaseCannotWriteResult() {
+        InstructionLeases first = leases("node-a");
+        InstructionLeases second = leases("node-b");
+
+        Instruction stalled = first.claim(ID, Instruction.TestStatus.PENDING).orElseThrow();
+        // The lease expired and recovery put the instruction back in the queue
+        row.set(row.get().toBuilder().status(Instruction.TestStatus.PENDING).leaseOwner(null).build());
+        Instruction takeover = second.claim(ID, Instruction.TestStatus.PENDING).orElseThrow();
+
+        stalled.setStatus(Instruction.TestStatus.FAILED);
+        assertFalse(first.finish(stalled));
+        takeover.setStatus(Instruction.TestStatus.COMPLETED);
+        assertTrue(second.finish(takeover));
+
+        assertEquals(Instruction.TestStatus.COMPLETED, row.get().getStatus());
+        assertEquals(0, first.getHeldCount());
+        assertEquals(0, second.getHeldCount());
+    }
+
+    @Test
+    public void testFailedFinishKeepsLease() {
+        InstructionLeases leases = leases("node-a");
+        Instruction claimed = leases.claim(ID, Instruction.TestStatus.PENDING).orElseThrow();
+        when(instructionRepository.finish(eq(ID), anyString(), anyInt(), any(), any(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("connection refused"));
+
+        claimed.setStatus(Instruction.TestStatus.COMPLETED);
+        assertThrows(IllegalStateException.class, () -> leases.finish(claimed));
+
+        // Still renewed, so no other node takes the finished run over
+        assertEquals(1, leases.getHeldCount());
+        leases.renewLeases();
+        verify(instructionRepository).renewLease(eq(ID), eq("node-a"), any(), eq(Instruction.TestStatus.IN_PROGRESS));
+    }
+
+    @Test
+    public void testRecoverExpiredFailsExhaustedBeforeRequeueing() {
+        InstructionLeases leases = leases("node-a");
+
+        leases.recoverExpired();
+
+        InOrder order = inOrder(instructionRepository);
+        order.verify(instructionRepository).failExhaustedLeases(eq(Instruction.TestStatus.IN_PROGRESS),
+                eq(Instruction.TestStatus.FAILED), anyString(), any(), eq(3));
+        order.verify(instructionRepository).requeueExpiredLeases(eq(Instruction.TestStatus.IN_PROGRESS),
+                eq(Instruction.TestStatus.PENDING), any(), eq(3));
+    }
+
+    @Test
+    public void testCreatedClaimedInstructionCannotBeClaimedAgain() {
+        InstructionLeases first = leases("node-a");
+        InstructionLeases second = leases("node-b");
+        when(instructionRepository.save(any())).thenAnswer(invocation -> {
+            Instruction saved = invocation.<Instruction>getArgument(0).toBuilder().id(ID).build();
+            row.set(saved);
+            return saved;
+        });
+
+        Instruction created = first.createClaimed(Instruction.builder().text("Log in").build());
+
+        assertEquals(Instruction.TestStatus.IN_PROGRESS, created.getStatus());
+        assertEquals(1, created.getAttempts());
+        assertEquals(1, first.getHeldCount());
+        assertTrue(second.claim(ID, Instruction.TestStatus.PENDING).isEmpty());
+        created.setStatus(Instruction.TestStatus.COMPLETED);
+        assertTrue(first.finish(created));
+    }
+
+    private InstructionLeases leases(String nodeId) {
+        InstructionLeases leases = new InstructionLeases(instructionRepository);
+        ReflectionTestUtils.setField(leases, "nodeId", nodeId);
+        ReflectionTestUtils.setField(leases, "leaseDurationMs", 120000L);
+        ReflectionTestUtils.setField(leases, "maxAttempts", 3);
+        leases.init();
+        return leases;
+    }
+}
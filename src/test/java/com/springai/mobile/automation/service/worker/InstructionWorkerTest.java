@@ -0,0 +1,132 @@
+package com.springai.mobile.automation.service.worker;
+
+import com.springai.mobile.automation.model.Instruction;
+import com.springai.mobile.automation.repository.InstructionRepository;
+import com.springai.mobile.automation.service.TestExecutionService;
+import com.springai.mobile.automation.service.execution.ExecutionEngine;
+import com.springai.mobile.automation.service.mobile.DevicePool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for InstructionWorker
+ */
+public class InstructionWorkerTest {
+
+    private InstructionRepository instructionRepository;
+    private TestExecutionService testExecutionService;
+    private ExecutionEngine executionEngine;
+    private DevicePool devicePool;
+    private InstructionLeases instructionLeases;
+    private InstructionWorker worker;
+
+    @BeforeEach
+    public void setUp() {
+        instructionRepository = mock(InstructionRepository.class);
+        testExecutionService = mock(TestExecutionService.class);
+        executionEngine = mock(ExecutionEngine.class);
+        devicePool = mock(DevicePool.class);
+        instructionLeases = mock(InstructionLeases.class);
+
+        when(executionEngine.getFreeSlots()).thenReturn(4);
+        when(devicePool.getHealthyDeviceCount()).thenReturn(4);
+        when(instructionRepository.findIdsByStatus(eq(Instruction.TestStatus.PENDING), any()))
+                .thenReturn(List.of(1L, 2L, 3L));
+        for (long id = 1; id <= 3; id++) {
+            when(instructionRepository.findById(id)).thenReturn(Optional.of(pending(id)));
+        }
+        when(testExecutionService.processInstructionAsync(any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        worker = new InstructionWorker(instructionRepository, testExecutionService, executionEngine, devicePool,
+                instructionLeases);
+        ReflectionTestUtils.setField(worker, "enabled", true);
+    }
+
+    @Test
+    public void testDisabledWorkerDoesNothing() {
+        ReflectionTestUtils.setField(worker, "enabled", false);
+
+        worker.poll();
+
+        verifyNoInteractions(instructionRepository, testExecutionService, instructionLeases);
+    }
+
+    @Test
+    public void testRecoversLeasesBeforeClaiming() {
+        worker.poll();
+
+        verify(instructionLeases).recoverExpired();
+        verify(testExecutionService, times(3)).processInstructionAsync(any());
+    }
+
+    @Test
+    public void testClaimsOnlyWhatDevicesCanRun() {
+        // Two of the four devices are busy with runs this node already holds
+        when(instructionLeases.getHeldCount()).thenReturn(2);
+
+        worker.poll();
+
+        verify(instructionRepository).findIdsByStatus(Instruction.TestStatus.PENDING, PageRequest.of(0, 2));
+    }
+
+    @Test
+    public void testNoCapacityClaimsNothing() {
+        when(executionEngine.getFreeSlots()).thenReturn(0);
+
+        worker.poll();
+
+        verify(instructionRepository, never()).findIdsByStatus(any(), any());
+        verify(testExecutionService, never()).processInstructionAsync(any());
+    }
+
+    @Test
+    public void testInstructionClaimedElsewhereIsSkipped() {
+        when(testExecutionService.processInstructionAsync(argThat(instruction -> instruction.getId() == 1L)))
+                .thenThrow(new IllegalStateException("Instruction 1 is already running"));
+
+        worker.poll();
+
+        verify(testExecutionService, times(3)).processInstructionAsync(any());
+    }
+
+    @Test
+    public void testInstructionNoLongerPendingIsNotClaimed() {
+        when(instructionRepository.findById(2L)).thenReturn(Optional.of(pending(2L).toBuilder()
+                .status(Instruction.TestStatus.IN_PROGRESS).build()));
+
+        worker.poll();
+
+        verify(testExecutionService, never()).processInstructionAsync(argThat(instruction -> instruction.getId() == 2L));
+        verify(testExecutionService, times(2)).processInstructionAsync(any());
+    }
+
+    @Test
+    public void testFullQueueStopsClaiming() {
+        when(testExecutionService.processInstructionAsync(argThat(instruction -> instruction.getId() == 1L)))
+                .thenThrow(new RejectedExecutionException("Execution queue is full"));
+
+        worker.poll();
+
+        verify(testExecutionService, times(1)).processInstructionAsync(any());
+    }
+
+    private static Instruction pending(long id) {
+        return Instruction.builder()
+                .id(id)
+                .text("Instruction " + id)
+                .status(Instruction.TestStatus.PENDING)
+                .build();
+    }
+}
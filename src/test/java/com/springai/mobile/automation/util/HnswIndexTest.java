@@ -0,0 +1,140 @@
+package com.springai.mobile.automation.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for HnswIndex
+ */
+public class HnswIndexTest {
+
+    private static final int DIMENSIONS = 32;
+
+    @Test
+    public void testFindsNearestNeighbors() {
+        List<float[]> vectors = randomVectors(2000, new Random(7));
+        HnswIndex index = build(vectors);
+
+        Random random = new Random(11);
+        int found = 0;
+        for (int i = 0; i < 200; i++) {
+            float[] query = randomVectors(1, random).get(0);
+            int nearest = bruteForceNearest(vectors, query);
+            List<HnswIndex.Result> results = index.search(query, 1, 64, -1);
+            if (results.get(0).key().equals("k" + nearest)) {
+                found++;
+            }
+        }
+        assertTrue(found >= 180, "recall@1 too low: " + found + "/200");
+    }
+
+    @Test
+    public void testThresholdAndRemoval() {
+        List<float[]> vectors = randomVectors(500, new Random(3));
+        HnswIndex index = build(vectors);
+
+        List<HnswIndex.Result> results = index.search(vectors.get(42), 5, 32, 0.95);
+        assertEquals(1, results.size());
+        assertEquals("k42", results.get(0).key());
+
+        assertTrue(index.remove("k42"));
+        assertTrue(index.search(vectors.get(42), 5, 32, 0.95).isEmpty());
+        assertEquals(499, index.size());
+        assertFalse(index.contains("k42"));
+        assertEquals(499, index.keys().size());
+        assertFalse(index.keys().contains("k42"));
+    }
+
+    @Test
+    public void testCompactedDropsRemovedNodes() {
+        List<float[]> vectors = randomVectors(500, new Random(9));
+        HnswIndex index = build(vectors);
+        for (int i = 0; i < 200; i++) {
+            index.remove("k" + i);
+        }
+        assertEquals(200, index.removedCount());
+
+        HnswIndex compacted = index.compacted();
+
+        assertEquals(0, compacted.removedCount());
+        assertEquals(300, compacted.size());
+        assertEquals(index.keys(), compacted.keys());
+        List<HnswIndex.Result> results = compacted.search(vectors.get(420), 1, 32, 0.95);
+        assertEquals("k420", results.get(0).key());
+        assertTrue(compacted.search(vectors.get(42), 5, 32, 0.95).isEmpty());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        List<float[]> vectors = randomVectors(500, new Random(5));
+        HnswIndex index = build(vectors);
+        index.remove("k7");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        index.writeTo(output);
+        HnswIndex loaded = HnswIndex.readFrom(new ByteArrayInputStream(output.toByteArray()), DIMENSIONS, 8, 64);
+
+        assertEquals(index.size(), loaded.size());
+        assertFalse(loaded.contains("k7"));
+        assertEquals("k100", loaded.search(vectors.get(100), 1, 32, 0).get(0).key());
+
+        loaded.add("extra", vectors.get(7));
+        assertEquals("extra", loaded.search(vectors.get(7), 1, 32, 0).get(0).key());
+    }
+
+    @Test
+    public void testLoadRejectsDifferentParameters() throws IOException {
+        HnswIndex index = build(randomVectors(10, new Random(1)));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        index.writeTo(output);
+
+        assertThrows(IOException.class, () ->
+                HnswIndex.readFrom(new ByteArrayInputStream(output.toByteArray()), DIMENSIONS * 2, 8, 64));
+    }
+
+    private static HnswIndex build(List<float[]> vectors) {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 64);
+        for (int i = 0; i < vectors.size(); i++) {
+            index.add("k" + i, vectors.get(i));
+        }
+        return index;
+    }
+
+    private static int bruteForceNearest(List<float[]> vectors, float[] query) {
+        int nearest = -1;
+        double best = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < vectors.size(); i++) {
+            double similarity = TextVectors.similarity(query, vectors.get(i));
+            if (similarity > best) {
+                best = similarity;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    private static List<float[]> randomVectors(int count, Random random) {
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSIONS];
+            double norm = 0;
+            for (int j = 0; j < DIMENSIONS; j++) {
+                vector[j] = (float) random.nextGaussian();
+                norm += vector[j] * vector[j];
+            }
+            for (int j = 0; j < DIMENSIONS; j++) {
+                vector[j] /= (float) Math.sqrt(norm);
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,81 @@
+package com.springai.mobile.automation.util;
+
+import com.springai.mobile.automation.model.TestAction;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for InstructionTemplate
+ */
+public class InstructionTemplateTest {
+
+    @Test
+    public void testExtractsQuotedAndNumericSlots() {
+        InstructionTemplate template = InstructionTemplate.of("Login  with username 'Alice' and PIN 1234");
+
+        assertEquals("login with username '{{0}}' and pin {{1}}", template.getPattern());
+        assertEquals(List.of("Alice", "1234"), template.getValues());
+        assertEquals(template.getPattern(), InstructionTemplate.of("login with username 'bob' and pin 99").getPattern());
+    }
+
+    @Test
+    public void testNormalizeKeepsLiterals() {
+        assertEquals("type 'Secret' in password field", InstructionTemplate.normalize("  Type 'Secret'  in Password field"));
+        assertNotEquals(InstructionTemplate.normalize("Type 'Secret' in password"),
+                InstructionTemplate.normalize("type 'secret' in password"));
+        assertEquals(InstructionTemplate.normalize("Tap \"OK\" 3 times"), InstructionTemplate.normalize("tap  \"OK\" 3 TIMES"));
+    }
+
+    @Test
+    public void testBindAndFill() {
+        InstructionTemplate planned = InstructionTemplate.of("Login with username 'testuser' and password 'password123'");
+        List<TestAction> plan = List.of(
+                action(TestAction.ActionType.TYPE, "Username input field", "testuser", 1),
+                action(TestAction.ActionType.TYPE, "Password input field", "password123", 2),
+                action(TestAction.ActionType.VERIFY_TEXT, "Greeting", "Hello testuser", 3));
+
+        List<TestAction> templated = planned.bind(plan).orElseThrow();
+        assertEquals("{{0}}", templated.get(0).getValue());
+        assertEquals("Hello {{0}}", templated.get(2).getValue());
+
+        InstructionTemplate other = InstructionTemplate.of("Login with username 'bob' and password 'secret'");
+        List<TestAction> filled = other.fill(templated);
+        assertEquals("bob", filled.get(0).getValue());
+        assertEquals("secret", filled.get(1).getValue());
+        assertEquals("Hello bob", filled.get(2).getValue());
+    }
+
+    @Test
+    public void testUnboundSlotIsNotTemplated() {
+        InstructionTemplate planned = InstructionTemplate.of("Scroll down 3 times");
+        List<TestAction> plan = List.of(
+                action(TestAction.ActionType.SCROLL, "Main list", "down", 1),
+                action(TestAction.ActionType.SCROLL, "Main list", "down", 2),
+                action(TestAction.ActionType.SCROLL, "Main list", "down", 3));
+
+        assertEquals(Optional.empty(), planned.bind(plan));
+    }
+
+    @Test
+    public void testSlotInElementDescriptionIsNotTemplated() {
+        InstructionTemplate planned = InstructionTemplate.of("Select the 'Premium' plan and type 'yes'");
+        List<TestAction> plan = List.of(
+                action(TestAction.ActionType.TAP, "Premium plan card", "", 1),
+                action(TestAction.ActionType.TYPE, "Confirmation field", "yes", 2));
+
+        assertEquals(Optional.empty(), planned.bind(plan));
+    }
+
+    private static TestAction action(TestAction.ActionType type, String description, String value, int sequence) {
+        return TestAction.builder()
+                .actionType(type)
+                .elementDescription(description)
+                .value(value)
+                .sequence(sequence)
+                .build();
+    }
+}
@@ -0,0 +1,81 @@
+package com.springai.mobile.automation.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for JsonExtractor
+ */
+public class JsonExtractorTest {
+
+    @Test
+    public void testExtractNestedObject() {
+        String text = """
+            ```json
+            {
+              "screenDescription": "Login Screen",
+              "matchedElement": {
+                "description": "Login button",
+                "bounds": {"x": 100, "y": 200, "width": 300, "height": 50},
+                "suggestedLocators": {"xpath": "//android.widget.Button[@text='Login']"}
+              }
+            }
+            ```
+            """;
+
+        Map<String, Object> result = JsonUtils.fromJsonToMap(text);
+
+        assertEquals("Login Screen", result.get("screenDescription"));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> matchedElement = (Map<String, Object>) result.get("matchedElement");
+        assertTrue(matchedElement.get("bounds") instanceof Map);
+        assertTrue(matchedElement.get("suggestedLocators") instanceof Map);
+    }
+
+    @Test
+    public void testSkipsBracketsInProse() {
+        String text = "Steps [see below]:\n[{\"actionType\": \"TAP\", \"value\": \"a]b\"}]";
+
+        String extracted = JsonExtractor.extractFirst(text, '[');
+
+        assertEquals("[{\"actionType\": \"TAP\", \"value\": \"a]b\"}]", extracted);
+    }
+
+    @Test
+    public void testIncompleteValueIsNotExtracted() {
+        String text = "[{\"actionType\": \"TAP\", \"path\": [1, 2]}, {\"actionType\":";
+
+        assertNull(JsonExtractor.extractFirst(text, '['));
+        assertEquals("[]", JsonUtils.extractJsonArray(text));
+    }
+
+    @Test
+    public void testArrayElementStream() {
+        JsonExtractor.ArrayElementStream stream = JsonUtils.newArrayElementStream();
+        String[] chunks = {
+            "Here is the plan [in order]:\n```json\n[\n  {\"actionType\": \"TAP\", \"element",
+            "Description\": \"Login [main] button\", \"sequence\": 1},\n  {\"actionType\": \"TY",
+            "PE\", \"value\": \"}\", \"sequence\": 2}\n]\n```\nDone."
+        };
+
+        List<JsonNode> elements = new ArrayList<>();
+        List<Integer> countsPerChunk = new ArrayList<>();
+        for (String chunk : chunks) {
+            List<JsonNode> completed = stream.feed(chunk);
+            countsPerChunk.add(completed.size());
+            elements.addAll(completed);
+        }
+
+        assertEquals(List.of(0, 1, 1), countsPerChunk);
+        assertTrue(stream.isFinished());
+        assertEquals("Login [main] button", elements.get(0).get("elementDescription").asText());
+        assertEquals("}", elements.get(1).get("value").asText());
+    }
+}
@@ -0,0 +1,56 @@
+package com.springai.mobile.automation.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LptScheduler
+ */
+public class LptSchedulerTest {
+
+    @Test
+    public void testBalancesShards() {
+        List<Long> durations = List.of(7L, 5L, 4L, 4L, 3L, 3L, 2L);
+
+        List<List<Integer>> shards = LptScheduler.assign(durations, 2);
+
+        assertEquals(2, shards.size());
+        assertEquals(14, LptScheduler.makespan(durations, shards));
+    }
+
+    @Test
+    public void testLongestJobsRunFirst() {
+        List<Long> durations = List.of(1L, 10L, 3L, 8L);
+
+        List<List<Integer>> shards = LptScheduler.assign(durations, 2);
+
+        assertEquals(List.of(1, 0), shards.get(0));
+        assertEquals(List.of(3, 2), shards.get(1));
+    }
+
+    @Test
+    public void testEveryJobAssignedOnce() {
+        List<Long> durations = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            durations.add((long) (i * 37 % 11));
+        }
+
+        List<List<Integer>> shards = LptScheduler.assign(durations, 4);
+
+        List<Integer> assigned = new ArrayList<>();
+        shards.forEach(assigned::addAll);
+        assigned.sort(null);
+        assertEquals(IntStream.range(0, 50).boxed().toList(), assigned);
+    }
+
+    @Test
+    public void testNoMoreShardsThanJobs() {
+        assertEquals(2, LptScheduler.assign(List.of(5L, 6L), 8).size());
+        assertEquals(1, LptScheduler.assign(List.of(), 3).size());
+    }
+}
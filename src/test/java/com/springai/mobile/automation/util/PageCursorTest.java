@@ -0,0 +1,37 @@
+package com.springai.mobile.automation.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PageCursor
+ */
+public class PageCursorTest {
+
+    @Test
+    public void testRoundTrip() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123456789);
+
+        PageCursor.Position position = PageCursor.decode(PageCursor.encode(createdAt, 42L));
+
+        assertEquals(createdAt, position.createdAt());
+        assertEquals(42L, position.id());
+    }
+
+    @Test
+    public void testCursorIsUrlSafe() {
+        String cursor = PageCursor.encode(LocalDateTime.of(2024, 12, 31, 23, 59), Long.MAX_VALUE);
+
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    public void testMalformedCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("not a cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(
+                PageCursor.encode(LocalDateTime.of(2024, 1, 1, 0, 0), 1L).substring(2)));
+    }
+}
@@ -0,0 +1,121 @@
+package com.springai.mobile.automation.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PageSourceIndex
+ */
+public class PageSourceIndexTest {
+
+    private static final String LOGIN_SCREEN = """
+        <?xml version='1.0' encoding='UTF-8' standalone='yes' ?>
+        <hierarchy index="0" rotation="0">
+          <android.widget.FrameLayout class="android.widget.FrameLayout" displayed="true">
+            <android.widget.TextView class="android.widget.TextView" text="Welcome back" displayed="true"/>
+            <android.widget.EditText class="android.widget.EditText" text="" resource-id="com.example:id/usernameInput" clickable="true" displayed="true"/>
+            <android.widget.EditText class="android.widget.EditText" text="" resource-id="com.example:id/password_input" clickable="true" displayed="true"/>
+            <android.widget.Button class="android.widget.Button" text="Login" clickable="true" displayed="true"/>
+            <android.widget.TextView class="android.widget.TextView" text="Login" displayed="true"/>
+            <android.widget.ImageView class="android.widget.ImageView" content-desc="Settings" clickable="true" displayed="true"/>
+          </android.widget.FrameLayout>
+        </hierarchy>
+        """;
+
+    @Test
+    public void testMatchesButtonByTextAndClass() {
+        PageSourceIndex index = PageSourceIndex.parse(LOGIN_SCREEN);
+
+        Optional<PageSourceIndex.Match> match = index.bestMatch("Login button");
+
+        assertTrue(match.isPresent());
+        assertEquals("//android.widget.Button[@text='Login']", match.get().locator());
+        assertTrue(match.get().score() > 0.9);
+    }
+
+    @Test
+    public void testMatchesInputByResourceId() {
+        PageSourceIndex index = PageSourceIndex.parse(LOGIN_SCREEN);
+
+        assertEquals("//*[@resource-id='com.example:id/usernameInput']",
+                index.bestMatch("Username input field").get().locator());
+        assertEquals("//*[@resource-id='com.example:id/password_input']",
+                index.bestMatch("the pasword field").get().locator());
+    }
+
+    @Test
+    public void testMatchesContentDescription() {
+        PageSourceIndex index = PageSourceIndex.parse(LOGIN_SCREEN);
+
+        assertEquals("//*[@content-desc='Settings']", index.bestMatch("Settings icon").get().locator());
+    }
+
+    @Test
+    public void testNoMatchForUnknownElement() {
+        PageSourceIndex index = PageSourceIndex.parse(LOGIN_SCREEN);
+
+        assertTrue(index.bestMatch("Checkout button").isEmpty());
+    }
+
+    @Test
+    public void testFieldDoesNotMatchItsLabel() {
+        PageSourceIndex index = PageSourceIndex.parse("""
+            <hierarchy index="0" rotation="0">
+              <android.widget.TextView class="android.widget.TextView" text="Username" displayed="true"/>
+              <android.widget.EditText class="android.widget.EditText" text="" resource-id="com.example:id/et_1" clickable="true" displayed="true"/>
+            </hierarchy>
+            """);
+
+        assertTrue(index.bestMatch("Username field").isEmpty());
+        assertEquals("//android.widget.TextView[@text='Username']", index.bestMatch("Username label").get().locator());
+    }
+
+    @Test
+    public void testButtonDoesNotMatchTitle() {
+        PageSourceIndex index = PageSourceIndex.parse("""
+            <hierarchy index="0" rotation="0">
+              <android.widget.TextView class="android.widget.TextView" text="Login" displayed="true"/>
+              <android.widget.EditText class="android.widget.EditText" text="" resource-id="com.example:id/user" clickable="true" displayed="true"/>
+            </hierarchy>
+            """);
+
+        assertTrue(index.bestMatch("Login button").isEmpty());
+        assertTrue(index.bestMatch("Login").isPresent());
+    }
+
+    @Test
+    public void testClickableTextFitsButton() {
+        PageSourceIndex index = PageSourceIndex.parse("""
+            <hierarchy index="0" rotation="0">
+              <android.widget.TextView class="android.widget.TextView" text="Sign up" clickable="true" displayed="true"/>
+            </hierarchy>
+            """);
+
+        assertEquals("//android.widget.TextView[@text='Sign up']", index.bestMatch("Sign up button").get().locator());
+    }
+
+    @Test
+    public void testQuoteValueWithBothQuotes() {
+        assertEquals("'Login'", PageSourceIndex.quote("Login"));
+        assertEquals("\"It's\"", PageSourceIndex.quote("It's"));
+        assertEquals("concat('It', \"'\", 's \"fine\"')", PageSourceIndex.quote("It's \"fine\""));
+
+        PageSourceIndex index = PageSourceIndex.parse("""
+            <hierarchy index="0" rotation="0">
+              <android.widget.Button class="android.widget.Button" text="It's &quot;fine&quot;" clickable="true" displayed="true"/>
+            </hierarchy>
+            """);
+        assertEquals("//android.widget.Button[@text=concat('It', \"'\", 's \"fine\"')]",
+                index.bestMatch("fine button").get().locator());
+    }
+
+    @Test
+    public void testWords() {
+        assertEquals(List.of("username", "input"), PageSourceIndex.words("com.example:id/usernameInput"));
+        assertEquals(List.of("sign", "in"), PageSourceIndex.words("Sign-In"));
+    }
+}
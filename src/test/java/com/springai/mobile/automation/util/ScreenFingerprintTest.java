@@ -0,0 +1,113 @@
+package com.springai.mobile.automation.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ScreenFingerprint
+ */
+public class ScreenFingerprintTest {
+
+    private static final int STATUS_BAR_HEIGHT = 100;
+
+    @Test
+    public void testIdenticalScreensShareHash() {
+        ScreenFingerprint.Hash first = ScreenFingerprint.detailedHash(form(new int[] {30, 12, 8}));
+        ScreenFingerprint.Hash second = ScreenFingerprint.detailedHash(form(new int[] {30, 12, 8}));
+
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertEquals(0, first.distance(second));
+        assertEquals(64, first.toString().length());
+    }
+
+    @Test
+    public void testDetailedHashSeparatesSameLayout() {
+        // Same form, only the text typed into the first field differs
+        ScreenFingerprint.Hash alice = ScreenFingerprint.detailedHash(form(new int[] {20, 20, 20, 20, 20, 20, 20, 20}));
+        ScreenFingerprint.Hash bob = ScreenFingerprint.detailedHash(form(new int[] {26, 30, 26}));
+
+        assertNotEquals(alice, bob);
+        assertTrue(alice.distance(bob) > 0);
+    }
+
+    @Test
+    public void testMirroredScreenIsFarAway() {
+        BufferedImage gradient = gradient(false);
+        BufferedImage mirrored = gradient(true);
+
+        assertTrue(ScreenFingerprint.detailedHash(gradient).distance(ScreenFingerprint.detailedHash(mirrored)) > 200);
+        assertTrue(ScreenFingerprint.distance(ScreenFingerprint.differenceHash(gradient),
+                ScreenFingerprint.differenceHash(mirrored)) > 50);
+    }
+
+    @Test
+    public void testCroppedStatusBarDoesNotChangeHash() {
+        BufferedImage morning = withStatusBar(form(new int[] {30, 12, 8}), 120);
+        BufferedImage evening = withStatusBar(form(new int[] {30, 12, 8}), 620);
+
+        assertNotEquals(ScreenFingerprint.detailedHash(morning), ScreenFingerprint.detailedHash(evening));
+        assertEquals(ScreenFingerprint.detailedHash(morning, STATUS_BAR_HEIGHT),
+                ScreenFingerprint.detailedHash(evening, STATUS_BAR_HEIGHT));
+        assertEquals(ScreenFingerprint.detailedHash(morning), ScreenFingerprint.detailedHash(morning, 0));
+    }
+
+    /**
+     * A login-like form whose first field holds a value drawn as glyphs of the given widths
+     */
+    private static BufferedImage form(int[] glyphWidths) {
+        BufferedImage image = new BufferedImage(1080, 2400, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, 1080, 2400);
+            graphics.setColor(Color.GRAY);
+            graphics.fillRect(100, 600, 880, 160);
+            graphics.fillRect(100, 900, 880, 160);
+            graphics.setColor(Color.BLACK);
+            int x = 120;
+            for (int glyphWidth : glyphWidths) {
+                graphics.fillRect(x, 640, glyphWidth, 80);
+                x += glyphWidth + 18;
+            }
+            graphics.fillRect(300, 1300, 480, 200);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Draw a dark status bar with a block of icons starting at the given x, as a clock and
+     * notifications that change between screenshots
+     */
+    private static BufferedImage withStatusBar(BufferedImage image, int iconsX) {
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(Color.DARK_GRAY);
+            graphics.fillRect(0, 0, image.getWidth(), STATUS_BAR_HEIGHT);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(iconsX, 20, 340, 60);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    private static BufferedImage gradient(boolean mirrored) {
+        BufferedImage image = new BufferedImage(1080, 2400, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 1080; x++) {
+            int level = (mirrored ? 1079 - x : x) * 255 / 1079;
+            int rgb = new Color(level, level, level).getRGB();
+            for (int y = 0; y < 2400; y++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+        return image;
+    }
+}
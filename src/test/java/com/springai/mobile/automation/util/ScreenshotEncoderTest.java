@@ -0,0 +1,60 @@
+package com.springai.mobile.automation.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ScreenshotEncoder
+ */
+public class ScreenshotEncoderTest {
+
+    @Test
+    public void testDownscalesToMaxEdge() throws Exception {
+        BufferedImage screenshot = new BufferedImage(1080, 2400, BufferedImage.TYPE_INT_ARGB);
+
+        ScreenshotEncoder.EncodedScreenshot encoded = ScreenshotEncoder.encode(screenshot, 1200, 0, true, "jpeg", 0.8f);
+
+        assertEquals("image/jpeg", encoded.mimeType());
+        assertEquals(540, encoded.width());
+        assertEquals(1200, encoded.height());
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(encoded.data()));
+        assertEquals(540, decoded.getWidth());
+        assertEquals(1200, decoded.getHeight());
+    }
+
+    @Test
+    public void testSmallScreenshotKeepsSize() throws Exception {
+        BufferedImage screenshot = new BufferedImage(400, 800, BufferedImage.TYPE_INT_RGB);
+
+        ScreenshotEncoder.EncodedScreenshot encoded = ScreenshotEncoder.encode(screenshot, 1024, 0, false, "png", 0.8f);
+
+        assertEquals("image/png", encoded.mimeType());
+        assertEquals(1.0, encoded.scale());
+        assertEquals(800, encoded.height());
+    }
+
+    @Test
+    public void testBoundsMapBackToDeviceCoordinates() throws Exception {
+        BufferedImage screenshot = new BufferedImage(1080, 2500, BufferedImage.TYPE_INT_RGB);
+        ScreenshotEncoder.EncodedScreenshot encoded = ScreenshotEncoder.encode(screenshot, 1200, 100, false, "jpeg", 0.8f);
+
+        Map<String, Object> bounds = new LinkedHashMap<>();
+        bounds.put("x", 100);
+        bounds.put("y", 200);
+        bounds.put("width", 50);
+        bounds.put("height", 25);
+        Map<String, Object> device = encoded.toDeviceBounds(bounds);
+
+        assertEquals(200L, device.get("x"));
+        assertEquals(500L, device.get("y"));
+        assertEquals(100L, device.get("width"));
+        assertEquals(50L, device.get("height"));
+    }
+}
@@ -0,0 +1,139 @@
+package com.springai.mobile.automation.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SingleFlight
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentCallsShareOneExecution() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>(10, 5000);
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> singleFlight.execute("plan", () -> {
+                executions.incrementAndGet();
+                leaderStarted.countDown();
+                release.await();
+                return "result";
+            })));
+            leaderStarted.await();
+
+            CountDownLatch waitersSubmitted = new CountDownLatch(3);
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> {
+                    waitersSubmitted.countDown();
+                    return singleFlight.execute("plan", () -> {
+                        executions.incrementAndGet();
+                        return "own";
+                    });
+                }));
+            }
+            assertTrue(waitersSubmitted.await(5, TimeUnit.SECONDS));
+            waitForWaiters(singleFlight, 3);
+            assertEquals(1, singleFlight.getInFlight());
+            assertFalse(results.get(0).isDone());
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("result", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, executions.get());
+            assertEquals(3, singleFlight.getShared());
+            assertEquals(0, singleFlight.getInFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailureIsSharedAndKeyIsReleased() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>(10, 5000);
+
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("analysis", () -> {
+            throw new IllegalStateException("quota exceeded");
+        }));
+        assertEquals("ok", singleFlight.execute("analysis", () -> "ok"));
+    }
+
+    @Test
+    public void testWaiterTimesOutAndRunsItself() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>(10, 50);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("slow", () -> {
+                leaderStarted.countDown();
+                release.await();
+                return "leader";
+            }));
+            leaderStarted.await();
+
+            assertEquals("own", singleFlight.execute("slow", () -> "own"));
+            assertEquals(1, singleFlight.getTimedOut());
+
+            release.countDown();
+            assertEquals("leader", leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWaitingCountsJoinedCallers() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>(10, 5000);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("plan", () -> {
+                leaderStarted.countDown();
+                release.await();
+                return "result";
+            }));
+            assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+            assertEquals(0, singleFlight.getWaiting());
+
+            Future<String> waiter = executor.submit(() -> singleFlight.execute("plan", () -> "own"));
+            waitForWaiters(singleFlight, 1);
+            release.countDown();
+
+            assertEquals("result", waiter.get(5, TimeUnit.SECONDS));
+            assertEquals("result", leader.get(5, TimeUnit.SECONDS));
+            assertEquals(0, singleFlight.getWaiting());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Wait until the submitted waiter threads have joined the in-flight call
+     */
+    private static void waitForWaiters(SingleFlight<String> singleFlight, int waiters) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (singleFlight.getWaiting() < waiters) {
+            assertTrue(System.nanoTime() < deadline, "waiters did not join the in-flight call");
+            Thread.onSpinWait();
+        }
+    }
+}
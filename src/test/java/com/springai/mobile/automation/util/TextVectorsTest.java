@@ -0,0 +1,33 @@
+package com.springai.mobile.automation.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TextVectors
+ */
+public class TextVectorsTest {
+
+    @Test
+    public void testSimilarDescriptionsAreCloser() {
+        float[] login = TextVectors.embed("Login button", 128);
+        float[] logIn = TextVectors.embed("Log in button", 128);
+        float[] settings = TextVectors.embed("Settings menu", 128);
+
+        assertTrue(TextVectors.similarity(login, logIn) > TextVectors.similarity(login, settings) + 0.2);
+    }
+
+    @Test
+    public void testVectorsAreNormalized() {
+        float[] vector = TextVectors.embed("Email text field on screen 'Login'", 64);
+
+        assertEquals(1.0, TextVectors.similarity(vector, vector), 1e-5);
+        assertArrayEquals(vector, TextVectors.embed("email  TEXT field on screen login", 64));
+    }
+
+    @Test
+    public void testEmptyTextIsZeroVector() {
+        assertEquals(0.0, TextVectors.similarity(TextVectors.embed("  ", 16), TextVectors.embed("--", 16)));
+    }
+}